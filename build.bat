@@ -19,7 +19,7 @@ mkdir out\view\settings
 mkdir dist
 
 echo Compiling Java source files...
-javac -cp "lib/*" --module-path "%JAVAFX_PATH%" --add-modules javafx.controls,javafx.fxml -sourcepath src -d out src/Main.java src/model/*.java src/model/auth/*.java src/model/banking/*.java src/dao/*.java src/util/*.java src/controller/auth/*.java src/controller/banking/*.java src/controller/dashboard/*.java
+javac -cp "lib/*" --module-path "%JAVAFX_PATH%" --add-modules javafx.controls,javafx.fxml -sourcepath src -d out src/Main.java src/model/*.java src/model/auth/*.java src/model/banking/*.java src/dao/*.java src/util/*.java src/util/trace/*.java src/service/*.java src/service/risk/*.java src/service/ledger/*.java src/service/loan/*.java src/service/outbox/*.java src/analytics/*.java src/controller/auth/*.java src/controller/banking/*.java src/controller/dashboard/*.java src/controller/reports/*.java src/server/*.java
 
 if %ERRORLEVEL% neq 0 (
     echo Compilation failed!
@@ -8,6 +8,9 @@ CREATE DATABASE enterprise_banking;
 -- Enable UUID extension
 CREATE EXTENSION IF NOT EXISTS "uuid-ossp";
 
+-- Enable trigram matching for account search
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
 -- Create Tables
 
 -- Users and Authentication
@@ -32,12 +35,39 @@ CREATE TABLE bank_accounts (
     holder_name VARCHAR(100) NOT NULL,
     account_type VARCHAR(20) NOT NULL CHECK (account_type IN ('SAVINGS', 'CURRENT', 'LOAN')),
     balance DECIMAL(15,2) DEFAULT 0.00,
+    -- Balance the account was opened with; reconciliation replays history from it
+    opening_balance DECIMAL(15,2),
     currency VARCHAR(3) DEFAULT 'USD',
     status VARCHAR(20) DEFAULT 'ACTIVE' CHECK (status IN ('ACTIVE', 'SUSPENDED', 'CLOSED')),
     minimum_balance DECIMAL(15,2) DEFAULT 0.00,
-    interest_rate DECIMAL(5,4) DEFAULT 0.00,
+    -- Annual rate in percent; for a loan, the rate charged
+    interest_rate DECIMAL(7,4) DEFAULT 0.00,
+    version BIGINT NOT NULL DEFAULT 0,
+    balance_buckets INTEGER NOT NULL DEFAULT 0 CHECK (balance_buckets >= 0),
+    -- Loan terms (LOAN accounts only); a loan's balance is what is owed, as a negative amount
+    loan_principal DECIMAL(15,2) CHECK (loan_principal > 0),
+    loan_term_months INTEGER CHECK (loan_term_months BETWEEN 1 AND 600),
+    loan_start_date DATE,
+    -- Interest accrued by LoanAccrualJob through last_accrual_date, kept to a millionth
+    accrued_interest DECIMAL(19,6) NOT NULL DEFAULT 0,
+    last_accrual_date DATE,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CHECK (account_type <> 'LOAN' OR (loan_principal IS NOT NULL AND loan_term_months IS NOT NULL AND loan_start_date IS NOT NULL))
+);
+
+-- Account number values, reserved by AccountNumberAllocator a block (the
+-- increment) at a time and handed out from memory
+CREATE SEQUENCE account_number_seq START WITH 1 INCREMENT BY 1000;
+
+-- Sub-ledger balance buckets for hot accounts (bank_accounts.balance_buckets > 0).
+-- The account balance is bank_accounts.balance plus the sum of its buckets.
+CREATE TABLE account_balance_buckets (
+    account_number VARCHAR(20) NOT NULL REFERENCES bank_accounts(account_number),
+    bucket_no INTEGER NOT NULL,
+    balance DECIMAL(15,2) NOT NULL DEFAULT 0.00 CHECK (balance >= 0),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (account_number, bucket_no)
 );
 
 -- Transactions
@@ -51,23 +81,197 @@ CREATE TABLE transactions (
     status VARCHAR(20) DEFAULT 'PENDING' CHECK (status IN ('PENDING', 'COMPLETED', 'FAILED', 'CANCELLED')),
     description TEXT,
     performed_by INTEGER REFERENCES users(id),
+    idempotency_key VARCHAR(64) UNIQUE,
+    -- Currency of amount; a cross-currency transfer also records what the target was credited
+    currency VARCHAR(3) DEFAULT 'USD',
+    converted_amount DECIMAL(15,2),
+    converted_currency VARCHAR(3),
+    exchange_rate DECIMAL(20,10),
     transaction_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Transactional outbox: balance change events written in the same database
+-- transaction as each posting and delivered, then deleted, by
+-- service.outbox.OutboxRelay. partition_key is derived from the account
+-- number; each partition is relayed by one process at a time, in id order.
+CREATE TABLE outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    account_number VARCHAR(20) NOT NULL,
+    partition_key INTEGER NOT NULL,
+    transaction_id VARCHAR(50),
+    transaction_type VARCHAR(20),
+    counterparty_account_number VARCHAR(20),
+    -- Signed change in the account's currency, and the balance after it
+    amount DECIMAL(15,2) NOT NULL,
+    currency VARCHAR(3),
+    balance DECIMAL(15,2),
+    created_at TIMESTAMP NOT NULL DEFAULT clock_timestamp()
+);
+
+-- Wake the relay when events are committed (LISTEN outbox_events)
+CREATE OR REPLACE FUNCTION notify_outbox_events() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('outbox_events', '');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_outbox_events
+    AFTER INSERT ON outbox_events
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_outbox_events();
+
+-- Exchange rates against the base currency (system_settings.currency_default):
+-- 1 unit of currency_code = rate_to_base units of base. Cached in memory by
+-- FxRateService and refreshed periodically; overrides config/fx_rates.properties.
+CREATE TABLE fx_rates (
+    currency_code VARCHAR(3) PRIMARY KEY,
+    rate_to_base DECIMAL(20,10) NOT NULL CHECK (rate_to_base > 0),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Ledger reconciliation (service.ReconciliationJob). Each run records the
+-- transaction id up to which its expected balances are settled, plus the
+-- PENDING rows at or below it, so the next incremental run scans only newer ids
+-- and those rows.
+CREATE TABLE reconciliation_runs (
+    id SERIAL PRIMARY KEY,
+    mode VARCHAR(20) NOT NULL CHECK (mode IN ('FULL', 'INCREMENTAL')),
+    from_transaction_id BIGINT NOT NULL,
+    checkpoint_transaction_id BIGINT NOT NULL,
+    max_transaction_id BIGINT NOT NULL,
+    pending_transaction_ids BIGINT[] NOT NULL DEFAULT '{}',
+    accounts_checked INTEGER NOT NULL,
+    discrepancies INTEGER NOT NULL,
+    started_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Expected balance of each account as of its run's checkpoint_transaction_id
+CREATE TABLE reconciliation_checkpoints (
+    account_number VARCHAR(20) PRIMARY KEY REFERENCES bank_accounts(account_number),
+    expected_balance DECIMAL(15,2) NOT NULL,
+    run_id INTEGER NOT NULL REFERENCES reconciliation_runs(id),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Bulk account imports (service.AccountImporter). Progress is committed with
+-- each chunk of accounts, so an interrupted import resumes after the last one.
+-- import_key identifies the file (path, size and modification time).
+CREATE TABLE account_imports (
+    import_key VARCHAR(600) PRIMARY KEY,
+    file_name TEXT NOT NULL,
+    byte_offset BIGINT NOT NULL,
+    line_number BIGINT NOT NULL,
+    rows_imported BIGINT NOT NULL DEFAULT 0,
+    rows_rejected BIGINT NOT NULL DEFAULT 0,
+    reject_bytes BIGINT NOT NULL DEFAULT 0,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING' CHECK (status IN ('RUNNING', 'COMPLETED')),
+    started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Scheduled and Recurring Payments (standing orders)
+-- Each schedule owns one PENDING transaction for its next occurrence.
+CREATE TABLE scheduled_payments (
+    id SERIAL PRIMARY KEY,
+    schedule_id VARCHAR(50) UNIQUE NOT NULL,
+    from_account_number VARCHAR(20) NOT NULL,
+    to_account_number VARCHAR(20) NOT NULL,
+    amount DECIMAL(15,2) NOT NULL CHECK (amount > 0),
+    description TEXT,
+    frequency VARCHAR(20) NOT NULL DEFAULT 'ONCE' CHECK (frequency IN ('ONCE', 'DAILY', 'WEEKLY', 'MONTHLY')),
+    occurrence_at TIMESTAMP NOT NULL,
+    next_run_at TIMESTAMP NOT NULL,
+    remaining_runs INTEGER,
+    pending_transaction_id VARCHAR(50),
+    failure_count INTEGER NOT NULL DEFAULT 0,
+    status VARCHAR(20) DEFAULT 'ACTIVE' CHECK (status IN ('ACTIVE', 'COMPLETED', 'CANCELLED', 'FAILED')),
+    created_by VARCHAR(50),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
--- Audit Logs
+-- Audit Logs, hash-chained (dao.AuditLogDAO): entry_hash is SHA-256 over the
+-- previous entry's hash and this entry's columns, and seq numbers the chain
+-- without gaps. Rows are written only by AuditLogDAO, which hashes them.
 CREATE TABLE audit_logs (
     id SERIAL PRIMARY KEY,
+    seq BIGINT UNIQUE NOT NULL,
     action VARCHAR(100) NOT NULL,
     details TEXT,
     username VARCHAR(50) NOT NULL,
     ip_address INET,
     user_agent TEXT,
-    success BOOLEAN DEFAULT true,
+    success BOOLEAN NOT NULL DEFAULT true,
     error_message TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    entry_hash BYTEA NOT NULL
+);
+
+-- End of the audit chain; appenders lock this row. signature is an HMAC of
+-- last_seq and last_hash when audit.checkpoint.key is configured.
+CREATE TABLE audit_chain_head (
+    id BOOLEAN PRIMARY KEY DEFAULT true CHECK (id),
+    last_seq BIGINT NOT NULL,
+    last_hash BYTEA NOT NULL,
+    signature BYTEA,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+INSERT INTO audit_chain_head (last_seq, last_hash) VALUES (0, decode(repeat('00', 32), 'hex'));
+
+-- One checkpoint per complete segment of 65536 entries, written by the append
+-- that completes it: the chain hash it starts from, the Merkle root of its
+-- entry hashes and the chain hash it ends with, signed like the head
+CREATE TABLE audit_checkpoints (
+    segment BIGINT PRIMARY KEY,
+    first_seq BIGINT NOT NULL,
+    last_seq BIGINT NOT NULL,
+    previous_hash BYTEA NOT NULL,
+    merkle_root BYTEA NOT NULL,
+    last_entry_hash BYTEA NOT NULL,
+    signature BYTEA,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Audit log verification (service.AuditVerifier). An incremental run starts
+-- after the last run's verified_through_segment.
+CREATE TABLE audit_verification_runs (
+    id SERIAL PRIMARY KEY,
+    mode VARCHAR(20) NOT NULL CHECK (mode IN ('FULL', 'INCREMENTAL')),
+    from_segment BIGINT NOT NULL,
+    verified_through_segment BIGINT NOT NULL,
+    last_seq BIGINT NOT NULL,
+    entries_checked BIGINT NOT NULL,
+    failures INTEGER NOT NULL,
+    started_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- The audit log is append-only; only the chain head moves
+CREATE OR REPLACE FUNCTION reject_audit_change() RETURNS trigger AS $$
+BEGIN
+    RAISE EXCEPTION '% is append-only', TG_TABLE_NAME;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_audit_logs_append_only
+    BEFORE UPDATE OR DELETE ON audit_logs
+    FOR EACH ROW EXECUTE FUNCTION reject_audit_change();
+
+CREATE TRIGGER trg_audit_logs_no_truncate
+    BEFORE TRUNCATE ON audit_logs
+    FOR EACH STATEMENT EXECUTE FUNCTION reject_audit_change();
+
+CREATE TRIGGER trg_audit_checkpoints_append_only
+    BEFORE UPDATE OR DELETE ON audit_checkpoints
+    FOR EACH ROW EXECUTE FUNCTION reject_audit_change();
+
+CREATE TRIGGER trg_audit_chain_head_no_delete
+    BEFORE DELETE ON audit_chain_head
+    FOR EACH ROW EXECUTE FUNCTION reject_audit_change();
+
 -- Customer Information
 CREATE TABLE customers (
     id SERIAL PRIMARY KEY,
@@ -115,15 +319,36 @@ CREATE TABLE system_settings (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Notify listening application servers when settings change (LISTEN system_settings_changed)
+CREATE OR REPLACE FUNCTION notify_system_settings_changed() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('system_settings_changed', COALESCE(NEW.setting_key, OLD.setting_key));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_system_settings_changed
+    AFTER INSERT OR UPDATE OR DELETE ON system_settings
+    FOR EACH ROW EXECUTE FUNCTION notify_system_settings_changed();
+
 -- Create Indexes for Performance
 CREATE INDEX idx_bank_accounts_account_number ON bank_accounts(account_number);
 CREATE INDEX idx_bank_accounts_holder_name ON bank_accounts(holder_name);
+CREATE INDEX idx_bank_accounts_holder_name_trgm ON bank_accounts USING GIN (holder_name gin_trgm_ops);
+CREATE INDEX idx_bank_accounts_account_number_trgm ON bank_accounts USING GIN (account_number gin_trgm_ops);
 CREATE INDEX idx_transactions_from_account ON transactions(from_account_number);
 CREATE INDEX idx_transactions_to_account ON transactions(to_account_number);
 CREATE INDEX idx_transactions_date ON transactions(transaction_date);
+CREATE INDEX idx_transactions_pending ON transactions(id) WHERE status = 'PENDING';
+CREATE INDEX idx_bank_accounts_loans ON bank_accounts(id) WHERE account_type = 'LOAN' AND status = 'ACTIVE';
+CREATE INDEX idx_scheduled_payments_active ON scheduled_payments(next_run_at) WHERE status = 'ACTIVE';
 CREATE INDEX idx_audit_logs_username ON audit_logs(username);
 CREATE INDEX idx_audit_logs_created_at ON audit_logs(created_at);
 CREATE INDEX idx_customers_email ON customers(email);
+CREATE INDEX idx_customers_email_trgm ON customers USING GIN (email gin_trgm_ops);
+CREATE INDEX idx_customers_phone_trgm ON customers USING GIN (phone gin_trgm_ops);
+CREATE INDEX idx_customer_accounts_account_id ON customer_accounts(account_id);
+CREATE INDEX idx_customer_accounts_customer_id ON customer_accounts(customer_id);
 CREATE INDEX idx_users_username ON users(username);
 
 -- Insert Sample Data
@@ -135,11 +360,15 @@ INSERT INTO users (username, password_hash, email, role, first_name, last_name)
 ('auditor', '$2a$10$N.zmdr9k7uOCQb376NoUnuTJ8iAt6Z5EHsM8lE9lBOsl7iKTVEFDa', 'auditor@bank.com', 'AUDITOR', 'Jane', 'Auditor');
 
 -- Sample Bank Accounts
-INSERT INTO bank_accounts (account_number, holder_name, account_type, balance, minimum_balance, interest_rate) VALUES
-('SAV001', 'John Doe', 'SAVINGS', 5000.00, 500.00, 2.50),
-('CUR001', 'Jane Smith', 'CURRENT', 2500.00, 0.00, 0.00),
-('SAV002', 'Bob Johnson', 'SAVINGS', 3000.00, 500.00, 2.50),
-('CUR002', 'Alice Brown', 'CURRENT', 1500.00, 0.00, 0.00);
+INSERT INTO bank_accounts (account_number, holder_name, account_type, balance, minimum_balance, interest_rate, opening_balance) VALUES
+('SAV001', 'John Doe', 'SAVINGS', 5000.00, 500.00, 2.50, 5250.00),
+('CUR001', 'Jane Smith', 'CURRENT', 2500.00, 0.00, 0.00, 1750.00),
+('SAV002', 'Bob Johnson', 'SAVINGS', 3000.00, 500.00, 2.50, 3000.00),
+('CUR002', 'Alice Brown', 'CURRENT', 1500.00, 0.00, 0.00, 1500.00);
+
+INSERT INTO bank_accounts (account_number, holder_name, account_type, balance, minimum_balance, interest_rate, opening_balance,
+                           loan_principal, loan_term_months, loan_start_date, last_accrual_date) VALUES
+('LON001', 'Bob Johnson', 'LOAN', -12000.00, 0.00, 6.50, -12000.00, 12000.00, 36, CURRENT_DATE, CURRENT_DATE);
 
 -- Sample Transactions
 INSERT INTO transactions (transaction_id, from_account_number, to_account_number, amount, transaction_type, status, description, performed_by) VALUES
@@ -147,10 +376,33 @@ INSERT INTO transactions (transaction_id, from_account_number, to_account_number
 ('TXN002', 'SAV001', NULL, 500.00, 'WITHDRAWAL', 'COMPLETED', 'ATM withdrawal', 1),
 ('TXN003', 'SAV001', 'CUR001', 750.00, 'TRANSFER', 'COMPLETED', 'Transfer to current account', 1);
 
+-- Sample Exchange Rates (replace with a rate feed)
+INSERT INTO fx_rates (currency_code, rate_to_base) VALUES
+('EUR', 1.0850000000),
+('GBP', 1.2650000000),
+('INR', 0.0120000000),
+('JPY', 0.0067000000);
+
 -- Sample System Settings
 INSERT INTO system_settings (setting_key, setting_value, description) VALUES
 ('session_timeout_minutes', '30', 'User session timeout in minutes'),
 ('max_login_attempts', '3', 'Maximum failed login attempts before lockout'),
+('login_lockout_minutes', '15', 'How long a user is locked out after too many failed logins'),
+('rate_limit_login_per_user_per_minute', '10', 'Login attempts per username per minute'),
+('rate_limit_deposit_per_user_per_minute', '60', 'Deposits per teller per minute'),
+('rate_limit_deposit_per_account_per_minute', '20', 'Deposits per account per minute'),
+('rate_limit_withdrawal_per_user_per_minute', '60', 'Withdrawals per teller per minute'),
+('rate_limit_withdrawal_per_account_per_minute', '20', 'Withdrawals per account per minute'),
+('rate_limit_transfer_per_user_per_minute', '60', 'Transfers per teller per minute'),
+('rate_limit_transfer_per_account_per_minute', '20', 'Transfers per source account per minute'),
+('rate_limit_account_create_per_user_per_minute', '20', 'Accounts opened per teller per minute'),
+('rate_limit_account_search_per_user_per_minute', '600', 'Database account searches per teller per minute'),
+('risk_velocity_count_1m', '5 BLOCK', 'Debits per account per minute before the risk action (hot accounts exempt)'),
+('risk_velocity_count_1h', '30 REVIEW', 'Debits per account per hour before the risk action (hot accounts exempt)'),
+('risk_velocity_amount_1h', '10000 REVIEW', 'Amount debited per account per hour before the risk action (hot accounts exempt)'),
+('risk_velocity_amount_24h', '50000 BLOCK', 'Amount debited per account per day before the risk action (hot accounts exempt)'),
+('risk_new_beneficiary_amount', '5000 REVIEW', 'Largest first payment to a new beneficiary before the risk action'),
+('risk_new_beneficiary_burst', '3 BLOCK', 'New beneficiaries per account per hour before the risk action'),
 ('maintenance_mode', 'false', 'System maintenance mode'),
 ('currency_default', 'USD', 'Default currency for the system');
 
@@ -205,21 +457,6 @@ BEGIN
 END;
 $$ LANGUAGE plpgsql;
 
--- Function to log audit events
-CREATE OR REPLACE FUNCTION log_audit_event(
-    p_action VARCHAR(100),
-    p_details TEXT,
-    p_username VARCHAR(50),
-    p_ip_address INET DEFAULT NULL,
-    p_success BOOLEAN DEFAULT true,
-    p_error_message TEXT DEFAULT NULL
-) RETURNS VOID AS $$
-BEGIN
-    INSERT INTO audit_logs (action, details, username, ip_address, success, error_message)
-    VALUES (p_action, p_details, p_username, p_ip_address, p_success, p_error_message);
-END;
-$$ LANGUAGE plpgsql;
-
 -- Create Triggers
 
 -- Trigger to update updated_at timestamp
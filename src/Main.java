@@ -1,18 +1,63 @@
+import controller.auth.LoginController;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import model.auth.Role;
+import service.BackgroundServices;
+import service.StartupBenchmark;
+import service.StartupOrchestrator;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 public class Main extends Application {
     @Override
     public void start(Stage primaryStage) throws Exception {
+        // Bring up the driver, pool, settings and services while the login
+        // screen is built, and parse the dashboard before anyone logs in
+        StartupOrchestrator startup = BackgroundServices.prepare(BackgroundServices.Mode.DESKTOP);
+        startup.backgroundStep("dashboard-fxml", LoginController::preloadDashboard);
+        startup.start();
+
         // Load the login view first
-        Parent root = FXMLLoader.load(getClass().getResource("/view/auth/LoginView.fxml"));
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/auth/LoginView.fxml"));
+        Parent root = loader.load();
         primaryStage.setTitle("Enterprise Banking System - Login");
         primaryStage.setScene(new Scene(root));
         primaryStage.setResizable(false);
         primaryStage.show();
+        startup.mark("login-screen");
+
+        String reportFile = System.getProperty(StartupBenchmark.REPORT_PROPERTY);
+        if (reportFile != null) {
+            runForBenchmark(startup, loader.getController(), reportFile);
+        }
+    }
+
+    /**
+     * Log in with the given credentials if any, then write the timings and exit
+     */
+    private void runForBenchmark(StartupOrchestrator startup, LoginController loginController, String reportFile) {
+        String[] credentials = System.getProperty(StartupBenchmark.LOGIN_PROPERTY, "").split(":", 3);
+        boolean login = credentials.length == 3;
+        startup.onMilestone(login ? "first-dashboard" : "login-screen", () -> startup.whenFinished(() -> {
+            try {
+                startup.writeReport(Paths.get(reportFile));
+            } catch (IOException e) {
+                System.err.println("Error writing startup report: " + e.getMessage());
+            }
+            Platform.runLater(Platform::exit);
+        }));
+        if (login) {
+            Platform.runLater(() -> loginController.submit(credentials[0], credentials[1], Role.valueOf(credentials[2])));
+        }
+    }
+
+    @Override
+    public void stop() {
+        BackgroundServices.stop();
     }
 
     public static void main(String[] args) {
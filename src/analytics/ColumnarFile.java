@@ -0,0 +1,264 @@
+package analytics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * One table partition in the snapshot's columnar format, read through a
+ * memory-mapped file. Columns are decoded into primitive arrays only when a
+ * query asks for them, so a scan pays for the columns it filters or sums and
+ * nothing else.
+ *
+ * Layout (little-endian): int magic, int row count, int column count, then
+ * per column its name (short length plus UTF-8), encoding byte, long offset,
+ * int compressed length and int raw length; then each column's block,
+ * Deflate-compressed. Raw encodings:
+ * - LONG_PLAIN: a zigzag varint per row
+ * - LONG_DELTA: a zigzag varint per row of the difference from the row before
+ * - DICTIONARY: varint entry count, entries (varint length plus UTF-8), then a
+ *   varint per row of code + 1 (0 for null)
+ * - STRING: a varint per row of length + 1 (0 for null) plus UTF-8
+ */
+public final class ColumnarFile {
+
+    static final int MAGIC = 0x434F4C31;
+    static final int HEADER_BYTES = 12;
+
+    static final byte LONG_PLAIN = 0;
+    static final byte LONG_DELTA = 1;
+    static final byte DICTIONARY = 2;
+    static final byte STRING = 3;
+
+    private final Path path;
+    private final int rowCount;
+    private final Map<String, ColumnEntry> entries = new LinkedHashMap<>();
+    private final Map<String, Object> decoded = new HashMap<>();
+    private final MappedByteBuffer mapped;
+
+    private ColumnarFile(Path path, MappedByteBuffer mapped) throws IOException {
+        this.path = path;
+        this.mapped = mapped;
+        ByteBuffer header = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Not a columnar snapshot file: " + path);
+        }
+        rowCount = header.getInt();
+        int columnCount = header.getInt();
+        for (int i = 0; i < columnCount; i++) {
+            byte[] name = new byte[header.getShort()];
+            header.get(name);
+            byte encoding = header.get();
+            long offset = header.getLong();
+            int compressedBytes = header.getInt();
+            int rawBytes = header.getInt();
+            if (offset + compressedBytes > mapped.capacity()) {
+                throw new IOException("Truncated columnar snapshot file: " + path);
+            }
+            String columnName = new String(name, StandardCharsets.UTF_8);
+            entries.put(columnName, new ColumnEntry(encoding, (int) offset, compressedBytes, rawBytes));
+        }
+    }
+
+    /**
+     * Map a partition file and read its column directory
+     */
+    public static ColumnarFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new ColumnarFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path getPath() { return path; }
+    public int getRowCount() { return rowCount; }
+
+    public Set<String> getColumnNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * A LONG_PLAIN or LONG_DELTA column, one value per row
+     */
+    public synchronized long[] getLongs(String name) throws IOException {
+        Object cached = decoded.get(name);
+        if (cached == null) {
+            ColumnEntry entry = entry(name, LONG_PLAIN, LONG_DELTA);
+            ByteBuffer raw = inflate(name, entry);
+            long[] values = new long[rowCount];
+            long previous = 0;
+            for (int i = 0; i < rowCount; i++) {
+                long value = readZigzag(raw);
+                values[i] = entry.encoding == LONG_DELTA ? previous + value : value;
+                previous = values[i];
+            }
+            cached = values;
+            decoded.put(name, cached);
+        }
+        return (long[]) cached;
+    }
+
+    /**
+     * A DICTIONARY column: its distinct values and a code per row (-1 for null)
+     */
+    public synchronized Dictionary getDictionary(String name) throws IOException {
+        Object cached = decoded.get(name);
+        if (cached == null) {
+            ByteBuffer raw = inflate(name, entry(name, DICTIONARY, DICTIONARY));
+            String[] values = new String[(int) readVarint(raw)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readString(raw, (int) readVarint(raw));
+            }
+            int[] codes = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                codes[i] = (int) readVarint(raw) - 1;
+            }
+            cached = new Dictionary(values, codes);
+            decoded.put(name, cached);
+        }
+        return (Dictionary) cached;
+    }
+
+    /**
+     * A STRING column, one value per row
+     */
+    public synchronized String[] getStrings(String name) throws IOException {
+        Object cached = decoded.get(name);
+        if (cached == null) {
+            ByteBuffer raw = inflate(name, entry(name, STRING, STRING));
+            String[] values = new String[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                int length = (int) readVarint(raw);
+                values[i] = length == 0 ? null : readString(raw, length - 1);
+            }
+            cached = values;
+            decoded.put(name, cached);
+        }
+        return (String[]) cached;
+    }
+
+    private ColumnEntry entry(String name, byte encoding, byte alternative) throws IOException {
+        ColumnEntry entry = entries.get(name);
+        if (entry == null) {
+            throw new IOException("No column " + name + " in " + path);
+        }
+        if (entry.encoding != encoding && entry.encoding != alternative) {
+            throw new IOException("Column " + name + " in " + path + " has encoding " + entry.encoding);
+        }
+        return entry;
+    }
+
+    private ByteBuffer inflate(String name, ColumnEntry entry) throws IOException {
+        ByteBuffer compressed = mapped.duplicate();
+        compressed.position(entry.offset).limit(entry.offset + entry.compressedBytes);
+        byte[] raw = new byte[entry.rawBytes];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != raw.length) {
+                throw new IOException("Column " + name + " in " + path + " is corrupt");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Column " + name + " in " + path + " is corrupt: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long readZigzag(ByteBuffer in) {
+        long value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static String readString(ByteBuffer in, int length) {
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static final class ColumnEntry {
+        final byte encoding;
+        final int offset;
+        final int compressedBytes;
+        final int rawBytes;
+
+        ColumnEntry(byte encoding, int offset, int compressedBytes, int rawBytes) {
+            this.encoding = encoding;
+            this.offset = offset;
+            this.compressedBytes = compressedBytes;
+            this.rawBytes = rawBytes;
+        }
+    }
+
+    /**
+     * Inner class for a decoded dictionary column
+     */
+    public static final class Dictionary {
+        private final String[] values;
+        private final int[] codes;
+
+        Dictionary(String[] values, int[] codes) {
+            this.values = values;
+            this.codes = codes;
+        }
+
+        /**
+         * Code of every row, -1 for null
+         */
+        public int[] getCodes() { return codes; }
+
+        public int size() { return values.length; }
+
+        public String valueOf(int code) {
+            return code < 0 ? null : values[code];
+        }
+
+        /**
+         * Code of a value, or -2 (matching no row) if the partition has none
+         */
+        public int codeOf(String value) {
+            if (value == null) {
+                return -1;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].equals(value)) {
+                    return i;
+                }
+            }
+            return -2;
+        }
+    }
+}
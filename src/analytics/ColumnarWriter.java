@@ -0,0 +1,319 @@
+package analytics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Buffers one table partition column by column and writes it as a
+ * {@link ColumnarFile}. Add one value to every column per row, then
+ * {@link #write(Path)}.
+ *
+ * Not thread-safe; the exporter uses one writer per partition.
+ */
+public class ColumnarWriter {
+
+    private final List<Column> columns = new ArrayList<>();
+    private final int compressionLevel;
+
+    public ColumnarWriter() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ColumnarWriter(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * A column of longs stored as zigzag varints; with delta encoding each
+     * value is stored as the difference from the previous row, which suits
+     * ids and timestamps exported in id order
+     */
+    public LongColumn longColumn(String name, boolean delta) {
+        LongColumn column = new LongColumn(name, delta ? ColumnarFile.LONG_DELTA : ColumnarFile.LONG_PLAIN);
+        columns.add(column);
+        return column;
+    }
+
+    /**
+     * A column of strings with few distinct values (account numbers, types,
+     * statuses, currencies): each distinct value is stored once and rows hold
+     * its code
+     */
+    public DictionaryColumn dictionaryColumn(String name) {
+        DictionaryColumn column = new DictionaryColumn(name);
+        columns.add(column);
+        return column;
+    }
+
+    /**
+     * A column of free-form strings, stored as they are
+     */
+    public StringColumn stringColumn(String name) {
+        StringColumn column = new StringColumn(name);
+        columns.add(column);
+        return column;
+    }
+
+    /**
+     * Rows added so far
+     */
+    public int getRowCount() {
+        return columns.isEmpty() ? 0 : columns.get(0).size();
+    }
+
+    /**
+     * Encode, compress and write every column to a file, replacing it
+     * atomically so a reader never sees a half-written partition
+     */
+    public void write(Path path) throws IOException {
+        int rowCount = getRowCount();
+        List<byte[]> names = new ArrayList<>(columns.size());
+        List<byte[]> blocks = new ArrayList<>(columns.size());
+        int[] rawSizes = new int[columns.size()];
+        int directoryBytes = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            if (column.size() != rowCount) {
+                throw new IllegalStateException("Column " + column.name + " has " + column.size()
+                        + " values, expected " + rowCount);
+            }
+            VarintBuffer raw = new VarintBuffer(Math.max(64, rowCount * 2));
+            column.encode(raw);
+            rawSizes[i] = raw.size;
+            blocks.add(compress(raw));
+            names.add(column.name.getBytes(StandardCharsets.UTF_8));
+            directoryBytes += 2 + names.get(i).length + 1 + 8 + 4 + 4;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(ColumnarFile.HEADER_BYTES + directoryBytes).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ColumnarFile.MAGIC).putInt(rowCount).putInt(columns.size());
+        long offset = header.capacity();
+        for (int i = 0; i < columns.size(); i++) {
+            header.putShort((short) names.get(i).length).put(names.get(i));
+            header.put(columns.get(i).encoding);
+            header.putLong(offset).putInt(blocks.get(i).length).putInt(rawSizes[i]);
+            offset += blocks.get(i).length;
+        }
+        header.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            for (byte[] block : blocks) {
+                writeFully(channel, ByteBuffer.wrap(block));
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private byte[] compress(VarintBuffer raw) {
+        Deflater deflater = new Deflater(compressionLevel);
+        try {
+            deflater.setInput(raw.bytes, 0, raw.size);
+            deflater.finish();
+            byte[] out = new byte[Math.max(64, raw.size / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Inner base class for a column being buffered
+     */
+    public abstract static class Column {
+        final String name;
+        final byte encoding;
+
+        Column(String name, byte encoding) {
+            this.name = name;
+            this.encoding = encoding;
+        }
+
+        abstract int size();
+
+        abstract void encode(VarintBuffer out);
+    }
+
+    public static final class LongColumn extends Column {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        LongColumn(String name, byte encoding) {
+            super(name, encoding);
+        }
+
+        public void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        void encode(VarintBuffer out) {
+            long previous = 0;
+            boolean delta = encoding == ColumnarFile.LONG_DELTA;
+            for (int i = 0; i < size; i++) {
+                out.putZigzag(delta ? values[i] - previous : values[i]);
+                previous = values[i];
+            }
+        }
+    }
+
+    public static final class DictionaryColumn extends Column {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] rows = new int[1024];
+        private int size = 0;
+
+        DictionaryColumn(String name) {
+            super(name, ColumnarFile.DICTIONARY);
+        }
+
+        /**
+         * Add a value; null is allowed
+         */
+        public void add(String value) {
+            int code = -1;
+            if (value != null) {
+                Integer existing = codes.get(value);
+                if (existing == null) {
+                    existing = dictionary.size();
+                    codes.put(value, existing);
+                    dictionary.add(value);
+                }
+                code = existing;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = code;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        void encode(VarintBuffer out) {
+            out.putVarint(dictionary.size());
+            for (String value : dictionary) {
+                out.putString(value);
+            }
+            for (int i = 0; i < size; i++) {
+                out.putVarint(rows[i] + 1);
+            }
+        }
+    }
+
+    public static final class StringColumn extends Column {
+        private final List<String> values = new ArrayList<>();
+
+        StringColumn(String name) {
+            super(name, ColumnarFile.STRING);
+        }
+
+        /**
+         * Add a value; null is allowed
+         */
+        public void add(String value) {
+            values.add(value);
+        }
+
+        @Override
+        int size() {
+            return values.size();
+        }
+
+        @Override
+        void encode(VarintBuffer out) {
+            for (String value : values) {
+                if (value == null) {
+                    out.putVarint(0);
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.putVarint(bytes.length + 1L);
+                    out.putBytes(bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable byte array for the uncompressed column encoding
+     */
+    static final class VarintBuffer {
+        byte[] bytes;
+        int size = 0;
+
+        VarintBuffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void putZigzag(long value) {
+            putVarint((value << 1) ^ (value >> 63));
+        }
+
+        void putVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void putString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            putVarint(encoded.length);
+            putBytes(encoded);
+        }
+
+        void putBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package analytics;
+
+import java.util.Arrays;
+
+/**
+ * The rows of one partition that pass a query's filters, as a bitmap.
+ *
+ * Filters run a column at a time over primitive arrays, 64 rows per bitmap
+ * word, and build each word's mask without branching so the JIT can unroll
+ * and vectorize the comparisons; words already empty are skipped. Filters
+ * narrow the selection in place and return it, so they chain.
+ */
+public final class Selection {
+
+    private final long[] words;
+    private final int size;
+
+    private Selection(int size) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * Every row of a partition with this many rows
+     */
+    public static Selection all(int size) {
+        Selection selection = new Selection(size);
+        Arrays.fill(selection.words, -1L);
+        int tail = size & 63;
+        if (tail != 0) {
+            selection.words[selection.words.length - 1] = (1L << tail) - 1;
+        }
+        return selection;
+    }
+
+    /**
+     * An independent copy, to narrow further without changing this one
+     */
+    public Selection copy() {
+        Selection copy = new Selection(size);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Keep rows whose value is within [min, max]
+     */
+    public Selection between(long[] values, long min, long max) {
+        for (int w = 0; w < words.length; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int end = Math.min(64, size - base);
+            long mask = 0;
+            for (int j = 0; j < end; j++) {
+                long value = values[base + j];
+                mask |= (value >= min & value <= max ? 1L : 0L) << j;
+            }
+            words[w] &= mask;
+        }
+        return this;
+    }
+
+    /**
+     * Keep rows whose dictionary code is the given one
+     */
+    public Selection equalTo(int[] codes, int code) {
+        for (int w = 0; w < words.length; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int end = Math.min(64, size - base);
+            long mask = 0;
+            for (int j = 0; j < end; j++) {
+                mask |= (codes[base + j] == code ? 1L : 0L) << j;
+            }
+            words[w] &= mask;
+        }
+        return this;
+    }
+
+    /**
+     * Keep rows where either of two dictionary columns has the code of its own
+     * dictionary (e.g. an account on either side of a transfer)
+     */
+    public Selection eitherEqualTo(int[] codes, int code, int[] otherCodes, int otherCode) {
+        for (int w = 0; w < words.length; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int end = Math.min(64, size - base);
+            long mask = 0;
+            for (int j = 0; j < end; j++) {
+                mask |= (codes[base + j] == code | otherCodes[base + j] == otherCode ? 1L : 0L) << j;
+            }
+            words[w] &= mask;
+        }
+        return this;
+    }
+
+    public int count() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Sum of a column over the selected rows
+     */
+    public long sum(long[] values) {
+        long sum = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            int base = w << 6;
+            if (word == -1L) {
+                for (int j = 0; j < 64; j++) {
+                    sum += values[base + j];
+                }
+            } else {
+                while (word != 0) {
+                    sum += values[base + Long.numberOfTrailingZeros(word)];
+                    word &= word - 1;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Count and sum of a column over the selected rows, per dictionary code:
+     * counts[code + 1] and sums[code + 1], slot 0 holding null
+     */
+    public void sumByCode(int[] codes, long[] values, long[] counts, long[] sums) {
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            int base = w << 6;
+            while (word != 0) {
+                int row = base + Long.numberOfTrailingZeros(word);
+                int slot = codes[row] + 1;
+                counts[slot]++;
+                sums[slot] += values[row];
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Index of the next selected row at or after a row, or -1
+     */
+    public int nextSetRow(int row) {
+        if (row >= size) {
+            return -1;
+        }
+        int w = row >>> 6;
+        long word = words[w] & (-1L << (row & 63));
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+}
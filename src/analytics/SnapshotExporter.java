@@ -0,0 +1,230 @@
+package analytics;
+
+import dao.BankAccountDAO;
+import dao.TransactionDAO;
+import model.BankAccount;
+import model.banking.Transaction;
+import util.DatabaseConfig;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports bank_accounts and transactions into a directory of columnar files
+ * for offline analytics, so aggregate queries by auditors and analysts run
+ * on the snapshot ({@link SnapshotQuery}) instead of the OLTP database.
+ *
+ * Transactions are split into id ranges of about rowsPerPartition rows; each
+ * range is streamed from its own read connection (a replica when one is
+ * configured) and written to its own file, several partitions in parallel.
+ * The snapshot covers transactions up to the highest id at the start of the
+ * export; status changes made while it runs may or may not be included.
+ * snapshot.properties is written last, so a directory without it holds an
+ * incomplete export.
+ *
+ * Run with: java -cp "lib/*:out" analytics.SnapshotExporter [directory] [parallelism] [rowsPerPartition]
+ */
+public class SnapshotExporter {
+
+    public static final String MANIFEST_FILE = "snapshot.properties";
+    public static final String ACCOUNTS_FILE = "accounts.col";
+    public static final String TRANSACTIONS_FILE_FORMAT = "transactions-%05d.col";
+
+    private static final int DEFAULT_ROWS_PER_PARTITION = 1_000_000;
+
+    private final BankAccountDAO bankAccountDAO;
+    private final TransactionDAO transactionDAO;
+    private final int parallelism;
+    private final int rowsPerPartition;
+
+    public SnapshotExporter(int parallelism, int rowsPerPartition) {
+        this(new BankAccountDAO(), new TransactionDAO(), parallelism, rowsPerPartition);
+    }
+
+    public SnapshotExporter(BankAccountDAO bankAccountDAO, TransactionDAO transactionDAO,
+                            int parallelism, int rowsPerPartition) {
+        this.bankAccountDAO = bankAccountDAO;
+        this.transactionDAO = transactionDAO;
+        this.parallelism = Math.max(1, parallelism);
+        this.rowsPerPartition = Math.max(1, rowsPerPartition);
+    }
+
+    /**
+     * Export into a directory, replacing any earlier snapshot in it
+     */
+    public Properties export(Path directory) throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(MANIFEST_FILE));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.col")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+
+        long[] idRange = transactionDAO.getIdRange();
+        if (idRange == null) {
+            throw new IOException("Could not read the transaction id range");
+        }
+        long afterId = idRange[0] - 1;
+        long upToId = idRange[1];
+        long span = Math.max(0, upToId - afterId);
+        int partitions = (int) Math.max(1, (span + rowsPerPartition - 1) / rowsPerPartition);
+        long width = Math.max(1, (span + partitions - 1) / partitions);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "snapshot-export-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<Integer> accounts = executor.submit(() -> exportAccounts(directory.resolve(ACCOUNTS_FILE)));
+            List<Future<Integer>> transactionPartitions = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++) {
+                long from = afterId + p * width;
+                long to = p == partitions - 1 ? upToId : Math.min(upToId, from + width);
+                Path file = directory.resolve(String.format(TRANSACTIONS_FILE_FORMAT, p));
+                transactionPartitions.add(executor.submit(() -> exportTransactions(from, to, file)));
+            }
+
+            int accountRows = accounts.get();
+            long transactionRows = 0;
+            for (Future<Integer> partition : transactionPartitions) {
+                transactionRows += partition.get();
+            }
+
+            Properties manifest = new Properties();
+            manifest.setProperty("format", "1");
+            manifest.setProperty("created_at", LocalDateTime.now().toString());
+            manifest.setProperty("transaction_id_upper", Long.toString(upToId));
+            manifest.setProperty("partitions", Integer.toString(partitions));
+            manifest.setProperty("account_rows", Integer.toString(accountRows));
+            manifest.setProperty("transaction_rows", Long.toString(transactionRows));
+            manifest.setProperty("export_millis", Long.toString((System.nanoTime() - started) / 1_000_000));
+            writeManifest(directory, manifest);
+            return manifest;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Snapshot export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int exportAccounts(Path file) throws IOException {
+        ColumnarWriter writer = new ColumnarWriter();
+        ColumnarWriter.StringColumn accountNumber = writer.stringColumn("account_number");
+        ColumnarWriter.StringColumn holderName = writer.stringColumn("holder_name");
+        ColumnarWriter.DictionaryColumn accountType = writer.dictionaryColumn("account_type");
+        ColumnarWriter.DictionaryColumn currency = writer.dictionaryColumn("currency");
+        ColumnarWriter.LongColumn balanceCents = writer.longColumn("balance_cents", false);
+        ColumnarWriter.LongColumn version = writer.longColumn("version", false);
+        ColumnarWriter.LongColumn balanceBuckets = writer.longColumn("balance_buckets", false);
+
+        boolean read = bankAccountDAO.streamAccounts((BankAccount account) -> {
+            accountNumber.add(account.getAccountNumber());
+            holderName.add(account.getHolderName());
+            accountType.add(account.getAccountType());
+            currency.add(account.getCurrency());
+            balanceCents.add(toCents(account.getBalance()));
+            version.add(account.getVersion());
+            balanceBuckets.add(account.getBalanceBuckets());
+        });
+        if (!read) {
+            throw new IOException("Could not read bank accounts");
+        }
+        writer.write(file);
+        return writer.getRowCount();
+    }
+
+    private int exportTransactions(long afterId, long upToId, Path file) throws IOException {
+        ColumnarWriter writer = new ColumnarWriter();
+        ColumnarWriter.LongColumn id = writer.longColumn("id", true);
+        ColumnarWriter.StringColumn transactionId = writer.stringColumn("transaction_id");
+        ColumnarWriter.DictionaryColumn fromAccount = writer.dictionaryColumn("from_account");
+        ColumnarWriter.DictionaryColumn toAccount = writer.dictionaryColumn("to_account");
+        ColumnarWriter.LongColumn amountCents = writer.longColumn("amount_cents", false);
+        ColumnarWriter.DictionaryColumn currency = writer.dictionaryColumn("currency");
+        ColumnarWriter.LongColumn convertedCents = writer.longColumn("converted_cents", false);
+        ColumnarWriter.DictionaryColumn convertedCurrency = writer.dictionaryColumn("converted_currency");
+        ColumnarWriter.DictionaryColumn type = writer.dictionaryColumn("type");
+        ColumnarWriter.DictionaryColumn status = writer.dictionaryColumn("status");
+        ColumnarWriter.DictionaryColumn performedBy = writer.dictionaryColumn("performed_by");
+        ColumnarWriter.LongColumn createdAt = writer.longColumn("created_at", true);
+
+        boolean read = transactionDAO.streamTransactions(afterId, upToId, (Transaction transaction) -> {
+            id.add(transaction.getId());
+            transactionId.add(transaction.getTransactionId());
+            fromAccount.add(transaction.getFromAccountNumber());
+            toAccount.add(transaction.getToAccountNumber());
+            amountCents.add(toCents(transaction.getAmount()));
+            currency.add(transaction.getCurrency());
+            // Same-currency rows: 0 and null, so SUM(converted_cents) adds only credited conversions
+            convertedCents.add(transaction.isCrossCurrency() ? toCents(transaction.getConvertedAmount()) : 0);
+            convertedCurrency.add(transaction.isCrossCurrency() ? transaction.getConvertedCurrency() : null);
+            type.add(transaction.getTransactionType().name());
+            status.add(transaction.getStatus().name());
+            performedBy.add(transaction.getPerformedBy());
+            createdAt.add(toMillis(transaction.getCreatedAt()));
+        });
+        if (!read) {
+            throw new IOException("Could not read transactions " + (afterId + 1) + " to " + upToId);
+        }
+        writer.write(file);
+        return writer.getRowCount();
+    }
+
+    private static void writeManifest(Path directory, Properties manifest) throws IOException {
+        Path temp = directory.resolve(MANIFEST_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            manifest.store(out, "Columnar snapshot of bank_accounts and transactions");
+        }
+        Files.move(temp, directory.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Timestamps are stored as wall-clock millis (the database's local time read as UTC)
+     */
+    static long toMillis(LocalDateTime time) {
+        return time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "snapshot");
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int rowsPerPartition = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROWS_PER_PARTITION;
+
+        try {
+            Properties manifest = new SnapshotExporter(parallelism, rowsPerPartition).export(directory);
+            System.out.printf("Exported %s accounts and %s transactions in %s partitions to %s (%s ms)%n",
+                    manifest.getProperty("account_rows"), manifest.getProperty("transaction_rows"),
+                    manifest.getProperty("partitions"), directory.toAbsolutePath(),
+                    manifest.getProperty("export_millis"));
+        } finally {
+            DatabaseConfig.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package analytics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * In-process query tool over a snapshot written by {@link SnapshotExporter}.
+ *
+ * A query filters each transaction partition with {@link Selection} (only
+ * the columns it filters on are decompressed), aggregates count and amount
+ * per group and currency, and merges the partitions, which are scanned in
+ * parallel. Sums are never mixed across currencies.
+ *
+ * Run with: java -cp out analytics.SnapshotQuery [directory] [balances] [--from yyyy-mm-dd] [--to yyyy-mm-dd]
+ *     [--type T] [--status S] [--currency C] [--account A] [--min amount] [--max amount]
+ *     [--group-by none|type|status|currency|from|to|performed_by|day|month] [--limit n]
+ */
+public class SnapshotQuery {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    public enum GroupBy {
+        NONE(null), TYPE("type"), STATUS("status"), CURRENCY("currency"),
+        FROM("from_account"), TO("to_account"), PERFORMED_BY("performed_by"), DAY(null), MONTH(null);
+
+        private final String column;
+
+        GroupBy(String column) {
+            this.column = column;
+        }
+    }
+
+    private final Properties manifest;
+    private final ColumnarFile accounts;
+    private final List<ColumnarFile> transactions;
+
+    private SnapshotQuery(Properties manifest, ColumnarFile accounts, List<ColumnarFile> transactions) {
+        this.manifest = manifest;
+        this.accounts = accounts;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Open a complete snapshot directory
+     */
+    public static SnapshotQuery open(Path directory) throws IOException {
+        Path manifestFile = directory.resolve(SnapshotExporter.MANIFEST_FILE);
+        if (!Files.exists(manifestFile)) {
+            throw new IOException("No complete snapshot in " + directory + " (missing " + SnapshotExporter.MANIFEST_FILE + ")");
+        }
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(manifestFile)) {
+            manifest.load(in);
+        }
+        int partitions = Integer.parseInt(manifest.getProperty("partitions", "0"));
+        List<ColumnarFile> transactions = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            transactions.add(ColumnarFile.open(directory.resolve(String.format(SnapshotExporter.TRANSACTIONS_FILE_FORMAT, p))));
+        }
+        return new SnapshotQuery(manifest, ColumnarFile.open(directory.resolve(SnapshotExporter.ACCOUNTS_FILE)),
+                Collections.unmodifiableList(transactions));
+    }
+
+    public Properties getManifest() { return manifest; }
+
+    public long getTransactionRows() {
+        long rows = 0;
+        for (ColumnarFile partition : transactions) {
+            rows += partition.getRowCount();
+        }
+        return rows;
+    }
+
+    /**
+     * Count and total amount of the matching transactions per group and
+     * currency, largest total first (by date for DAY and MONTH)
+     */
+    public List<Group> aggregate(Filter filter, GroupBy groupBy) throws IOException {
+        Map<String, Map<String, long[]>> merged = new TreeMap<>();
+        try {
+            transactions.parallelStream()
+                    .map(partition -> {
+                        try {
+                            return aggregate(partition, filter, groupBy);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .forEachOrdered(partial -> merge(merged, partial));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<Group> groups = new ArrayList<>();
+        for (Map.Entry<String, Map<String, long[]>> byKey : merged.entrySet()) {
+            for (Map.Entry<String, long[]> byCurrency : byKey.getValue().entrySet()) {
+                long[] totals = byCurrency.getValue();
+                groups.add(new Group(byKey.getKey(), byCurrency.getKey(), totals[0], totals[1]));
+            }
+        }
+        if (groupBy != GroupBy.DAY && groupBy != GroupBy.MONTH) {
+            groups.sort(Comparator.comparingLong(Group::getAmountCents).reversed());
+        }
+        return groups;
+    }
+
+    /**
+     * Number of accounts and total balance per account type and currency
+     */
+    public List<Group> balances() throws IOException {
+        ColumnarFile.Dictionary type = accounts.getDictionary("account_type");
+        ColumnarFile.Dictionary currency = accounts.getDictionary("currency");
+        long[] balances = accounts.getLongs("balance_cents");
+        List<Group> groups = new ArrayList<>();
+        for (int c = -1; c < currency.size(); c++) {
+            Selection selection = Selection.all(accounts.getRowCount()).equalTo(currency.getCodes(), c);
+            long[] counts = new long[type.size() + 1];
+            long[] sums = new long[type.size() + 1];
+            selection.sumByCode(type.getCodes(), balances, counts, sums);
+            for (int t = 0; t < counts.length; t++) {
+                if (counts[t] > 0) {
+                    groups.add(new Group(type.valueOf(t - 1), currency.valueOf(c), counts[t], sums[t]));
+                }
+            }
+        }
+        groups.sort(Comparator.comparingLong(Group::getAmountCents).reversed());
+        return groups;
+    }
+
+    private Map<String, Map<String, long[]>> aggregate(ColumnarFile partition, Filter filter, GroupBy groupBy)
+            throws IOException {
+        Map<String, Map<String, long[]>> result = new HashMap<>();
+        int rows = partition.getRowCount();
+        if (rows == 0) {
+            return result;
+        }
+
+        Selection selection = Selection.all(rows);
+        if (filter.fromMillis != Long.MIN_VALUE || filter.toMillis != Long.MAX_VALUE) {
+            selection.between(partition.getLongs("created_at"), filter.fromMillis, filter.toMillis - 1);
+        }
+        narrow(selection, partition, "type", filter.type);
+        narrow(selection, partition, "status", filter.status);
+        narrow(selection, partition, "currency", filter.currency);
+        if (filter.account != null) {
+            ColumnarFile.Dictionary from = partition.getDictionary("from_account");
+            ColumnarFile.Dictionary to = partition.getDictionary("to_account");
+            selection.eitherEqualTo(from.getCodes(), from.codeOf(filter.account), to.getCodes(), to.codeOf(filter.account));
+        }
+        long[] amounts = partition.getLongs("amount_cents");
+        if (filter.minCents != Long.MIN_VALUE || filter.maxCents != Long.MAX_VALUE) {
+            selection.between(amounts, filter.minCents, filter.maxCents);
+        }
+        if (selection.count() == 0) {
+            return result;
+        }
+
+        ColumnarFile.Dictionary currency = partition.getDictionary("currency");
+        if (groupBy == GroupBy.DAY || groupBy == GroupBy.MONTH) {
+            long[] createdAt = partition.getLongs("created_at");
+            int[] currencyCodes = currency.getCodes();
+            for (int row = selection.nextSetRow(0); row >= 0; row = selection.nextSetRow(row + 1)) {
+                LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(createdAt[row], DAY_MILLIS));
+                String key = groupBy == GroupBy.DAY ? day.toString() : YearMonth.from(day).toString();
+                add(result, key, currency.valueOf(currencyCodes[row]), 1, amounts[row]);
+            }
+            return result;
+        }
+
+        ColumnarFile.Dictionary group = groupBy.column != null ? partition.getDictionary(groupBy.column) : null;
+        for (int c = -1; c < currency.size(); c++) {
+            Selection inCurrency = selection.copy().equalTo(currency.getCodes(), c);
+            if (group == null) {
+                int count = inCurrency.count();
+                if (count > 0) {
+                    add(result, "all", currency.valueOf(c), count, inCurrency.sum(amounts));
+                }
+                continue;
+            }
+            long[] counts = new long[group.size() + 1];
+            long[] sums = new long[group.size() + 1];
+            inCurrency.sumByCode(group.getCodes(), amounts, counts, sums);
+            for (int g = 0; g < counts.length; g++) {
+                if (counts[g] > 0) {
+                    add(result, String.valueOf(group.valueOf(g - 1)), currency.valueOf(c), counts[g], sums[g]);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void narrow(Selection selection, ColumnarFile partition, String column, String value)
+            throws IOException {
+        if (value != null) {
+            ColumnarFile.Dictionary dictionary = partition.getDictionary(column);
+            selection.equalTo(dictionary.getCodes(), dictionary.codeOf(value));
+        }
+    }
+
+    private static void add(Map<String, Map<String, long[]>> result, String key, String currency,
+                            long count, long amountCents) {
+        long[] totals = result.computeIfAbsent(key, k -> new TreeMap<>())
+                .computeIfAbsent(String.valueOf(currency), k -> new long[2]);
+        totals[0] += count;
+        totals[1] += amountCents;
+    }
+
+    private static void merge(Map<String, Map<String, long[]>> into, Map<String, Map<String, long[]>> partial) {
+        for (Map.Entry<String, Map<String, long[]>> byKey : partial.entrySet()) {
+            for (Map.Entry<String, long[]> byCurrency : byKey.getValue().entrySet()) {
+                add(into, byKey.getKey(), byCurrency.getKey(), byCurrency.getValue()[0], byCurrency.getValue()[1]);
+            }
+        }
+    }
+
+    /**
+     * Inner class for transaction filters; unset filters match everything
+     */
+    public static class Filter {
+        private long fromMillis = Long.MIN_VALUE;
+        private long toMillis = Long.MAX_VALUE;
+        private long minCents = Long.MIN_VALUE;
+        private long maxCents = Long.MAX_VALUE;
+        private String type;
+        private String status;
+        private String currency;
+        private String account;
+
+        /**
+         * Created at or after the start of this day
+         */
+        public Filter from(LocalDate day) {
+            this.fromMillis = SnapshotExporter.toMillis(day.atStartOfDay());
+            return this;
+        }
+
+        /**
+         * Created before the start of this day
+         */
+        public Filter to(LocalDate day) {
+            this.toMillis = SnapshotExporter.toMillis(day.atStartOfDay());
+            return this;
+        }
+
+        public Filter minAmount(BigDecimal amount) {
+            this.minCents = amount.movePointRight(2).longValue();
+            return this;
+        }
+
+        public Filter maxAmount(BigDecimal amount) {
+            this.maxCents = amount.movePointRight(2).longValue();
+            return this;
+        }
+
+        public Filter type(String type) { this.type = type; return this; }
+        public Filter status(String status) { this.status = status; return this; }
+        public Filter currency(String currency) { this.currency = currency; return this; }
+
+        /**
+         * Either side of the transaction is this account
+         */
+        public Filter account(String accountNumber) { this.account = accountNumber; return this; }
+    }
+
+    /**
+     * Inner class for one row of a query result
+     */
+    public static class Group {
+        private final String key;
+        private final String currency;
+        private final long count;
+        private final long amountCents;
+
+        public Group(String key, String currency, long count, long amountCents) {
+            this.key = key;
+            this.currency = currency;
+            this.count = count;
+            this.amountCents = amountCents;
+        }
+
+        public String getKey() { return key; }
+        public String getCurrency() { return currency; }
+        public long getCount() { return count; }
+        public long getAmountCents() { return amountCents; }
+
+        public BigDecimal getAmount() {
+            return BigDecimal.valueOf(amountCents, 2);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int next = 0;
+        Path directory = Paths.get(args.length > next && !args[next].startsWith("--") ? args[next++] : "snapshot");
+        boolean balances = args.length > next && "balances".equals(args[next]);
+        if (balances) {
+            next++;
+        }
+
+        Filter filter = new Filter();
+        GroupBy groupBy = GroupBy.NONE;
+        int limit = 50;
+        for (; next < args.length; next += 2) {
+            if (next + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[next]);
+            }
+            String value = args[next + 1];
+            switch (args[next]) {
+                case "--from": filter.from(LocalDate.parse(value)); break;
+                case "--to": filter.to(LocalDate.parse(value)); break;
+                case "--type": filter.type(value.toUpperCase(Locale.ROOT)); break;
+                case "--status": filter.status(value.toUpperCase(Locale.ROOT)); break;
+                case "--currency": filter.currency(value.toUpperCase(Locale.ROOT)); break;
+                case "--account": filter.account(value); break;
+                case "--min": filter.minAmount(new BigDecimal(value)); break;
+                case "--max": filter.maxAmount(new BigDecimal(value)); break;
+                case "--group-by": groupBy = GroupBy.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                case "--limit": limit = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[next]);
+            }
+        }
+
+        SnapshotQuery query = open(directory);
+        System.out.printf("Snapshot of %s: %s accounts, %,d transactions in %d partitions%n",
+                query.manifest.getProperty("created_at"), query.manifest.getProperty("account_rows"),
+                query.getTransactionRows(), query.transactions.size());
+
+        long started = System.nanoTime();
+        List<Group> groups = balances ? query.balances() : query.aggregate(filter, groupBy);
+        long elapsed = System.nanoTime() - started;
+
+        System.out.printf("%-24s %-8s %14s %20s%n", balances ? "account_type" : groupBy.name().toLowerCase(Locale.ROOT),
+                "currency", "count", balances ? "balance" : "amount");
+        for (int i = 0; i < groups.size() && i < limit; i++) {
+            Group group = groups.get(i);
+            System.out.printf("%-24s %-8s %,14d %,20.2f%n", group.getKey(), group.getCurrency(),
+                    group.getCount(), group.getAmount());
+        }
+        if (groups.size() > limit) {
+            System.out.println("... " + (groups.size() - limit) + " more");
+        }
+        System.out.printf("Scanned in %.1f ms%n", elapsed / 1e6);
+    }
+}
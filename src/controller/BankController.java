@@ -3,15 +3,22 @@ package controller;
 import model.BankAccount;
 import model.SavingsAccount;
 import model.CurrentAccount;
+import util.AccountIndex;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class BankController {
     private final List<BankAccount> accounts = new ArrayList<>();
+    // Account number to position in accounts
+    private final AccountIndex positions = new AccountIndex();
 
-    public List<BankAccount> getAccounts() { return accounts; }
+    public List<BankAccount> getAccounts() { return Collections.unmodifiableList(accounts); }
 
     public BankAccount createAccount(String type, String accountNumber, String holderName, double initialBalance) {
+        if (positions.contains(accountNumber)) {
+            throw new IllegalArgumentException("Account number already exists");
+        }
         BankAccount account;
         if ("Savings".equalsIgnoreCase(type)) {
             account = new SavingsAccount(accountNumber, holderName, initialBalance);
@@ -20,6 +27,7 @@ public class BankController {
         } else {
             throw new IllegalArgumentException("Invalid account type");
         }
+        positions.put(accountNumber, accounts.size());
         accounts.add(account);
         return account;
     }
@@ -42,11 +50,7 @@ public class BankController {
     }
 
     public BankAccount findAccount(String accountNumber) {
-        for (BankAccount acc : accounts) {
-            if (acc.getAccountNumber().equals(accountNumber)) {
-                return acc;
-            }
-        }
-        return null;
+        int position = positions.get(accountNumber);
+        return position != AccountIndex.NO_VALUE ? accounts.get(position) : null;
     }
 }
@@ -1,22 +1,41 @@
 package controller.banking;
 
+import controller.dashboard.RefreshableView;
+import controller.dashboard.UserAwareView;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import model.BankAccount;
 import model.SavingsAccount;
 import model.CurrentAccount;
+import dao.AccountSearchIndex;
 import dao.BankAccountDAO;
+import service.AccountNumberAllocator;
+import service.RateLimiter;
+import service.TransactionResult;
+import service.TransactionService;
+import util.ReplicaRouter;
 import util.SecurityUtil;
-import java.util.Random;
+import util.trace.Span;
+import util.trace.Tracing;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Controller for banking operations using database
  */
-public class BankingController {
+public class BankingController implements RefreshableView, UserAwareView {
     
     @FXML private TextField accountNumberField;
     @FXML private TextField holderNameField;
@@ -32,6 +51,8 @@ public class BankingController {
     @FXML private TextField withdrawAmountField;
     @FXML private Button withdrawButton;
     
+    @FXML private TextField searchField;
+    
     @FXML private TableView<BankAccount> accountsTable;
     @FXML private TableColumn<BankAccount, String> accountNumberColumn;
     @FXML private TableColumn<BankAccount, String> holderNameColumn;
@@ -39,14 +60,55 @@ public class BankingController {
     @FXML private TableColumn<BankAccount, Double> balanceColumn;
     
     private final BankAccountDAO bankAccountDAO = new BankAccountDAO();
+    private final AccountNumberAllocator accountNumberAllocator = AccountNumberAllocator.getInstance();
+    private final TransactionService transactionService = new TransactionService();
+    private final RateLimiter rateLimiter = RateLimiter.getInstance();
     private final ObservableList<BankAccount> accountList = FXCollections.observableArrayList();
+    private final Map<String, BankAccount> accountsByNumber = new LinkedHashMap<>();
+    
+    private static final int SEARCH_RESULT_LIMIT = 50;
+    
+    // Logged-in user; postings are recorded and rate-limited as theirs
+    private String teller;
+    // Where database reads run; the registry's loader threads once refreshed
+    private Executor background = ForkJoinPool.commonPool();
+    // Bumped by every search so a slow answer cannot replace a newer one
+    private int searchGeneration = 0;
+    
+    // Idempotency keys for the deposit and withdrawal forms; regenerated on edit
+    private String depositKey = TransactionService.newIdempotencyKey();
+    private String withdrawKey = TransactionService.newIdempotencyKey();
     
     @FXML
     public void initialize() {
         setupAccountTypeComboBox();
         setupAccountsTable();
         setupButtonActions();
-        refreshAccountsTable();
+        setupSearch();
+        setupIdempotencyKeyReset();
+    }
+    
+    @Override
+    public void setCurrentUser(String username) {
+        this.teller = username;
+    }
+    
+    /**
+     * Reload the accounts off the FX thread each time the cached screen is
+     * shown; the table keeps its last rows until they arrive
+     */
+    @Override
+    public void refresh(Executor background) {
+        this.background = background;
+        CompletableFuture.supplyAsync(bankAccountDAO::getAllAccounts, background)
+                .thenAcceptAsync(this::showAccounts, Platform::runLater);
+    }
+    
+    private void setupIdempotencyKeyReset() {
+        depositAccountField.textProperty().addListener((obs, o, n) -> depositKey = TransactionService.newIdempotencyKey());
+        depositAmountField.textProperty().addListener((obs, o, n) -> depositKey = TransactionService.newIdempotencyKey());
+        withdrawAccountField.textProperty().addListener((obs, o, n) -> withdrawKey = TransactionService.newIdempotencyKey());
+        withdrawAmountField.textProperty().addListener((obs, o, n) -> withdrawKey = TransactionService.newIdempotencyKey());
     }
     
     private void setupAccountTypeComboBox() {
@@ -64,19 +126,113 @@ public class BankingController {
     }
     
     private void setupButtonActions() {
-        createAccountButton.setOnAction(this::handleCreateAccount);
-        depositButton.setOnAction(this::handleDeposit);
-        withdrawButton.setOnAction(this::handleWithdraw);
+        createAccountButton.setOnAction(traced("createAccount", this::handleCreateAccount));
+        depositButton.setOnAction(traced("deposit", this::handleDeposit));
+        withdrawButton.setOnAction(traced("withdraw", this::handleWithdraw));
+    }
+    
+    private void setupSearch() {
+        AccountSearchIndex searchIndex = AccountSearchIndex.getInstance();
+        if (!searchIndex.isLoaded()) {
+            searchIndex.loadAsync(bankAccountDAO);
+        }
+        searchField.textProperty().addListener((obs, oldValue, newValue) -> applySearch(newValue));
+    }
+    
+    private void applySearch(String query) {
+        int generation = ++searchGeneration;
+        if (query == null || query.trim().isEmpty()) {
+            accountList.setAll(accountsByNumber.values());
+            return;
+        }
+        
+        AccountSearchIndex searchIndex = AccountSearchIndex.getInstance();
+        if (!searchIndex.isLoaded()) {
+            // Index still loading, fall back to the trigram query off the FX thread
+            if (!rateLimiter.tryAcquire(RateLimiter.Operation.ACCOUNT_SEARCH, RateLimiter.Scope.USER, teller)) {
+                return;
+            }
+            String trimmed = query.trim();
+            CompletableFuture.supplyAsync(() -> bankAccountDAO.searchAccounts(trimmed, SEARCH_RESULT_LIMIT), background)
+                    .thenAcceptAsync(accounts -> showSearchResults(generation, accounts), Platform::runLater);
+            return;
+        }
+        
+        // Ranking scans posting lists, so it runs off the FX thread too
+        CompletableFuture.supplyAsync(() -> searchIndex.search(query, SEARCH_RESULT_LIMIT), background)
+                .thenAcceptAsync(hits -> showIndexHits(generation, hits), Platform::runLater);
+    }
+    
+    private void showIndexHits(int generation, List<AccountSearchIndex.SearchHit> hits) {
+        if (generation != searchGeneration) {
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        for (AccountSearchIndex.SearchHit hit : hits) {
+            if (!accountsByNumber.containsKey(hit.getAccountNumber())) {
+                missing.add(hit.getAccountNumber());
+            }
+        }
+        if (missing.isEmpty()) {
+            showSearchResults(generation, resolveHits(hits, Map.of()));
+            return;
+        }
+        // Hits opened since the list was loaded (e.g. by another teller) are read by number
+        CompletableFuture.supplyAsync(() -> bankAccountDAO.getAccountsByNumbers(missing), background)
+                .thenAcceptAsync(accounts -> {
+                    Map<String, BankAccount> loaded = new HashMap<>();
+                    for (BankAccount account : accounts) {
+                        loaded.put(account.getAccountNumber(), account);
+                    }
+                    showSearchResults(generation, resolveHits(hits, loaded));
+                }, Platform::runLater);
     }
     
+    /**
+     * The accounts of index hits in hit order, from the loaded list or else
+     * from loaded; hits with neither (since closed) are left out
+     */
+    private List<BankAccount> resolveHits(List<AccountSearchIndex.SearchHit> hits, Map<String, BankAccount> loaded) {
+        List<BankAccount> accounts = new ArrayList<>(hits.size());
+        for (AccountSearchIndex.SearchHit hit : hits) {
+            BankAccount account = accountsByNumber.get(hit.getAccountNumber());
+            if (account == null) {
+                account = loaded.get(hit.getAccountNumber());
+            }
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+    
+    private void showSearchResults(int generation, List<BankAccount> accounts) {
+        if (generation == searchGeneration) {
+            accountList.setAll(accounts);
+        }
+    }
+    
+    /**
+     * Run a button's handler as the root span of a traced request
+     */
+    private static EventHandler<ActionEvent> traced(String action, EventHandler<ActionEvent> handler) {
+        return event -> {
+            Span span = Tracing.controllerAction("BankingController", action);
+            try {
+                handler.handle(event);
+            } finally {
+                span.close();
+            }
+        };
+    }
+
     private void handleCreateAccount(ActionEvent event) {
         try {
-            String accountNumber = accountNumberField.getText().trim();
             String holderName = holderNameField.getText().trim();
             String accountType = accountTypeComboBox.getValue();
             String balanceText = initialBalanceField.getText().trim();
             
-            if (accountNumber.isEmpty() || holderName.isEmpty() || balanceText.isEmpty()) {
+            if (holderName.isEmpty() || balanceText.isEmpty()) {
                 showAlert("Please fill in all fields", Alert.AlertType.WARNING);
                 return;
             }
@@ -87,7 +243,13 @@ public class BankingController {
                 return;
             }
             
-            // Create account object
+            if (!rateLimiter.tryAcquire(RateLimiter.Operation.ACCOUNT_CREATE, RateLimiter.Scope.USER, teller)) {
+                showAlert("Too many accounts opened, please wait a moment", Alert.AlertType.WARNING);
+                return;
+            }
+            
+            // Create account object under a newly allocated number
+            String accountNumber = accountNumberAllocator.next(accountType);
             BankAccount account;
             if ("SAVINGS".equals(accountType)) {
                 account = new SavingsAccount(accountNumber, holderName, initialBalance);
@@ -98,8 +260,10 @@ public class BankingController {
             // Save to database
             boolean success = bankAccountDAO.createAccount(account);
             if (success) {
-                showAlert("Account created successfully!", Alert.AlertType.INFORMATION);
+                ReplicaRouter.recordWrite(teller);
                 clearCreateAccountFields();
+                accountNumberField.setText(accountNumber);
+                showAlert("Account " + accountNumber + " created successfully!", Alert.AlertType.INFORMATION);
                 refreshAccountsTable();
             } else {
                 showAlert("Failed to create account", Alert.AlertType.ERROR);
@@ -124,6 +288,10 @@ public class BankingController {
                 showAlert("Please fill in all fields", Alert.AlertType.WARNING);
                 return;
             }
+            if (AccountNumberAllocator.hasBadCheckDigit(accountNumber)) {
+                showAlert("Account number " + accountNumber + " is not valid, please check it", Alert.AlertType.ERROR);
+                return;
+            }
             
             double amount = Double.parseDouble(amountText);
             if (amount <= 0) {
@@ -131,24 +299,15 @@ public class BankingController {
                 return;
             }
             
-            // Get account from database
-            BankAccount account = bankAccountDAO.getAccountByNumber(accountNumber);
-            if (account == null) {
-                showAlert("Account not found", Alert.AlertType.ERROR);
-                return;
-            }
-            
-            // Perform deposit
-            account.deposit(amount);
-            
-            // Update database
-            boolean success = bankAccountDAO.updateBalance(accountNumber, account.getBalance());
-            if (success) {
-                showAlert("Deposit successful! New balance: $" + String.format("%.2f", account.getBalance()), Alert.AlertType.INFORMATION);
+            TransactionResult result = transactionService.deposit(depositKey, accountNumber, amount, "Teller deposit", teller);
+            if (result.isSuccess()) {
+                BankAccount account = bankAccountDAO.getAccountByNumber(accountNumber);
+                String balance = account != null ? String.format("%.2f", account.getBalance()) : "-";
+                showAlert("Deposit successful! New balance: $" + balance, Alert.AlertType.INFORMATION);
                 clearDepositFields();
                 refreshAccountsTable();
             } else {
-                showAlert("Failed to update account balance", Alert.AlertType.ERROR);
+                showAlert(result.getMessage(), Alert.AlertType.ERROR);
             }
             
         } catch (NumberFormatException e) {
@@ -168,6 +327,10 @@ public class BankingController {
                 showAlert("Please fill in all fields", Alert.AlertType.WARNING);
                 return;
             }
+            if (AccountNumberAllocator.hasBadCheckDigit(accountNumber)) {
+                showAlert("Account number " + accountNumber + " is not valid, please check it", Alert.AlertType.ERROR);
+                return;
+            }
             
             double amount = Double.parseDouble(amountText);
             if (amount <= 0) {
@@ -175,27 +338,17 @@ public class BankingController {
                 return;
             }
             
-            // Get account from database
-            BankAccount account = bankAccountDAO.getAccountByNumber(accountNumber);
-            if (account == null) {
-                showAlert("Account not found", Alert.AlertType.ERROR);
-                return;
-            }
-            
-            // Perform withdrawal
-            boolean success = account.withdraw(amount);
-            if (success) {
-                // Update database
-                boolean dbSuccess = bankAccountDAO.updateBalance(accountNumber, account.getBalance());
-                if (dbSuccess) {
-                    showAlert("Withdrawal successful! New balance: $" + String.format("%.2f", account.getBalance()), Alert.AlertType.INFORMATION);
-                    clearWithdrawFields();
-                    refreshAccountsTable();
-                } else {
-                    showAlert("Failed to update account balance", Alert.AlertType.ERROR);
-                }
-            } else {
+            TransactionResult result = transactionService.withdraw(withdrawKey, accountNumber, amount, "Teller withdrawal", teller);
+            if (result.isSuccess()) {
+                BankAccount account = bankAccountDAO.getAccountByNumber(accountNumber);
+                String balance = account != null ? String.format("%.2f", account.getBalance()) : "-";
+                showAlert("Withdrawal successful! New balance: $" + balance, Alert.AlertType.INFORMATION);
+                clearWithdrawFields();
+                refreshAccountsTable();
+            } else if (result.getStatus() == TransactionResult.Status.INSUFFICIENT_FUNDS) {
                 showAlert("Withdrawal failed. Insufficient funds or below minimum balance.", Alert.AlertType.ERROR);
+            } else {
+                showAlert(result.getMessage(), Alert.AlertType.ERROR);
             }
             
         } catch (NumberFormatException e) {
@@ -208,14 +361,21 @@ public class BankingController {
     
     private void refreshAccountsTable() {
         try {
-            accountList.clear();
-            accountList.addAll(bankAccountDAO.getAllAccounts());
+            showAccounts(bankAccountDAO.getAllAccounts());
         } catch (Exception e) {
             showAlert("Error loading accounts: " + e.getMessage(), Alert.AlertType.ERROR);
             e.printStackTrace();
         }
     }
     
+    private void showAccounts(List<BankAccount> accounts) {
+        accountsByNumber.clear();
+        for (BankAccount account : accounts) {
+            accountsByNumber.put(account.getAccountNumber(), account);
+        }
+        applySearch(searchField.getText());
+    }
+    
     private void clearCreateAccountFields() {
         accountNumberField.clear();
         holderNameField.clear();
@@ -1,5 +1,8 @@
 package controller.banking;
 
+import controller.dashboard.RefreshableView;
+import controller.dashboard.UserAwareView;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -10,12 +13,19 @@ import model.banking.Transaction;
 import dao.TransactionDAO;
 import dao.BankAccountDAO;
 import model.BankAccount;
+import service.TransactionResult;
+import service.TransactionService;
+import util.trace.Span;
+import util.trace.Tracing;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Controller for transaction management
  */
-public class TransactionController {
+public class TransactionController implements RefreshableView, UserAwareView {
     
     @FXML private TextField fromAccountField;
     @FXML private TextField toAccountField;
@@ -36,16 +46,53 @@ public class TransactionController {
     
     private final TransactionDAO transactionDAO = new TransactionDAO();
     private final BankAccountDAO bankAccountDAO = new BankAccountDAO();
+    private final TransactionService transactionService = new TransactionService();
     private final ObservableList<Transaction> transactionList = FXCollections.observableArrayList();
     
+    private static final int HISTORY_LIMIT = 200;
+    
+    // Key for the request currently in the form. It survives retries of the
+    // same input (double-click, retry after timeout) and changes with any edit.
+    private String idempotencyKey = TransactionService.newIdempotencyKey();
+    // Logged-in user, recorded as performing each transaction
+    private String teller;
+    // Where database reads run; the registry's loader threads once refreshed
+    private Executor background = ForkJoinPool.commonPool();
+    
+    @Override
+    public void setCurrentUser(String username) {
+        this.teller = username;
+    }
+    
     @FXML
     public void initialize() {
         setupTransactionTypeComboBox();
         setupTransactionsTable();
         setupButtonActions();
+        setupIdempotencyKeyReset();
+    }
+    
+    /**
+     * Reload the transaction history off the FX thread each time the cached
+     * screen is shown; the table keeps its last rows until they arrive
+     */
+    @Override
+    public void refresh(Executor background) {
+        this.background = background;
         refreshTransactionsTable();
     }
     
+    private void setupIdempotencyKeyReset() {
+        fromAccountField.textProperty().addListener((obs, oldValue, newValue) -> resetIdempotencyKey());
+        toAccountField.textProperty().addListener((obs, oldValue, newValue) -> resetIdempotencyKey());
+        amountField.textProperty().addListener((obs, oldValue, newValue) -> resetIdempotencyKey());
+        transactionTypeBox.valueProperty().addListener((obs, oldValue, newValue) -> resetIdempotencyKey());
+    }
+    
+    private void resetIdempotencyKey() {
+        idempotencyKey = TransactionService.newIdempotencyKey();
+    }
+    
     private void setupTransactionTypeComboBox() {
         transactionTypeBox.getItems().addAll("DEPOSIT", "WITHDRAWAL", "TRANSFER");
         transactionTypeBox.setValue("DEPOSIT");
@@ -67,6 +114,14 @@ public class TransactionController {
     }
     
     private void handleExecuteTransaction(ActionEvent event) {
+        // Traced as one request from the click to the status shown
+        try (Span span = Tracing.controllerAction("TransactionController", String.valueOf(transactionTypeBox.getValue()))) {
+            executeTransaction();
+            span.outcome(statusLabel.getText());
+        }
+    }
+    
+    private void executeTransaction() {
         try {
             String fromAccount = fromAccountField.getText().trim();
             String toAccount = toAccountField.getText().trim();
@@ -93,13 +148,13 @@ public class TransactionController {
             }
             
             // Handle different transaction types
-            boolean success = false;
+            TransactionResult result;
             switch (transactionType) {
                 case "DEPOSIT":
-                    success = handleDeposit(fromAccount, amount, description);
+                    result = handleDeposit(fromAccount, amount, description);
                     break;
                 case "WITHDRAWAL":
-                    success = handleWithdrawal(fromAccount, amount, description);
+                    result = handleWithdrawal(fromAccount, amount, description);
                     break;
                 case "TRANSFER":
                     if (toAccount.isEmpty()) {
@@ -111,14 +166,22 @@ public class TransactionController {
                         showStatus("To account not found", "error");
                         return;
                     }
-                    success = handleTransfer(fromAccount, toAccount, amount, description);
+                    result = handleTransfer(fromAccount, toAccount, amount, description);
                     break;
+                default:
+                    showStatus("Unknown transaction type", "error");
+                    return;
             }
             
-            if (success) {
-                showStatus("Transaction executed successfully!", "success");
+            if (result.getStatus() == TransactionResult.Status.COMPLETED) {
+                showStatus(result.getMessage(), "success");
                 clearFields();
                 refreshTransactionsTable();
+            } else if (result.getStatus() == TransactionResult.Status.DUPLICATE) {
+                showStatus(result.getMessage(), "info");
+                clearFields();
+            } else {
+                showStatus(result.getMessage(), "error");
             }
             
         } catch (NumberFormatException e) {
@@ -129,85 +192,21 @@ public class TransactionController {
         }
     }
     
-    private boolean handleDeposit(String accountNumber, double amount, String description) {
-        BankAccount account = bankAccountDAO.getAccountByNumber(accountNumber);
-        if (account == null) return false;
-        
-        account.deposit(amount);
-        boolean dbSuccess = bankAccountDAO.updateBalance(accountNumber, account.getBalance());
-        
-        if (dbSuccess) {
-            // Create transaction record
-            Transaction transaction = new Transaction("", accountNumber, amount, 
-                Transaction.TransactionType.DEPOSIT, description, "System");
-            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
-            return transactionDAO.createTransaction(transaction);
-        }
-        return false;
+    private TransactionResult handleDeposit(String accountNumber, double amount, String description) {
+        return transactionService.deposit(idempotencyKey, accountNumber, amount, description, teller);
     }
     
-    private boolean handleWithdrawal(String accountNumber, double amount, String description) {
-        BankAccount account = bankAccountDAO.getAccountByNumber(accountNumber);
-        if (account == null) return false;
-        
-        boolean withdrawSuccess = account.withdraw(amount);
-        if (!withdrawSuccess) {
-            showStatus("Insufficient funds or below minimum balance", "error");
-            return false;
-        }
-        
-        boolean dbSuccess = bankAccountDAO.updateBalance(accountNumber, account.getBalance());
-        
-        if (dbSuccess) {
-            // Create transaction record
-            Transaction transaction = new Transaction(accountNumber, "", amount, 
-                Transaction.TransactionType.WITHDRAWAL, description, "System");
-            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
-            return transactionDAO.createTransaction(transaction);
-        }
-        return false;
+    private TransactionResult handleWithdrawal(String accountNumber, double amount, String description) {
+        return transactionService.withdraw(idempotencyKey, accountNumber, amount, description, teller);
     }
     
-    private boolean handleTransfer(String fromAccount, String toAccount, double amount, String description) {
-        BankAccount fromBankAccount = bankAccountDAO.getAccountByNumber(fromAccount);
-        BankAccount toBankAccount = bankAccountDAO.getAccountByNumber(toAccount);
-        
-        if (fromBankAccount == null || toBankAccount == null) return false;
-        
-        // Withdraw from source account
-        boolean withdrawSuccess = fromBankAccount.withdraw(amount);
-        if (!withdrawSuccess) {
-            showStatus("Insufficient funds in source account", "error");
-            return false;
-        }
-        
-        // Deposit to destination account
-        toBankAccount.deposit(amount);
-        
-        // Update both accounts in database
-        boolean fromSuccess = bankAccountDAO.updateBalance(fromAccount, fromBankAccount.getBalance());
-        boolean toSuccess = bankAccountDAO.updateBalance(toAccount, toBankAccount.getBalance());
-        
-        if (fromSuccess && toSuccess) {
-            // Create transaction record
-            Transaction transaction = new Transaction(fromAccount, toAccount, amount, 
-                Transaction.TransactionType.TRANSFER, description, "System");
-            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
-            return transactionDAO.createTransaction(transaction);
-        }
-        return false;
+    private TransactionResult handleTransfer(String fromAccount, String toAccount, double amount, String description) {
+        return transactionService.transfer(idempotencyKey, fromAccount, toAccount, amount, description, teller);
     }
     
     private void refreshTransactionsTable() {
-        try {
-            transactionList.clear();
-            // For now, we'll just show a message that transactions are loaded
-            // In a real application, you'd load actual transaction history
-            showStatus("Transaction history loaded", "info");
-        } catch (Exception e) {
-            showStatus("Error loading transactions: " + e.getMessage(), "error");
-            e.printStackTrace();
-        }
+        CompletableFuture.supplyAsync(() -> transactionDAO.getRecentTransactions(HISTORY_LIMIT), background)
+                .thenAcceptAsync(transactionList::setAll, Platform::runLater);
     }
     
     private void clearFields() {
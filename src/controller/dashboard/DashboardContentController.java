@@ -0,0 +1,38 @@
+package controller.dashboard;
+
+import dao.BankAccountDAO;
+import dao.TransactionDAO;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.scene.control.Label;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Controller for the dashboard landing page statistics
+ */
+public class DashboardContentController implements RefreshableView {
+
+    @FXML private Label totalAccountsLabel;
+    @FXML private Label totalBalanceLabel;
+    @FXML private Label totalTransactionsLabel;
+
+    private final BankAccountDAO bankAccountDAO = new BankAccountDAO();
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+
+    /**
+     * Reload the account and transaction totals off the FX thread each time
+     * the cached screen is shown; the cards keep their last values until then
+     */
+    @Override
+    public void refresh(Executor background) {
+        CompletableFuture.supplyAsync(bankAccountDAO::getAccountSummary, background)
+                .thenAcceptAsync(summary -> {
+                    totalAccountsLabel.setText(String.format("%,d", summary.getTotalAccounts()));
+                    totalBalanceLabel.setText("$" + String.format("%,.2f", summary.getTotalBalance()));
+                }, Platform::runLater);
+        CompletableFuture.supplyAsync(transactionDAO::getTransactionSummary, background)
+                .thenAcceptAsync(summary -> totalTransactionsLabel.setText(String.format("%,d", summary.getTotalTransactions())),
+                        Platform::runLater);
+    }
+}
@@ -10,6 +10,8 @@ import model.auth.Role;
 import model.auth.User;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
@@ -28,6 +30,9 @@ public class DashboardController {
     private String currentUsername;
     private Role currentRole;
 
+    // Screens are built once per login and re-attached on navigation
+    private final ViewRegistry viewRegistry = new ViewRegistry();
+
     @FXML
     public void initialize() {
         setupSidebarNavigation();
@@ -37,8 +42,10 @@ public class DashboardController {
     public void setCurrentUser(String username, Role role) {
         this.currentUsername = username;
         this.currentRole = role;
+        viewRegistry.setCurrentUser(username);
         updateUserInfo();
         setupRoleBasedAccess();
+        prewarmViews();
     }
 
     private void setupSidebarNavigation() {
@@ -78,59 +85,55 @@ public class DashboardController {
         // Admins have access to everything
     }
 
-    private void loadDashboard() {
-        try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/dashboard/DashboardContent.fxml"));
-            Parent content = loader.load();
-            mainContainer.setCenter(content);
-        } catch (IOException e) {
-            showError("Error loading dashboard: " + e.getMessage());
-            e.printStackTrace();
+    /**
+     * Pre-warm every screen this role can open, in parallel, while the user
+     * is still on the landing page
+     */
+    private void prewarmViews() {
+        List<ViewRegistry.Screen> screens = new ArrayList<>();
+        screens.add(ViewRegistry.Screen.DASHBOARD);
+        if (!accountsBtn.isDisable()) {
+            screens.add(ViewRegistry.Screen.ACCOUNTS);
+        }
+        if (!transactionsBtn.isDisable()) {
+            screens.add(ViewRegistry.Screen.TRANSACTIONS);
+        }
+        if (!reportsBtn.isDisable()) {
+            screens.add(ViewRegistry.Screen.REPORTS);
         }
+        if (!settingsBtn.isDisable()) {
+            screens.add(ViewRegistry.Screen.SETTINGS);
+        }
+        viewRegistry.prewarm(screens);
     }
 
-    private void loadAccounts() {
+    private void showScreen(ViewRegistry.Screen screen, String name) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/banking/AccountView.fxml"));
-            Parent content = loader.load();
-            mainContainer.setCenter(content);
+            mainContainer.setCenter(viewRegistry.show(screen).getRoot());
         } catch (IOException e) {
-            showError("Error loading accounts: " + e.getMessage());
+            showError("Error loading " + name + ": " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    private void loadDashboard() {
+        showScreen(ViewRegistry.Screen.DASHBOARD, "dashboard");
+    }
+
+    private void loadAccounts() {
+        showScreen(ViewRegistry.Screen.ACCOUNTS, "accounts");
+    }
+
     private void loadTransactions() {
-        try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/banking/TransactionView.fxml"));
-            Parent content = loader.load();
-            mainContainer.setCenter(content);
-        } catch (IOException e) {
-            showError("Error loading transactions: " + e.getMessage());
-            e.printStackTrace();
-        }
+        showScreen(ViewRegistry.Screen.TRANSACTIONS, "transactions");
     }
 
     private void loadReports() {
-        try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/reports/ReportView.fxml"));
-            Parent content = loader.load();
-            mainContainer.setCenter(content);
-        } catch (IOException e) {
-            showError("Error loading reports: " + e.getMessage());
-            e.printStackTrace();
-        }
+        showScreen(ViewRegistry.Screen.REPORTS, "reports");
     }
 
     private void loadSettings() {
-        try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/settings/SettingsView.fxml"));
-            Parent content = loader.load();
-            mainContainer.setCenter(content);
-        } catch (IOException e) {
-            showError("Error loading settings: " + e.getMessage());
-            e.printStackTrace();
-        }
+        showScreen(ViewRegistry.Screen.SETTINGS, "settings");
     }
 
     private void handleLogout() {
@@ -141,6 +144,7 @@ public class DashboardController {
 
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
+                viewRegistry.shutdown();
                 // Return to login screen
                 try {
                     FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/auth/LoginView.fxml"));
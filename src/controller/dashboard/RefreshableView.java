@@ -0,0 +1,17 @@
+package controller.dashboard;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Controller of a screen that {@link ViewRegistry} keeps loaded between
+ * visits. Instead of being rebuilt, it is told each time it is shown again.
+ */
+public interface RefreshableView {
+
+    /**
+     * Called on the FX thread when the cached screen is shown. Reload only
+     * the screen's data, querying on the given executor and updating the
+     * controls back on the FX thread, so navigation does not wait for it.
+     */
+    void refresh(Executor background);
+}
@@ -0,0 +1,14 @@
+package controller.dashboard;
+
+/**
+ * Controller of a screen that acts for the logged-in user, e.g. to record
+ * who performed a posting and to rate-limit per teller.
+ */
+public interface UserAwareView {
+
+    /**
+     * Called once, when {@link ViewRegistry} loads the screen and before its
+     * first refresh; may run on a loader thread
+     */
+    void setCurrentUser(String username);
+}
@@ -0,0 +1,161 @@
+package controller.dashboard;
+
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses and instantiates each dashboard screen once and hands back the same
+ * node graph and controller on every later visit.
+ *
+ * Screens are pre-warmed in parallel on background threads (building nodes
+ * off the FX thread is allowed until they are attached to a scene), so the
+ * first click usually finds its screen ready too. Showing a cached screen
+ * only calls its controller's {@link RefreshableView#refresh} hook. Controllers
+ * that act for the user ({@link UserAwareView}) are told who is logged in.
+ *
+ * One registry per logged-in dashboard; {@link #shutdown()} on logout.
+ */
+public class ViewRegistry {
+
+    public enum Screen {
+        DASHBOARD("/view/dashboard/DashboardContent.fxml"),
+        ACCOUNTS("/view/banking/AccountView.fxml"),
+        TRANSACTIONS("/view/banking/TransactionView.fxml"),
+        REPORTS("/view/reports/ReportView.fxml"),
+        SETTINGS("/view/settings/SettingsView.fxml");
+
+        private final String resource;
+
+        Screen(String resource) {
+            this.resource = resource;
+        }
+    }
+
+    private final Map<Screen, CompletableFuture<LoadedView>> views = new EnumMap<>(Screen.class);
+    private final ExecutorService executor;
+    private volatile String currentUsername;
+
+    public ViewRegistry() {
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, Math.min(Screen.values().length, Runtime.getRuntime().availableProcessors()));
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "view-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The logged-in user, passed to screens loaded from now on; set before
+     * the first {@link #prewarm} or {@link #show}
+     */
+    public void setCurrentUser(String username) {
+        this.currentUsername = username;
+    }
+
+    /**
+     * Start loading screens in the background; each is loaded at most once
+     */
+    public synchronized void prewarm(Collection<Screen> screens) {
+        for (Screen screen : screens) {
+            load(screen);
+        }
+    }
+
+    /**
+     * The screen's cached view, loading it now if pre-warming has not got to
+     * it. On later visits its controller is refreshed before it is returned.
+     * Call on the FX thread.
+     */
+    public LoadedView show(Screen screen) throws IOException {
+        CompletableFuture<LoadedView> future;
+        synchronized (this) {
+            future = load(screen);
+        }
+        LoadedView view;
+        try {
+            view = future.join();
+        } catch (CompletionException e) {
+            // Forget the failure so the next visit tries again
+            synchronized (this) {
+                views.remove(screen, future);
+            }
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof IOException ? (IOException) cause
+                    : new IOException("Error loading " + screen.resource + ": " + cause.getMessage(), cause);
+        }
+        // The first visit shows the data fetched when the screen was loaded
+        if (view.shown && view.controller instanceof RefreshableView) {
+            ((RefreshableView) view.controller).refresh(executor);
+        }
+        view.shown = true;
+        return view;
+    }
+
+    /**
+     * Whether a screen has finished loading
+     */
+    public synchronized boolean isLoaded(Screen screen) {
+        CompletableFuture<LoadedView> future = views.get(screen);
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    /**
+     * Stop the loader threads; cached screens are dropped with the registry
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<LoadedView> load(Screen screen) {
+        return views.computeIfAbsent(screen, s -> CompletableFuture.supplyAsync(() -> {
+            long started = System.nanoTime();
+            FXMLLoader loader = new FXMLLoader(getClass().getResource(s.resource));
+            try {
+                Parent root = loader.load();
+                LoadedView view = new LoadedView(root, loader.getController(), System.nanoTime() - started);
+                if (view.controller instanceof UserAwareView) {
+                    ((UserAwareView) view.controller).setCurrentUser(currentUsername);
+                }
+                if (view.controller instanceof RefreshableView) {
+                    // Fetch the data too, so the first visit shows it at once
+                    Platform.runLater(() -> ((RefreshableView) view.controller).refresh(executor));
+                }
+                return view;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor));
+    }
+
+    /**
+     * Inner class for a loaded screen
+     */
+    public static class LoadedView {
+        private final Parent root;
+        private final Object controller;
+        private final long loadNanos;
+        private boolean shown = false;
+
+        LoadedView(Parent root, Object controller, long loadNanos) {
+            this.root = root;
+            this.controller = controller;
+            this.loadNanos = loadNanos;
+        }
+
+        public Parent getRoot() { return root; }
+        public Object getController() { return controller; }
+        public long getLoadMillis() { return loadNanos / 1_000_000; }
+    }
+}
@@ -0,0 +1,79 @@
+package controller.reports;
+
+import controller.dashboard.RefreshableView;
+import dao.TransactionDAO;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import service.AuditVerifier;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Controller for the reports screen
+ */
+public class ReportController implements RefreshableView {
+
+    @FXML private Button securityAuditButton;
+    @FXML private Label totalTransactionsLabel;
+    @FXML private Label totalVolumeLabel;
+
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+
+    @FXML
+    public void initialize() {
+        securityAuditButton.setOnAction(e -> runSecurityAudit());
+    }
+
+    /**
+     * Reload the quick statistics off the FX thread each time the cached
+     * screen is shown
+     */
+    @Override
+    public void refresh(Executor background) {
+        CompletableFuture.supplyAsync(transactionDAO::getTransactionSummary, background)
+                .thenAcceptAsync(summary -> {
+                    totalTransactionsLabel.setText(String.format("%,d", summary.getTotalTransactions()));
+                    totalVolumeLabel.setText("$" + String.format("%,.2f", summary.getTotalAmount()));
+                }, Platform::runLater);
+    }
+
+    /**
+     * Verify the audit log incrementally off the FX thread and show the result
+     */
+    private void runSecurityAudit() {
+        securityAuditButton.setDisable(true);
+        Thread worker = new Thread(() -> {
+            String message;
+            Alert.AlertType alertType;
+            try {
+                AuditVerifier.Report report = new AuditVerifier(Runtime.getRuntime().availableProcessors())
+                        .run(AuditVerifier.Mode.INCREMENTAL);
+                message = report.getSummary();
+                alertType = report.getFailures().isEmpty() ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING;
+            } catch (SQLException e) {
+                message = "Error verifying audit log: " + e.getMessage();
+                alertType = Alert.AlertType.ERROR;
+            }
+            String text = message;
+            Alert.AlertType type = alertType;
+            Platform.runLater(() -> {
+                securityAuditButton.setDisable(false);
+                showAlert(text, type);
+            });
+        }, "security-audit");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void showAlert(String message, Alert.AlertType alertType) {
+        Alert alert = new Alert(alertType);
+        alert.setTitle("Security Audit");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
@@ -0,0 +1,94 @@
+package dao;
+
+import util.DatabaseConfig;
+import java.sql.*;
+
+/**
+ * Data Access Object for bulk account import progress.
+ *
+ * Progress is saved on the caller's connection in the same database
+ * transaction as the accounts it covers, so after an interruption an import
+ * resumes exactly after the last committed chunk.
+ */
+public class AccountImportDAO {
+
+    /**
+     * Progress of an import, or null if it never started
+     */
+    public Progress getProgress(String importKey) {
+        String sql = "SELECT * FROM account_imports WHERE import_key = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, importKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Progress(rs.getLong("byte_offset"), rs.getLong("line_number"),
+                            rs.getLong("rows_imported"), rs.getLong("rows_rejected"), rs.getLong("reject_bytes"),
+                            "COMPLETED".equals(rs.getString("status")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error getting import progress: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Record progress on the caller's connection without committing
+     */
+    public void saveProgress(Connection conn, String importKey, String fileName, Progress progress) throws SQLException {
+        String sql = "INSERT INTO account_imports (import_key, file_name, byte_offset, line_number, rows_imported, rows_rejected, reject_bytes, status) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+                     "ON CONFLICT (import_key) DO UPDATE SET byte_offset = EXCLUDED.byte_offset, line_number = EXCLUDED.line_number, " +
+                     "rows_imported = EXCLUDED.rows_imported, rows_rejected = EXCLUDED.rows_rejected, " +
+                     "reject_bytes = EXCLUDED.reject_bytes, status = EXCLUDED.status, updated_at = CURRENT_TIMESTAMP";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, importKey);
+            pstmt.setString(2, fileName);
+            pstmt.setLong(3, progress.byteOffset);
+            pstmt.setLong(4, progress.lineNumber);
+            pstmt.setLong(5, progress.rowsImported);
+            pstmt.setLong(6, progress.rowsRejected);
+            pstmt.setLong(7, progress.rejectBytes);
+            pstmt.setString(8, progress.completed ? "COMPLETED" : "RUNNING");
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Inner class for how far an import got
+     */
+    public static class Progress {
+        private final long byteOffset;
+        private final long lineNumber;
+        private final long rowsImported;
+        private final long rowsRejected;
+        private final long rejectBytes;
+        private final boolean completed;
+
+        /**
+         * @param byteOffset where the next unimported row starts
+         * @param lineNumber the line that row is on
+         * @param rejectBytes length of the reject file covering the rows so far
+         */
+        public Progress(long byteOffset, long lineNumber, long rowsImported, long rowsRejected,
+                        long rejectBytes, boolean completed) {
+            this.byteOffset = byteOffset;
+            this.lineNumber = lineNumber;
+            this.rowsImported = rowsImported;
+            this.rowsRejected = rowsRejected;
+            this.rejectBytes = rejectBytes;
+            this.completed = completed;
+        }
+
+        public long getByteOffset() { return byteOffset; }
+        public long getLineNumber() { return lineNumber; }
+        public long getRowsImported() { return rowsImported; }
+        public long getRowsRejected() { return rowsRejected; }
+        public long getRejectBytes() { return rejectBytes; }
+        public boolean isCompleted() { return completed; }
+    }
+}
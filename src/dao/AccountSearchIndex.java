@@ -0,0 +1,458 @@
+package dao;
+
+import util.AccountIndex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over account holder name, account number and
+ * linked customer email/phone, used for as-you-type teller lookup.
+ *
+ * Two structures are kept per indexed field: a sorted token map for prefix
+ * matches and a trigram posting list for substring and fuzzy matches. The
+ * index is loaded once from {@link BankAccountDAO#loadSearchDocuments} and
+ * kept in sync by the DAO write paths that change a document (account
+ * creation and import, holder name edits, customer links and contact
+ * changes), which call {@link #refresh} after committing, so queries never
+ * touch the database.
+ */
+public class AccountSearchIndex {
+
+    private static final AccountSearchIndex INSTANCE = new AccountSearchIndex();
+
+    // Ranking weights, highest first
+    private static final int SCORE_EXACT = 1000;
+    private static final int SCORE_PREFIX = 500;
+    private static final int SCORE_SUBSTRING = 200;
+    private static final int SCORE_FUZZY_MAX = 100;
+
+    // Minimum share of query trigrams a document must contain to be a fuzzy hit
+    private static final double FUZZY_THRESHOLD = 0.5;
+
+    // Most tokens a prefix walks; a one- or two-letter prefix of millions of
+    // names would otherwise visit a large part of the token map per keystroke
+    private static final int MAX_PREFIX_TOKENS = 1024;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Document storage, indexed by document id
+    private final List<String> accountNumbers = new ArrayList<>();
+    private final List<String> holderNames = new ArrayList<>();
+    private final List<String> contacts = new ArrayList<>();
+    private final List<String> searchText = new ArrayList<>();
+    private boolean[] deleted = new boolean[1024];
+
+    private final AccountIndex docIdByAccount = new AccountIndex();
+    private final NavigableMap<String, IntList> tokens = new TreeMap<>();
+    private final Map<Long, IntList> trigrams = new HashMap<>();
+
+    private volatile boolean loaded = false;
+
+    private AccountSearchIndex() {
+    }
+
+    /**
+     * Get the shared index instance
+     */
+    public static AccountSearchIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether the index has been loaded from the database
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Load every active account into the index, replacing any previous content
+     */
+    public void load(BankAccountDAO bankAccountDAO) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            bankAccountDAO.loadSearchDocuments(this::put);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Load the index on a background thread
+     */
+    public void loadAsync(BankAccountDAO bankAccountDAO) {
+        Thread loader = new Thread(() -> load(bankAccountDAO), "account-search-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Add or replace an account in the index
+     */
+    public void add(String accountNumber, String holderName, String contact) {
+        lock.writeLock().lock();
+        try {
+            put(accountNumber, holderName, contact);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-read the given accounts' documents after a committed change and
+     * replace them in the index; accounts no longer active are removed.
+     * Does nothing until the index is loaded, as the load will read them.
+     */
+    public void refresh(BankAccountDAO bankAccountDAO, Collection<String> accountNumbers) {
+        if (!loaded) {
+            return;
+        }
+        List<String[]> documents = new ArrayList<>(accountNumbers.size());
+        // Read outside the lock so searches are not held up by the query
+        if (!bankAccountDAO.loadSearchDocuments(accountNumbers,
+                (accountNumber, holderName, contact) -> documents.add(new String[] {accountNumber, holderName, contact}))) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Set<String> active = new HashSet<>();
+            for (String[] document : documents) {
+                put(document[0], document[1], document[2]);
+                active.add(document[0]);
+            }
+            for (String accountNumber : accountNumbers) {
+                if (!active.contains(accountNumber)) {
+                    delete(accountNumber);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an account from the index
+     */
+    public void remove(String accountNumber) {
+        lock.writeLock().lock();
+        try {
+            delete(accountNumber);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of live documents in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIdByAccount.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search the index and return the top-K ranked hits.
+     * Short queries (under three characters) only match by prefix.
+     */
+    public List<SearchHit> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        Scratch scratch = SCRATCH.get();
+        try {
+            scratch.ensureCapacity(accountNumbers.size());
+            collectPrefixMatches(q, scratch);
+            // Prefix hits always outrank substring and fuzzy hits, so once
+            // there are enough of them the trigram pass cannot change the top-K
+            if (q.length() >= 3 && scratch.scored.size < limit) {
+                collectTrigramMatches(q, scratch);
+            }
+            return topK(scratch, limit);
+        } finally {
+            scratch.clearScores();
+            lock.readLock().unlock();
+        }
+    }
+
+    private void collectPrefixMatches(String q, Scratch scratch) {
+        int visited = 0;
+        // Walked in sorted order, so the exact token (if any) comes first
+        for (Map.Entry<String, IntList> entry : tokens.subMap(q, true, q + Character.MAX_VALUE, false).entrySet()) {
+            if (visited++ == MAX_PREFIX_TOKENS) {
+                break;
+            }
+            boolean exact = entry.getKey().length() == q.length();
+            // Shorter tokens are closer to the query, rank them first
+            int score = exact ? SCORE_EXACT : SCORE_PREFIX - Math.min(entry.getKey().length() - q.length(), 99);
+            IntList docs = entry.getValue();
+            for (int i = 0; i < docs.size; i++) {
+                int docId = docs.values[i];
+                if (!deleted[docId]) {
+                    scratch.score(docId, score);
+                }
+            }
+        }
+    }
+
+    private void collectTrigramMatches(String q, Scratch scratch) {
+        long[] queryGrams = trigramsOf(q);
+        List<IntList> postings = new ArrayList<>(queryGrams.length);
+        for (long gram : queryGrams) {
+            IntList docs = trigrams.get(gram);
+            if (docs != null) {
+                postings.add(docs);
+            }
+        }
+        int required = (int) Math.ceil(queryGrams.length * FUZZY_THRESHOLD);
+        if (postings.size() < required) {
+            return;
+        }
+        postings.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        // A document with at least `required` hits must appear in one of the
+        // (n - required + 1) shortest lists, so only those seed candidates.
+        // The long lists (common trigrams such as "son") are then probed by
+        // binary search instead of being scanned.
+        int seedLists = postings.size() - required + 1;
+        int[] counts = scratch.counts;
+        IntList touched = scratch.touched;
+        touched.size = 0;
+        for (int p = 0; p < seedLists; p++) {
+            IntList docs = postings.get(p);
+            for (int i = 0; i < docs.size; i++) {
+                int docId = docs.values[i];
+                if (counts[docId]++ == 0) {
+                    touched.add(docId);
+                }
+            }
+        }
+        for (int p = seedLists; p < postings.size(); p++) {
+            IntList docs = postings.get(p);
+            for (int i = 0; i < touched.size; i++) {
+                int docId = touched.values[i];
+                if (Arrays.binarySearch(docs.values, 0, docs.size, docId) >= 0) {
+                    counts[docId]++;
+                }
+            }
+        }
+
+        for (int i = 0; i < touched.size; i++) {
+            int docId = touched.values[i];
+            int hitCount = counts[docId];
+            counts[docId] = 0;
+            if (hitCount < required || deleted[docId]) {
+                continue;
+            }
+            int score;
+            if (searchText.get(docId).contains(q)) {
+                score = SCORE_SUBSTRING;
+            } else {
+                // Share of the query's trigrams found in the document
+                score = (int) Math.round((double) hitCount / queryGrams.length * SCORE_FUZZY_MAX);
+            }
+            scratch.score(docId, score);
+        }
+    }
+
+    private List<SearchHit> topK(Scratch scratch, int limit) {
+        PriorityQueue<SearchHit> heap = new PriorityQueue<>(limit + 1);
+        IntList scored = scratch.scored;
+        for (int i = 0; i < scored.size; i++) {
+            int docId = scored.values[i];
+            int score = scratch.scores[docId];
+            if (heap.size() == limit && score <= heap.peek().getScore()) {
+                continue;
+            }
+            heap.add(new SearchHit(accountNumbers.get(docId), holderNames.get(docId), contacts.get(docId), score));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<SearchHit> results = new ArrayList<>(heap);
+        results.sort(Collections.reverseOrder());
+        return results;
+    }
+
+    private void put(String accountNumber, String holderName, String contact) {
+        int previous = docIdByAccount.get(accountNumber);
+        if (previous != AccountIndex.NO_VALUE) {
+            deleted[previous] = true;
+        }
+
+        int docId = accountNumbers.size();
+        accountNumbers.add(accountNumber);
+        holderNames.add(holderName);
+        contacts.add(contact);
+        if (docId >= deleted.length) {
+            deleted = Arrays.copyOf(deleted, deleted.length * 2);
+        }
+        deleted[docId] = false;
+        docIdByAccount.put(accountNumber, docId);
+
+        String text = normalize(accountNumber + " " + holderName + (contact != null ? " " + contact : ""));
+        searchText.add(text);
+
+        for (String token : text.split(" ")) {
+            if (!token.isEmpty()) {
+                tokens.computeIfAbsent(token, k -> new IntList()).addUnique(docId);
+            }
+        }
+        for (long gram : trigramsOf(text)) {
+            trigrams.computeIfAbsent(gram, k -> new IntList()).addUnique(docId);
+        }
+    }
+
+    private void delete(String accountNumber) {
+        int docId = docIdByAccount.remove(accountNumber);
+        if (docId != AccountIndex.NO_VALUE) {
+            deleted[docId] = true;
+        }
+    }
+
+    private void clear() {
+        accountNumbers.clear();
+        holderNames.clear();
+        contacts.clear();
+        searchText.clear();
+        docIdByAccount.clear();
+        tokens.clear();
+        trigrams.clear();
+        deleted = new boolean[1024];
+        loaded = false;
+    }
+
+    /**
+     * Lower-case and collapse separators so "John  Doe" and "john doe" index the same
+     */
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().toLowerCase(Locale.ROOT).replaceAll("[\\s,;]+", " ");
+    }
+
+    /**
+     * Distinct trigrams of a string, each packed into a long (16 bits per char)
+     */
+    private static long[] trigramsOf(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    /**
+     * Growable primitive posting list. Document ids are appended in increasing
+     * order, so duplicate suppression only needs to check the last entry.
+     */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void addUnique(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            add(value);
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Per-thread hit counters and scores reused across queries so a search
+     * over millions of documents does not allocate per candidate
+     */
+    private static class Scratch {
+        private int[] counts = new int[0];
+        private final IntList touched = new IntList();
+        // Best score per document so far, 0 = not matched; scored lists the matched ones
+        private int[] scores = new int[0];
+        private final IntList scored = new IntList();
+
+        void ensureCapacity(int documents) {
+            if (counts.length < documents) {
+                int capacity = Math.max(documents, counts.length * 2);
+                counts = new int[capacity];
+                scores = new int[capacity];
+            }
+        }
+
+        void score(int docId, int score) {
+            int previous = scores[docId];
+            if (previous == 0) {
+                scored.add(docId);
+            }
+            if (score > previous) {
+                scores[docId] = score;
+            }
+        }
+
+        void clearScores() {
+            for (int i = 0; i < scored.size; i++) {
+                scores[scored.values[i]] = 0;
+            }
+            scored.size = 0;
+        }
+    }
+
+    /**
+     * Inner class for a ranked search result
+     */
+    public static class SearchHit implements Comparable<SearchHit> {
+        private final String accountNumber;
+        private final String holderName;
+        private final String contact;
+        private final int score;
+
+        public SearchHit(String accountNumber, String holderName, String contact, int score) {
+            this.accountNumber = accountNumber;
+            this.holderName = holderName;
+            this.contact = contact;
+            this.score = score;
+        }
+
+        public String getAccountNumber() { return accountNumber; }
+        public String getHolderName() { return holderName; }
+        public String getContact() { return contact; }
+        public int getScore() { return score; }
+
+        @Override
+        public int compareTo(SearchHit other) {
+            int byScore = Integer.compare(score, other.score);
+            return byScore != 0 ? byScore : other.accountNumber.compareTo(accountNumber);
+        }
+    }
+}
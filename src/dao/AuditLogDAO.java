@@ -0,0 +1,380 @@
+package dao;
+
+import model.audit.AuditLog;
+import util.AuditChain;
+import util.DatabaseConfig;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Data Access Object for the hash-chained audit log (audit_logs, its head in
+ * audit_chain_head and the segment checkpoints in audit_checkpoints).
+ *
+ * Appends lock the head row, so entries get consecutive sequence numbers and
+ * each is hashed onto the one before it. The append that completes a segment
+ * also records its checkpoint. Triggers reject updates and deletes of all
+ * three tables apart from moving the head.
+ */
+public class AuditLogDAO {
+
+    private static final int FETCH_SIZE = 10000;
+
+    /**
+     * Append one entry in its own transaction
+     */
+    public boolean append(AuditLog entry) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                append(conn, Collections.singletonList(entry));
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error writing audit log: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Append entries on the caller's connection without committing, in list
+     * order. Sets each entry's sequence number and hash; other appenders wait
+     * for this transaction to end.
+     */
+    public void append(Connection conn, List<AuditLog> entries) throws SQLException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        String headSql = "SELECT last_seq, last_hash FROM audit_chain_head FOR UPDATE";
+        String insertSql = "INSERT INTO audit_logs (seq, action, details, username, ip_address, user_agent, success, " +
+                           "error_message, created_at, entry_hash) " +
+                           "SELECT e.seq, e.action, e.details, e.username, e.ip_address::inet, e.user_agent, e.success, " +
+                           "e.error_message, e.created_at::timestamp, decode(e.entry_hash, 'hex') " +
+                           "FROM unnest(?::bigint[], ?::varchar[], ?::text[], ?::varchar[], ?::varchar[], ?::text[], " +
+                           "?::boolean[], ?::text[], ?::varchar[], ?::varchar[]) " +
+                           "AS e(seq, action, details, username, ip_address, user_agent, success, error_message, created_at, entry_hash)";
+        String updateHeadSql = "UPDATE audit_chain_head SET last_seq = ?, last_hash = ?, signature = ?, " +
+                               "updated_at = CURRENT_TIMESTAMP";
+
+        long lastSeq;
+        byte[] lastHash;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(headSql)) {
+            if (!rs.next()) {
+                throw new SQLException("audit_chain_head has no row");
+            }
+            lastSeq = rs.getLong("last_seq");
+            lastHash = rs.getBytes("last_hash");
+        }
+        normalizeAddresses(conn, entries);
+
+        int count = entries.size();
+        Long[] seqs = new Long[count];
+        String[] actions = new String[count];
+        String[] details = new String[count];
+        String[] usernames = new String[count];
+        String[] addresses = new String[count];
+        String[] userAgents = new String[count];
+        Boolean[] successes = new Boolean[count];
+        String[] errors = new String[count];
+        String[] timestamps = new String[count];
+        String[] hashes = new String[count];
+        AuditChain chain = new AuditChain();
+        long firstSeq = lastSeq + 1;
+        for (int i = 0; i < count; i++) {
+            AuditLog entry = entries.get(i);
+            entry.setSeq(++lastSeq);
+            entry.setTimestamp(AuditChain.truncate(entry.getTimestamp() != null ? entry.getTimestamp() : LocalDateTime.now()));
+            lastHash = chain.entryHash(lastHash, entry);
+            entry.setEntryHash(lastHash);
+
+            seqs[i] = entry.getSeq();
+            actions[i] = entry.getAction();
+            details[i] = entry.getDetails();
+            usernames[i] = entry.getUsername();
+            addresses[i] = entry.getIpAddress();
+            userAgents[i] = entry.getUserAgent();
+            successes[i] = entry.isSuccess();
+            errors[i] = entry.getErrorMessage();
+            timestamps[i] = entry.getTimestamp().toString();
+            hashes[i] = AuditChain.toHex(lastHash);
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+            pstmt.setArray(1, conn.createArrayOf("bigint", seqs));
+            pstmt.setArray(2, conn.createArrayOf("varchar", actions));
+            pstmt.setArray(3, conn.createArrayOf("text", details));
+            pstmt.setArray(4, conn.createArrayOf("varchar", usernames));
+            pstmt.setArray(5, conn.createArrayOf("varchar", addresses));
+            pstmt.setArray(6, conn.createArrayOf("text", userAgents));
+            pstmt.setArray(7, conn.createArrayOf("boolean", successes));
+            pstmt.setArray(8, conn.createArrayOf("text", errors));
+            pstmt.setArray(9, conn.createArrayOf("varchar", timestamps));
+            pstmt.setArray(10, conn.createArrayOf("varchar", hashes));
+            pstmt.executeUpdate();
+        }
+
+        byte[] key = AuditChain.checkpointKey();
+        try (PreparedStatement pstmt = conn.prepareStatement(updateHeadSql)) {
+            pstmt.setLong(1, lastSeq);
+            pstmt.setBytes(2, lastHash);
+            pstmt.setBytes(3, AuditChain.signHead(key, lastSeq, lastHash));
+            pstmt.executeUpdate();
+        }
+
+        // Seal every segment this append completed
+        for (long segment = AuditChain.segmentOf(firstSeq); AuditChain.lastSeq(segment) <= lastSeq; segment++) {
+            seal(conn, segment, chain, key);
+        }
+    }
+
+    /**
+     * Record the checkpoint of a complete segment on the caller's connection
+     */
+    private void seal(Connection conn, long segment, AuditChain chain, byte[] key) throws SQLException {
+        String hashesSql = "SELECT seq, entry_hash FROM audit_logs WHERE seq BETWEEN ? AND ? ORDER BY seq";
+        String insertSql = "INSERT INTO audit_checkpoints (segment, first_seq, last_seq, previous_hash, merkle_root, " +
+                           "last_entry_hash, signature) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        long firstSeq = AuditChain.firstSeq(segment);
+        long lastSeq = AuditChain.lastSeq(segment);
+        byte[] previousHash = AuditChain.genesis();
+        byte[] leaves = new byte[AuditChain.SEGMENT_SIZE * AuditChain.HASH_LENGTH];
+        int count = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(hashesSql)) {
+            pstmt.setFetchSize(FETCH_SIZE);
+            pstmt.setLong(1, firstSeq - 1);
+            pstmt.setLong(2, lastSeq);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    byte[] hash = rs.getBytes("entry_hash");
+                    if (rs.getLong("seq") < firstSeq) {
+                        previousHash = hash;
+                    } else {
+                        System.arraycopy(hash, 0, leaves, count++ * AuditChain.HASH_LENGTH, AuditChain.HASH_LENGTH);
+                    }
+                }
+            }
+        }
+        if (count != AuditChain.SEGMENT_SIZE) {
+            throw new SQLException("Audit segment " + segment + " has " + count + " entries");
+        }
+
+        byte[] root = chain.merkleRoot(leaves, count);
+        byte[] lastHash = new byte[AuditChain.HASH_LENGTH];
+        System.arraycopy(leaves, (count - 1) * AuditChain.HASH_LENGTH, lastHash, 0, AuditChain.HASH_LENGTH);
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+            pstmt.setLong(1, segment);
+            pstmt.setLong(2, firstSeq);
+            pstmt.setLong(3, lastSeq);
+            pstmt.setBytes(4, previousHash);
+            pstmt.setBytes(5, root);
+            pstmt.setBytes(6, lastHash);
+            pstmt.setBytes(7, AuditChain.signCheckpoint(key, segment, previousHash, root, lastHash));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Addresses are hashed in the form the database prints them back in
+     */
+    private void normalizeAddresses(Connection conn, List<AuditLog> entries) throws SQLException {
+        String[] addresses = new String[entries.size()];
+        boolean any = false;
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = entries.get(i).getIpAddress();
+            any |= addresses[i] != null;
+        }
+        if (!any) {
+            return;
+        }
+        String sql = "SELECT a.ip_address::inet AS ip_address FROM unnest(?::varchar[]) WITH ORDINALITY AS a(ip_address, ord) " +
+                     "ORDER BY a.ord";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", addresses));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                for (int i = 0; rs.next(); i++) {
+                    entries.get(i).setIpAddress(rs.getString("ip_address"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the chain head and, in the same statement, count entries beyond
+     * it, which only a tampered log has
+     */
+    public ChainHead getHead(Connection conn) throws SQLException {
+        String sql = "SELECT h.last_seq, h.last_hash, h.signature, " +
+                     "(SELECT COUNT(*) FROM audit_logs l WHERE l.seq > h.last_seq) AS entries_beyond " +
+                     "FROM audit_chain_head h";
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) {
+                throw new SQLException("audit_chain_head has no row");
+            }
+            return new ChainHead(rs.getLong("last_seq"), rs.getBytes("last_hash"), rs.getBytes("signature"),
+                    rs.getLong("entries_beyond"));
+        }
+    }
+
+    /**
+     * Every checkpoint in segment order
+     */
+    public List<Checkpoint> getCheckpoints(Connection conn) throws SQLException {
+        String sql = "SELECT * FROM audit_checkpoints ORDER BY segment";
+        List<Checkpoint> checkpoints = new ArrayList<>();
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                checkpoints.add(new Checkpoint(rs.getLong("segment"), rs.getLong("first_seq"), rs.getLong("last_seq"),
+                        rs.getBytes("previous_hash"), rs.getBytes("merkle_root"), rs.getBytes("last_entry_hash"),
+                        rs.getBytes("signature")));
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Stream entries fromSeq to toSeq in sequence order; the connection must
+     * not be in auto-commit for the rows to be fetched in batches
+     */
+    public void streamEntries(Connection conn, long fromSeq, long toSeq, EntryHandler handler) throws SQLException {
+        String sql = "SELECT * FROM audit_logs WHERE seq BETWEEN ? AND ? ORDER BY seq";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(FETCH_SIZE);
+            pstmt.setLong(1, fromSeq);
+            pstmt.setLong(2, toSeq);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(mapResultSetToAuditLog(rs));
+                }
+            }
+        }
+    }
+
+    /**
+     * The last segment up to which the log has been verified, or -1
+     */
+    public long getVerifiedThrough(Connection conn) throws SQLException {
+        String sql = "SELECT verified_through_segment FROM audit_verification_runs ORDER BY id DESC LIMIT 1";
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    /**
+     * Record a verification run; returns its id, or -1 on failure
+     */
+    public int saveRun(boolean incremental, long fromSegment, long verifiedThroughSegment, long lastSeq,
+                       long entriesChecked, int failures, Timestamp startedAt) {
+        String sql = "INSERT INTO audit_verification_runs (mode, from_segment, verified_through_segment, last_seq, " +
+                     "entries_checked, failures, started_at) VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING id";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, incremental ? "INCREMENTAL" : "FULL");
+            pstmt.setLong(2, fromSegment);
+            pstmt.setLong(3, verifiedThroughSegment);
+            pstmt.setLong(4, lastSeq);
+            pstmt.setLong(5, entriesChecked);
+            pstmt.setInt(6, failures);
+            pstmt.setTimestamp(7, startedAt);
+            int runId;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                runId = rs.getInt(1);
+            }
+            conn.commit();
+            return runId;
+        } catch (SQLException e) {
+            System.err.println("Error saving audit verification run: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private static AuditLog mapResultSetToAuditLog(ResultSet rs) throws SQLException {
+        AuditLog entry = new AuditLog(rs.getString("action"), rs.getString("details"), rs.getString("username"),
+                rs.getString("ip_address"));
+        entry.setId(rs.getInt("id"));
+        entry.setSeq(rs.getLong("seq"));
+        entry.setUserAgent(rs.getString("user_agent"));
+        entry.setSuccess(rs.getBoolean("success"));
+        entry.setErrorMessage(rs.getString("error_message"));
+        entry.setTimestamp(rs.getObject("created_at", LocalDateTime.class));
+        entry.setEntryHash(rs.getBytes("entry_hash"));
+        return entry;
+    }
+
+    /**
+     * Callback for streamed entries
+     */
+    public interface EntryHandler {
+        void handle(AuditLog entry) throws SQLException;
+    }
+
+    /**
+     * Inner class for the end of the chain
+     */
+    public static class ChainHead {
+        private final long lastSeq;
+        private final byte[] lastHash;
+        private final byte[] signature;
+        private final long entriesBeyond;
+
+        public ChainHead(long lastSeq, byte[] lastHash, byte[] signature, long entriesBeyond) {
+            this.lastSeq = lastSeq;
+            this.lastHash = lastHash;
+            this.signature = signature;
+            this.entriesBeyond = entriesBeyond;
+        }
+
+        public long getLastSeq() { return lastSeq; }
+        public byte[] getLastHash() { return lastHash; }
+        public byte[] getSignature() { return signature; }
+        public long getEntriesBeyond() { return entriesBeyond; }
+    }
+
+    /**
+     * Inner class for the checkpoint of one complete segment
+     */
+    public static class Checkpoint {
+        private final long segment;
+        private final long firstSeq;
+        private final long lastSeq;
+        private final byte[] previousHash;
+        private final byte[] merkleRoot;
+        private final byte[] lastEntryHash;
+        private final byte[] signature;
+
+        public Checkpoint(long segment, long firstSeq, long lastSeq, byte[] previousHash, byte[] merkleRoot,
+                          byte[] lastEntryHash, byte[] signature) {
+            this.segment = segment;
+            this.firstSeq = firstSeq;
+            this.lastSeq = lastSeq;
+            this.previousHash = previousHash;
+            this.merkleRoot = merkleRoot;
+            this.lastEntryHash = lastEntryHash;
+            this.signature = signature;
+        }
+
+        public long getSegment() { return segment; }
+        public long getFirstSeq() { return firstSeq; }
+        public long getLastSeq() { return lastSeq; }
+        /** Chain hash the segment starts from */
+        public byte[] getPreviousHash() { return previousHash; }
+        public byte[] getMerkleRoot() { return merkleRoot; }
+        public byte[] getLastEntryHash() { return lastEntryHash; }
+        public byte[] getSignature() { return signature; }
+    }
+}
@@ -0,0 +1,136 @@
+package dao;
+
+import java.math.BigDecimal;
+import java.sql.*;
+
+/**
+ * Data Access Object for hot-account balance buckets.
+ *
+ * All methods run on the caller's connection and never commit, so bucket
+ * changes share the database transaction of the money movement they belong to.
+ * Amounts are whole cents, bound as exact decimals, so splitting an amount
+ * across buckets neither loses nor invents a fraction of a cent.
+ */
+public class BalanceBucketDAO {
+
+    /**
+     * Create buckets 0..n-1 for an account, spreading the given amount evenly
+     * (cent remainder goes to bucket 0)
+     */
+    public void createBuckets(Connection conn, String accountNumber, int buckets, long totalCents) throws SQLException {
+        String sql = "INSERT INTO account_balance_buckets (account_number, bucket_no, balance) VALUES (?, ?, ?)";
+        long shareCents = totalCents / buckets;
+        long remainderCents = totalCents - shareCents * buckets;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long cents = bucket == 0 ? shareCents + remainderCents : shareCents;
+                pstmt.setString(1, accountNumber);
+                pstmt.setInt(2, bucket);
+                pstmt.setBigDecimal(3, toAmount(cents));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Delete all buckets of an account and return the balance they held, in cents
+     */
+    public long deleteBuckets(Connection conn, String accountNumber) throws SQLException {
+        long totalCents = lockAndSum(conn, accountNumber);
+        String sql = "DELETE FROM account_balance_buckets WHERE account_number = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, accountNumber);
+            pstmt.executeUpdate();
+        }
+        return totalCents;
+    }
+
+    /**
+     * Add an amount to one bucket. Only that bucket's row is locked, so
+     * concurrent credits to other buckets of the same account do not wait.
+     */
+    public boolean credit(Connection conn, String accountNumber, int bucket, long amountCents) throws SQLException {
+        String sql = "UPDATE account_balance_buckets SET balance = balance + ?, updated_at = CURRENT_TIMESTAMP " +
+                     "WHERE account_number = ? AND bucket_no = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setBigDecimal(1, toAmount(amountCents));
+            pstmt.setString(2, accountNumber);
+            pstmt.setInt(3, bucket);
+
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Take an amount from one bucket only if that bucket alone covers it
+     */
+    public boolean reserve(Connection conn, String accountNumber, int bucket, long amountCents) throws SQLException {
+        String sql = "UPDATE account_balance_buckets SET balance = balance - ?, updated_at = CURRENT_TIMESTAMP " +
+                     "WHERE account_number = ? AND bucket_no = ? AND balance >= ?";
+        BigDecimal amount = toAmount(amountCents);
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setBigDecimal(1, amount);
+            pstmt.setString(2, accountNumber);
+            pstmt.setInt(3, bucket);
+            pstmt.setBigDecimal(4, amount);
+
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Lock every bucket of an account (in bucket order) and return their
+     * balances in cents, or null unless exactly buckets 0..n-1 exist, e.g.
+     * because hot mode was switched off meanwhile
+     */
+    public long[] lockAll(Connection conn, String accountNumber, int buckets) throws SQLException {
+        String sql = "SELECT bucket_no, balance FROM account_balance_buckets WHERE account_number = ? ORDER BY bucket_no FOR UPDATE";
+        long[] balances = new long[buckets];
+        int found = 0;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, accountNumber);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int bucket = rs.getInt("bucket_no");
+                    if (bucket >= buckets) {
+                        return null;
+                    }
+                    balances[bucket] = toCents(rs.getBigDecimal("balance"));
+                    found++;
+                }
+            }
+        }
+        return found == buckets ? balances : null;
+    }
+
+    private long lockAndSum(Connection conn, String accountNumber) throws SQLException {
+        String sql = "SELECT balance FROM account_balance_buckets WHERE account_number = ? ORDER BY bucket_no FOR UPDATE";
+        long totalCents = 0;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, accountNumber);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totalCents += toCents(rs.getBigDecimal("balance"));
+                }
+            }
+        }
+        return totalCents;
+    }
+
+    private static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+}
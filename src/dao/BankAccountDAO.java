@@ -3,45 +3,111 @@ package dao;
 import model.BankAccount;
 import model.SavingsAccount;
 import model.CurrentAccount;
+import model.LoanAccount;
 import util.DatabaseConfig;
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
- * Data Access Object for Bank Account operations
+ * Data Access Object for Bank Account operations.
+ * Listings, search and the summary read through DatabaseConfig.getReadConnection()
+ * and may be answered by a read replica.
  */
 public class BankAccountDAO {
     
+    private static final int SEARCH_FETCH_SIZE = 10000;
+    
+    // One row per account with its linked customers' email/phone, for the search index
+    private static final String SEARCH_DOCUMENTS = "SELECT ba.account_number, ba.holder_name, " +
+            "STRING_AGG(CONCAT_WS(' ', c.email, c.phone), ' ') AS contact " +
+            "FROM bank_accounts ba " +
+            "LEFT JOIN customer_accounts ca ON ca.account_id = ba.id " +
+            "LEFT JOIN customers c ON c.id = ca.customer_id ";
+    
+    // Hot accounts keep part of their balance in account_balance_buckets;
+    // every read reports the total
+    private static final String TOTAL_BALANCE = "ba.balance + COALESCE((SELECT SUM(b.balance) " +
+            "FROM account_balance_buckets b WHERE b.account_number = ba.account_number), 0)";
+    // Select list for mapResultSetToBankAccount; also used by CustomerDAO
+    static final String ACCOUNT_COLUMNS = "ba.*, " + TOTAL_BALANCE + " AS total_balance";
+    
     /**
      * Get all bank accounts
      */
     public List<BankAccount> getAllAccounts() {
+        try (Connection conn = DatabaseConfig.getReadConnection()) {
+            return getAllAccounts(conn);
+        } catch (SQLException e) {
+            System.err.println("Error getting all accounts: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    /**
+     * Get all bank accounts on the caller's connection; callers that write
+     * based on the balances read pass a primary connection, not a replica's
+     */
+    public List<BankAccount> getAllAccounts(Connection conn) throws SQLException {
         List<BankAccount> accounts = new ArrayList<>();
-        String sql = "SELECT * FROM bank_accounts WHERE status = 'ACTIVE' ORDER BY account_number";
+        String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM bank_accounts ba WHERE ba.status = 'ACTIVE' ORDER BY ba.account_number";
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
+        try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
                 accounts.add(mapResultSetToBankAccount(rs));
             }
-        } catch (SQLException e) {
-            System.err.println("Error getting all accounts: " + e.getMessage());
         }
         return accounts;
     }
-    
+
+    /**
+     * Get the numbers of the accounts in hot-account mode
+     */
+    public List<String> getHotAccountNumbers() {
+        List<String> accountNumbers = new ArrayList<>();
+        String sql = "SELECT account_number FROM bank_accounts WHERE balance_buckets > 0";
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                accountNumbers.add(rs.getString("account_number"));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error getting hot accounts: " + e.getMessage());
+        }
+        return accountNumbers;
+    }
+
     /**
      * Get account by account number
      */
     public BankAccount getAccountByNumber(String accountNumber) {
-        String sql = "SELECT * FROM bank_accounts WHERE account_number = ? AND status = 'ACTIVE'";
+        try (Connection conn = DatabaseConfig.getReadConnection()) {
+            return getAccountByNumber(conn, accountNumber);
+        } catch (SQLException e) {
+            System.err.println("Error getting account: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Get account by account number on the caller's connection
+     */
+    public BankAccount getAccountByNumber(Connection conn, String accountNumber) throws SQLException {
+        String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM bank_accounts ba WHERE ba.account_number = ? AND ba.status = 'ACTIVE'";
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, accountNumber);
             
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -49,8 +115,174 @@ public class BankAccountDAO {
                     return mapResultSetToBankAccount(rs);
                 }
             }
+        }
+        return null;
+    }
+    
+    /**
+     * Get the active accounts among the given numbers in one query, in no
+     * particular order; numbers without an active account are left out
+     */
+    public List<BankAccount> getAccountsByNumbers(Collection<String> accountNumbers) {
+        List<BankAccount> accounts = new ArrayList<>();
+        if (accountNumbers.isEmpty()) {
+            return accounts;
+        }
+        String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM bank_accounts ba WHERE ba.account_number = ANY(?) AND ba.status = 'ACTIVE'";
+        
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setArray(1, conn.createArrayOf("varchar", accountNumbers.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(mapResultSetToBankAccount(rs));
+                }
+            }
         } catch (SQLException e) {
-            System.err.println("Error getting account: " + e.getMessage());
+            System.err.println("Error getting accounts: " + e.getMessage());
+        }
+        return accounts;
+    }
+    
+    /**
+     * Search active accounts by holder name, account number or a linked
+     * customer's email or phone using the pg_trgm indexes, as the in-process
+     * search index does. Used when that index is not loaded yet.
+     */
+    public List<BankAccount> searchAccounts(String query, int limit) {
+        List<BankAccount> accounts = new ArrayList<>();
+        // Each branch of the union can use its own trigram index
+        String sql = "SELECT " + ACCOUNT_COLUMNS + ", GREATEST(similarity(ba.holder_name, ?), similarity(ba.account_number, ?), " +
+                     "COALESCE((SELECT MAX(GREATEST(similarity(c.email, ?), similarity(c.phone, ?))) FROM customer_accounts ca " +
+                     "JOIN customers c ON c.id = ca.customer_id WHERE ca.account_id = ba.id), 0)) AS score " +
+                     "FROM bank_accounts ba WHERE ba.status = 'ACTIVE' AND ba.id IN (" +
+                     "SELECT b.id FROM bank_accounts b WHERE b.holder_name ILIKE ? OR b.account_number ILIKE ? OR b.holder_name % ? " +
+                     "UNION SELECT ca.account_id FROM customers c JOIN customer_accounts ca ON ca.customer_id = c.id " +
+                     "WHERE c.email ILIKE ? OR c.phone ILIKE ?) " +
+                     "ORDER BY score DESC, ba.account_number LIMIT ?";
+        String pattern = "%" + query.replace("%", "\\%").replace("_", "\\_") + "%";
+        
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setString(1, query);
+            pstmt.setString(2, query);
+            pstmt.setString(3, query);
+            pstmt.setString(4, query);
+            pstmt.setString(5, pattern);
+            pstmt.setString(6, pattern);
+            pstmt.setString(7, query);
+            pstmt.setString(8, pattern);
+            pstmt.setString(9, pattern);
+            pstmt.setInt(10, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(mapResultSetToBankAccount(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error searching accounts: " + e.getMessage());
+        }
+        return accounts;
+    }
+    
+    /**
+     * Stream every active account with its linked customer email/phone to the
+     * given handler. Rows are fetched with a cursor so millions of accounts
+     * do not have to fit in a single result buffer.
+     */
+    public void loadSearchDocuments(SearchDocumentHandler handler) {
+        String sql = SEARCH_DOCUMENTS +
+                     "WHERE ba.status = 'ACTIVE' " +
+                     "GROUP BY ba.id, ba.account_number, ba.holder_name " +
+                     "ORDER BY ba.account_number";
+        
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             Statement stmt = conn.createStatement()) {
+            
+            stmt.setFetchSize(SEARCH_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    handler.accept(rs.getString("account_number"), rs.getString("holder_name"), rs.getString("contact"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading search documents: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Read the search documents of the active accounts among the given
+     * numbers from the primary, so a change just committed is seen. Returns
+     * false if the read failed.
+     */
+    public boolean loadSearchDocuments(Collection<String> accountNumbers, SearchDocumentHandler handler) {
+        String sql = SEARCH_DOCUMENTS +
+                     "WHERE ba.account_number = ANY(?) AND ba.status = 'ACTIVE' " +
+                     "GROUP BY ba.id, ba.account_number, ba.holder_name";
+        
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setArray(1, conn.createArrayOf("varchar", accountNumbers.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(rs.getString("account_number"), rs.getString("holder_name"), rs.getString("contact"));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error loading search documents: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    /**
+     * Stream every account in account number order without materialising
+     * them all. Returns false if the read failed part way.
+     */
+    public boolean streamAccounts(Consumer<BankAccount> handler) {
+        String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM bank_accounts ba ORDER BY ba.account_number";
+        
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             Statement stmt = conn.createStatement()) {
+            
+            stmt.setFetchSize(SEARCH_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    handler.accept(mapResultSetToBankAccount(rs));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error streaming accounts: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    /**
+     * Reserve the next block of account number values from account_number_seq.
+     * Returns {first value, block size} (the sequence's increment), or null if
+     * the sequence could not be read.
+     */
+    public long[] reserveAccountNumberBlock() {
+        String sql = "SELECT nextval('account_number_seq') AS first_value, " +
+                     "(SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() " +
+                     "AND sequencename = 'account_number_seq') AS block_size";
+        
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            if (rs.next()) {
+                long[] block = {rs.getLong("first_value"), rs.getLong("block_size")};
+                conn.commit();
+                return block;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reserving account numbers: " + e.getMessage());
         }
         return null;
     }
@@ -59,7 +291,9 @@ public class BankAccountDAO {
      * Create new bank account
      */
     public boolean createAccount(BankAccount account) {
-        String sql = "INSERT INTO bank_accounts (account_number, holder_name, account_type, balance, minimum_balance, interest_rate) VALUES (?, ?, ?, ?, ?, ?)";
+        // The initial balance is also the opening balance reconciliation starts from
+        String sql = "INSERT INTO bank_accounts (account_number, holder_name, account_type, balance, minimum_balance, interest_rate, currency, opening_balance, " +
+                     "loan_principal, loan_term_months, loan_start_date, last_accrual_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -68,57 +302,214 @@ public class BankAccountDAO {
             pstmt.setString(2, account.getHolderName());
             pstmt.setString(3, account.getAccountType());
             pstmt.setDouble(4, account.getBalance());
-            
-            if (account instanceof SavingsAccount) {
-                pstmt.setDouble(5, 500.0); // Minimum balance for savings
-                pstmt.setDouble(6, 2.5);   // Interest rate for savings
-            } else if (account instanceof CurrentAccount) {
-                pstmt.setDouble(5, 0.0);   // No minimum balance for current
-                pstmt.setDouble(6, 0.0);   // No interest for current
+            pstmt.setDouble(5, minimumBalanceOf(account));
+            pstmt.setDouble(6, interestRateOf(account));
+            pstmt.setString(7, account.getCurrency());
+            pstmt.setDouble(8, account.getBalance());
+            if (account instanceof LoanAccount) {
+                LoanAccount loan = (LoanAccount) account;
+                pstmt.setDouble(9, loan.getPrincipal());
+                pstmt.setInt(10, loan.getTermMonths());
+                pstmt.setDate(11, Date.valueOf(loan.getStartDate()));
+                pstmt.setDate(12, Date.valueOf(loan.getLastAccrualDate()));
             } else {
-                pstmt.setDouble(5, 0.0);
-                pstmt.setDouble(6, 0.0);
+                pstmt.setNull(9, Types.DECIMAL);
+                pstmt.setNull(10, Types.INTEGER);
+                pstmt.setNull(11, Types.DATE);
+                pstmt.setNull(12, Types.DATE);
             }
             
-            int affectedRows = pstmt.executeUpdate();
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
             conn.commit();
-            return affectedRows > 0;
             
         } catch (SQLException e) {
             System.err.println("Error creating account: " + e.getMessage());
+            return false;
         }
-        return false;
+        // Read back once the connection is returned, with any linked customer's contact
+        AccountSearchIndex.getInstance().refresh(this, List.of(account.getAccountNumber()));
+        return true;
     }
     
     /**
-     * Update account balance
+     * Insert accounts in one statement on the caller's connection without
+     * committing, skipping any whose account number is already taken (in the
+     * table or earlier in the list). Returns the account numbers inserted.
      */
-    public boolean updateBalance(String accountNumber, double newBalance) {
-        String sql = "UPDATE bank_accounts SET balance = ?, updated_at = CURRENT_TIMESTAMP WHERE account_number = ?";
+    public Set<String> createAccountsIfAbsent(Connection conn, List<BankAccount> accounts) throws SQLException {
+        String sql = "INSERT INTO bank_accounts (account_number, holder_name, account_type, balance, minimum_balance, interest_rate, currency, opening_balance) " +
+                     "SELECT a.account_number, a.holder_name, a.account_type, a.balance_cents / 100.0, a.minimum_balance, a.interest_rate, a.currency, a.balance_cents / 100.0 " +
+                     "FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::bigint[], ?::numeric[], ?::numeric[], ?::varchar[]) " +
+                     "AS a(account_number, holder_name, account_type, balance_cents, minimum_balance, interest_rate, currency) " +
+                     "ON CONFLICT (account_number) DO NOTHING RETURNING account_number";
+        
+        int count = accounts.size();
+        String[] accountNumbers = new String[count];
+        String[] holderNames = new String[count];
+        String[] types = new String[count];
+        Long[] balanceCents = new Long[count];
+        Double[] minimumBalances = new Double[count];
+        Double[] interestRates = new Double[count];
+        String[] currencies = new String[count];
+        for (int i = 0; i < count; i++) {
+            BankAccount account = accounts.get(i);
+            accountNumbers[i] = account.getAccountNumber();
+            holderNames[i] = account.getHolderName();
+            types[i] = account.getAccountType();
+            balanceCents[i] = Math.round(account.getBalance() * 100);
+            minimumBalances[i] = minimumBalanceOf(account);
+            interestRates[i] = interestRateOf(account);
+            currencies[i] = account.getCurrency();
+        }
+        
+        Set<String> inserted = new HashSet<>(count * 2);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", accountNumbers));
+            pstmt.setArray(2, conn.createArrayOf("varchar", holderNames));
+            pstmt.setArray(3, conn.createArrayOf("varchar", types));
+            pstmt.setArray(4, conn.createArrayOf("bigint", balanceCents));
+            pstmt.setArray(5, conn.createArrayOf("numeric", minimumBalances));
+            pstmt.setArray(6, conn.createArrayOf("numeric", interestRates));
+            pstmt.setArray(7, conn.createArrayOf("varchar", currencies));
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    inserted.add(rs.getString("account_number"));
+                }
+            }
+        }
+        return inserted;
+    }
+    
+    // Minimum balance and interest rate stored for each account type
+    private static double minimumBalanceOf(BankAccount account) {
+        return account instanceof SavingsAccount ? 500.0 : 0.0;
+    }
+    
+    private static double interestRateOf(BankAccount account) {
+        if (account instanceof LoanAccount) {
+            return ((LoanAccount) account).getInterestRate();
+        }
+        return account instanceof SavingsAccount ? 2.5 : 0.0;
+    }
+    
+    /**
+     * Change an account's holder name
+     */
+    public boolean updateHolderName(String accountNumber, String holderName) {
+        String sql = "UPDATE bank_accounts SET holder_name = ?, updated_at = CURRENT_TIMESTAMP WHERE account_number = ?";
         
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setDouble(1, newBalance);
+            pstmt.setString(1, holderName);
             pstmt.setString(2, accountNumber);
             
-            int affectedRows = pstmt.executeUpdate();
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
             conn.commit();
-            return affectedRows > 0;
             
         } catch (SQLException e) {
-            System.err.println("Error updating balance: " + e.getMessage());
+            System.err.println("Error updating holder name: " + e.getMessage());
+            return false;
+        }
+        AccountSearchIndex.getInstance().refresh(this, List.of(accountNumber));
+        return true;
+    }
+    
+    /**
+     * Compare-and-set the account balance on the caller's connection without
+     * committing. Returns false if the row's version no longer matches the one
+     * read, i.e. another writer updated the account in between.
+     */
+    public boolean updateBalance(Connection conn, String accountNumber, double newBalance, long expectedVersion) throws SQLException {
+        String sql = "UPDATE bank_accounts SET balance = ?, version = version + 1, updated_at = CURRENT_TIMESTAMP " +
+                     "WHERE account_number = ? AND version = ?";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDouble(1, newBalance);
+            pstmt.setString(2, accountNumber);
+            pstmt.setLong(3, expectedVersion);
+            
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+    
+    /**
+     * Add signed amounts, in cents, to account balances in one statement on the
+     * caller's connection without committing. Bumps each version so concurrent
+     * compare-and-set writers see the change.
+     */
+    public void adjustBalances(Connection conn, Map<String, Long> deltaCents) throws SQLException {
+        if (deltaCents.isEmpty()) {
+            return;
+        }
+        // Sorted so concurrent callers lock rows in the same order
+        String[] accountNumbers = deltaCents.keySet().toArray(new String[0]);
+        Arrays.sort(accountNumbers);
+        Long[] deltas = new Long[accountNumbers.length];
+        for (int i = 0; i < accountNumbers.length; i++) {
+            deltas[i] = deltaCents.get(accountNumbers[i]);
+        }
+        
+        String sql = "UPDATE bank_accounts ba SET balance = ba.balance + d.delta_cents / 100.0, version = ba.version + 1, updated_at = CURRENT_TIMESTAMP " +
+                     "FROM unnest(?::varchar[], ?::bigint[]) AS d(account_number, delta_cents) " +
+                     "WHERE ba.account_number = d.account_number";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", accountNumbers));
+            pstmt.setArray(2, conn.createArrayOf("bigint", deltas));
+            pstmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Whether an account still has the given number of balance buckets at the
+     * given version, i.e. hot mode was not switched since it was read
+     */
+    public boolean hasBalanceBuckets(Connection conn, String accountNumber, int buckets, long version) throws SQLException {
+        String sql = "SELECT 1 FROM bank_accounts WHERE account_number = ? AND balance_buckets = ? AND version = ?";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, accountNumber);
+            pstmt.setInt(2, buckets);
+            pstmt.setLong(3, version);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+    
+    /**
+     * Compare-and-set the number of balance buckets and move balanceDeltaCents
+     * onto the main row, used when switching hot-account mode on or off
+     */
+    public boolean updateBalanceBuckets(Connection conn, String accountNumber, int buckets, long balanceDeltaCents, long expectedVersion) throws SQLException {
+        String sql = "UPDATE bank_accounts SET balance_buckets = ?, balance = balance + ?, version = version + 1, updated_at = CURRENT_TIMESTAMP " +
+                     "WHERE account_number = ? AND version = ?";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, buckets);
+            pstmt.setBigDecimal(2, BigDecimal.valueOf(balanceDeltaCents, 2));
+            pstmt.setString(3, accountNumber);
+            pstmt.setLong(4, expectedVersion);
+            
+            return pstmt.executeUpdate() > 0;
         }
-        return false;
     }
     
     /**
      * Get account summary statistics
      */
     public AccountSummary getAccountSummary() {
-        String sql = "SELECT COUNT(*) as total_accounts, SUM(balance) as total_balance FROM bank_accounts WHERE status = 'ACTIVE'";
+        String sql = "SELECT COUNT(*) as total_accounts, SUM(" + TOTAL_BALANCE + ") as total_balance " +
+                     "FROM bank_accounts ba WHERE ba.status = 'ACTIVE'";
         
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -137,20 +528,42 @@ public class BankAccountDAO {
     /**
      * Map database result set to BankAccount object
      */
-    private BankAccount mapResultSetToBankAccount(ResultSet rs) throws SQLException {
+    static BankAccount mapResultSetToBankAccount(ResultSet rs) throws SQLException {
         String accountType = rs.getString("account_type");
         String accountNumber = rs.getString("account_number");
         String holderName = rs.getString("holder_name");
-        double balance = rs.getDouble("balance");
+        double balance = rs.getDouble("total_balance");
         
+        BankAccount account;
         if ("SAVINGS".equals(accountType)) {
-            return new SavingsAccount(accountNumber, holderName, balance);
+            account = new SavingsAccount(accountNumber, holderName, balance);
         } else if ("CURRENT".equals(accountType)) {
-            return new CurrentAccount(accountNumber, holderName, balance);
+            account = new CurrentAccount(accountNumber, holderName, balance);
+        } else if ("LOAN".equals(accountType)) {
+            LoanAccount loan = new LoanAccount(accountNumber, holderName, rs.getDouble("loan_principal"),
+                    rs.getDouble("interest_rate"), rs.getInt("loan_term_months"), rs.getDate("loan_start_date").toLocalDate());
+            loan.setBalance(balance);
+            loan.setAccruedInterest(rs.getDouble("accrued_interest"));
+            Date lastAccrual = rs.getDate("last_accrual_date");
+            if (lastAccrual != null) {
+                loan.setLastAccrualDate(lastAccrual.toLocalDate());
+            }
+            account = loan;
         } else {
-            // Default to savings account
-            return new SavingsAccount(accountNumber, holderName, balance);
+            throw new SQLException("Unknown account type '" + accountType + "' for account " + accountNumber);
         }
+        String currency = rs.getString("currency");
+        account.setCurrency(currency != null ? currency : BankAccount.DEFAULT_CURRENCY);
+        account.setVersion(rs.getLong("version"));
+        account.setBalanceBuckets(rs.getInt("balance_buckets"));
+        return account;
+    }
+    
+    /**
+     * Callback receiving one searchable account row at a time
+     */
+    public interface SearchDocumentHandler {
+        void accept(String accountNumber, String holderName, String contact);
     }
     
     /**
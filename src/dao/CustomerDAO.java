@@ -0,0 +1,359 @@
+package dao;
+
+import model.BankAccount;
+import model.banking.AccountHolder;
+import model.banking.Customer;
+import model.banking.CustomerProfile;
+import util.DatabaseConfig;
+import util.ReplicaRouter;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data Access Object for customers (KYC) and their links to accounts.
+ *
+ * Related rows are loaded a set at a time (= ANY(?)), never one query per
+ * row, and through a {@link LoadContext} so each customer and account is read
+ * and built once per request. Reads go through DatabaseConfig.getReadConnection();
+ * writes are recorded with {@link ReplicaRouter} so the writer's next reads
+ * stay on the primary.
+ */
+public class CustomerDAO {
+
+    private final BankAccountDAO bankAccountDAO = new BankAccountDAO();
+
+    private static final String CUSTOMER_COLUMNS = "c.id, c.customer_id, c.first_name, c.last_name, c.email, " +
+            "c.phone, c.address, c.date_of_birth, c.kyc_status, c.created_at";
+
+    /**
+     * Get a customer by customer ID
+     */
+    public Customer getCustomerByCustomerId(String customerId) {
+        String sql = "SELECT " + CUSTOMER_COLUMNS + " FROM customers c WHERE c.customer_id = ?";
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, customerId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToCustomer(rs);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error getting customer: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Create a new customer; sets the generated id on success
+     */
+    public boolean createCustomer(Customer customer) {
+        String sql = "INSERT INTO customers (customer_id, first_name, last_name, email, phone, address, date_of_birth, kyc_status) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, customer.getCustomerId());
+            pstmt.setString(2, customer.getFirstName());
+            pstmt.setString(3, customer.getLastName());
+            pstmt.setString(4, customer.getEmail());
+            pstmt.setString(5, customer.getPhone());
+            pstmt.setString(6, customer.getAddress());
+            pstmt.setObject(7, customer.getDateOfBirth() != null ? Date.valueOf(customer.getDateOfBirth()) : null, Types.DATE);
+            pstmt.setString(8, customer.getKycStatus().name());
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    conn.rollback();
+                    return false;
+                }
+                customer.setId(rs.getInt("id"));
+            }
+            conn.commit();
+            ReplicaRouter.recordWrite();
+            return true;
+
+        } catch (SQLException e) {
+            System.err.println("Error creating customer: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Record the outcome of a KYC check
+     */
+    public boolean updateKycStatus(String customerId, Customer.KycStatus status) {
+        String sql = "UPDATE customers SET kyc_status = ?, updated_at = CURRENT_TIMESTAMP WHERE customer_id = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, status.name());
+            pstmt.setString(2, customerId);
+
+            int affectedRows = pstmt.executeUpdate();
+            conn.commit();
+            ReplicaRouter.recordWrite();
+            return affectedRows > 0;
+
+        } catch (SQLException e) {
+            System.err.println("Error updating KYC status: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Link a customer to an account
+     */
+    public boolean linkAccount(String customerId, String accountNumber, AccountHolder.Relationship relationship) {
+        String sql = "INSERT INTO customer_accounts (customer_id, account_id, relationship_type) " +
+                    "SELECT c.id, ba.id, ? FROM customers c, bank_accounts ba " +
+                    "WHERE c.customer_id = ? AND ba.account_number = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, relationship.name());
+            pstmt.setString(2, customerId);
+            pstmt.setString(3, accountNumber);
+
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            conn.commit();
+            ReplicaRouter.recordWrite();
+
+        } catch (SQLException e) {
+            System.err.println("Error linking customer to account: " + e.getMessage());
+            return false;
+        }
+        // The customer's email and phone now find the account
+        AccountSearchIndex.getInstance().refresh(bankAccountDAO, List.of(accountNumber));
+        return true;
+    }
+
+    /**
+     * Change a customer's email and phone
+     */
+    public boolean updateContact(String customerId, String email, String phone) {
+        String sql = "UPDATE customers SET email = ?, phone = ?, updated_at = CURRENT_TIMESTAMP WHERE customer_id = ?";
+        String accountsSql = "SELECT ba.account_number FROM customer_accounts ca " +
+                    "JOIN customers c ON c.id = ca.customer_id " +
+                    "JOIN bank_accounts ba ON ba.id = ca.account_id " +
+                    "WHERE c.customer_id = ?";
+        List<String> accountNumbers = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, email);
+                pstmt.setString(2, phone);
+                pstmt.setString(3, customerId);
+                if (pstmt.executeUpdate() == 0) {
+                    return false;
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(accountsSql)) {
+                pstmt.setString(1, customerId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        accountNumbers.add(rs.getString("account_number"));
+                    }
+                }
+            }
+            conn.commit();
+            ReplicaRouter.recordWrite();
+
+        } catch (SQLException e) {
+            System.err.println("Error updating customer contact: " + e.getMessage());
+            return false;
+        }
+        // Linked accounts are found by the new email and phone, not the old
+        if (!accountNumbers.isEmpty()) {
+            AccountSearchIndex.getInstance().refresh(bankAccountDAO, accountNumbers);
+        }
+        return true;
+    }
+
+    /**
+     * Get customers by id in one query, skipping those the context already
+     * holds. Returns the ones found, in the order asked.
+     */
+    public List<Customer> getCustomersByIds(Collection<Integer> ids, LoadContext context) {
+        List<Integer> missing = context.missingCustomers(ids);
+        if (!missing.isEmpty()) {
+            try (Connection conn = DatabaseConfig.getReadConnection()) {
+                loadCustomers(conn, missing, context);
+            } catch (SQLException e) {
+                System.err.println("Error getting customers: " + e.getMessage());
+            }
+        }
+
+        List<Customer> customers = new ArrayList<>();
+        for (Integer id : ids) {
+            Customer customer = context.getCustomer(id);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        return customers;
+    }
+
+    /**
+     * Get the holders of a page of accounts in one query, keyed by account
+     * number. Accounts with no linked customer are absent from the map.
+     */
+    public Map<String, List<AccountHolder>> getHoldersForAccounts(Collection<String> accountNumbers, LoadContext context) {
+        if (accountNumbers.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try (Connection conn = DatabaseConfig.getReadConnection()) {
+            return loadHolders(conn, accountNumbers, context);
+        } catch (SQLException e) {
+            System.err.println("Error getting account holders: " + e.getMessage());
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Load a customer, every account they are linked to and every holder of
+     * those accounts: at most three queries, however many accounts there are.
+     * Returns null if there is no such customer.
+     */
+    public CustomerProfile getCustomerProfile(String customerId, LoadContext context) {
+        try (Connection conn = DatabaseConfig.getReadConnection()) {
+            Customer customer = context.getCustomerByCustomerId(customerId);
+            if (customer == null) {
+                customer = loadCustomer(conn, customerId, context);
+                if (customer == null) {
+                    return null;
+                }
+            }
+
+            List<BankAccount> accounts = loadAccounts(conn, customer.getId(), context);
+            List<String> accountNumbers = new ArrayList<>(accounts.size());
+            for (BankAccount account : accounts) {
+                accountNumbers.add(account.getAccountNumber());
+            }
+            Map<String, List<AccountHolder>> holders = accountNumbers.isEmpty()
+                    ? Collections.emptyMap()
+                    : loadHolders(conn, accountNumbers, context);
+            return new CustomerProfile(customer, accounts, holders);
+
+        } catch (SQLException e) {
+            System.err.println("Error getting customer profile: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private Customer loadCustomer(Connection conn, String customerId, LoadContext context) throws SQLException {
+        String sql = "SELECT " + CUSTOMER_COLUMNS + " FROM customers c WHERE c.customer_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, customerId);
+            context.countQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? context.register(mapResultSetToCustomer(rs)) : null;
+            }
+        }
+    }
+
+    private void loadCustomers(Connection conn, List<Integer> ids, LoadContext context) throws SQLException {
+        String sql = "SELECT " + CUSTOMER_COLUMNS + " FROM customers c WHERE c.id = ANY(?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            context.countQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    context.register(mapResultSetToCustomer(rs));
+                }
+            }
+        }
+    }
+
+    private List<BankAccount> loadAccounts(Connection conn, int customerId, LoadContext context) throws SQLException {
+        String sql = "SELECT " + BankAccountDAO.ACCOUNT_COLUMNS + " FROM bank_accounts ba " +
+                    "WHERE ba.id IN (SELECT ca.account_id FROM customer_accounts ca WHERE ca.customer_id = ?) " +
+                    "ORDER BY ba.created_at";
+        List<BankAccount> accounts = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, customerId);
+            context.countQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(context.register(BankAccountDAO.mapResultSetToBankAccount(rs)));
+                }
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Holders joined with their customer rows; a customer linked to several of
+     * the accounts comes back on several rows but is built once
+     */
+    private Map<String, List<AccountHolder>> loadHolders(Connection conn, Collection<String> accountNumbers,
+                                                         LoadContext context) throws SQLException {
+        String sql = "SELECT ba.account_number, ca.relationship_type, " + CUSTOMER_COLUMNS + " " +
+                    "FROM customer_accounts ca " +
+                    "JOIN bank_accounts ba ON ba.id = ca.account_id " +
+                    "JOIN customers c ON c.id = ca.customer_id " +
+                    "WHERE ba.account_number = ANY(?) " +
+                    "ORDER BY ba.account_number, ca.relationship_type, c.id";
+        Map<String, List<AccountHolder>> holders = new LinkedHashMap<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", accountNumbers.toArray()));
+            context.countQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Customer customer = context.getCustomer(rs.getInt("id"));
+                    if (customer == null) {
+                        customer = context.register(mapResultSetToCustomer(rs));
+                    }
+                    String accountNumber = rs.getString("account_number");
+                    holders.computeIfAbsent(accountNumber, k -> new ArrayList<>()).add(new AccountHolder(
+                            customer, accountNumber, AccountHolder.Relationship.valueOf(rs.getString("relationship_type"))));
+                }
+            }
+        }
+        return holders;
+    }
+
+    /**
+     * Map database result set to Customer object
+     */
+    private Customer mapResultSetToCustomer(ResultSet rs) throws SQLException {
+        Customer customer = new Customer();
+        customer.setId(rs.getInt("id"));
+        customer.setCustomerId(rs.getString("customer_id"));
+        customer.setFirstName(rs.getString("first_name"));
+        customer.setLastName(rs.getString("last_name"));
+        customer.setEmail(rs.getString("email"));
+        customer.setPhone(rs.getString("phone"));
+        customer.setAddress(rs.getString("address"));
+
+        Date dateOfBirth = rs.getDate("date_of_birth");
+        if (dateOfBirth != null) {
+            customer.setDateOfBirth(dateOfBirth.toLocalDate());
+        }
+        String kycStatus = rs.getString("kyc_status");
+        if (kycStatus != null) {
+            customer.setKycStatus(Customer.KycStatus.valueOf(kycStatus));
+        }
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        if (createdAt != null) {
+            customer.setCreatedAt(createdAt.toLocalDateTime());
+        }
+        return customer;
+    }
+}
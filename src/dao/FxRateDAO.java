@@ -0,0 +1,58 @@
+package dao;
+
+import util.DatabaseConfig;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Data Access Object for exchange rates
+ */
+public class FxRateDAO {
+
+    /**
+     * Get every rate against the base currency, keyed by currency code.
+     * Returns null if the table could not be read.
+     */
+    public Map<String, BigDecimal> getAllRates() {
+        String sql = "SELECT currency_code, rate_to_base FROM fx_rates";
+        Map<String, BigDecimal> rates = new HashMap<>();
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                rates.put(rs.getString("currency_code").trim().toUpperCase(), rs.getBigDecimal("rate_to_base"));
+            }
+            return rates;
+        } catch (SQLException e) {
+            System.err.println("Error getting exchange rates: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Insert or update the rate for a currency
+     */
+    public boolean saveRate(String currencyCode, BigDecimal rateToBase) {
+        String sql = "INSERT INTO fx_rates (currency_code, rate_to_base) VALUES (?, ?) " +
+                    "ON CONFLICT (currency_code) DO UPDATE SET rate_to_base = EXCLUDED.rate_to_base, updated_at = CURRENT_TIMESTAMP";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, currencyCode);
+            pstmt.setBigDecimal(2, rateToBase);
+
+            int affectedRows = pstmt.executeUpdate();
+            conn.commit();
+            return affectedRows > 0;
+
+        } catch (SQLException e) {
+            System.err.println("Error saving exchange rate: " + e.getMessage());
+        }
+        return false;
+    }
+}
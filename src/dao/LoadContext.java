@@ -0,0 +1,82 @@
+package dao;
+
+import model.BankAccount;
+import model.banking.Customer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Identity map for one request or screen. Every customer and account loaded
+ * through it is kept once, so a customer who holds several accounts is one
+ * object, and ids already loaded are not queried again.
+ *
+ * Not thread-safe; create one per request and drop it afterwards.
+ */
+public class LoadContext {
+
+    private final Map<Integer, Customer> customersById = new HashMap<>();
+    private final Map<String, Customer> customersByCustomerId = new HashMap<>();
+    private final Map<String, BankAccount> accountsByNumber = new HashMap<>();
+    private int queryCount = 0;
+
+    /**
+     * Keep a freshly read customer, or return the one already loaded
+     */
+    public Customer register(Customer customer) {
+        Customer existing = customersById.putIfAbsent(customer.getId(), customer);
+        if (existing != null) {
+            return existing;
+        }
+        customersByCustomerId.put(customer.getCustomerId(), customer);
+        return customer;
+    }
+
+    /**
+     * Keep a freshly read account, or return the one already loaded
+     */
+    public BankAccount register(BankAccount account) {
+        BankAccount existing = accountsByNumber.putIfAbsent(account.getAccountNumber(), account);
+        return existing != null ? existing : account;
+    }
+
+    public Customer getCustomer(int id) {
+        return customersById.get(id);
+    }
+
+    public Customer getCustomerByCustomerId(String customerId) {
+        return customersByCustomerId.get(customerId);
+    }
+
+    public BankAccount getAccount(String accountNumber) {
+        return accountsByNumber.get(accountNumber);
+    }
+
+    /**
+     * The ids not loaded yet, without duplicates
+     */
+    public List<Integer> missingCustomers(Collection<Integer> ids) {
+        Set<Integer> missing = new LinkedHashSet<>();
+        for (Integer id : ids) {
+            if (id != null && !customersById.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        return new ArrayList<>(missing);
+    }
+
+    /**
+     * Number of queries the DAOs ran on behalf of this context
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+
+    void countQuery() {
+        queryCount++;
+    }
+}
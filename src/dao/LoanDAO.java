@@ -0,0 +1,92 @@
+package dao;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.time.LocalDate;
+
+/**
+ * Data Access Object for loan accrual.
+ *
+ * Loans are streamed and updated in bulk on a connection the caller owns, so
+ * the nightly accrual job can read the whole portfolio in one pass and write
+ * it back in a few large batches. Amounts are returned as cents and accrued
+ * interest as millionths of the currency unit.
+ */
+public class LoanDAO {
+
+    // Rows per round trip when streaming loans
+    private static final int FETCH_SIZE = 10000;
+
+    /**
+     * Callback for one active loan
+     */
+    public interface LoanHandler {
+        void accept(String accountNumber, long principalCents, long outstandingCents, double interestRate,
+                    int termMonths, LocalDate startDate, long accruedMicros, LocalDate lastAccrualDate);
+    }
+
+    /**
+     * Stream every active loan; the outstanding amount is the negated balance
+     * (including any hot-account buckets), never below zero
+     */
+    public void streamLoans(Connection conn, LoanHandler handler) throws SQLException {
+        String sql = "SELECT a.account_number, a.loan_principal, a.interest_rate, a.loan_term_months, a.loan_start_date, " +
+                     "a.accrued_interest, COALESCE(a.last_accrual_date, a.loan_start_date) AS last_accrual_date, " +
+                     "GREATEST(-(a.balance + COALESCE(b.total, 0)), 0) AS outstanding " +
+                     "FROM bank_accounts a " +
+                     "LEFT JOIN (SELECT account_number, SUM(balance) AS total FROM account_balance_buckets " +
+                     "GROUP BY account_number) b ON b.account_number = a.account_number " +
+                     "WHERE a.account_type = 'LOAN' AND a.status = 'ACTIVE' ORDER BY a.id";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(rs.getString("account_number"),
+                            scaled(rs.getBigDecimal("loan_principal"), 2),
+                            scaled(rs.getBigDecimal("outstanding"), 2),
+                            rs.getDouble("interest_rate"),
+                            rs.getInt("loan_term_months"),
+                            rs.getDate("loan_start_date").toLocalDate(),
+                            scaled(rs.getBigDecimal("accrued_interest"), 6),
+                            rs.getDate("last_accrual_date").toLocalDate());
+                }
+            }
+        }
+    }
+
+    /**
+     * Add accrued interest to loans and move their accrual date to asOf, on
+     * the caller's connection without committing. A loan is only updated if
+     * its accrual date is still the one the interest was computed from
+     * (accruedFromDays, as epoch days), so a concurrent or repeated run never
+     * accrues a day twice. Returns the number of loans updated.
+     */
+    public int addAccruedInterest(Connection conn, String[] accountNumbers, long[] interestMicros,
+                                  int[] accruedFromDays, LocalDate asOf) throws SQLException {
+        String sql = "UPDATE bank_accounts ba SET accrued_interest = ba.accrued_interest + a.interest_micros * 0.000001, " +
+                     "last_accrual_date = ? " +
+                     "FROM unnest(?::varchar[], ?::bigint[], ?::int[]) AS a(account_number, interest_micros, accrued_from) " +
+                     "WHERE ba.account_number = a.account_number AND ba.account_type = 'LOAN' " +
+                     "AND COALESCE(ba.last_accrual_date, ba.loan_start_date) = DATE '1970-01-01' + a.accrued_from";
+
+        Long[] micros = new Long[interestMicros.length];
+        Integer[] fromDays = new Integer[accruedFromDays.length];
+        for (int i = 0; i < micros.length; i++) {
+            micros[i] = interestMicros[i];
+            fromDays[i] = accruedFromDays[i];
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(asOf));
+            pstmt.setArray(2, conn.createArrayOf("varchar", accountNumbers));
+            pstmt.setArray(3, conn.createArrayOf("bigint", micros));
+            pstmt.setArray(4, conn.createArrayOf("integer", fromDays));
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static long scaled(BigDecimal amount, int decimals) {
+        return amount.movePointRight(decimals).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
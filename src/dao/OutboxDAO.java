@@ -0,0 +1,195 @@
+package dao;
+
+import model.banking.OutboxEvent;
+import model.banking.Transaction;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object for the transactional outbox (outbox_events).
+ *
+ * Events are appended on the posting's connection, so they commit or roll
+ * back with the balance change they describe. The relay claims them a batch
+ * at a time and deletes them once delivered, in the same database
+ * transaction; if delivery fails or the relay dies, the rows are still there
+ * and are delivered again (at least once).
+ *
+ * Ids are taken when a row is inserted but rows become visible when they
+ * commit, so per-account order relies on one posting to an account at a time
+ * between append and commit. A normal account's bank_accounts row lock gives
+ * that; hot accounts post to their buckets without it, so {@link #append}
+ * takes a per-account advisory lock for them instead.
+ */
+public class OutboxDAO {
+
+    // Arbitrary first key of the advisory locks that give one relay a partition
+    private static final int PARTITION_LOCK_KEY = 0x0b0e;
+    // First key of the advisory locks that order a hot account's events
+    private static final int HOT_ACCOUNT_LOCK_KEY = 0x0b0f;
+
+    /**
+     * Append events on the caller's connection without committing; ids follow
+     * the list order. Each event's balance is read from the account as this
+     * transaction sees it; under the hot-account lock that includes every
+     * earlier event's change, so balances follow event order for hot accounts
+     * too.
+     */
+    public void append(Connection conn, List<OutboxEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO outbox_events (account_number, partition_key, transaction_id, transaction_type, " +
+                     "counterparty_account_number, amount, currency, balance) " +
+                     "SELECT e.account_number, e.partition_key, e.transaction_id, e.transaction_type, e.counterparty, " +
+                     "e.amount_cents / 100.0, e.currency, ba.balance + COALESCE((SELECT SUM(b.balance) " +
+                     "FROM account_balance_buckets b WHERE b.account_number = ba.account_number), 0) " +
+                     "FROM unnest(?::varchar[], ?::int[], ?::varchar[], ?::varchar[], ?::varchar[], ?::bigint[], ?::varchar[]) " +
+                     "WITH ORDINALITY AS e(account_number, partition_key, transaction_id, transaction_type, counterparty, amount_cents, currency, ord) " +
+                     "LEFT JOIN bank_accounts ba ON ba.account_number = e.account_number " +
+                     "ORDER BY e.ord";
+
+        int count = events.size();
+        String[] accountNumbers = new String[count];
+        Integer[] partitions = new Integer[count];
+        String[] transactionIds = new String[count];
+        String[] types = new String[count];
+        String[] counterparties = new String[count];
+        Long[] amountCents = new Long[count];
+        String[] currencies = new String[count];
+        for (int i = 0; i < count; i++) {
+            OutboxEvent event = events.get(i);
+            accountNumbers[i] = event.getAccountNumber();
+            partitions[i] = event.getPartition();
+            transactionIds[i] = event.getTransactionId();
+            types[i] = event.getTransactionType() != null ? event.getTransactionType().name() : null;
+            counterparties[i] = event.getCounterpartyAccountNumber();
+            amountCents[i] = event.getAmountCents();
+            currencies[i] = event.getCurrency();
+        }
+
+        lockHotAccounts(conn, accountNumbers);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", accountNumbers));
+            pstmt.setArray(2, conn.createArrayOf("integer", partitions));
+            pstmt.setArray(3, conn.createArrayOf("varchar", transactionIds));
+            pstmt.setArray(4, conn.createArrayOf("varchar", types));
+            pstmt.setArray(5, conn.createArrayOf("varchar", counterparties));
+            pstmt.setArray(6, conn.createArrayOf("bigint", amountCents));
+            pstmt.setArray(7, conn.createArrayOf("varchar", currencies));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Hold the hot accounts among the given ones until the transaction ends,
+     * in account number order. A separate statement, so the insert's snapshot
+     * is taken after the previous holder committed.
+     */
+    private void lockHotAccounts(Connection conn, String[] accountNumbers) throws SQLException {
+        String sql = "SELECT pg_advisory_xact_lock(?, hashtext(ba.account_number)) FROM bank_accounts ba " +
+                     "WHERE ba.account_number = ANY(?) AND ba.balance_buckets > 0 ORDER BY ba.account_number";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, HOT_ACCOUNT_LOCK_KEY);
+            pstmt.setArray(2, conn.createArrayOf("varchar", accountNumbers));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    // Each row is one lock taken
+                }
+            }
+        }
+    }
+
+    /**
+     * Lock the oldest undelivered events on the caller's connection (which
+     * must not be in auto-commit) until it commits or rolls back.
+     *
+     * Only partitions whose advisory lock this transaction gets are read, so
+     * with several relays each partition, and so each account, is delivered
+     * by one of them at a time and in id order. Rows locked by anyone else are
+     * skipped rather than waited for.
+     */
+    public ClaimedBatch claim(Connection conn, int limit) throws SQLException {
+        String lockSql = "SELECT p FROM generate_series(0, ?) p WHERE pg_try_advisory_xact_lock(?, p)";
+        String sql = "SELECT o.*, (EXTRACT(EPOCH FROM clock_timestamp() - o.created_at) * 1000)::bigint AS age_millis " +
+                     "FROM outbox_events o WHERE o.partition_key = ANY(?) " +
+                     "ORDER BY o.id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+        List<Integer> partitions = new ArrayList<>(OutboxEvent.PARTITIONS);
+        try (PreparedStatement pstmt = conn.prepareStatement(lockSql)) {
+            pstmt.setInt(1, OutboxEvent.PARTITIONS - 1);
+            pstmt.setInt(2, PARTITION_LOCK_KEY);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(rs.getInt(1));
+                }
+            }
+        }
+
+        List<OutboxEvent> events = new ArrayList<>();
+        long oldestAgeMillis = 0;
+        if (partitions.isEmpty()) {
+            return new ClaimedBatch(events, oldestAgeMillis);
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("integer", partitions.toArray()));
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    events.add(mapResultSetToEvent(rs));
+                    oldestAgeMillis = Math.max(oldestAgeMillis, rs.getLong("age_millis"));
+                }
+            }
+        }
+        return new ClaimedBatch(events, oldestAgeMillis);
+    }
+
+    /**
+     * Delete delivered events on the caller's connection without committing
+     */
+    public void delete(Connection conn, List<OutboxEvent> events) throws SQLException {
+        Long[] ids = new Long[events.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = events.get(i).getId();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM outbox_events WHERE id = ANY(?)")) {
+            pstmt.setArray(1, conn.createArrayOf("bigint", ids));
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static OutboxEvent mapResultSetToEvent(ResultSet rs) throws SQLException {
+        String type = rs.getString("transaction_type");
+        OutboxEvent event = new OutboxEvent(rs.getString("account_number"), rs.getString("transaction_id"),
+                type != null ? Transaction.TransactionType.valueOf(type) : null,
+                rs.getString("counterparty_account_number"),
+                rs.getBigDecimal("amount").movePointRight(2).longValueExact(), rs.getString("currency"));
+        event.setId(rs.getLong("id"));
+        BigDecimal balance = rs.getBigDecimal("balance");
+        event.setBalanceCents(balance != null ? balance.movePointRight(2).longValueExact() : null);
+        event.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        return event;
+    }
+
+    /**
+     * Inner class for events claimed by one relay transaction
+     */
+    public static class ClaimedBatch {
+        private final List<OutboxEvent> events;
+        private final long oldestAgeMillis;
+
+        public ClaimedBatch(List<OutboxEvent> events, long oldestAgeMillis) {
+            this.events = events;
+            this.oldestAgeMillis = oldestAgeMillis;
+        }
+
+        public List<OutboxEvent> getEvents() { return events; }
+
+        /**
+         * How long the oldest event had waited when it was claimed
+         */
+        public long getOldestAgeMillis() { return oldestAgeMillis; }
+    }
+}
@@ -0,0 +1,387 @@
+package dao;
+
+import util.DatabaseConfig;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Data Access Object for ledger reconciliation.
+ *
+ * Scans run on connections the caller owns, inside one exported snapshot
+ * ({@link #exportSnapshot} on the first, {@link #importSnapshot} on the rest),
+ * so parallel range queries see exactly the same committed data. Amounts are
+ * summed by the database in DECIMAL and returned as cents.
+ *
+ * A completed transaction takes amount from from_account_number and credits
+ * to_account_number with converted_amount when it was converted, amount
+ * otherwise.
+ */
+public class ReconciliationDAO {
+
+    // Rows per round trip when streaming accounts or per-account sums
+    private static final int FETCH_SIZE = 10000;
+
+    // Net change per account of the completed transactions matching the row filter (%1$s)
+    private static final String NET_CHANGES =
+            "SELECT account_number, SUM(delta) AS net FROM (" +
+            " SELECT to_account_number AS account_number," +
+            "  CASE WHEN converted_currency IS NOT NULL THEN converted_amount ELSE amount END AS delta" +
+            " FROM transactions WHERE status = 'COMPLETED' AND to_account_number IS NOT NULL AND %1$s" +
+            " UNION ALL" +
+            " SELECT from_account_number, -amount" +
+            " FROM transactions WHERE status = 'COMPLETED' AND from_account_number IS NOT NULL AND %1$s" +
+            ") d GROUP BY account_number";
+
+    /**
+     * Callback for one account's stored state
+     */
+    public interface AccountHandler {
+        /**
+         * @param openingCents opening balance, or null if never recorded
+         * @param storedCents balance plus any hot-account buckets
+         * @param checkpointCents expected balance at the last checkpoint, or null
+         */
+        void accept(String accountNumber, String currency, Long openingCents, long storedCents, Long checkpointCents);
+    }
+
+    /**
+     * Callback for one amount per account (a net change or a balance)
+     */
+    public interface NetHandler {
+        void accept(String accountNumber, long netCents);
+    }
+
+    /**
+     * Start a read-only REPEATABLE READ transaction on a connection opened
+     * without auto-commit and export its snapshot for other connections
+     */
+    public String exportSnapshot(Connection conn) throws SQLException {
+        beginSnapshotTransaction(conn);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT pg_export_snapshot()")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    /**
+     * Start a read-only transaction that sees the given exported snapshot;
+     * the exporting transaction must still be open
+     */
+    public void importSnapshot(Connection conn, String snapshotId) throws SQLException {
+        if (!snapshotId.matches("[0-9A-Fa-f-]+")) {
+            throw new SQLException("Invalid snapshot id " + snapshotId);
+        }
+        beginSnapshotTransaction(conn);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET TRANSACTION SNAPSHOT '" + snapshotId + "'");
+        }
+    }
+
+    /**
+     * Start a read-only REPEATABLE READ transaction without sharing it
+     */
+    public void beginSnapshotTransaction(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        conn.setReadOnly(true);
+    }
+
+    /**
+     * Highest transaction id visible, 0 if there are none
+     */
+    public long getMaxTransactionId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM transactions")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Highest id in (afterId, upToId] whose row was created at least
+     * settleSeconds before the snapshot was taken, or afterId if none.
+     * A database transaction still open when the snapshot was taken holds a
+     * lower id only if it has been open longer than that, so everything up to
+     * the returned id is final.
+     */
+    public long findSettledTransactionId(Connection conn, long afterId, long upToId, int settleSeconds) throws SQLException {
+        String sql = "SELECT id FROM transactions WHERE id > ? AND id <= ? " +
+                     "AND created_at <= now() - make_interval(secs => ?) ORDER BY id DESC LIMIT 1";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, afterId);
+            pstmt.setLong(2, upToId);
+            pstmt.setInt(3, settleSeconds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : afterId;
+            }
+        }
+    }
+
+    /**
+     * Stream every account with its stored balance (including hot-account
+     * buckets), opening balance and last checkpoint
+     */
+    public void streamAccounts(Connection conn, AccountHandler handler) throws SQLException {
+        String sql = "SELECT a.account_number, a.currency, a.opening_balance, " +
+                     "COALESCE(a.balance, 0) + COALESCE(b.total, 0) AS stored_balance, c.expected_balance " +
+                     "FROM bank_accounts a " +
+                     "LEFT JOIN (SELECT account_number, SUM(balance) AS total FROM account_balance_buckets " +
+                     "GROUP BY account_number) b ON b.account_number = a.account_number " +
+                     "LEFT JOIN reconciliation_checkpoints c ON c.account_number = a.account_number";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(rs.getString("account_number"), rs.getString("currency"),
+                            toCents(rs.getBigDecimal("opening_balance")), toCents(rs.getBigDecimal("stored_balance")),
+                            toCents(rs.getBigDecimal("expected_balance")));
+                }
+            }
+        }
+    }
+
+    /**
+     * Stored balance (including hot-account buckets) of the given accounts
+     */
+    public void getStoredBalances(Connection conn, String[] accountNumbers, NetHandler handler) throws SQLException {
+        String sql = "SELECT a.account_number, COALESCE(a.balance, 0) + COALESCE((SELECT SUM(b.balance) FROM account_balance_buckets b " +
+                     "WHERE b.account_number = a.account_number), 0) AS stored_balance " +
+                     "FROM bank_accounts a WHERE a.account_number = ANY(?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", accountNumbers));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(rs.getString("account_number"), toCents(rs.getBigDecimal("stored_balance")));
+                }
+            }
+        }
+    }
+
+    /**
+     * Net change per account of the completed transactions with
+     * afterId < id <= upToId
+     */
+    public void sumNetChanges(Connection conn, long afterId, long upToId, NetHandler handler) throws SQLException {
+        String sql = String.format(NET_CHANGES, "id > ? AND id <= ?");
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, afterId);
+            pstmt.setLong(2, upToId);
+            pstmt.setLong(3, afterId);
+            pstmt.setLong(4, upToId);
+            readNetChanges(pstmt, handler);
+        }
+    }
+
+    /**
+     * Net change of the given accounts over the completed transactions with
+     * afterId < id <= upToId
+     */
+    public void sumNetChanges(Connection conn, String[] accountNumbers, long afterId, long upToId,
+                              NetHandler handler) throws SQLException {
+        String sql = "SELECT account_number, SUM(delta) AS net FROM (" +
+                     " SELECT to_account_number AS account_number," +
+                     "  CASE WHEN converted_currency IS NOT NULL THEN converted_amount ELSE amount END AS delta" +
+                     " FROM transactions WHERE status = 'COMPLETED' AND to_account_number = ANY(?) AND id > ? AND id <= ?" +
+                     " UNION ALL" +
+                     " SELECT from_account_number, -amount" +
+                     " FROM transactions WHERE status = 'COMPLETED' AND from_account_number = ANY(?) AND id > ? AND id <= ?" +
+                     ") d GROUP BY account_number";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            Array accounts = conn.createArrayOf("varchar", accountNumbers);
+            pstmt.setArray(1, accounts);
+            pstmt.setLong(2, afterId);
+            pstmt.setLong(3, upToId);
+            pstmt.setArray(4, accounts);
+            pstmt.setLong(5, afterId);
+            pstmt.setLong(6, upToId);
+            readNetChanges(pstmt, handler);
+        }
+    }
+
+    /**
+     * Net change per account of those of the given transactions that are
+     * now completed
+     */
+    public void sumCompleted(Connection conn, long[] transactionIds, NetHandler handler) throws SQLException {
+        String sql = String.format(NET_CHANGES, "id = ANY(?)");
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            Array ids = conn.createArrayOf("bigint", boxed(transactionIds));
+            pstmt.setArray(1, ids);
+            pstmt.setArray(2, ids);
+            readNetChanges(pstmt, handler);
+        }
+    }
+
+    /**
+     * Ids of the PENDING transactions with afterId < id <= upToId
+     */
+    public List<Long> getPendingTransactionIds(Connection conn, long afterId, long upToId) throws SQLException {
+        String sql = "SELECT id FROM transactions WHERE status = 'PENDING' AND id > ? AND id <= ? ORDER BY id";
+        List<Long> ids = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, afterId);
+            pstmt.setLong(2, upToId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Those of the given transactions that are still PENDING
+     */
+    public List<Long> getStillPending(Connection conn, long[] transactionIds) throws SQLException {
+        String sql = "SELECT id FROM transactions WHERE status = 'PENDING' AND id = ANY(?) ORDER BY id";
+        List<Long> ids = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("bigint", boxed(transactionIds)));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The last recorded run, or null if there has been none
+     */
+    public Checkpoint getLastCheckpoint(Connection conn) throws SQLException {
+        String sql = "SELECT id, checkpoint_transaction_id, pending_transaction_ids FROM reconciliation_runs " +
+                     "ORDER BY id DESC LIMIT 1";
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) {
+                return null;
+            }
+            Long[] pending = (Long[]) rs.getArray("pending_transaction_ids").getArray();
+            long[] pendingIds = new long[pending.length];
+            for (int i = 0; i < pending.length; i++) {
+                pendingIds[i] = pending[i];
+            }
+            return new Checkpoint(rs.getInt("id"), rs.getLong("checkpoint_transaction_id"), pendingIds);
+        }
+    }
+
+    /**
+     * Record a run and move the checkpoints of the given accounts to it, in
+     * one database transaction; a full run first drops every checkpoint.
+     * Returns the run id, or -1 on failure.
+     */
+    public int saveRun(boolean incremental, long fromTransactionId, long checkpointTransactionId, long maxTransactionId,
+                       List<Long> pendingTransactionIds, int accountsChecked, int discrepancies, Timestamp startedAt,
+                       String[] accountNumbers, long[] expectedCents) {
+        String runSql = "INSERT INTO reconciliation_runs (mode, from_transaction_id, checkpoint_transaction_id, " +
+                        "max_transaction_id, pending_transaction_ids, accounts_checked, discrepancies, started_at) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
+        String checkpointSql = "INSERT INTO reconciliation_checkpoints (account_number, expected_balance, run_id) " +
+                               "SELECT c.account_number, c.cents / 100.0, ? FROM unnest(?::varchar[], ?::bigint[]) AS c(account_number, cents) " +
+                               "ON CONFLICT (account_number) DO UPDATE SET expected_balance = EXCLUDED.expected_balance, " +
+                               "run_id = EXCLUDED.run_id, updated_at = CURRENT_TIMESTAMP";
+        int batchSize = 10000;
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                int runId;
+                try (PreparedStatement pstmt = conn.prepareStatement(runSql)) {
+                    pstmt.setString(1, incremental ? "INCREMENTAL" : "FULL");
+                    pstmt.setLong(2, fromTransactionId);
+                    pstmt.setLong(3, checkpointTransactionId);
+                    pstmt.setLong(4, maxTransactionId);
+                    pstmt.setArray(5, conn.createArrayOf("bigint", pendingTransactionIds.toArray(new Long[0])));
+                    pstmt.setInt(6, accountsChecked);
+                    pstmt.setInt(7, discrepancies);
+                    pstmt.setTimestamp(8, startedAt);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        rs.next();
+                        runId = rs.getInt(1);
+                    }
+                }
+                if (!incremental) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("DELETE FROM reconciliation_checkpoints");
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(checkpointSql)) {
+                    for (int from = 0; from < accountNumbers.length; from += batchSize) {
+                        int to = Math.min(accountNumbers.length, from + batchSize);
+                        Long[] cents = new Long[to - from];
+                        for (int i = from; i < to; i++) {
+                            cents[i - from] = expectedCents[i];
+                        }
+                        pstmt.setInt(1, runId);
+                        pstmt.setArray(2, conn.createArrayOf("varchar", Arrays.copyOfRange(accountNumbers, from, to)));
+                        pstmt.setArray(3, conn.createArrayOf("bigint", cents));
+                        pstmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+                return runId;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error saving reconciliation run: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private static void readNetChanges(PreparedStatement pstmt, NetHandler handler) throws SQLException {
+        pstmt.setFetchSize(FETCH_SIZE);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(rs.getString("account_number"), toCents(rs.getBigDecimal("net")));
+            }
+        }
+    }
+
+    private static Long toCents(BigDecimal amount) {
+        return amount != null ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact() : null;
+    }
+
+    private static Long[] boxed(long[] values) {
+        Long[] boxed = new Long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    /**
+     * Inner class for the state the last run left behind
+     */
+    public static class Checkpoint {
+        private final int runId;
+        private final long transactionId;
+        private final long[] pendingTransactionIds;
+
+        public Checkpoint(int runId, long transactionId, long[] pendingTransactionIds) {
+            this.runId = runId;
+            this.transactionId = transactionId;
+            this.pendingTransactionIds = pendingTransactionIds;
+        }
+
+        public int getRunId() { return runId; }
+        public long getTransactionId() { return transactionId; }
+        public long[] getPendingTransactionIds() { return pendingTransactionIds; }
+    }
+}
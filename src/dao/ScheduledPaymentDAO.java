@@ -0,0 +1,221 @@
+package dao;
+
+import model.banking.ScheduledPayment;
+import util.DatabaseConfig;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object for scheduled and recurring payments
+ */
+public class ScheduledPaymentDAO {
+
+    // Rows per round trip when streaming schedules into the timing wheel
+    private static final int LOAD_FETCH_SIZE = 10000;
+
+    /**
+     * Callback for streaming active schedules without materialising them all
+     */
+    public interface ScheduleHandler {
+        void accept(int id, LocalDateTime nextRunAt);
+    }
+
+    /**
+     * Create a schedule on the caller's connection
+     */
+    public boolean createSchedule(Connection conn, ScheduledPayment payment) throws SQLException {
+        String sql = "INSERT INTO scheduled_payments (schedule_id, from_account_number, to_account_number, amount, " +
+                    "description, frequency, occurrence_at, next_run_at, remaining_runs, pending_transaction_id, status, " +
+                    "created_by) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, payment.getScheduleId());
+            pstmt.setString(2, payment.getFromAccountNumber());
+            pstmt.setString(3, payment.getToAccountNumber());
+            pstmt.setDouble(4, payment.getAmount());
+            pstmt.setString(5, payment.getDescription());
+            pstmt.setString(6, payment.getFrequency().name());
+            pstmt.setTimestamp(7, Timestamp.valueOf(payment.getOccurrenceAt()));
+            pstmt.setTimestamp(8, Timestamp.valueOf(payment.getNextRunAt()));
+            setNullableInt(pstmt, 9, payment.getRemainingRuns());
+            pstmt.setString(10, payment.getPendingTransactionId());
+            pstmt.setString(11, payment.getStatus().name());
+            pstmt.setString(12, payment.getCreatedBy());
+
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    payment.setId(keys.getInt(1));
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stream the id and next run time of every active schedule
+     */
+    public void loadActiveSchedules(ScheduleHandler handler) {
+        String sql = "SELECT id, next_run_at FROM scheduled_payments WHERE status = 'ACTIVE'";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            stmt.setFetchSize(LOAD_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    handler.accept(rs.getInt("id"), rs.getTimestamp("next_run_at").toLocalDateTime());
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading scheduled payments: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get a batch of schedules by id in one round trip
+     */
+    public List<ScheduledPayment> getSchedulesByIds(Connection conn, List<Integer> ids) throws SQLException {
+        String sql = "SELECT * FROM scheduled_payments WHERE id = ANY(?) ORDER BY next_run_at";
+        List<ScheduledPayment> payments = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    payments.add(mapResultSetToScheduledPayment(rs));
+                }
+            }
+        }
+        return payments;
+    }
+
+    /**
+     * Get a schedule by its public schedule id
+     */
+    public ScheduledPayment getScheduleByScheduleId(String scheduleId) {
+        String sql = "SELECT * FROM scheduled_payments WHERE schedule_id = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, scheduleId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToScheduledPayment(rs);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error getting scheduled payment: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Get all schedules paying out of an account
+     */
+    public List<ScheduledPayment> getSchedulesForAccount(String accountNumber) {
+        String sql = "SELECT * FROM scheduled_payments WHERE from_account_number = ? ORDER BY next_run_at";
+        List<ScheduledPayment> payments = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, accountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    payments.add(mapResultSetToScheduledPayment(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error getting scheduled payments: " + e.getMessage());
+        }
+        return payments;
+    }
+
+    /**
+     * Move a schedule on to its next occurrence (or final status), provided it
+     * still points at the occurrence the caller just handled
+     */
+    public boolean advanceSchedule(Connection conn, ScheduledPayment payment, String expectedPendingTransactionId)
+            throws SQLException {
+        String sql = "UPDATE scheduled_payments SET occurrence_at = ?, next_run_at = ?, remaining_runs = ?, " +
+                    "pending_transaction_id = ?, failure_count = 0, status = ?, updated_at = CURRENT_TIMESTAMP " +
+                    "WHERE id = ? AND pending_transaction_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, Timestamp.valueOf(payment.getOccurrenceAt()));
+            pstmt.setTimestamp(2, Timestamp.valueOf(payment.getNextRunAt()));
+            setNullableInt(pstmt, 3, payment.getRemainingRuns());
+            pstmt.setString(4, payment.getPendingTransactionId());
+            pstmt.setString(5, payment.getStatus().name());
+            pstmt.setInt(6, payment.getId());
+            pstmt.setString(7, expectedPendingTransactionId);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Record a failed attempt and when the occurrence should be retried
+     */
+    public boolean recordFailure(Connection conn, int id, int failureCount, LocalDateTime retryAt) throws SQLException {
+        String sql = "UPDATE scheduled_payments SET failure_count = ?, next_run_at = ?, updated_at = CURRENT_TIMESTAMP " +
+                    "WHERE id = ? AND status = 'ACTIVE'";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, failureCount);
+            pstmt.setTimestamp(2, Timestamp.valueOf(retryAt));
+            pstmt.setInt(3, id);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Set the status of an active schedule on the caller's connection
+     */
+    public boolean updateStatus(Connection conn, int id, ScheduledPayment.ScheduleStatus status) throws SQLException {
+        String sql = "UPDATE scheduled_payments SET status = ?, updated_at = CURRENT_TIMESTAMP " +
+                    "WHERE id = ? AND status = 'ACTIVE'";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, status.name());
+            pstmt.setInt(2, id);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    private static void setNullableInt(PreparedStatement pstmt, int index, Integer value) throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, Types.INTEGER);
+        } else {
+            pstmt.setInt(index, value);
+        }
+    }
+
+    /**
+     * Map database result set to ScheduledPayment object
+     */
+    private ScheduledPayment mapResultSetToScheduledPayment(ResultSet rs) throws SQLException {
+        ScheduledPayment payment = new ScheduledPayment();
+        payment.setId(rs.getInt("id"));
+        payment.setScheduleId(rs.getString("schedule_id"));
+        payment.setFromAccountNumber(rs.getString("from_account_number"));
+        payment.setToAccountNumber(rs.getString("to_account_number"));
+        payment.setAmount(rs.getDouble("amount"));
+        payment.setDescription(rs.getString("description"));
+        payment.setFrequency(ScheduledPayment.Frequency.valueOf(rs.getString("frequency")));
+        payment.setOccurrenceAt(rs.getTimestamp("occurrence_at").toLocalDateTime());
+        payment.setNextRunAt(rs.getTimestamp("next_run_at").toLocalDateTime());
+        int remainingRuns = rs.getInt("remaining_runs");
+        payment.setRemainingRuns(rs.wasNull() ? null : remainingRuns);
+        payment.setPendingTransactionId(rs.getString("pending_transaction_id"));
+        payment.setFailureCount(rs.getInt("failure_count"));
+        payment.setStatus(ScheduledPayment.ScheduleStatus.valueOf(rs.getString("status")));
+        payment.setCreatedBy(rs.getString("created_by"));
+        return payment;
+    }
+}
@@ -0,0 +1,52 @@
+package dao;
+
+import util.DatabaseConfig;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Data Access Object for system settings
+ */
+public class SystemSettingsDAO {
+
+    /**
+     * Get all settings as a key/value map. Throws rather than returning an
+     * empty map, which callers would take for "every setting removed".
+     */
+    public Map<String, String> getAllSettings() throws SQLException {
+        String sql = "SELECT setting_key, setting_value FROM system_settings";
+        Map<String, String> settings = new HashMap<>();
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                settings.put(rs.getString("setting_key"), rs.getString("setting_value"));
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Get a single setting value
+     */
+    public String getSetting(String key) {
+        String sql = "SELECT setting_value FROM system_settings WHERE setting_key = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString("setting_value");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error getting system setting: " + e.getMessage());
+        }
+        return null;
+    }
+}
@@ -2,24 +2,58 @@ package dao;
 
 import model.banking.Transaction;
 import util.DatabaseConfig;
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
- * Data Access Object for Transaction operations
+ * Data Access Object for Transaction operations.
+ * History, lookups by id and the summary may be served by a read replica
+ * (DatabaseConfig.getReadConnection()); idempotency checks always use the primary.
  */
 public class TransactionDAO {
+
+    // Rows per round trip when streaming transaction history
+    private static final int HISTORY_FETCH_SIZE = 10000;
+
+    /**
+     * Callback for streaming completed debits without materialising them all
+     */
+    public interface DebitHandler {
+        void accept(String fromAccountNumber, String toAccountNumber, double amount, Timestamp transactionDate);
+    }
     
     /**
      * Create a new transaction
      */
     public boolean createTransaction(Transaction transaction) {
-        String sql = "INSERT INTO transactions (transaction_id, from_account_number, to_account_number, amount, transaction_type, description, performed_by, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            boolean created = createTransaction(conn, transaction);
+            conn.commit();
+            return created;
             
+        } catch (SQLException e) {
+            System.err.println("Error creating transaction: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    /**
+     * Insert a transaction on the caller's connection without committing, so it
+     * can share a database transaction with the balance change it records.
+     * A duplicate idempotency key surfaces as a unique violation (SQLState 23505).
+     */
+    public boolean createTransaction(Connection conn, Transaction transaction) throws SQLException {
+        // performed_by references users(id); resolve it from the username
+        String sql = "INSERT INTO transactions (transaction_id, from_account_number, to_account_number, amount, transaction_type, description, performed_by, status, idempotency_key, " +
+                     "currency, converted_amount, converted_currency, exchange_rate) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, (SELECT id FROM users WHERE username = ?), ?, ?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, transaction.getTransactionId());
             pstmt.setString(2, transaction.getFromAccountNumber());
             pstmt.setString(3, transaction.getToAccountNumber());
@@ -28,13 +62,192 @@ public class TransactionDAO {
             pstmt.setString(6, transaction.getDescription());
             pstmt.setString(7, transaction.getPerformedBy());
             pstmt.setString(8, transaction.getStatus().name());
+            pstmt.setString(9, transaction.getIdempotencyKey());
+            pstmt.setString(10, transaction.getCurrency());
+            setConversion(pstmt, 11, transaction);
             
-            int affectedRows = pstmt.executeUpdate();
-            conn.commit();
-            return affectedRows > 0;
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+    
+    /**
+     * Insert completed transactions in one statement on the caller's connection
+     * without committing, skipping any whose idempotency key or transaction id
+     * is already recorded. Returns the idempotency keys that were inserted.
+     */
+    public Set<String> createTransactionsIfAbsent(Connection conn, List<Transaction> transactions) throws SQLException {
+        String sql = "INSERT INTO transactions (transaction_id, from_account_number, to_account_number, amount, transaction_type, description, performed_by, status, idempotency_key, transaction_date, created_at, " +
+                     "currency, converted_amount, converted_currency, exchange_rate) " +
+                     "SELECT t.transaction_id, t.from_account, t.to_account, t.amount_cents / 100.0, t.transaction_type, t.description, u.id, 'COMPLETED', t.idempotency_key, t.created_at, t.created_at, " +
+                     "t.currency, t.converted_cents / 100.0, t.converted_currency, t.exchange_rate " +
+                     "FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::bigint[], ?::varchar[], ?::text[], ?::varchar[], ?::varchar[], ?::timestamp[], " +
+                     "?::varchar[], ?::bigint[], ?::varchar[], ?::numeric[]) " +
+                     "AS t(transaction_id, from_account, to_account, amount_cents, transaction_type, description, performed_by, idempotency_key, created_at, " +
+                     "currency, converted_cents, converted_currency, exchange_rate) " +
+                     "LEFT JOIN users u ON u.username = t.performed_by " +
+                     "ON CONFLICT DO NOTHING RETURNING idempotency_key";
+        
+        int count = transactions.size();
+        String[] ids = new String[count];
+        String[] fromAccounts = new String[count];
+        String[] toAccounts = new String[count];
+        Long[] amountCents = new Long[count];
+        String[] types = new String[count];
+        String[] descriptions = new String[count];
+        String[] performedBy = new String[count];
+        String[] keys = new String[count];
+        Timestamp[] createdAt = new Timestamp[count];
+        String[] currencies = new String[count];
+        Long[] convertedCents = new Long[count];
+        String[] convertedCurrencies = new String[count];
+        BigDecimal[] exchangeRates = new BigDecimal[count];
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = transactions.get(i);
+            ids[i] = transaction.getTransactionId();
+            fromAccounts[i] = transaction.getFromAccountNumber();
+            toAccounts[i] = transaction.getToAccountNumber();
+            amountCents[i] = Math.round(transaction.getAmount() * 100);
+            types[i] = transaction.getTransactionType().name();
+            descriptions[i] = transaction.getDescription();
+            performedBy[i] = transaction.getPerformedBy();
+            keys[i] = transaction.getIdempotencyKey();
+            createdAt[i] = Timestamp.valueOf(transaction.getCreatedAt());
+            currencies[i] = transaction.getCurrency();
+            if (transaction.isCrossCurrency()) {
+                convertedCents[i] = Math.round(transaction.getConvertedAmount() * 100);
+                convertedCurrencies[i] = transaction.getConvertedCurrency();
+                exchangeRates[i] = BigDecimal.valueOf(transaction.getExchangeRate());
+            }
+        }
+        
+        Set<String> inserted = new HashSet<>(count * 2);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", ids));
+            pstmt.setArray(2, conn.createArrayOf("varchar", fromAccounts));
+            pstmt.setArray(3, conn.createArrayOf("varchar", toAccounts));
+            pstmt.setArray(4, conn.createArrayOf("bigint", amountCents));
+            pstmt.setArray(5, conn.createArrayOf("varchar", types));
+            pstmt.setArray(6, conn.createArrayOf("text", descriptions));
+            pstmt.setArray(7, conn.createArrayOf("varchar", performedBy));
+            pstmt.setArray(8, conn.createArrayOf("varchar", keys));
+            pstmt.setArray(9, conn.createArrayOf("timestamp", createdAt));
+            pstmt.setArray(10, conn.createArrayOf("varchar", currencies));
+            pstmt.setArray(11, conn.createArrayOf("bigint", convertedCents));
+            pstmt.setArray(12, conn.createArrayOf("varchar", convertedCurrencies));
+            pstmt.setArray(13, conn.createArrayOf("numeric", exchangeRates));
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    inserted.add(rs.getString("idempotency_key"));
+                }
+            }
+        }
+        return inserted;
+    }
+    
+    /**
+     * Get the idempotency keys of the most recently recorded transactions,
+     * newest first, on the caller's connection
+     */
+    public List<String> getRecentIdempotencyKeys(Connection conn, int limit) throws SQLException {
+        String sql = "SELECT idempotency_key FROM transactions WHERE idempotency_key IS NOT NULL ORDER BY id DESC LIMIT ?";
+        List<String> keys = new ArrayList<>();
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, limit);
             
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getString("idempotency_key"));
+                }
+            }
+        }
+        return keys;
+    }
+    
+    /**
+     * Get the transaction recorded for an idempotency key, on the caller's connection
+     */
+    public Transaction getTransactionByIdempotencyKey(Connection conn, String idempotencyKey) throws SQLException {
+        String sql = "SELECT * FROM transactions WHERE idempotency_key = ?";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, idempotencyKey);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToTransaction(rs);
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Stream completed withdrawals and transfers since the given time, oldest first
+     */
+    public void loadDebitsSince(Timestamp since, DebitHandler handler) {
+        String sql = "SELECT from_account_number, to_account_number, amount, transaction_date FROM transactions " +
+                     "WHERE status = 'COMPLETED' AND from_account_number IS NOT NULL AND transaction_date >= ? " +
+                     "ORDER BY transaction_date";
+        
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setTimestamp(1, since);
+            pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(rs.getString("from_account_number"), rs.getString("to_account_number"),
+                            rs.getDouble("amount"), rs.getTimestamp("transaction_date"));
+                }
+            }
         } catch (SQLException e) {
-            System.err.println("Error creating transaction: " + e.getMessage());
+            System.err.println("Error loading transaction history: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Lowest and highest transaction row id, or null if the table could not be
+     * read; {0, 0} when it is empty
+     */
+    public long[] getIdRange() {
+        String sql = "SELECT COALESCE(MIN(id), 0) AS min_id, COALESCE(MAX(id), 0) AS max_id FROM transactions";
+        
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            if (rs.next()) {
+                return new long[] {rs.getLong("min_id"), rs.getLong("max_id")};
+            }
+        } catch (SQLException e) {
+            System.err.println("Error getting transaction id range: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Stream the transactions with afterId < id <= upToId in id order without
+     * materialising them all. Returns false if the read failed part way.
+     */
+    public boolean streamTransactions(long afterId, long upToId, Consumer<Transaction> handler) {
+        String sql = "SELECT * FROM transactions WHERE id > ? AND id <= ? ORDER BY id";
+        
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setLong(1, afterId);
+            pstmt.setLong(2, upToId);
+            pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(mapResultSetToTransaction(rs));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error streaming transactions: " + e.getMessage());
         }
         return false;
     }
@@ -46,7 +259,7 @@ public class TransactionDAO {
         List<Transaction> transactions = new ArrayList<>();
         String sql = "SELECT * FROM transactions WHERE from_account_number = ? OR to_account_number = ? ORDER BY created_at DESC";
         
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, accountNumber);
@@ -63,13 +276,36 @@ public class TransactionDAO {
         return transactions;
     }
     
+    /**
+     * Get the most recent transactions, newest first
+     */
+    public List<Transaction> getRecentTransactions(int limit) {
+        List<Transaction> transactions = new ArrayList<>();
+        String sql = "SELECT * FROM transactions ORDER BY id DESC LIMIT ?";
+        
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    transactions.add(mapResultSetToTransaction(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error getting recent transactions: " + e.getMessage());
+        }
+        return transactions;
+    }
+    
     /**
      * Get transaction by ID
      */
     public Transaction getTransactionById(String transactionId) {
         String sql = "SELECT * FROM transactions WHERE transaction_id = ?";
         
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, transactionId);
@@ -106,6 +342,70 @@ public class TransactionDAO {
         }
         return false;
     }
+
+    /**
+     * Move a transaction from one status to another on the caller's connection.
+     * Returns false if the transaction is no longer in the expected status.
+     */
+    public boolean updateTransactionStatus(Connection conn, String transactionId,
+                                           Transaction.TransactionStatus expected,
+                                           Transaction.TransactionStatus status) throws SQLException {
+        String sql = "UPDATE transactions SET status = ?, updated_at = CURRENT_TIMESTAMP " +
+                    "WHERE transaction_id = ? AND status = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, status.name());
+            pstmt.setString(2, transactionId);
+            pstmt.setString(3, expected.name());
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Record the currency and any conversion of a pending transaction on the
+     * caller's connection, once it has been applied at the current rate
+     */
+    public boolean updateConversion(Connection conn, Transaction transaction) throws SQLException {
+        String sql = "UPDATE transactions SET currency = ?, converted_amount = ?, converted_currency = ?, exchange_rate = ?, " +
+                    "updated_at = CURRENT_TIMESTAMP WHERE transaction_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, transaction.getCurrency());
+            setConversion(pstmt, 2, transaction);
+            pstmt.setString(5, transaction.getTransactionId());
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Bind converted_amount, converted_currency and exchange_rate, or NULLs
+     * for a single-currency transaction
+     */
+    private void setConversion(PreparedStatement pstmt, int index, Transaction transaction) throws SQLException {
+        if (transaction.isCrossCurrency()) {
+            pstmt.setDouble(index, transaction.getConvertedAmount());
+            pstmt.setString(index + 1, transaction.getConvertedCurrency());
+            pstmt.setBigDecimal(index + 2, BigDecimal.valueOf(transaction.getExchangeRate()));
+        } else {
+            pstmt.setNull(index, Types.DECIMAL);
+            pstmt.setNull(index + 1, Types.VARCHAR);
+            pstmt.setNull(index + 2, Types.DECIMAL);
+        }
+    }
+
+    /**
+     * Get a transaction by ID on the caller's connection
+     */
+    public Transaction getTransactionById(Connection conn, String transactionId) throws SQLException {
+        String sql = "SELECT * FROM transactions WHERE transaction_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, transactionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapResultSetToTransaction(rs) : null;
+            }
+        }
+    }
     
     /**
      * Get transaction summary statistics
@@ -113,7 +413,7 @@ public class TransactionDAO {
     public TransactionSummary getTransactionSummary() {
         String sql = "SELECT COUNT(*) as total_transactions, SUM(amount) as total_amount FROM transactions WHERE status = 'COMPLETED'";
         
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -143,6 +443,12 @@ public class TransactionDAO {
         transaction.setDescription(rs.getString("description"));
         transaction.setPerformedBy(rs.getString("performed_by"));
         transaction.setStatus(Transaction.TransactionStatus.valueOf(rs.getString("status")));
+        transaction.setIdempotencyKey(rs.getString("idempotency_key"));
+        transaction.setCurrency(rs.getString("currency"));
+        String convertedCurrency = rs.getString("converted_currency");
+        if (convertedCurrency != null) {
+            transaction.setConversion(rs.getDouble("converted_amount"), convertedCurrency, rs.getDouble("exchange_rate"));
+        }
         
         Timestamp createdAt = rs.getTimestamp("created_at");
         if (createdAt != null) {
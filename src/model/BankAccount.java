@@ -4,10 +4,15 @@ package model;
  * Abstract base class for bank accounts
  */
 public abstract class BankAccount {
+    public static final String DEFAULT_CURRENCY = "USD";
+
     protected String accountNumber;
     protected String holderName;
     protected double balance;
     protected String accountType;
+    protected String currency = DEFAULT_CURRENCY;
+    protected long version;
+    protected int balanceBuckets;
 
     public BankAccount(String accountNumber, String holderName, double initialBalance, String accountType) {
         this.accountNumber = accountNumber;
@@ -21,6 +26,10 @@ public abstract class BankAccount {
     public String getHolderName() { return holderName; }
     public double getBalance() { return balance; }
     public String getAccountType() { return accountType; }
+    public String getCurrency() { return currency; }
+    public long getVersion() { return version; }
+    public int getBalanceBuckets() { return balanceBuckets; }
+    public boolean isHotAccount() { return balanceBuckets > 0; }
 
     // Abstract methods that must be implemented by subclasses
     public abstract void deposit(double amount);
@@ -28,6 +37,9 @@ public abstract class BankAccount {
 
     // Common methods
     public void setBalance(double balance) { this.balance = balance; }
+    public void setCurrency(String currency) { this.currency = currency; }
+    public void setVersion(long version) { this.version = version; }
+    public void setBalanceBuckets(int balanceBuckets) { this.balanceBuckets = balanceBuckets; }
 
     @Override
     public String toString() {
@@ -35,6 +47,7 @@ public abstract class BankAccount {
                 "accountNumber='" + accountNumber + '\'' +
                 ", holderName='" + holderName + '\'' +
                 ", balance=" + balance +
+                ", currency='" + currency + '\'' +
                 ", accountType='" + accountType + '\'' +
                 '}';
     }
@@ -0,0 +1,99 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Loan Account implementation.
+ *
+ * The balance is what the customer owes, as a negative amount: the loan
+ * opens at -principal and each deposit (a repayment) brings it towards zero.
+ * Interest accrues separately in accruedInterest and is not part of the
+ * balance.
+ */
+public class LoanAccount extends BankAccount {
+    private static final int MAX_TERM_MONTHS = 600;
+
+    private final double principal;
+    private final double interestRate; // annual, in percent
+    private final int termMonths;
+    private final LocalDate startDate;
+    private double accruedInterest;
+    private LocalDate lastAccrualDate;
+
+    public LoanAccount(String accountNumber, String holderName, double principal, double interestRate,
+                       int termMonths, LocalDate startDate) {
+        super(accountNumber, holderName, -principal, "LOAN");
+
+        if (principal <= 0) {
+            throw new IllegalArgumentException("Loan principal must be positive");
+        }
+        if (interestRate < 0 || interestRate >= 100) {
+            throw new IllegalArgumentException("Interest rate must be between 0% and 100%");
+        }
+        if (termMonths < 1 || termMonths > MAX_TERM_MONTHS) {
+            throw new IllegalArgumentException("Loan term must be between 1 and " + MAX_TERM_MONTHS + " months");
+        }
+        this.principal = principal;
+        this.interestRate = interestRate;
+        this.termMonths = termMonths;
+        this.startDate = startDate != null ? startDate : LocalDate.now();
+        this.lastAccrualDate = this.startDate;
+    }
+
+    /**
+     * A repayment; it may not exceed what is still owed
+     */
+    @Override
+    public void deposit(double amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Repayment amount must be positive");
+        }
+        if (amount > getOutstandingBalance()) {
+            throw new IllegalArgumentException("Repayment exceeds the outstanding balance");
+        }
+        balance += amount;
+    }
+
+    /**
+     * The principal is paid out when the loan is opened; no further draws
+     */
+    @Override
+    public boolean withdraw(double amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Withdrawal amount must be positive");
+        }
+        return false;
+    }
+
+    public double getPrincipal() { return principal; }
+    public double getInterestRate() { return interestRate; }
+    public int getTermMonths() { return termMonths; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getMaturityDate() { return startDate.plusMonths(termMonths); }
+    public double getAccruedInterest() { return accruedInterest; }
+    public LocalDate getLastAccrualDate() { return lastAccrualDate; }
+
+    public void setAccruedInterest(double accruedInterest) { this.accruedInterest = accruedInterest; }
+    public void setLastAccrualDate(LocalDate lastAccrualDate) { this.lastAccrualDate = lastAccrualDate; }
+
+    public double getOutstandingBalance() {
+        return Math.max(0, -balance);
+    }
+
+    public boolean isRepaid() {
+        return balance >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LoanAccount{" +
+                "accountNumber='" + accountNumber + '\'' +
+                ", holderName='" + holderName + '\'' +
+                ", principal=" + principal +
+                ", outstanding=" + getOutstandingBalance() +
+                ", interestRate=" + interestRate + "%" +
+                ", termMonths=" + termMonths +
+                ", startDate=" + startDate +
+                '}';
+    }
+}
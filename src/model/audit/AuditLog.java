@@ -8,9 +8,13 @@ public class AuditLog {
     private String details;
     private String username;
     private String ipAddress;
+    private String userAgent;
     private LocalDateTime timestamp;
     private boolean success;
     private String errorMessage;
+    // Position in the hash chain and the chained hash, set when the entry is appended
+    private long seq;
+    private byte[] entryHash;
 
     public AuditLog(String action, String details, String username, String ipAddress) {
         this.action = action;
@@ -38,10 +42,16 @@ public class AuditLog {
     public void setUsername(String username) { this.username = username; }
     public String getIpAddress() { return ipAddress; }
     public void setIpAddress(String ipAddress) { this.ipAddress = ipAddress; }
+    public String getUserAgent() { return userAgent; }
+    public void setUserAgent(String userAgent) { this.userAgent = userAgent; }
     public LocalDateTime getTimestamp() { return timestamp; }
     public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
     public boolean isSuccess() { return success; }
     public void setSuccess(boolean success) { this.success = success; }
     public String getErrorMessage() { return errorMessage; }
     public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    public long getSeq() { return seq; }
+    public void setSeq(long seq) { this.seq = seq; }
+    public byte[] getEntryHash() { return entryHash; }
+    public void setEntryHash(byte[] entryHash) { this.entryHash = entryHash; }
 }
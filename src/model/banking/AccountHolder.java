@@ -0,0 +1,34 @@
+package model.banking;
+
+/**
+ * A customer's relationship to an account (a customer_accounts row)
+ */
+public class AccountHolder {
+
+    public enum Relationship {
+        PRIMARY, JOINT, AUTHORIZED
+    }
+
+    private final Customer customer;
+    private final String accountNumber;
+    private final Relationship relationship;
+
+    public AccountHolder(Customer customer, String accountNumber, Relationship relationship) {
+        this.customer = customer;
+        this.accountNumber = accountNumber;
+        this.relationship = relationship;
+    }
+
+    public Customer getCustomer() { return customer; }
+    public String getAccountNumber() { return accountNumber; }
+    public Relationship getRelationship() { return relationship; }
+
+    @Override
+    public String toString() {
+        return "AccountHolder{" +
+                "customerId='" + customer.getCustomerId() + '\'' +
+                ", accountNumber='" + accountNumber + '\'' +
+                ", relationship=" + relationship +
+                '}';
+    }
+}
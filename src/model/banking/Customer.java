@@ -0,0 +1,90 @@
+package model.banking;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Customer (KYC) record; linked to accounts through {@link AccountHolder}
+ */
+public class Customer {
+
+    public enum KycStatus {
+        PENDING, VERIFIED, REJECTED
+    }
+
+    private int id;
+    private String customerId;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String phone;
+    private String address;
+    private LocalDate dateOfBirth;
+    private KycStatus kycStatus;
+    private LocalDateTime createdAt;
+
+    // Default constructor
+    public Customer() {
+        this.kycStatus = KycStatus.PENDING;
+    }
+
+    // Constructor with required fields
+    public Customer(String customerId, String firstName, String lastName, String email) {
+        this();
+        this.customerId = customerId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getCustomerId() { return customerId; }
+    public void setCustomerId(String customerId) { this.customerId = customerId; }
+
+    public String getFirstName() { return firstName; }
+    public void setFirstName(String firstName) { this.firstName = firstName; }
+
+    public String getLastName() { return lastName; }
+    public void setLastName(String lastName) { this.lastName = lastName; }
+
+    public String getEmail() { return email; }
+    public void setEmail(String email) { this.email = email; }
+
+    public String getPhone() { return phone; }
+    public void setPhone(String phone) { this.phone = phone; }
+
+    public String getAddress() { return address; }
+    public void setAddress(String address) { this.address = address; }
+
+    public LocalDate getDateOfBirth() { return dateOfBirth; }
+    public void setDateOfBirth(LocalDate dateOfBirth) { this.dateOfBirth = dateOfBirth; }
+
+    public KycStatus getKycStatus() { return kycStatus; }
+    public void setKycStatus(KycStatus kycStatus) { this.kycStatus = kycStatus; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    // Utility methods
+    public String getFullName() {
+        return firstName + " " + lastName;
+    }
+
+    public boolean isKycVerified() {
+        return kycStatus == KycStatus.VERIFIED;
+    }
+
+    @Override
+    public String toString() {
+        return "Customer{" +
+                "customerId='" + customerId + '\'' +
+                ", name='" + getFullName() + '\'' +
+                ", email='" + email + '\'' +
+                ", kycStatus=" + kycStatus +
+                '}';
+    }
+}
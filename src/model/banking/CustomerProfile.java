@@ -0,0 +1,46 @@
+package model.banking;
+
+import model.BankAccount;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * "Customer 360": a customer, every account they are linked to, and every
+ * holder of each of those accounts (including joint and authorized parties)
+ */
+public class CustomerProfile {
+
+    private final Customer customer;
+    private final List<BankAccount> accounts;
+    private final Map<String, List<AccountHolder>> holdersByAccount;
+
+    public CustomerProfile(Customer customer, List<BankAccount> accounts,
+                           Map<String, List<AccountHolder>> holdersByAccount) {
+        this.customer = customer;
+        this.accounts = Collections.unmodifiableList(accounts);
+        this.holdersByAccount = Collections.unmodifiableMap(holdersByAccount);
+    }
+
+    public Customer getCustomer() { return customer; }
+    public List<BankAccount> getAccounts() { return accounts; }
+
+    /**
+     * Holders of one of the customer's accounts, the customer included
+     */
+    public List<AccountHolder> getHolders(String accountNumber) {
+        return holdersByAccount.getOrDefault(accountNumber, Collections.emptyList());
+    }
+
+    /**
+     * The customer's own relationship to an account, or null if not linked
+     */
+    public AccountHolder.Relationship getRelationship(String accountNumber) {
+        for (AccountHolder holder : getHolders(accountNumber)) {
+            if (holder.getCustomer() == customer) {
+                return holder.getRelationship();
+            }
+        }
+        return null;
+    }
+}
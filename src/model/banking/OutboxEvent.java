@@ -0,0 +1,146 @@
+package model.banking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A balance change of one account, written to outbox_events in the same
+ * database transaction as the posting and delivered by the outbox relay.
+ *
+ * A transfer produces two events, a debit (negative amount) on the source
+ * and a credit on the target, each in that account's currency. The balance
+ * is the account's total balance just after this change (null until
+ * written); successive events of an account step from one balance to the
+ * next, hot accounts included.
+ */
+public class OutboxEvent {
+
+    // Events of one account always land in the same partition; the relay
+    // delivers a partition in id order
+    public static final int PARTITIONS = 16;
+
+    private long id;
+    private final String accountNumber;
+    private final String transactionId;
+    private final Transaction.TransactionType transactionType;
+    private final String counterpartyAccountNumber;
+    private final long amountCents;
+    private final String currency;
+    private Long balanceCents;
+    private LocalDateTime createdAt;
+
+    public OutboxEvent(String accountNumber, String transactionId, Transaction.TransactionType transactionType,
+                       String counterpartyAccountNumber, long amountCents, String currency) {
+        this.accountNumber = accountNumber;
+        this.transactionId = transactionId;
+        this.transactionType = transactionType;
+        this.counterpartyAccountNumber = counterpartyAccountNumber;
+        this.amountCents = amountCents;
+        this.currency = currency;
+    }
+
+    /**
+     * The events of a completed transaction: the debit of the source account
+     * and/or the credit of the target
+     */
+    public static List<OutboxEvent> forTransaction(Transaction transaction) {
+        List<OutboxEvent> events = new ArrayList<>(2);
+        String from = transaction.getFromAccountNumber();
+        String to = transaction.getToAccountNumber();
+        if (from != null) {
+            events.add(new OutboxEvent(from, transaction.getTransactionId(), transaction.getTransactionType(), to,
+                    -Math.round(transaction.getAmount() * 100), transaction.getCurrency()));
+        }
+        if (to != null) {
+            boolean converted = transaction.isCrossCurrency();
+            events.add(new OutboxEvent(to, transaction.getTransactionId(), transaction.getTransactionType(), from,
+                    Math.round((converted ? transaction.getConvertedAmount() : transaction.getAmount()) * 100),
+                    converted ? transaction.getConvertedCurrency() : transaction.getCurrency()));
+        }
+        return events;
+    }
+
+    /**
+     * Partition of an account's events
+     */
+    public static int partitionOf(String accountNumber) {
+        return (accountNumber.hashCode() & Integer.MAX_VALUE) % PARTITIONS;
+    }
+
+    // Getters and Setters
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    public String getAccountNumber() { return accountNumber; }
+    public String getTransactionId() { return transactionId; }
+    public Transaction.TransactionType getTransactionType() { return transactionType; }
+    public String getCounterpartyAccountNumber() { return counterpartyAccountNumber; }
+    public long getAmountCents() { return amountCents; }
+    public String getCurrency() { return currency; }
+
+    public Long getBalanceCents() { return balanceCents; }
+    public void setBalanceCents(Long balanceCents) { this.balanceCents = balanceCents; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public int getPartition() {
+        return partitionOf(accountNumber);
+    }
+
+    /**
+     * One-line JSON form used by the file and socket sinks
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(192);
+        json.append("{\"id\":").append(id);
+        appendString(json, "accountNumber", accountNumber);
+        appendString(json, "transactionId", transactionId);
+        appendString(json, "transactionType", transactionType != null ? transactionType.name() : null);
+        appendString(json, "counterpartyAccountNumber", counterpartyAccountNumber);
+        json.append(",\"amount\":").append(formatCents(amountCents));
+        appendString(json, "currency", currency);
+        json.append(",\"balance\":").append(balanceCents != null ? formatCents(balanceCents) : "null");
+        appendString(json, "createdAt", createdAt != null ? createdAt.toString() : null);
+        return json.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder json, String name, String value) {
+        json.append(",\"").append(name).append("\":");
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static String formatCents(long cents) {
+        String sign = cents < 0 ? "-" : "";
+        long abs = Math.abs(cents);
+        return sign + (abs / 100) + "." + (abs % 100 < 10 ? "0" : "") + (abs % 100);
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEvent{" +
+                "id=" + id +
+                ", accountNumber='" + accountNumber + '\'' +
+                ", transactionId='" + transactionId + '\'' +
+                ", amountCents=" + amountCents +
+                ", currency='" + currency + '\'' +
+                ", balanceCents=" + balanceCents +
+                '}';
+    }
+}
@@ -0,0 +1,169 @@
+package model.banking;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Scheduled (future-dated) or recurring transfer, also known as a standing order
+ */
+public class ScheduledPayment {
+    private int id;
+    private String scheduleId;
+    private String fromAccountNumber;
+    private String toAccountNumber;
+    private double amount;
+    private String description;
+    private Frequency frequency;
+    // When the current occurrence is due, and when it is next attempted (later after a failure)
+    private LocalDateTime occurrenceAt;
+    private LocalDateTime nextRunAt;
+    private Integer remainingRuns;
+    private String pendingTransactionId;
+    private int failureCount;
+    private ScheduleStatus status;
+    private String createdBy;
+
+    // How often the payment repeats
+    public enum Frequency {
+        ONCE("One-off"),
+        DAILY("Daily"),
+        WEEKLY("Weekly"),
+        MONTHLY("Monthly");
+
+        private final String displayName;
+
+        Frequency(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * Next occurrence after the given one, or null for one-off payments
+         */
+        public LocalDateTime next(LocalDateTime occurrence) {
+            switch (this) {
+                case DAILY:
+                    return occurrence.plusDays(1);
+                case WEEKLY:
+                    return occurrence.plusWeeks(1);
+                case MONTHLY:
+                    return occurrence.plusMonths(1);
+                default:
+                    return null;
+            }
+        }
+    }
+
+    // Schedule status
+    public enum ScheduleStatus {
+        ACTIVE("Active"),
+        COMPLETED("Completed"),
+        CANCELLED("Cancelled"),
+        FAILED("Failed");
+
+        private final String displayName;
+
+        ScheduleStatus(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    // Default constructor
+    public ScheduledPayment() {
+        this.scheduleId = "SCH" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        this.frequency = Frequency.ONCE;
+        this.status = ScheduleStatus.ACTIVE;
+    }
+
+    // Constructor with required fields
+    public ScheduledPayment(String fromAccountNumber, String toAccountNumber, double amount, String description,
+                            Frequency frequency, LocalDateTime firstRunAt, Integer runs, String createdBy) {
+        this();
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+        this.description = description;
+        this.frequency = frequency;
+        this.occurrenceAt = firstRunAt;
+        this.nextRunAt = firstRunAt;
+        this.remainingRuns = runs;
+        this.createdBy = createdBy;
+    }
+
+    /**
+     * Whether another occurrence follows the current one
+     */
+    public boolean hasNextRun() {
+        return frequency != Frequency.ONCE && (remainingRuns == null || remainingRuns > 1);
+    }
+
+    /**
+     * Idempotency key of the current occurrence
+     */
+    public String occurrenceKey() {
+        return scheduleId + "@" + occurrenceAt;
+    }
+
+    // Getters and Setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getScheduleId() { return scheduleId; }
+    public void setScheduleId(String scheduleId) { this.scheduleId = scheduleId; }
+
+    public String getFromAccountNumber() { return fromAccountNumber; }
+    public void setFromAccountNumber(String fromAccountNumber) { this.fromAccountNumber = fromAccountNumber; }
+
+    public String getToAccountNumber() { return toAccountNumber; }
+    public void setToAccountNumber(String toAccountNumber) { this.toAccountNumber = toAccountNumber; }
+
+    public double getAmount() { return amount; }
+    public void setAmount(double amount) { this.amount = amount; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public Frequency getFrequency() { return frequency; }
+    public void setFrequency(Frequency frequency) { this.frequency = frequency; }
+
+    public LocalDateTime getOccurrenceAt() { return occurrenceAt; }
+    public void setOccurrenceAt(LocalDateTime occurrenceAt) { this.occurrenceAt = occurrenceAt; }
+
+    public LocalDateTime getNextRunAt() { return nextRunAt; }
+    public void setNextRunAt(LocalDateTime nextRunAt) { this.nextRunAt = nextRunAt; }
+
+    public Integer getRemainingRuns() { return remainingRuns; }
+    public void setRemainingRuns(Integer remainingRuns) { this.remainingRuns = remainingRuns; }
+
+    public String getPendingTransactionId() { return pendingTransactionId; }
+    public void setPendingTransactionId(String pendingTransactionId) { this.pendingTransactionId = pendingTransactionId; }
+
+    public int getFailureCount() { return failureCount; }
+    public void setFailureCount(int failureCount) { this.failureCount = failureCount; }
+
+    public ScheduleStatus getStatus() { return status; }
+    public void setStatus(ScheduleStatus status) { this.status = status; }
+
+    public String getCreatedBy() { return createdBy; }
+    public void setCreatedBy(String createdBy) { this.createdBy = createdBy; }
+
+    @Override
+    public String toString() {
+        return "ScheduledPayment{" +
+                "scheduleId='" + scheduleId + '\'' +
+                ", fromAccount='" + fromAccountNumber + '\'' +
+                ", toAccount='" + toAccountNumber + '\'' +
+                ", amount=" + amount +
+                ", frequency=" + frequency +
+                ", nextRunAt=" + nextRunAt +
+                ", status=" + status +
+                '}';
+    }
+}
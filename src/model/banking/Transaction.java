@@ -12,10 +12,16 @@ public class Transaction {
     private String fromAccountNumber;
     private String toAccountNumber;
     private double amount;
+    private String currency;
+    // Set on cross-currency transfers: what the target account was credited
+    private double convertedAmount;
+    private String convertedCurrency;
+    private double exchangeRate;
     private TransactionType transactionType;
     private String description;
     private String performedBy;
     private TransactionStatus status;
+    private String idempotencyKey;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -95,6 +101,26 @@ public class Transaction {
     public double getAmount() { return amount; }
     public void setAmount(double amount) { this.amount = amount; }
 
+    public String getCurrency() { return currency; }
+    public void setCurrency(String currency) { this.currency = currency; }
+
+    public double getConvertedAmount() { return convertedAmount; }
+    public String getConvertedCurrency() { return convertedCurrency; }
+    public double getExchangeRate() { return exchangeRate; }
+
+    /**
+     * Record the amount credited in the target account's currency
+     */
+    public void setConversion(double convertedAmount, String convertedCurrency, double exchangeRate) {
+        this.convertedAmount = convertedAmount;
+        this.convertedCurrency = convertedCurrency;
+        this.exchangeRate = exchangeRate;
+    }
+
+    public boolean isCrossCurrency() {
+        return convertedCurrency != null;
+    }
+
     public TransactionType getTransactionType() { return transactionType; }
     public void setTransactionType(TransactionType transactionType) { this.transactionType = transactionType; }
 
@@ -107,6 +133,9 @@ public class Transaction {
     public TransactionStatus getStatus() { return status; }
     public void setStatus(TransactionStatus status) { this.status = status; }
 
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -120,6 +149,8 @@ public class Transaction {
                 ", fromAccount='" + fromAccountNumber + '\'' +
                 ", toAccount='" + toAccountNumber + '\'' +
                 ", amount=" + amount +
+                ", currency='" + currency + '\'' +
+                (convertedCurrency != null ? ", converted=" + convertedAmount + " " + convertedCurrency : "") +
                 ", type=" + transactionType +
                 ", status=" + status +
                 ", performedBy='" + performedBy + '\'' +
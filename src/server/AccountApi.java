@@ -0,0 +1,230 @@
+package server;
+
+import dao.AccountSearchIndex;
+import dao.BankAccountDAO;
+import dao.CustomerDAO;
+import dao.LoadContext;
+import dao.TransactionDAO;
+import model.BankAccount;
+import model.CurrentAccount;
+import model.SavingsAccount;
+import model.banking.AccountHolder;
+import model.banking.Transaction;
+import service.AccountNumberAllocator;
+import service.FxRateService;
+import service.FxRates;
+import service.RateLimiter;
+import service.ledger.LedgerService;
+import util.ReplicaRouter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * /api/accounts endpoints: list and search accounts, open an account, read
+ * one account and its transaction history
+ */
+public class AccountApi {
+
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 200;
+
+    private final BankAccountDAO bankAccountDAO;
+    private final TransactionDAO transactionDAO;
+    private final CustomerDAO customerDAO;
+    private final RateLimiter rateLimiter;
+
+    public AccountApi() {
+        this(new BankAccountDAO(), new TransactionDAO(), new CustomerDAO(), RateLimiter.getInstance());
+    }
+
+    public AccountApi(BankAccountDAO bankAccountDAO, TransactionDAO transactionDAO, CustomerDAO customerDAO,
+                      RateLimiter rateLimiter) {
+        this.bankAccountDAO = bankAccountDAO;
+        this.transactionDAO = transactionDAO;
+        this.customerDAO = customerDAO;
+        this.rateLimiter = rateLimiter;
+    }
+
+    public void handle(ApiExchange exchange) throws IOException {
+        List<String> path = exchange.getPath();
+        String method = exchange.getMethod();
+
+        if (path.size() == 1 && "GET".equals(method)) {
+            String query = exchange.getQuery("q");
+            if (query != null && !query.trim().isEmpty()) {
+                search(exchange, query.trim());
+            } else if ("true".equals(exchange.getQuery("holders"))) {
+                listWithHolders(exchange);
+            } else {
+                exchange.sendJson(200, toJson(bankAccountDAO.getAllAccounts()));
+            }
+        } else if (path.size() == 1 && "POST".equals(method)) {
+            create(exchange);
+        } else if (path.size() == 2 && "GET".equals(method)) {
+            exchange.sendJson(200, toJson(requireAccount(path.get(1))));
+        } else if (path.size() == 3 && "transactions".equals(path.get(2)) && "GET".equals(method)) {
+            requireAccount(path.get(1));
+            List<Map<String, Object>> history = new ArrayList<>();
+            for (Transaction transaction : transactionDAO.getTransactionsForAccount(path.get(1))) {
+                history.add(toJson(transaction));
+            }
+            exchange.sendJson(200, history);
+        } else if (path.size() <= 3) {
+            throw new ApiException(405, "Method not allowed");
+        } else {
+            throw new ApiException(404, "Not found");
+        }
+    }
+
+    private void search(ApiExchange exchange, String query) throws IOException {
+        int limit = exchange.getQueryInt("limit", DEFAULT_SEARCH_LIMIT, MAX_SEARCH_LIMIT);
+        List<Map<String, Object>> results = new ArrayList<>();
+
+        AccountSearchIndex searchIndex = AccountSearchIndex.getInstance();
+        if (searchIndex.isLoaded()) {
+            for (AccountSearchIndex.SearchHit hit : searchIndex.search(query, limit)) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("accountNumber", hit.getAccountNumber());
+                json.put("holderName", hit.getHolderName());
+                json.put("contact", hit.getContact());
+                json.put("score", hit.getScore());
+                results.add(json);
+            }
+        } else {
+            // Index still loading, fall back to the trigram query
+            if (!rateLimiter.tryAcquire(RateLimiter.Operation.ACCOUNT_SEARCH, RateLimiter.Scope.USER,
+                    exchange.getUser().getUsername())) {
+                throw new ApiException(429, "Too many searches, please slow down");
+            }
+            for (BankAccount account : bankAccountDAO.searchAccounts(query, limit)) {
+                results.add(toJson(account));
+            }
+        }
+        exchange.sendJson(200, results);
+    }
+
+    /**
+     * Every account with its holders; the holders of the whole page come
+     * from one query
+     */
+    private void listWithHolders(ApiExchange exchange) throws IOException {
+        List<BankAccount> accounts = bankAccountDAO.getAllAccounts();
+        List<String> accountNumbers = new ArrayList<>(accounts.size());
+        for (BankAccount account : accounts) {
+            accountNumbers.add(account.getAccountNumber());
+        }
+        Map<String, List<AccountHolder>> holders =
+                customerDAO.getHoldersForAccounts(accountNumbers, new LoadContext());
+
+        List<Map<String, Object>> results = new ArrayList<>(accounts.size());
+        for (BankAccount account : accounts) {
+            Map<String, Object> json = toJson(account);
+            json.put("holders", CustomerApi.toJson(
+                    holders.getOrDefault(account.getAccountNumber(), new ArrayList<>())));
+            results.add(json);
+        }
+        exchange.sendJson(200, results);
+    }
+
+    private void create(ApiExchange exchange) throws IOException {
+        Map<String, Object> body = exchange.readBody();
+        String holderName = ApiExchange.requireString(body, "holderName");
+        String accountType = ApiExchange.requireString(body, "accountType");
+        Object balanceValue = body.getOrDefault("initialBalance", BigDecimal.ZERO);
+        if (!(balanceValue instanceof BigDecimal) || ((BigDecimal) balanceValue).signum() < 0) {
+            throw new ApiException(400, "Field 'initialBalance' must be a non-negative number");
+        }
+        double initialBalance = ((BigDecimal) balanceValue).doubleValue();
+        FxRates rates = FxRateService.getInstance().get();
+        Object currencyValue = body.get("currency");
+        String currency = currencyValue instanceof String
+                ? ((String) currencyValue).trim().toUpperCase(Locale.ROOT)
+                : rates.getBaseCurrency();
+        if (!rates.supports(currency)) {
+            throw new ApiException(400, "Field 'currency' must be a currency with an exchange rate");
+        }
+
+        if (!rateLimiter.tryAcquire(RateLimiter.Operation.ACCOUNT_CREATE, RateLimiter.Scope.USER,
+                exchange.getUser().getUsername())) {
+            throw new ApiException(429, "Too many accounts opened, please slow down");
+        }
+
+        BankAccount account;
+        String accountNumber;
+        try {
+            if (!"SAVINGS".equals(accountType) && !"CURRENT".equals(accountType)) {
+                throw new ApiException(400, "Field 'accountType' must be SAVINGS or CURRENT");
+            }
+            accountNumber = AccountNumberAllocator.getInstance().next(accountType);
+            if ("SAVINGS".equals(accountType)) {
+                account = new SavingsAccount(accountNumber, holderName, initialBalance);
+            } else {
+                account = new CurrentAccount(accountNumber, holderName, initialBalance);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ApiException(503, e.getMessage());
+        }
+        account.setCurrency(currency);
+
+        if (!bankAccountDAO.createAccount(account)) {
+            throw new ApiException(409, "Failed to create account " + accountNumber);
+        }
+        ReplicaRouter.recordWrite(exchange.getUser().getUsername());
+        LedgerService.getInstance().openAccount(account);
+        exchange.sendJson(201, toJson(account));
+    }
+
+    private BankAccount requireAccount(String accountNumber) {
+        BankAccount account = bankAccountDAO.getAccountByNumber(accountNumber);
+        if (account == null) {
+            throw new ApiException(404, "Account not found");
+        }
+        return account;
+    }
+
+    static List<Map<String, Object>> toJson(List<BankAccount> accounts) {
+        List<Map<String, Object>> json = new ArrayList<>(accounts.size());
+        for (BankAccount account : accounts) {
+            json.add(toJson(account));
+        }
+        return json;
+    }
+
+    static Map<String, Object> toJson(BankAccount account) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("accountNumber", account.getAccountNumber());
+        json.put("holderName", account.getHolderName());
+        json.put("accountType", account.getAccountType());
+        json.put("balance", account.getBalance());
+        json.put("currency", account.getCurrency());
+        json.put("version", account.getVersion());
+        json.put("hotAccount", account.isHotAccount());
+        return json;
+    }
+
+    static Map<String, Object> toJson(Transaction transaction) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("transactionId", transaction.getTransactionId());
+        json.put("type", transaction.getTransactionType());
+        json.put("fromAccountNumber", transaction.getFromAccountNumber());
+        json.put("toAccountNumber", transaction.getToAccountNumber());
+        json.put("amount", transaction.getAmount());
+        json.put("currency", transaction.getCurrency());
+        if (transaction.isCrossCurrency()) {
+            json.put("convertedAmount", transaction.getConvertedAmount());
+            json.put("convertedCurrency", transaction.getConvertedCurrency());
+            json.put("exchangeRate", transaction.getExchangeRate());
+        }
+        json.put("description", transaction.getDescription());
+        json.put("status", transaction.getStatus());
+        json.put("createdAt", transaction.getCreatedAt() != null ? transaction.getCreatedAt().toString() : null);
+        return json;
+    }
+}
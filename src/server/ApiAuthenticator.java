@@ -0,0 +1,103 @@
+package server;
+
+import dao.UserDAO;
+import model.auth.User;
+import service.LoginAttemptTracker;
+import service.RateLimiter;
+import util.SecurityUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP Basic authentication against the users table.
+ *
+ * Successful credentials are remembered (by hash) for a few minutes so a
+ * client making many calls costs one database lookup rather than one per
+ * request. Failures go through the same lockout and login rate limit as the
+ * desktop login screen.
+ */
+public class ApiAuthenticator {
+
+    private static final long CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int MAX_CACHED = 10_000;
+
+    private final UserDAO userDAO;
+    private final LoginAttemptTracker loginAttempts;
+    private final RateLimiter rateLimiter;
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
+
+    public ApiAuthenticator() {
+        this(new UserDAO(), LoginAttemptTracker.getInstance(), RateLimiter.getInstance());
+    }
+
+    public ApiAuthenticator(UserDAO userDAO, LoginAttemptTracker loginAttempts, RateLimiter rateLimiter) {
+        this.userDAO = userDAO;
+        this.loginAttempts = loginAttempts;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Resolve the user of an Authorization header
+     * @throws ApiException 401 if missing or invalid, 429 if locked out or throttled
+     */
+    public User authenticate(String authorization) {
+        if (authorization == null || !authorization.startsWith("Basic ")) {
+            throw new ApiException(401, "Basic authentication required");
+        }
+
+        String cacheKey = SecurityUtil.hashPassword(authorization);
+        CachedUser cached = cache.get(cacheKey);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            return cached.user;
+        }
+
+        String credentials;
+        try {
+            credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()),
+                    StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(401, "Malformed Authorization header");
+        }
+        int colon = credentials.indexOf(':');
+        if (colon <= 0) {
+            throw new ApiException(401, "Malformed Authorization header");
+        }
+        String username = credentials.substring(0, colon);
+        String password = credentials.substring(colon + 1);
+
+        if (loginAttempts.getLockoutRemainingMillis(username) > 0) {
+            throw new ApiException(429, "Too many failed attempts, user is locked out");
+        }
+        if (!rateLimiter.tryAcquire(RateLimiter.Operation.LOGIN, RateLimiter.Scope.USER, username)) {
+            throw new ApiException(429, "Too many login attempts");
+        }
+
+        User candidate = userDAO.getUserByUsername(username);
+        User user = candidate != null ? userDAO.authenticateUser(username, password, candidate.getRole()) : null;
+        if (user == null) {
+            loginAttempts.recordFailure(username);
+            throw new ApiException(401, "Invalid credentials");
+        }
+        loginAttempts.recordSuccess(username);
+
+        if (cache.size() >= MAX_CACHED) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+        cache.put(cacheKey, new CachedUser(user, System.currentTimeMillis() + CACHE_TTL_MILLIS));
+        return user;
+    }
+
+    private static final class CachedUser {
+        private final User user;
+        private final long expiresAt;
+
+        CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
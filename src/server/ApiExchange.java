@@ -0,0 +1,187 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import model.auth.User;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One API request: parsed path, query and JSON body, the authenticated
+ * user, and helpers to send a JSON response
+ */
+public class ApiExchange {
+
+    // Request bodies are small JSON objects; refuse anything larger
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final HttpExchange exchange;
+    private final List<String> path;
+    private final Map<String, String> query;
+    private User user;
+
+    ApiExchange(HttpExchange exchange, String prefix) {
+        this.exchange = exchange;
+        String rawPath = exchange.getRequestURI().getPath().substring(prefix.length());
+        List<String> segments = new ArrayList<>();
+        for (String segment : rawPath.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+            }
+        }
+        this.path = segments;
+        this.query = parseQuery(exchange.getRequestURI().getRawQuery());
+    }
+
+    public String getMethod() {
+        return exchange.getRequestMethod();
+    }
+
+    /**
+     * Path segments after /api/
+     */
+    public List<String> getPath() {
+        return path;
+    }
+
+    public String getHeader(String name) {
+        return exchange.getRequestHeaders().getFirst(name);
+    }
+
+    public String getQuery(String name) {
+        return query.get(name);
+    }
+
+    public int getQueryInt(String name, int defaultValue, int max) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Math.min(max, Integer.parseInt(value)));
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Query parameter '" + name + "' must be a number");
+        }
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    void setUser(User user) {
+        this.user = user;
+    }
+
+    /**
+     * Parse the request body as a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> readBody() throws IOException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Request body too large");
+        }
+        Object body;
+        try {
+            body = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+        if (!(body instanceof Map)) {
+            throw new ApiException(400, "Request body must be a JSON object");
+        }
+        return (Map<String, Object>) body;
+    }
+
+    public static String requireString(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (!(value instanceof String) || ((String) value).trim().isEmpty()) {
+            throw new ApiException(400, "Field '" + field + "' is required");
+        }
+        return ((String) value).trim();
+    }
+
+    public static String optionalString(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * A positive amount with at most two decimal places
+     */
+    public static double requireAmount(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (!(value instanceof BigDecimal)) {
+            throw new ApiException(400, "Field '" + field + "' must be a number");
+        }
+        BigDecimal amount = (BigDecimal) value;
+        if (amount.signum() <= 0) {
+            throw new ApiException(400, "Field '" + field + "' must be positive");
+        }
+        if (amount.stripTrailingZeros().scale() > 2) {
+            throw new ApiException(400, "Field '" + field + "' has more than two decimal places");
+        }
+        return amount.doubleValue();
+    }
+
+    /**
+     * Idempotency key from the Idempotency-Key header or the body
+     */
+    public String requireIdempotencyKey(Map<String, Object> body) {
+        String key = getHeader("Idempotency-Key");
+        if (key == null) {
+            key = optionalString(body, "idempotencyKey");
+        }
+        if (key == null || key.trim().isEmpty()) {
+            throw new ApiException(400, "An Idempotency-Key header is required");
+        }
+        if (key.length() > 64) {
+            throw new ApiException(400, "Idempotency-Key must be at most 64 characters");
+        }
+        return key.trim();
+    }
+
+    public void sendJson(int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public void sendError(int status, String message) throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", message);
+        body.put("status", status);
+        sendJson(status, body);
+    }
+
+    void setHeader(String name, String value) {
+        exchange.getResponseHeaders().set(name, value);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            String[] parts = Arrays.copyOf(pair.split("=", 2), 2);
+            params.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                    parts[1] != null ? URLDecoder.decode(parts[1], StandardCharsets.UTF_8) : "");
+        }
+        return params;
+    }
+}
@@ -0,0 +1,169 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.auth.Role;
+import service.BackgroundServices;
+import util.ReplicaRouter;
+import util.Settings;
+import util.SettingsService;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless server mode: the accounts, transactions and history features over
+ * HTTP/JSON, so many clients share one pooled backend instead of each
+ * teller's desktop client holding its own database connection.
+ *
+ * Built on the JDK HttpServer with one virtual thread per request, so
+ * thousands of concurrent connections cost little more than their sockets;
+ * database concurrency is bounded by the connection pool
+ * (db.pool.max_connections). Clients authenticate with HTTP Basic.
+ *
+ * Run with: java -cp "out:lib/*" server.BankingServer [port]
+ */
+public final class BankingServer {
+
+    private static final String API_PREFIX = "/api/";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_BACKLOG = 4096;
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final ApiAuthenticator authenticator;
+    private final AccountApi accountApi;
+    private final CustomerApi customerApi;
+    private final TransactionApi transactionApi;
+    private final MetricsApi metricsApi;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public BankingServer(int port, int backlog) throws IOException {
+        this.httpServer = HttpServer.create(new InetSocketAddress(port), backlog);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.authenticator = new ApiAuthenticator();
+        this.accountApi = new AccountApi();
+        this.customerApi = new CustomerApi();
+        this.transactionApi = new TransactionApi();
+        this.metricsApi = new MetricsApi(this, transactionApi.getTransactionService().getContentionMetrics());
+
+        httpServer.setExecutor(executor);
+        httpServer.createContext(API_PREFIX, this::handle);
+    }
+
+    public void start() {
+        httpServer.start();
+        System.out.println("Banking API listening on port " + httpServer.getAddress().getPort());
+    }
+
+    /**
+     * Stop accepting requests, giving in-flight ones up to delaySeconds to finish
+     */
+    public void stop(int delaySeconds) {
+        httpServer.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public long getRequestCount() { return requests.sum(); }
+    public long getInFlightCount() { return inFlight.sum(); }
+    public long getErrorCount() { return errors.sum(); }
+
+    private void handle(HttpExchange httpExchange) {
+        requests.increment();
+        inFlight.increment();
+        ApiExchange exchange = new ApiExchange(httpExchange, API_PREFIX);
+        try {
+            route(exchange);
+        } catch (ApiException e) {
+            sendError(exchange, e.getStatus(), e.getMessage());
+        } catch (Exception e) {
+            errors.increment();
+            System.err.println("Error handling " + httpExchange.getRequestMethod() + " "
+                    + httpExchange.getRequestURI() + ": " + e);
+            sendError(exchange, 500, "Internal server error");
+        } finally {
+            inFlight.decrement();
+            httpExchange.close();
+        }
+    }
+
+    private void route(ApiExchange exchange) throws IOException {
+        if (exchange.getPath().isEmpty()) {
+            throw new ApiException(404, "Not found");
+        }
+        String resource = exchange.getPath().get(0);
+        if ("health".equals(resource)) {
+            Map<String, Object> health = new LinkedHashMap<>();
+            health.put("status", "UP");
+            exchange.sendJson(200, health);
+            return;
+        }
+
+        exchange.setUser(authenticator.authenticate(exchange.getHeader("Authorization")));
+        if (!"GET".equals(exchange.getMethod()) && exchange.getUser().getRole() == Role.AUDITOR) {
+            throw new ApiException(403, "Auditors have read-only access");
+        }
+
+        // Replica reads during this request see the user's own earlier writes
+        ReplicaRouter.setSession(exchange.getUser().getUsername());
+        try {
+            dispatch(resource, exchange);
+        } finally {
+            ReplicaRouter.clearSession();
+        }
+    }
+
+    private void dispatch(String resource, ApiExchange exchange) throws IOException {
+        switch (resource) {
+            case "accounts":
+                accountApi.handle(exchange);
+                break;
+            case "customers":
+                customerApi.handle(exchange);
+                break;
+            case "deposits":
+            case "withdrawals":
+            case "transfers":
+                transactionApi.handle(exchange);
+                break;
+            case "metrics":
+                metricsApi.handle(exchange);
+                break;
+            default:
+                throw new ApiException(404, "Not found");
+        }
+    }
+
+    private static void sendError(ApiExchange exchange, int status, String message) {
+        if (status == 401) {
+            exchange.setHeader("WWW-Authenticate", "Basic realm=\"banking\"");
+        }
+        try {
+            exchange.sendError(status, message);
+        } catch (IOException e) {
+            // Client went away or the response was already started
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        BackgroundServices.start(BackgroundServices.Mode.SERVER);
+
+        Settings settings = SettingsService.getInstance().get();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : settings.getInt("server.port", DEFAULT_PORT);
+        int backlog = settings.getInt("server.backlog", DEFAULT_BACKLOG);
+
+        BankingServer server = new BankingServer(port, backlog);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(5);
+            BackgroundServices.stop();
+        }, "banking-server-shutdown"));
+        server.start();
+    }
+}
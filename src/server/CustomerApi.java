@@ -0,0 +1,81 @@
+package server;
+
+import dao.CustomerDAO;
+import dao.LoadContext;
+import model.BankAccount;
+import model.banking.AccountHolder;
+import model.banking.Customer;
+import model.banking.CustomerProfile;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /api/customers endpoints: the customer 360 view, a customer with every
+ * account they are linked to and the other holders of those accounts
+ */
+public class CustomerApi {
+
+    private final CustomerDAO customerDAO;
+
+    public CustomerApi() {
+        this(new CustomerDAO());
+    }
+
+    public CustomerApi(CustomerDAO customerDAO) {
+        this.customerDAO = customerDAO;
+    }
+
+    public void handle(ApiExchange exchange) throws IOException {
+        List<String> path = exchange.getPath();
+        String method = exchange.getMethod();
+
+        if (path.size() == 2 && "GET".equals(method)) {
+            CustomerProfile profile = customerDAO.getCustomerProfile(path.get(1), new LoadContext());
+            if (profile == null) {
+                throw new ApiException(404, "Customer not found");
+            }
+            exchange.sendJson(200, toJson(profile));
+        } else if (path.size() <= 2) {
+            throw new ApiException(405, "Method not allowed");
+        } else {
+            throw new ApiException(404, "Not found");
+        }
+    }
+
+    private static Map<String, Object> toJson(CustomerProfile profile) {
+        Map<String, Object> json = toJson(profile.getCustomer());
+        json.put("email", profile.getCustomer().getEmail());
+        json.put("phone", profile.getCustomer().getPhone());
+
+        List<Map<String, Object>> accounts = new ArrayList<>();
+        for (BankAccount account : profile.getAccounts()) {
+            Map<String, Object> accountJson = AccountApi.toJson(account);
+            accountJson.put("relationship", profile.getRelationship(account.getAccountNumber()));
+            accountJson.put("holders", toJson(profile.getHolders(account.getAccountNumber())));
+            accounts.add(accountJson);
+        }
+        json.put("accounts", accounts);
+        return json;
+    }
+
+    static List<Map<String, Object>> toJson(List<AccountHolder> holders) {
+        List<Map<String, Object>> json = new ArrayList<>(holders.size());
+        for (AccountHolder holder : holders) {
+            Map<String, Object> holderJson = toJson(holder.getCustomer());
+            holderJson.put("relationship", holder.getRelationship());
+            json.add(holderJson);
+        }
+        return json;
+    }
+
+    private static Map<String, Object> toJson(Customer customer) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("customerId", customer.getCustomerId());
+        json.put("name", customer.getFullName());
+        json.put("kycStatus", customer.getKycStatus());
+        return json;
+    }
+}
@@ -0,0 +1,170 @@
+package server;
+
+import dao.AccountSearchIndex;
+import service.ContentionMetrics;
+import service.FxRateService;
+import service.FxRates;
+import service.PostingMetrics;
+import service.PostingService;
+import service.RateLimiter;
+import service.ScheduledPaymentService;
+import service.ledger.LatencyHistogram;
+import service.ledger.LedgerMetrics;
+import service.ledger.LedgerService;
+import service.outbox.OutboxMetrics;
+import service.outbox.OutboxRelay;
+import service.risk.RiskDecision;
+import service.risk.RiskEngine;
+import service.risk.RiskMetrics;
+import util.ConnectionPool;
+import util.DatabaseConfig;
+import util.ReplicaRouter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /api/metrics: server, connection pool, contention, group commit, ledger
+ * pipeline, outbox relay, risk and scheduler counters
+ */
+public class MetricsApi {
+
+    private final BankingServer server;
+    private final ContentionMetrics contentionMetrics;
+
+    public MetricsApi(BankingServer server, ContentionMetrics contentionMetrics) {
+        this.server = server;
+        this.contentionMetrics = contentionMetrics;
+    }
+
+    public void handle(ApiExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getMethod())) {
+            throw new ApiException(405, "Method not allowed");
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+
+        Map<String, Object> http = new LinkedHashMap<>();
+        http.put("requests", server.getRequestCount());
+        http.put("inFlight", server.getInFlightCount());
+        http.put("serverErrors", server.getErrorCount());
+        metrics.put("server", http);
+
+        ConnectionPool.PoolStats poolStats = DatabaseConfig.getPoolStats();
+        if (poolStats != null) {
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("maxConnections", poolStats.getMaxConnections());
+            pool.put("leased", poolStats.getLeased());
+            pool.put("idle", poolStats.getIdle());
+            pool.put("opened", poolStats.getOpened());
+            pool.put("waits", poolStats.getWaits());
+            pool.put("timeouts", poolStats.getTimeouts());
+            metrics.put("connectionPool", pool);
+        }
+
+        ReplicaRouter router = DatabaseConfig.getReplicaRouter();
+        if (router != null) {
+            ReplicaRouter.RoutingMetrics routing = router.getMetrics();
+            Map<String, Object> replicas = new LinkedHashMap<>();
+            replicas.put("maxLagMillis", router.getMaxLagMillis());
+            replicas.put("replicaReads", routing.getReplicaReads());
+            replicas.put("stickyReads", routing.getStickyReads());
+            replicas.put("failovers", routing.getFailovers());
+            List<Map<String, Object>> nodes = new ArrayList<>();
+            for (ReplicaRouter.Replica replica : router.getReplicas()) {
+                Map<String, Object> node = new LinkedHashMap<>();
+                node.put("url", replica.getName());
+                node.put("healthy", replica.isHealthy());
+                node.put("lagMillis", replica.getLagMillis());
+                node.put("leased", replica.getPoolStats().getLeased());
+                nodes.add(node);
+            }
+            replicas.put("replicas", nodes);
+            metrics.put("readReplicas", replicas);
+        }
+
+        Map<String, Object> contention = new LinkedHashMap<>();
+        contention.put("executions", contentionMetrics.getExecutions());
+        contention.put("attempts", contentionMetrics.getAttempts());
+        contention.put("conflicts", contentionMetrics.getConflicts());
+        contention.put("retries", contentionMetrics.getRetries());
+        contention.put("exhausted", contentionMetrics.getExhausted());
+        contention.put("conflictRate", contentionMetrics.getConflictRate());
+        metrics.put("contention", contention);
+
+        PostingMetrics postingMetrics = PostingService.getInstance().getMetrics();
+        Map<String, Object> posting = new LinkedHashMap<>();
+        posting.put("batches", postingMetrics.getBatches());
+        posting.put("postings", postingMetrics.getPostings());
+        posting.put("averageBatchSize", postingMetrics.getAverageBatchSize());
+        posting.put("largestBatch", postingMetrics.getLargestBatch());
+        posting.put("reruns", postingMetrics.getReruns());
+        posting.put("isolated", postingMetrics.getIsolated());
+        posting.put("fallbacks", postingMetrics.getFallbacks());
+        posting.put("queued", PostingService.getInstance().getQueuedCount());
+        metrics.put("groupCommit", posting);
+
+        LedgerMetrics ledgerMetrics = LedgerService.getInstance().getMetrics();
+        if (ledgerMetrics != null) {
+            LatencyHistogram latency = ledgerMetrics.getLatency();
+            Map<String, Object> ledger = new LinkedHashMap<>();
+            ledger.put("published", ledgerMetrics.getPublished());
+            ledger.put("completed", ledgerMetrics.getCompleted());
+            ledger.put("rejected", ledgerMetrics.getRejected());
+            ledger.put("throughputPerSecond", ledgerMetrics.getThroughputPerSecond());
+            ledger.put("postingsPerJournalSync", ledgerMetrics.getPostingsPerSync());
+            ledger.put("persisted", ledgerMetrics.getPersisted());
+            ledger.put("persistFailures", ledgerMetrics.getPersistFailures());
+            ledger.put("persistenceLag", LedgerService.getInstance().getPersistenceLag());
+            ledger.put("latencyP50Micros", latency.getPercentileNanos(50) / 1000);
+            ledger.put("latencyP99Micros", latency.getPercentileNanos(99) / 1000);
+            ledger.put("latencyP999Micros", latency.getPercentileNanos(99.9) / 1000);
+            ledger.put("latencyMaxMicros", latency.getMaxNanos() / 1000);
+            metrics.put("ledger", ledger);
+        }
+
+        OutboxRelay relay = OutboxRelay.getInstance();
+        OutboxMetrics outboxMetrics = relay.getMetrics();
+        Map<String, Object> outbox = new LinkedHashMap<>();
+        outbox.put("running", relay.isRunning());
+        outbox.put("delivered", outboxMetrics.getDelivered());
+        outbox.put("batches", outboxMetrics.getBatches());
+        outbox.put("averageBatchSize", outboxMetrics.getAverageBatchSize());
+        outbox.put("failures", outboxMetrics.getFailures());
+        outbox.put("listenerErrors", relay.getListenerErrors());
+        outbox.put("throughputPerSecond", outboxMetrics.getThroughputPerSecond());
+        outbox.put("lastLagMillis", outboxMetrics.getLastLagMillis());
+        outbox.put("maxLagMillis", outboxMetrics.getMaxLagMillis());
+        metrics.put("outbox", outbox);
+
+        RiskMetrics riskMetrics = RiskEngine.getInstance().getMetrics();
+        Map<String, Object> risk = new LinkedHashMap<>();
+        for (RiskDecision.Action action : RiskDecision.Action.values()) {
+            risk.put(action.name().toLowerCase(), riskMetrics.getDecisions(action));
+        }
+        risk.put("ruleHits", riskMetrics.getRuleHits());
+        risk.put("averageMicros", riskMetrics.getAverageMicros());
+        risk.put("maxMicros", riskMetrics.getMaxMicros());
+        risk.put("trackedAccounts", RiskEngine.getInstance().getTrackedAccounts());
+        metrics.put("risk", risk);
+
+        FxRates rates = FxRateService.getInstance().get();
+        Map<String, Object> fx = new LinkedHashMap<>();
+        fx.put("baseCurrency", rates.getBaseCurrency());
+        fx.put("currencies", rates.getRatesToBase().size());
+        fx.put("version", rates.getVersion());
+        fx.put("loadedAt", rates.getLoadedAt().toString());
+        metrics.put("exchangeRates", fx);
+
+        Map<String, Object> other = new LinkedHashMap<>();
+        other.put("rateLimitBuckets", RateLimiter.getInstance().size());
+        other.put("scheduledPaymentsWaiting", ScheduledPaymentService.getInstance().getWaitingCount());
+        other.put("searchIndexLoaded", AccountSearchIndex.getInstance().isLoaded());
+        other.put("searchIndexDocuments", AccountSearchIndex.getInstance().size());
+        metrics.put("services", other);
+
+        exchange.sendJson(200, metrics);
+    }
+}
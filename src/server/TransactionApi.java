@@ -0,0 +1,102 @@
+package server;
+
+import service.PostingService;
+import service.TransactionRequest;
+import service.TransactionResult;
+import service.TransactionService;
+import service.ledger.LedgerService;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * POST /api/deposits, /api/withdrawals and /api/transfers. Every call needs an
+ * Idempotency-Key, so clients can safely retry after a timeout. Postings
+ * from concurrent requests are group-committed by the {@link PostingService},
+ * or go through the ledger pipeline when {@link LedgerService} is running.
+ */
+public class TransactionApi {
+
+    private final PostingService postingService;
+
+    public TransactionApi() {
+        this(PostingService.getInstance());
+    }
+
+    public TransactionApi(PostingService postingService) {
+        this.postingService = postingService;
+    }
+
+    public TransactionService getTransactionService() {
+        return postingService.getTransactionService();
+    }
+
+    public void handle(ApiExchange exchange) throws IOException {
+        if (exchange.getPath().size() != 1) {
+            throw new ApiException(404, "Not found");
+        }
+        if (!"POST".equals(exchange.getMethod())) {
+            throw new ApiException(405, "Method not allowed");
+        }
+
+        Map<String, Object> body = exchange.readBody();
+        String key = exchange.requireIdempotencyKey(body);
+        double amount = ApiExchange.requireAmount(body, "amount");
+        String description = ApiExchange.optionalString(body, "description");
+        String performedBy = exchange.getUser().getUsername();
+
+        TransactionRequest request;
+        switch (exchange.getPath().get(0)) {
+            case "deposits":
+                request = TransactionRequest.deposit(key, ApiExchange.requireString(body, "accountNumber"), amount,
+                        description != null ? description : "API deposit", performedBy);
+                break;
+            case "withdrawals":
+                request = TransactionRequest.withdrawal(key, ApiExchange.requireString(body, "accountNumber"), amount,
+                        description != null ? description : "API withdrawal", performedBy);
+                break;
+            default:
+                String from = ApiExchange.requireString(body, "fromAccountNumber");
+                String to = ApiExchange.requireString(body, "toAccountNumber");
+                if (from.equals(to)) {
+                    throw new ApiException(400, "Cannot transfer to the same account");
+                }
+                request = TransactionRequest.transfer(key, from, to, amount,
+                        description != null ? description : "API transfer", performedBy);
+                break;
+        }
+
+        LedgerService ledgerService = LedgerService.getInstance();
+        TransactionResult result = ledgerService.isRunning()
+                ? ledgerService.execute(request)
+                : postingService.execute(request);
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("status", result.getStatus());
+        json.put("message", result.getMessage());
+        if (result.getTransaction() != null) {
+            json.put("transaction", AccountApi.toJson(result.getTransaction()));
+        }
+        exchange.sendJson(httpStatus(result.getStatus()), json);
+    }
+
+    private static int httpStatus(TransactionResult.Status status) {
+        switch (status) {
+            case COMPLETED:
+                return 201;
+            case DUPLICATE:
+                return 200;
+            case ACCOUNT_NOT_FOUND:
+                return 404;
+            case INSUFFICIENT_FUNDS:
+                return 422;
+            case CONFLICT:
+                return 409;
+            case REJECTED:
+                return 403;
+            case RATE_LIMITED:
+                return 429;
+            default:
+                return 500;
+        }
+    }
+}
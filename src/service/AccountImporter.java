@@ -0,0 +1,472 @@
+package service;
+
+import dao.AccountImportDAO;
+import dao.AccountSearchIndex;
+import dao.BankAccountDAO;
+import model.BankAccount;
+import model.CurrentAccount;
+import model.SavingsAccount;
+import util.DatabaseConfig;
+import util.MappedCsvReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports accounts in bulk from a CSV file, e.g. a branch migration.
+ *
+ * The file needs a header with holder_name, account_type and
+ * initial_balance, and may have account_number (allocated when absent or
+ * empty) and currency (the base currency when absent); other columns are
+ * ignored. One thread walks the memory-mapped file cutting it into chunks of
+ * whole rows; workers parse and validate chunks in parallel with the rules
+ * of the account constructors; a single writer inserts each chunk with one
+ * statement, in file order, and commits it together with the import's
+ * progress. Rows that fail go to a reject file with the line and the reason,
+ * in the input's columns, so it can be corrected and imported again.
+ *
+ * Running the same file again (same path, size and modification time)
+ * resumes after the last committed chunk, or does nothing once it completed.
+ */
+public class AccountImporter {
+
+    private static final int DEFAULT_ROWS_PER_CHUNK = 5000;
+    private static final int MAX_HOLDER_NAME_LENGTH = 100;
+    private static final int MAX_ACCOUNT_NUMBER_LENGTH = 20;
+    private static final String REJECT_HEADER = "line,reason,account_number,holder_name,account_type,initial_balance,currency\n";
+
+    private final BankAccountDAO bankAccountDAO;
+    private final AccountImportDAO accountImportDAO;
+    private final AccountNumberAllocator accountNumberAllocator;
+    private final int threads;
+    private final int rowsPerChunk;
+
+    public AccountImporter(int threads) {
+        this(new BankAccountDAO(), new AccountImportDAO(), AccountNumberAllocator.getInstance(),
+                threads, DEFAULT_ROWS_PER_CHUNK);
+    }
+
+    public AccountImporter(BankAccountDAO bankAccountDAO, AccountImportDAO accountImportDAO,
+                           AccountNumberAllocator accountNumberAllocator, int threads, int rowsPerChunk) {
+        this.bankAccountDAO = bankAccountDAO;
+        this.accountImportDAO = accountImportDAO;
+        this.accountNumberAllocator = accountNumberAllocator;
+        this.threads = Math.max(1, threads);
+        this.rowsPerChunk = Math.max(1, rowsPerChunk);
+    }
+
+    /**
+     * Import a file, or resume importing it, writing rejected rows to rejectFile
+     */
+    public Result importFile(Path file, Path rejectFile) throws IOException, SQLException {
+        String importKey = file.toAbsolutePath() + "|" + Files.size(file) + "|" + Files.getLastModifiedTime(file).toMillis();
+        AccountImportDAO.Progress progress = accountImportDAO.getProgress(importKey);
+        if (progress != null && progress.isCompleted()) {
+            return new Result(progress, 0, 0, true);
+        }
+        long startedNanos = System.nanoTime();
+        FxRates rates = FxRateService.getInstance().get();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads + 1, r -> {
+            Thread thread = new Thread(r, "account-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (MappedCsvReader reader = MappedCsvReader.open(file);
+             FileChannel rejects = FileChannel.open(rejectFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (!reader.next()) {
+                throw new IOException("Empty file, expected a header row");
+            }
+            Columns columns = new Columns(reader);
+            boolean resumed = progress != null;
+            if (resumed) {
+                // Drop rejects written for a chunk that was never committed
+                reader.seek(progress.getByteOffset(), progress.getLineNumber());
+                rejects.truncate(progress.getRejectBytes());
+                rejects.position(progress.getRejectBytes());
+            } else {
+                rejects.truncate(0);
+                rejects.write(StandardCharsets.UTF_8.encode(REJECT_HEADER));
+                progress = new AccountImportDAO.Progress(reader.getPosition(), reader.getLine(), 0, 0, rejects.position(), false);
+            }
+            long importedBefore = progress.getRowsImported();
+            long rejectedBefore = progress.getRowsRejected();
+
+            // Chunks wait here in file order; the bound keeps the reader from running ahead
+            BlockingQueue<Future<Chunk>> validated = new ArrayBlockingQueue<>(threads * 2);
+            Writer writer = new Writer(importKey, file.getFileName().toString(), rejects, progress);
+            Future<?> writing = workers.submit(() -> {
+                writer.run(validated);
+                return null;
+            });
+
+            FileChannel channel = reader.getChannel();
+            long chunkStart = reader.getPosition();
+            long chunkLine = reader.getLine();
+            int rows = 0;
+            boolean more = true;
+            while (more && !writing.isDone()) {
+                more = reader.next();
+                if (more) {
+                    rows++;
+                }
+                if (rows == rowsPerChunk || (!more && rows > 0)) {
+                    long start = chunkStart;
+                    long line = chunkLine;
+                    long end = reader.getPosition();
+                    long endLine = reader.getLine();
+                    enqueue(validated, workers.submit(() -> validate(channel, start, end, line, endLine, columns, rates)), writing);
+                    chunkStart = end;
+                    chunkLine = endLine;
+                    rows = 0;
+                }
+            }
+            enqueue(validated, CompletableFuture.completedFuture(null), writing);
+            writing.get();
+
+            AccountImportDAO.Progress done = writer.progress;
+            done = new AccountImportDAO.Progress(done.getByteOffset(), done.getLineNumber(), done.getRowsImported(),
+                    done.getRowsRejected(), done.getRejectBytes(), true);
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                accountImportDAO.saveProgress(conn, importKey, file.getFileName().toString(), done);
+                conn.commit();
+            }
+            Result result = new Result(done, done.getRowsImported() - importedBefore,
+                    done.getRowsRejected() - rejectedBefore, false);
+            result.resumed = resumed;
+            result.elapsedNanos = System.nanoTime() - startedNanos;
+            return result;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Import failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue a chunk for the writer unless the writer has stopped
+     */
+    private static void enqueue(BlockingQueue<Future<Chunk>> validated, Future<Chunk> chunk, Future<?> writing)
+            throws InterruptedException {
+        while (!validated.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (writing.isDone()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parse and validate the rows in [start, end) of the file
+     */
+    private Chunk validate(FileChannel channel, long start, long end, long line, long endLine,
+                           Columns columns, FxRates rates) throws IOException {
+        Chunk chunk = new Chunk(end, endLine);
+        try (MappedCsvReader rows = new MappedCsvReader(channel, start, end, line)) {
+            while (rows.next()) {
+                if (rows.isBlank()) {
+                    continue;
+                }
+                String accountNumber = columns.accountNumber >= 0 ? rows.getString(columns.accountNumber).trim() : "";
+                String holderName = rows.getString(columns.holderName).trim();
+                String accountType = rows.getString(columns.accountType).trim().toUpperCase(Locale.ROOT);
+                String currency = columns.currency >= 0 ? rows.getString(columns.currency).trim().toUpperCase(Locale.ROOT) : "";
+
+                String reason = null;
+                BankAccount account = null;
+                if (holderName.isEmpty()) {
+                    reason = "Holder name is required";
+                } else if (holderName.length() > MAX_HOLDER_NAME_LENGTH) {
+                    reason = "Holder name is longer than " + MAX_HOLDER_NAME_LENGTH + " characters";
+                } else if (accountNumber.length() > MAX_ACCOUNT_NUMBER_LENGTH) {
+                    reason = "Account number is longer than " + MAX_ACCOUNT_NUMBER_LENGTH + " characters";
+                } else if (AccountNumberAllocator.hasBadCheckDigit(accountNumber)) {
+                    reason = "Account number check digit is wrong";
+                } else if (!"SAVINGS".equals(accountType) && !"CURRENT".equals(accountType)) {
+                    reason = "Account type must be SAVINGS or CURRENT";
+                } else if (!currency.isEmpty() && !rates.supports(currency)) {
+                    reason = "Currency " + currency + " has no exchange rate";
+                } else {
+                    try {
+                        double initialBalance = rows.getCents(columns.initialBalance) / 100.0;
+                        if (initialBalance < 0) {
+                            throw new IllegalArgumentException("Initial balance cannot be negative");
+                        }
+                        // Check the constructor's rules before spending an account number
+                        newAccount(accountType, accountNumber, holderName, initialBalance);
+                        account = newAccount(accountType, accountNumber.isEmpty()
+                                ? accountNumberAllocator.next(accountType) : accountNumber, holderName, initialBalance);
+                        account.setCurrency(currency.isEmpty() ? rates.getBaseCurrency() : currency);
+                    } catch (NumberFormatException e) {
+                        reason = "Initial balance is not an amount with at most two decimals";
+                    } catch (IllegalArgumentException e) {
+                        reason = e.getMessage();
+                    }
+                }
+
+                if (account != null) {
+                    chunk.accounts.add(account);
+                    chunk.accountLines.add(rows.getRowLine());
+                } else {
+                    chunk.rejects.add(new Reject(rows.getRowLine(), reason, accountNumber, holderName,
+                            rows.getString(columns.accountType).trim(), rows.getString(columns.initialBalance).trim(), currency));
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private static BankAccount newAccount(String accountType, String accountNumber, String holderName, double initialBalance) {
+        return "SAVINGS".equals(accountType)
+                ? new SavingsAccount(accountNumber, holderName, initialBalance)
+                : new CurrentAccount(accountNumber, holderName, initialBalance);
+    }
+
+    /**
+     * Inserts validated chunks in file order, each in one database
+     * transaction with the import's progress
+     */
+    private class Writer {
+        private final String importKey;
+        private final String fileName;
+        private final FileChannel rejects;
+        private AccountImportDAO.Progress progress;
+
+        Writer(String importKey, String fileName, FileChannel rejects, AccountImportDAO.Progress progress) {
+            this.importKey = importKey;
+            this.fileName = fileName;
+            this.rejects = rejects;
+            this.progress = progress;
+        }
+
+        void run(BlockingQueue<Future<Chunk>> validated) throws Exception {
+            long lastReported = progress.getRowsImported() + progress.getRowsRejected();
+            Chunk chunk;
+            while ((chunk = validated.take().get()) != null) {
+                write(chunk);
+                long rows = progress.getRowsImported() + progress.getRowsRejected();
+                if (rows - lastReported >= 100_000) {
+                    System.out.printf("  %d rows: %d imported, %d rejected%n", rows,
+                            progress.getRowsImported(), progress.getRowsRejected());
+                    lastReported = rows;
+                }
+            }
+        }
+
+        private void write(Chunk chunk) throws SQLException, IOException {
+            AccountSearchIndex searchIndex = AccountSearchIndex.getInstance();
+            List<Reject> rejected = new ArrayList<>(chunk.rejects);
+            List<BankAccount> imported = new ArrayList<>(chunk.accounts.size());
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                try {
+                    if (!chunk.accounts.isEmpty()) {
+                        Set<String> inserted = bankAccountDAO.createAccountsIfAbsent(conn, chunk.accounts);
+                        for (int i = 0; i < chunk.accounts.size(); i++) {
+                            BankAccount account = chunk.accounts.get(i);
+                            // A number repeated within the chunk is inserted once, for its first row
+                            if (inserted.remove(account.getAccountNumber())) {
+                                imported.add(account);
+                            } else {
+                                rejected.add(new Reject(chunk.accountLines.get(i), "Account number already exists", account));
+                            }
+                        }
+                    }
+                    rejected.sort(Comparator.comparingLong(reject -> reject.line));
+                    for (Reject reject : rejected) {
+                        ByteBuffer bytes = StandardCharsets.UTF_8.encode(reject.toCsv());
+                        while (bytes.hasRemaining()) {
+                            rejects.write(bytes);
+                        }
+                    }
+                    rejects.force(false);
+
+                    AccountImportDAO.Progress next = new AccountImportDAO.Progress(chunk.end, chunk.endLine,
+                            progress.getRowsImported() + imported.size(), progress.getRowsRejected() + rejected.size(),
+                            rejects.position(), false);
+                    accountImportDAO.saveProgress(conn, importKey, fileName, next);
+                    conn.commit();
+                    progress = next;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            if (!imported.isEmpty()) {
+                List<String> accountNumbers = new ArrayList<>(imported.size());
+                for (BankAccount account : imported) {
+                    accountNumbers.add(account.getAccountNumber());
+                }
+                searchIndex.refresh(bankAccountDAO, accountNumbers);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: AccountImporter <accounts.csv> [rejects.csv] [threads]");
+            System.exit(1);
+        }
+        Path file = Paths.get(args[0]);
+        Path rejectFile = Paths.get(args.length > 1 ? args[1] : args[0] + ".rejects.csv");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        FxRateService.getInstance().start();
+        try {
+            Result result = new AccountImporter(threads).importFile(file, rejectFile);
+            if (result.isAlreadyCompleted()) {
+                System.out.println(file + " was already imported");
+            } else {
+                System.out.printf("%s %s: %d imported, %d rejected in %d ms (%.0f rows/s); %d imported, %d rejected in total%n",
+                        result.isResumed() ? "Resumed" : "Imported", file, result.getImported(), result.getRejected(),
+                        result.getElapsedMillis(), (result.getImported() + result.getRejected()) * 1000.0
+                                / Math.max(1, result.getElapsedMillis()),
+                        result.getTotalImported(), result.getTotalRejected());
+                if (result.getTotalRejected() > 0) {
+                    System.out.println("Rejected rows written to " + rejectFile.toAbsolutePath());
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error importing accounts: " + e.getMessage() + " (run again to resume)");
+            System.exit(1);
+        } finally {
+            FxRateService.getInstance().stop();
+            DatabaseConfig.closeConnection();
+        }
+    }
+
+    /**
+     * Inner class for the positions of the known columns, -1 when absent
+     */
+    private static class Columns {
+        private int accountNumber = -1;
+        private int holderName = -1;
+        private int accountType = -1;
+        private int initialBalance = -1;
+        private int currency = -1;
+
+        Columns(MappedCsvReader header) throws IOException {
+            for (int i = 0; i < header.getFieldCount(); i++) {
+                switch (header.getString(i).trim().toLowerCase(Locale.ROOT)) {
+                    case "account_number": accountNumber = i; break;
+                    case "holder_name": holderName = i; break;
+                    case "account_type": accountType = i; break;
+                    case "initial_balance": initialBalance = i; break;
+                    case "currency": currency = i; break;
+                    default: break;
+                }
+            }
+            if (holderName < 0 || accountType < 0 || initialBalance < 0) {
+                throw new IOException("Header must name holder_name, account_type and initial_balance columns");
+            }
+        }
+    }
+
+    /**
+     * Inner class for a validated chunk of rows
+     */
+    private static class Chunk {
+        private final long end;
+        private final long endLine;
+        private final List<BankAccount> accounts = new ArrayList<>();
+        private final List<Long> accountLines = new ArrayList<>();
+        private final List<Reject> rejects = new ArrayList<>();
+
+        Chunk(long end, long endLine) {
+            this.end = end;
+            this.endLine = endLine;
+        }
+    }
+
+    /**
+     * Inner class for a rejected row
+     */
+    private static class Reject {
+        private final long line;
+        private final String[] fields;
+
+        Reject(long line, String reason, String accountNumber, String holderName, String accountType,
+               String initialBalance, String currency) {
+            this.line = line;
+            this.fields = new String[] {Long.toString(line), reason, accountNumber, holderName, accountType,
+                    initialBalance, currency};
+        }
+
+        Reject(long line, String reason, BankAccount account) {
+            this(line, reason, account.getAccountNumber(), account.getHolderName(), account.getAccountType(),
+                    String.format(Locale.ROOT, "%.2f", account.getBalance()), account.getCurrency());
+        }
+
+        String toCsv() {
+            StringBuilder csv = new StringBuilder();
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                String field = fields[i] != null ? fields[i] : "";
+                if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                    csv.append('"').append(field.replace("\"", "\"\"")).append('"');
+                } else {
+                    csv.append(field);
+                }
+            }
+            return csv.append('\n').toString();
+        }
+    }
+
+    /**
+     * Inner class for the outcome of an import run
+     */
+    public static class Result {
+        private final AccountImportDAO.Progress progress;
+        private final long imported;
+        private final long rejected;
+        private final boolean alreadyCompleted;
+        private boolean resumed;
+        private long elapsedNanos;
+
+        Result(AccountImportDAO.Progress progress, long imported, long rejected, boolean alreadyCompleted) {
+            this.progress = progress;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.alreadyCompleted = alreadyCompleted;
+        }
+
+        /** Rows imported by this run */
+        public long getImported() { return imported; }
+        /** Rows rejected by this run */
+        public long getRejected() { return rejected; }
+        public long getTotalImported() { return progress.getRowsImported(); }
+        public long getTotalRejected() { return progress.getRowsRejected(); }
+        public boolean isResumed() { return resumed; }
+        public boolean isAlreadyCompleted() { return alreadyCompleted; }
+        public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+    }
+}
@@ -0,0 +1,130 @@
+package service;
+
+import dao.BankAccountDAO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Hands out unique account numbers without a database round trip per number.
+ *
+ * Values come from account_number_seq a block at a time (hi/lo): one nextval
+ * reserves as many values as the sequence's increment, which are then given
+ * out from memory. Blocks are never shared between processes, so numbers are
+ * unique across clients and servers; values of a block not used before
+ * shutdown are skipped, not reused.
+ *
+ * A number is a type prefix, the value as 11 digits and a Luhn check digit,
+ * e.g. SAV000000000018, so a mistyped digit is caught before any lookup.
+ */
+public class AccountNumberAllocator {
+
+    private static final AccountNumberAllocator INSTANCE = new AccountNumberAllocator(new BankAccountDAO());
+
+    private static final Map<String, String> PREFIXES = Map.of(
+            "SAVINGS", "SAV",
+            "CURRENT", "CUR",
+            "LOAN", "LON");
+    private static final int VALUE_DIGITS = 11;
+    private static final Pattern GENERATED = Pattern.compile("(SAV|CUR|LON)\\d{" + (VALUE_DIGITS + 1) + "}");
+
+    private final BankAccountDAO bankAccountDAO;
+
+    // The current block is [next, limit); guarded by this
+    private long next;
+    private long limit;
+
+    public static AccountNumberAllocator getInstance() {
+        return INSTANCE;
+    }
+
+    public AccountNumberAllocator(BankAccountDAO bankAccountDAO) {
+        this.bankAccountDAO = bankAccountDAO;
+    }
+
+    /**
+     * A new account number for an account type (SAVINGS, CURRENT or LOAN)
+     * @throws IllegalArgumentException for an unknown type
+     * @throws IllegalStateException if no block could be reserved
+     */
+    public String next(String accountType) {
+        String prefix = prefixFor(accountType);
+        return format(prefix, nextValue());
+    }
+
+    /**
+     * Several new account numbers of one type, e.g. for bulk onboarding
+     */
+    public synchronized List<String> next(String accountType, int count) {
+        String prefix = prefixFor(accountType);
+        List<String> accountNumbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accountNumbers.add(format(prefix, nextValue()));
+        }
+        return accountNumbers;
+    }
+
+    private synchronized long nextValue() {
+        if (next >= limit) {
+            long[] block = bankAccountDAO.reserveAccountNumberBlock();
+            if (block == null || block[1] <= 0) {
+                throw new IllegalStateException("Could not reserve account numbers");
+            }
+            next = block[0];
+            limit = block[0] + block[1];
+        }
+        return next++;
+    }
+
+    private static String prefixFor(String accountType) {
+        String prefix = accountType != null ? PREFIXES.get(accountType) : null;
+        if (prefix == null) {
+            throw new IllegalArgumentException("Unknown account type " + accountType);
+        }
+        return prefix;
+    }
+
+    /**
+     * The account number for a prefix and sequence value
+     */
+    static String format(String prefix, long value) {
+        String digits = String.format("%0" + VALUE_DIGITS + "d", value);
+        if (digits.length() > VALUE_DIGITS) {
+            throw new IllegalStateException("Account number space exhausted");
+        }
+        return prefix + digits + checkDigit(digits);
+    }
+
+    /**
+     * Whether a number has the allocator's format but a wrong check digit.
+     * Numbers in any other format (entered before the allocator) are not judged.
+     */
+    public static boolean hasBadCheckDigit(String accountNumber) {
+        if (accountNumber == null || !GENERATED.matcher(accountNumber).matches()) {
+            return false;
+        }
+        int length = accountNumber.length();
+        return checkDigit(accountNumber.substring(3, length - 1)) != accountNumber.charAt(length - 1) - '0';
+    }
+
+    /**
+     * Luhn check digit for a string of digits
+     */
+    private static int checkDigit(String digits) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
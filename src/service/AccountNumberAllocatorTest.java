@@ -0,0 +1,110 @@
+package service;
+
+import static util.Assert.check;
+import static util.Assert.checkEquals;
+import static util.Assert.checkThrows;
+
+import dao.BankAccountDAO;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Unit tests for AccountNumberAllocator formatting, Luhn check digits and
+ * block hand-out
+ */
+public class AccountNumberAllocatorTest {
+
+    public static void main(String[] args) {
+        System.out.println("🧪 Testing AccountNumberAllocator...");
+        testFormat();
+        testCheckDigitIsLuhn();
+        testBadCheckDigitDetected();
+        testBlocks();
+        System.out.println("✅ AccountNumberAllocator tests passed");
+    }
+
+    private static void testFormat() {
+        checkEquals("SAV000000000018", AccountNumberAllocator.format("SAV", 1), "value 1");
+        // The textbook Luhn example 7992739871 has check digit 3
+        checkEquals("CUR079927398713", AccountNumberAllocator.format("CUR", 7_992_739_871L), "Luhn example");
+        checkEquals("LON999999999991", AccountNumberAllocator.format("LON", 99_999_999_999L), "largest value");
+        checkThrows(IllegalStateException.class, () -> AccountNumberAllocator.format("SAV", 100_000_000_000L),
+                "value wider than 11 digits");
+    }
+
+    private static void testCheckDigitIsLuhn() {
+        for (long value = 0; value < 100_000; value += 7) {
+            String number = AccountNumberAllocator.format("SAV", value);
+            check(luhnValid(number.substring(3)), number + " passes the Luhn check");
+            check(!AccountNumberAllocator.hasBadCheckDigit(number), number + " has a good check digit");
+        }
+    }
+
+    /**
+     * Luhn catches every single-digit typo; numbers in other formats are not judged
+     */
+    private static void testBadCheckDigitDetected() {
+        String number = AccountNumberAllocator.format("SAV", 12_345_678_901L);
+        for (int i = 3; i < number.length(); i++) {
+            for (char digit = '0'; digit <= '9'; digit++) {
+                if (digit != number.charAt(i)) {
+                    String typo = number.substring(0, i) + digit + number.substring(i + 1);
+                    check(AccountNumberAllocator.hasBadCheckDigit(typo), typo + " is caught");
+                }
+            }
+        }
+        check(!AccountNumberAllocator.hasBadCheckDigit("SAV001"), "older short numbers are not judged");
+        check(!AccountNumberAllocator.hasBadCheckDigit("XYZ000000000011"), "unknown prefixes are not judged");
+        check(!AccountNumberAllocator.hasBadCheckDigit(null), "null is not judged");
+    }
+
+    private static void testBlocks() {
+        StubDAO dao = new StubDAO(new long[] {100, 3}, new long[] {500, 2});
+        AccountNumberAllocator allocator = new AccountNumberAllocator(dao);
+        List<String> numbers = allocator.next("SAVINGS", 4);
+        checkEquals(Arrays.asList(
+                AccountNumberAllocator.format("SAV", 100),
+                AccountNumberAllocator.format("SAV", 101),
+                AccountNumberAllocator.format("SAV", 102),
+                AccountNumberAllocator.format("SAV", 500)), numbers, "numbers from two blocks");
+        checkEquals(AccountNumberAllocator.format("CUR", 501), allocator.next("CURRENT"), "rest of the second block");
+        checkEquals(2, dao.reserved, "blocks reserved");
+        checkThrows(IllegalStateException.class, () -> allocator.next("LOAN"), "no block left");
+        checkThrows(IllegalArgumentException.class, () -> allocator.next("CHECKING"), "unknown account type");
+    }
+
+    /**
+     * Luhn validation of a full digit string, check digit included
+     */
+    private static boolean luhnValid(String digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(digits.length() - 1 - i) - '0';
+            if (i % 2 == 1) {
+                digit = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+            }
+            sum += digit;
+        }
+        return sum % 10 == 0;
+    }
+
+    /**
+     * Hands out the given blocks, then none
+     */
+    private static class StubDAO extends BankAccountDAO {
+        private final Deque<long[]> blocks;
+        private int reserved;
+
+        StubDAO(long[]... blocks) {
+            this.blocks = new ArrayDeque<>(Arrays.asList(blocks));
+        }
+
+        @Override
+        public long[] reserveAccountNumberBlock() {
+            reserved++;
+            return blocks.poll();
+        }
+    }
+}
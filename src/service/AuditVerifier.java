@@ -0,0 +1,391 @@
+package service;
+
+import dao.AuditLogDAO;
+import model.audit.AuditLog;
+import util.AuditChain;
+import util.DatabaseConfig;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that the audit log has not been changed since it was written.
+ *
+ * Every entry's hash is recomputed from its fields and the hash before it and
+ * compared with the stored one; each complete segment's Merkle root and end
+ * hash must match its checkpoint, and with audit.checkpoint.key set every
+ * checkpoint and the chain head must carry a valid signature. Segments start
+ * from the hash their checkpoint records, so they are verified in parallel,
+ * one connection per worker.
+ *
+ * An INCREMENTAL run verifies only the segments after the last one every
+ * earlier run agreed on, plus the entries after the last checkpoint; the
+ * checkpoints themselves, which are few, are always all checked. Edits to old
+ * rows that leave the checkpoints alone are found by a FULL run, so schedule
+ * one now and then.
+ */
+public class AuditVerifier {
+
+    public enum Mode {
+        FULL, INCREMENTAL
+    }
+
+    public enum Kind {
+        /** An entry's stored hash differs from the recomputed one */
+        HASH_MISMATCH,
+        /** Sequence numbers skip an entry */
+        MISSING_ENTRY,
+        /** A segment's Merkle root or end hash differs from its checkpoint */
+        CHECKPOINT_MISMATCH,
+        /** A complete segment has no checkpoint */
+        MISSING_CHECKPOINT,
+        /** A checkpoint or the head is not signed with the configured key */
+        BAD_SIGNATURE,
+        /** The chain head disagrees with the last entry, or entries lie beyond it */
+        HEAD_MISMATCH
+    }
+
+    private final AuditLogDAO auditLogDAO;
+    private final int threads;
+
+    public AuditVerifier(int threads) {
+        this(new AuditLogDAO(), threads);
+    }
+
+    public AuditVerifier(AuditLogDAO auditLogDAO, int threads) {
+        this.auditLogDAO = auditLogDAO;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Verify the log and record the run. INCREMENTAL falls back to FULL when
+     * nothing has been verified yet.
+     */
+    public Report run(Mode mode) throws SQLException {
+        long startedNanos = System.nanoTime();
+        Timestamp startedAt = new Timestamp(System.currentTimeMillis());
+        byte[] key = AuditChain.checkpointKey();
+        List<Connection> connections = new ArrayList<>();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "audit-verifier-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            // The head and the checkpoints are read from one snapshot, as appends move both
+            Connection coordinator = DatabaseConfig.openConnection(false);
+            connections.add(coordinator);
+            coordinator.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            AuditLogDAO.ChainHead head = auditLogDAO.getHead(coordinator);
+            List<AuditLogDAO.Checkpoint> checkpoints = auditLogDAO.getCheckpoints(coordinator);
+            long verifiedThrough = mode == Mode.INCREMENTAL ? auditLogDAO.getVerifiedThrough(coordinator) : -1;
+            coordinator.rollback();
+
+            // Segments before this one are complete and must have a checkpoint
+            long completeSegments = head.getLastSeq() / AuditChain.SEGMENT_SIZE;
+            Map<Long, AuditLogDAO.Checkpoint> bySegment = new HashMap<>();
+            for (AuditLogDAO.Checkpoint checkpoint : checkpoints) {
+                bySegment.put(checkpoint.getSegment(), checkpoint);
+            }
+            long fromSegment = Math.min(verifiedThrough + 1, completeSegments);
+            Report report = new Report(verifiedThrough >= 0 ? Mode.INCREMENTAL : Mode.FULL, fromSegment, head.getLastSeq());
+
+            checkCheckpoints(key, head, checkpoints, bySegment, completeSegments, report);
+
+            Queue<Long> segments = new ConcurrentLinkedQueue<>();
+            for (long segment = fromSegment; segment <= completeSegments; segment++) {
+                segments.add(segment);
+            }
+            report.segmentsChecked = segments.size();
+            List<Future<List<Failure>>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.min(threads, segments.size()); i++) {
+                Connection conn = DatabaseConfig.openConnection(false);
+                connections.add(conn);
+                workers.add(executor.submit(() -> verifySegments(conn, segments, bySegment, head, report)));
+            }
+            for (Future<List<Failure>> worker : workers) {
+                report.failures.addAll(worker.get());
+            }
+            report.failures.sort(Comparator.comparingLong(Failure::getSeq));
+            closeAll(connections);
+
+            // The run moves the verified mark up to the first segment with a failure
+            long verifiedNow = completeSegments - 1;
+            for (Failure failure : report.failures) {
+                verifiedNow = Math.min(verifiedNow, failure.getSegment() - 1);
+            }
+            report.verifiedThroughSegment = verifiedNow;
+            report.runId = auditLogDAO.saveRun(report.mode == Mode.INCREMENTAL, fromSegment, verifiedNow,
+                    head.getLastSeq(), report.entriesChecked.get(), report.failures.size(), startedAt);
+            report.elapsedNanos = System.nanoTime() - startedNanos;
+            return report;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof SQLException ? (SQLException) e.getCause()
+                    : new SQLException("Audit verification failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Audit verification interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            closeAll(connections);
+        }
+    }
+
+    /**
+     * Check that every complete segment has a checkpoint, that each starts
+     * where the one before ended, and their signatures and the head's
+     */
+    private void checkCheckpoints(byte[] key, AuditLogDAO.ChainHead head, List<AuditLogDAO.Checkpoint> checkpoints,
+                                  Map<Long, AuditLogDAO.Checkpoint> bySegment, long completeSegments, Report report) {
+        for (long segment = 0; segment < completeSegments; segment++) {
+            if (!bySegment.containsKey(segment)) {
+                report.failures.add(new Failure(Kind.MISSING_CHECKPOINT, AuditChain.firstSeq(segment),
+                        "no checkpoint for segment " + segment));
+            }
+        }
+        for (AuditLogDAO.Checkpoint checkpoint : checkpoints) {
+            long segment = checkpoint.getSegment();
+            if (segment >= completeSegments) {
+                report.failures.add(new Failure(Kind.HEAD_MISMATCH, checkpoint.getFirstSeq(),
+                        "checkpoint for segment " + segment + " beyond the chain head"));
+                continue;
+            }
+            AuditLogDAO.Checkpoint previous = bySegment.get(segment - 1);
+            byte[] expectedStart = segment == 0 ? AuditChain.genesis() : previous != null ? previous.getLastEntryHash() : null;
+            if (expectedStart != null && !Arrays.equals(expectedStart, checkpoint.getPreviousHash())) {
+                report.failures.add(new Failure(Kind.CHECKPOINT_MISMATCH, checkpoint.getFirstSeq(),
+                        "checkpoint does not start where segment " + (segment - 1) + " ends"));
+            }
+            if (key != null && !Arrays.equals(checkpoint.getSignature(), AuditChain.signCheckpoint(key, segment,
+                    checkpoint.getPreviousHash(), checkpoint.getMerkleRoot(), checkpoint.getLastEntryHash()))) {
+                report.failures.add(new Failure(Kind.BAD_SIGNATURE, checkpoint.getFirstSeq(),
+                        "checkpoint signature invalid"));
+            }
+        }
+        if (key != null && !Arrays.equals(head.getSignature(), AuditChain.signHead(key, head.getLastSeq(), head.getLastHash()))) {
+            report.failures.add(new Failure(Kind.BAD_SIGNATURE, head.getLastSeq(), "chain head signature invalid"));
+        }
+        if (head.getEntriesBeyond() > 0) {
+            report.failures.add(new Failure(Kind.HEAD_MISMATCH, head.getLastSeq() + 1,
+                    head.getEntriesBeyond() + " entries after the chain head"));
+        }
+    }
+
+    /**
+     * Verify segments taken from the queue until it is empty; the last one,
+     * which may be partial, is checked against the chain head instead of a
+     * checkpoint
+     */
+    private List<Failure> verifySegments(Connection conn, Queue<Long> segments, Map<Long, AuditLogDAO.Checkpoint> bySegment,
+                                         AuditLogDAO.ChainHead head, Report report) throws SQLException {
+        AuditChain chain = new AuditChain();
+        byte[] leaves = new byte[AuditChain.SEGMENT_SIZE * AuditChain.HASH_LENGTH];
+        List<Failure> failures = new ArrayList<>();
+        Long segment;
+        while ((segment = segments.poll()) != null) {
+            Failure failure = verifySegment(conn, chain, leaves, segment, bySegment, head, report);
+            if (failure != null) {
+                failures.add(failure);
+            }
+            conn.rollback();
+        }
+        return failures;
+    }
+
+    private Failure verifySegment(Connection conn, AuditChain chain, byte[] leaves, long segment,
+                                  Map<Long, AuditLogDAO.Checkpoint> bySegment, AuditLogDAO.ChainHead head,
+                                  Report report) throws SQLException {
+        long firstSeq = AuditChain.firstSeq(segment);
+        long lastSeq = Math.min(AuditChain.lastSeq(segment), head.getLastSeq());
+        AuditLogDAO.Checkpoint checkpoint = bySegment.get(segment);
+        AuditLogDAO.Checkpoint previous = bySegment.get(segment - 1);
+
+        // Start from the checkpointed hash; without one, from the stored hash before the segment
+        SegmentState state = new SegmentState(segment == 0 ? AuditChain.genesis()
+                : checkpoint != null ? checkpoint.getPreviousHash()
+                : previous != null ? previous.getLastEntryHash() : null, firstSeq);
+        auditLogDAO.streamEntries(conn, state.hash != null ? firstSeq : firstSeq - 1, lastSeq, entry -> {
+            if (state.failure != null) {
+                return;
+            }
+            if (state.hash == null) {
+                state.hash = entry.getEntryHash();
+                return;
+            }
+            if (entry.getSeq() != state.nextSeq) {
+                state.failure = new Failure(Kind.MISSING_ENTRY, state.nextSeq, "next entry found is " + entry.getSeq());
+                return;
+            }
+            state.hash = chain.entryHash(state.hash, entry);
+            if (!Arrays.equals(state.hash, entry.getEntryHash())) {
+                state.failure = new Failure(Kind.HASH_MISMATCH, entry.getSeq(), describe(entry));
+                return;
+            }
+            System.arraycopy(state.hash, 0, leaves, (int) (state.nextSeq - firstSeq) * AuditChain.HASH_LENGTH,
+                    AuditChain.HASH_LENGTH);
+            state.nextSeq++;
+        });
+        report.entriesChecked.addAndGet(state.nextSeq - firstSeq);
+
+        if (state.failure != null) {
+            return state.failure;
+        }
+        if (state.nextSeq <= lastSeq) {
+            return new Failure(Kind.MISSING_ENTRY, state.nextSeq, "entries end at " + (state.nextSeq - 1));
+        }
+        if (lastSeq < AuditChain.lastSeq(segment)) {
+            return Arrays.equals(state.hash, head.getLastHash()) ? null
+                    : new Failure(Kind.HEAD_MISMATCH, lastSeq, "chain head hash differs from the last entry");
+        }
+        if (checkpoint == null) {
+            return null;
+        }
+        if (!Arrays.equals(state.hash, checkpoint.getLastEntryHash())
+                || !Arrays.equals(chain.merkleRoot(leaves, AuditChain.SEGMENT_SIZE), checkpoint.getMerkleRoot())) {
+            return new Failure(Kind.CHECKPOINT_MISMATCH, firstSeq, "segment " + segment + " differs from its checkpoint");
+        }
+        if (lastSeq == head.getLastSeq() && !Arrays.equals(state.hash, head.getLastHash())) {
+            return new Failure(Kind.HEAD_MISMATCH, lastSeq, "chain head hash differs from the last entry");
+        }
+        return null;
+    }
+
+    private static String describe(AuditLog entry) {
+        return entry.getAction() + " by " + entry.getUsername() + " at " + entry.getTimestamp();
+    }
+
+    private static void closeAll(List<Connection> connections) {
+        for (Connection conn : connections) {
+            try {
+                if (!conn.isClosed()) {
+                    conn.rollback();
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                System.err.println("Error closing audit verification connection: " + e.getMessage());
+            }
+        }
+        connections.clear();
+    }
+
+    public static void main(String[] args) {
+        Mode mode = args.length > 0 ? Mode.valueOf(args[0].toUpperCase()) : Mode.INCREMENTAL;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        int status = 0;
+        try {
+            Report report = new AuditVerifier(threads).run(mode);
+            System.out.print(report.getSummary());
+            status = report.getFailures().isEmpty() ? 0 : 2;
+        } catch (SQLException e) {
+            System.err.println("Error verifying audit log: " + e.getMessage());
+            status = 1;
+        } finally {
+            DatabaseConfig.closeConnection();
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Inner class for the progress of one segment
+     */
+    private static class SegmentState {
+        private byte[] hash;
+        private long nextSeq;
+        private Failure failure;
+
+        SegmentState(byte[] hash, long nextSeq) {
+            this.hash = hash;
+            this.nextSeq = nextSeq;
+        }
+    }
+
+    /**
+     * Inner class for one reported problem; only the first in a segment is
+     * reported, since every hash after it differs too
+     */
+    public static class Failure {
+        private final Kind kind;
+        private final long seq;
+        private final String message;
+
+        Failure(Kind kind, long seq, String message) {
+            this.kind = kind;
+            this.seq = seq;
+            this.message = message;
+        }
+
+        public Kind getKind() { return kind; }
+        public long getSeq() { return seq; }
+        public String getMessage() { return message; }
+
+        public long getSegment() {
+            return AuditChain.segmentOf(Math.max(1, seq));
+        }
+    }
+
+    /**
+     * Inner class for the outcome of a run
+     */
+    public static class Report {
+        private final Mode mode;
+        private final long fromSegment;
+        private final long lastSeq;
+        private final List<Failure> failures = new ArrayList<>();
+        private final AtomicLong entriesChecked = new AtomicLong();
+        private int segmentsChecked;
+        private long verifiedThroughSegment;
+        private int runId;
+        private long elapsedNanos;
+
+        Report(Mode mode, long fromSegment, long lastSeq) {
+            this.mode = mode;
+            this.fromSegment = fromSegment;
+            this.lastSeq = lastSeq;
+        }
+
+        public Mode getMode() { return mode; }
+        public long getFromSegment() { return fromSegment; }
+        public long getLastSeq() { return lastSeq; }
+        public List<Failure> getFailures() { return Collections.unmodifiableList(failures); }
+        public long getEntriesChecked() { return entriesChecked.get(); }
+        public int getSegmentsChecked() { return segmentsChecked; }
+        /** Last segment known intact after this run, or -1 */
+        public long getVerifiedThroughSegment() { return verifiedThroughSegment; }
+        /** Id of the recorded run, or -1 if it could not be saved */
+        public int getRunId() { return runId; }
+        public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+        public String getSummary() {
+            StringBuilder summary = new StringBuilder();
+            summary.append(String.format("%s audit verification (run %d): segments %d..%d, entries up to %d%n",
+                    mode, runId, fromSegment, fromSegment + Math.max(0, segmentsChecked - 1), lastSeq));
+            summary.append(String.format("  %d entries checked, %d failures, verified through segment %d, %d ms%n",
+                    entriesChecked.get(), failures.size(), verifiedThroughSegment, getElapsedMillis()));
+            for (Failure failure : failures.subList(0, Math.min(20, failures.size()))) {
+                summary.append(String.format("  seq %-12d %-20s %s%n", failure.seq, failure.kind, failure.message));
+            }
+            if (failures.size() > 20) {
+                summary.append(String.format("  ... %d more%n", failures.size() - 20));
+            }
+            return summary.toString();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package service;
+
+import dao.AccountSearchIndex;
+import dao.BankAccountDAO;
+import dao.TransactionDAO;
+import service.ledger.LedgerService;
+import service.outbox.OutboxRelay;
+import service.risk.RiskEngine;
+import util.DatabaseConfig;
+import util.SettingsService;
+
+/**
+ * Starts and stops the in-process services of the desktop client and the
+ * headless server.
+ *
+ * Startup runs as a {@link StartupOrchestrator}: the JDBC driver, settings
+ * and connection pool come up concurrently, services start as soon as what
+ * they need is there, and the search index and risk engine warm up in the
+ * background. Services that act for the whole bank (group commit, the ledger
+ * pipeline, standing orders, the outbox relay) run only in the server, once;
+ * a desktop client starts just what its own screens use.
+ */
+public final class BackgroundServices {
+
+    /**
+     * Which process is starting
+     */
+    public enum Mode {
+        DESKTOP,
+        SERVER
+    }
+
+    private static final int STARTUP_THREADS = 4;
+    private static final int DEFAULT_POOL_PREFILL = 2;
+    private static final long READY_TIMEOUT_MILLIS = 120_000;
+
+    private static volatile StartupOrchestrator startup;
+    private static volatile Mode mode;
+
+    private BackgroundServices() {
+    }
+
+    /**
+     * The startup steps for a mode, not yet started; callers may add their
+     * own before calling {@link StartupOrchestrator#start()}
+     */
+    public static synchronized StartupOrchestrator prepare(Mode mode) {
+        BackgroundServices.mode = mode;
+        SettingsService settingsService = SettingsService.getInstance();
+        StartupOrchestrator orchestrator = new StartupOrchestrator(STARTUP_THREADS);
+
+        // Apply rate limits, login lockout, risk rules and batching now and whenever settings change
+        orchestrator.step("settings", () -> {
+            settingsService.addListener(settings -> {
+                RateLimiter.getInstance().configure(settings.asMap());
+                LoginAttemptTracker.getInstance().configure(settings.asMap());
+                RiskEngine.getInstance().configure(settings.asMap());
+                if (mode == Mode.SERVER) {
+                    PostingService.getInstance().configure(settings.asMap());
+                }
+                FxRateService.getInstance().configure(settings.asMap());
+            });
+            settingsService.start();
+        });
+        orchestrator.step("jdbc-driver", DatabaseConfig::loadDriver);
+        // The first query (usually the login) then finds an open connection
+        orchestrator.step("connection-pool", () -> DatabaseConfig.prefillPool(
+                settingsService.get().getInt("db.pool.prefill", DEFAULT_POOL_PREFILL)), "settings", "jdbc-driver");
+        orchestrator.step("fx-rates", () -> FxRateService.getInstance().start(), "settings");
+
+        if (mode == Mode.SERVER) {
+            // Group-commit concurrent postings (or run the ledger pipeline if
+            // enabled) and fire due standing orders
+            orchestrator.step("posting-service", () -> PostingService.getInstance().start(), "settings");
+            orchestrator.step("ledger", () -> LedgerService.getInstance().start(settingsService.get()),
+                    "settings", "jdbc-driver", "fx-rates");
+            // Standing orders post through the database, which the pipeline forbids
+            orchestrator.step("scheduled-payments", () -> {
+                if (LedgerService.getInstance().isRunning()) {
+                    System.err.println("Standing orders are not run while the ledger pipeline owns the balances");
+                } else {
+                    ScheduledPaymentService.getInstance().start();
+                }
+            }, "ledger");
+            // Deliver balance change events from the transactional outbox
+            orchestrator.step("outbox-relay", () -> OutboxRelay.getInstance().start(settingsService.get()),
+                    "settings", "jdbc-driver");
+        }
+
+        // Warm in-memory state from the database without holding anything up
+        orchestrator.backgroundStep("search-index", () -> {
+            AccountSearchIndex searchIndex = AccountSearchIndex.getInstance();
+            if (!searchIndex.isLoaded()) {
+                searchIndex.load(new BankAccountDAO());
+            }
+        }, "connection-pool");
+        orchestrator.backgroundStep("risk-warm-up", () -> RiskEngine.getInstance().warmUp(new TransactionDAO()),
+                "connection-pool");
+        orchestrator.backgroundStep("hot-accounts", () -> HotAccounts.getInstance().load(new BankAccountDAO()),
+                "connection-pool");
+
+        startup = orchestrator;
+        return orchestrator;
+    }
+
+    /**
+     * Start the services of a mode and wait until they are up; warm-ups
+     * carry on in the background
+     */
+    public static void start(Mode mode) {
+        StartupOrchestrator orchestrator = prepare(mode);
+        orchestrator.start();
+        try {
+            if (!orchestrator.awaitReady(READY_TIMEOUT_MILLIS)) {
+                System.err.println("Startup still running after " + READY_TIMEOUT_MILLIS + " ms, continuing");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The startup in progress or last run, or null before {@link #prepare()}
+     */
+    public static StartupOrchestrator getStartup() {
+        return startup;
+    }
+
+    /**
+     * Record a startup milestone such as the first dashboard being shown
+     */
+    public static void markStartup(String milestone) {
+        StartupOrchestrator orchestrator = startup;
+        if (orchestrator != null) {
+            orchestrator.mark(milestone);
+        }
+    }
+
+    public static void stop() {
+        // A desktop client never loads the server's services, so leave them unloaded
+        if (mode == Mode.SERVER) {
+            ScheduledPaymentService.getInstance().stop();
+            PostingService.getInstance().stop();
+            LedgerService.getInstance().stop();
+            OutboxRelay.getInstance().stop();
+        }
+        FxRateService.getInstance().stop();
+        SettingsService.getInstance().stop();
+        DatabaseConfig.closeConnection();
+    }
+}
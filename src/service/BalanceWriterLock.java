@@ -0,0 +1,122 @@
+package service;
+
+import util.DatabaseConfig;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Keeps the ledger pipeline and database-path posting from writing the same
+ * balances at once.
+ *
+ * The pipeline holds balances in memory and stores only deltas, so it must
+ * be the only writer while it runs. Both sides take one PostgreSQL advisory
+ * lock on a dedicated session: a process posting through the database path
+ * (a desktop client, a server without the pipeline) holds it shared from its
+ * first posting on, and a server running the pipeline holds it exclusively.
+ * So the pipeline does not start while another writer is connected, and
+ * database postings are refused while it runs. The lock is released with the
+ * session if a process dies.
+ */
+public final class BalanceWriterLock {
+
+    private static final BalanceWriterLock INSTANCE = new BalanceWriterLock();
+
+    // Advisory lock key; the same in every process
+    private static final long LOCK_KEY = 0x42414c414e4345L;
+
+    // Session holding the lock; guarded by this
+    private Connection session;
+    private volatile boolean shared = false;
+    private volatile boolean exclusive = false;
+
+    private BalanceWriterLock() {
+    }
+
+    /**
+     * Get the shared lock instance
+     */
+    public static BalanceWriterLock getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether this process may post through the database, taking the lock
+     * shared on first use. False while a ledger pipeline, here or in another
+     * process, owns the balances; asked again on every posting, so postings
+     * resume once the pipeline stops.
+     */
+    public boolean allowsDatabasePostings() {
+        if (shared) {
+            return true;
+        }
+        if (exclusive) {
+            return false;
+        }
+        return acquire(false);
+    }
+
+    /**
+     * Take the lock exclusively for a ledger pipeline. False if any process,
+     * this one included, already posts through the database.
+     */
+    public boolean acquireForPipeline() {
+        if (exclusive) {
+            return true;
+        }
+        return !shared && acquire(true);
+    }
+
+    /**
+     * Give the lock up, e.g. once the pipeline has stopped
+     */
+    public synchronized void release() {
+        if (session != null) {
+            try {
+                session.close();
+            } catch (SQLException e) {
+                System.err.println("Error releasing balance writer lock: " + e.getMessage());
+            }
+            session = null;
+        }
+        shared = false;
+        exclusive = false;
+    }
+
+    private synchronized boolean acquire(boolean forPipeline) {
+        if (session != null) {
+            return forPipeline ? exclusive : shared;
+        }
+        String sql = forPipeline ? "SELECT pg_try_advisory_lock(?)" : "SELECT pg_try_advisory_lock_shared(?)";
+        Connection conn = null;
+        try {
+            conn = DatabaseConfig.openConnection(true);
+            boolean locked;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setLong(1, LOCK_KEY);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    locked = rs.next() && rs.getBoolean(1);
+                }
+            }
+            if (!locked) {
+                conn.close();
+                return false;
+            }
+            session = conn;
+            shared = !forPipeline;
+            exclusive = forPipeline;
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error taking balance writer lock: " + e.getMessage());
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException closeError) {
+                    // Already failing
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for optimistic concurrency on account balances: how many requests
+ * ran, how many attempts lost a version race, how many were retried and how
+ * many gave up after exhausting the retry policy
+ */
+public class ContentionMetrics {
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public void recordExecution() { executions.increment(); }
+    public void recordAttempt() { attempts.increment(); }
+    public void recordConflict() { conflicts.increment(); }
+    public void recordRetry() { retries.increment(); }
+    public void recordExhausted() { exhausted.increment(); }
+
+    public long getExecutions() { return executions.sum(); }
+    public long getAttempts() { return attempts.sum(); }
+    public long getConflicts() { return conflicts.sum(); }
+    public long getRetries() { return retries.sum(); }
+    public long getExhausted() { return exhausted.sum(); }
+
+    /**
+     * Share of attempts that lost a version race
+     */
+    public double getConflictRate() {
+        long total = getAttempts();
+        return total == 0 ? 0.0 : (double) getConflicts() / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentionMetrics{" +
+                "executions=" + getExecutions() +
+                ", attempts=" + getAttempts() +
+                ", conflicts=" + getConflicts() +
+                ", retries=" + getRetries() +
+                ", exhausted=" + getExhausted() +
+                ", conflictRate=" + String.format("%.4f", getConflictRate()) +
+                '}';
+    }
+}
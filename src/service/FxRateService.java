@@ -0,0 +1,184 @@
+package service;
+
+import dao.FxRateDAO;
+import model.BankAccount;
+import util.DatabaseConfig;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cached exchange rates.
+ *
+ * Rates come from a properties file (fx.rates_file, default
+ * config/fx_rates.properties, lines like EUR=1.0850 meaning 1 EUR = 1.0850
+ * units of the base currency) overlaid with the fx_rates table. The base
+ * currency is the currency_default setting. Callers get an immutable
+ * {@link FxRates} snapshot from a single volatile read, so postings convert
+ * without a database round trip. A background thread re-reads both sources
+ * every fx.refresh_seconds and swaps in a new snapshot, with a new version,
+ * only when a rate actually changed.
+ */
+public class FxRateService {
+
+    private static final FxRateService INSTANCE = new FxRateService();
+
+    private static final String DEFAULT_RATES_FILE = "config/fx_rates.properties";
+    private static final long DEFAULT_REFRESH_SECONDS = 60;
+
+    private final FxRateDAO fxRateDAO = new FxRateDAO();
+    private final AtomicReference<FxRates> current =
+            new AtomicReference<>(FxRates.baseOnly(BankAccount.DEFAULT_CURRENCY));
+
+    // Guarded by this
+    private String baseCurrency = BankAccount.DEFAULT_CURRENCY;
+    private Path ratesFile = Paths.get(DEFAULT_RATES_FILE).toAbsolutePath();
+    private long refreshMillis = TimeUnit.SECONDS.toMillis(DEFAULT_REFRESH_SECONDS);
+    private Map<String, BigDecimal> databaseRates = new HashMap<>();
+
+    private volatile boolean running = false;
+    private Thread refresher;
+
+    private FxRateService() {
+    }
+
+    /**
+     * Get the shared exchange rate service
+     */
+    public static FxRateService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Current rate snapshot; never blocks
+     */
+    public FxRates get() {
+        return current.get();
+    }
+
+    /**
+     * Apply currency_default, fx.rates_file and fx.refresh_seconds from settings
+     */
+    public void configure(Map<String, String> settings) {
+        boolean changed;
+        synchronized (this) {
+            String base = settings.get("currency_default");
+            String file = settings.get("fx.rates_file");
+            String nextBase = base != null && !base.isBlank() ? base.trim().toUpperCase(Locale.ROOT) : baseCurrency;
+            Path nextFile = file != null && !file.isBlank() ? Paths.get(file.trim()).toAbsolutePath() : ratesFile;
+            changed = !nextBase.equals(baseCurrency) || !nextFile.equals(ratesFile);
+            baseCurrency = nextBase;
+            ratesFile = nextFile;
+            try {
+                String refresh = settings.get("fx.refresh_seconds");
+                if (refresh != null) {
+                    refreshMillis = TimeUnit.SECONDS.toMillis(Math.max(1, Long.parseLong(refresh.trim())));
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid FX refresh setting: " + e.getMessage());
+            }
+            notifyAll();
+        }
+        if (changed) {
+            reloadFile();
+        }
+    }
+
+    /**
+     * Load the rates and start refreshing them in the background
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        refresher = new Thread(this::refreshLoop, "fx-rate-refresher");
+        refresher.setDaemon(true);
+        refresher.start();
+    }
+
+    /**
+     * Stop refreshing; the current snapshot stays in effect
+     */
+    public synchronized void stop() {
+        running = false;
+        notifyAll();
+    }
+
+    /**
+     * Re-read the rates file and table and publish a new snapshot if a rate changed
+     */
+    public void refresh() {
+        Map<String, BigDecimal> values = fxRateDAO.getAllRates();
+        synchronized (this) {
+            // Keep the last rates read if the table is unavailable
+            if (values != null) {
+                databaseRates = values;
+            }
+            publish();
+        }
+    }
+
+    /**
+     * Re-read only the rates file, e.g. after the base currency changed
+     */
+    public synchronized void reloadFile() {
+        publish();
+    }
+
+    private void publish() {
+        Map<String, BigDecimal> merged = readFile();
+        merged.putAll(databaseRates);
+
+        FxRates previous = current.get();
+        if (previous.sameRates(baseCurrency, merged)) {
+            return;
+        }
+        FxRates next = new FxRates(baseCurrency, merged, previous.getVersion() + 1);
+        current.set(next);
+        System.out.println("Exchange rates reloaded (version " + next.getVersion() + ", "
+                + next.getRatesToBase().size() + " currencies, base " + baseCurrency + ")");
+    }
+
+    private Map<String, BigDecimal> readFile() {
+        Map<String, BigDecimal> rates = new HashMap<>();
+        if (!Files.isRegularFile(ratesFile)) {
+            return rates;
+        }
+        Properties props = DatabaseConfig.loadProperties(ratesFile.toString());
+        for (String key : props.stringPropertyNames()) {
+            String currency = key.trim().toUpperCase(Locale.ROOT);
+            try {
+                BigDecimal rate = new BigDecimal(props.getProperty(key).trim());
+                if (currency.length() != 3 || rate.signum() <= 0) {
+                    throw new NumberFormatException("not a positive rate for a 3-letter code");
+                }
+                rates.put(currency, rate);
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid exchange rate for " + key + ": " + e.getMessage());
+            }
+        }
+        return rates;
+    }
+
+    private void refreshLoop() {
+        while (running) {
+            refresh();
+            synchronized (this) {
+                try {
+                    wait(refreshMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of exchange rates. Every rate is quoted against the base
+ * currency (1 unit of the currency = rate units of base), so any pair is
+ * derived from two lookups. Obtain the current one from {@link FxRateService};
+ * converting never touches the database.
+ */
+public final class FxRates {
+
+    // Stored rates and cross rates are kept to this many decimals (exchange_rate DECIMAL(20,10))
+    public static final int RATE_SCALE = 10;
+    private static final MathContext CROSS_RATE_PRECISION = new MathContext(20, RoundingMode.HALF_EVEN);
+
+    private final String baseCurrency;
+    private final Map<String, BigDecimal> ratesToBase;
+    private final long version;
+    private final LocalDateTime loadedAt;
+
+    FxRates(String baseCurrency, Map<String, BigDecimal> ratesToBase, long version) {
+        Map<String, BigDecimal> rates = new HashMap<>(ratesToBase);
+        rates.put(baseCurrency, BigDecimal.ONE);
+        this.baseCurrency = baseCurrency;
+        this.ratesToBase = Collections.unmodifiableMap(rates);
+        this.version = version;
+        this.loadedAt = LocalDateTime.now();
+    }
+
+    /**
+     * A snapshot holding only the base currency
+     */
+    static FxRates baseOnly(String baseCurrency) {
+        return new FxRates(baseCurrency, Collections.emptyMap(), 0);
+    }
+
+    public String getBaseCurrency() { return baseCurrency; }
+    public long getVersion() { return version; }
+    public LocalDateTime getLoadedAt() { return loadedAt; }
+
+    /**
+     * Every currency with a rate, each against the base currency
+     */
+    public Map<String, BigDecimal> getRatesToBase() {
+        return ratesToBase;
+    }
+
+    public boolean supports(String currency) {
+        return currency != null && ratesToBase.containsKey(currency);
+    }
+
+    /**
+     * Units of the target currency per unit of the source currency, or null
+     * if either currency has no rate
+     */
+    public BigDecimal getRate(String from, String to) {
+        if (from == null || to == null) {
+            return null;
+        }
+        if (from.equals(to)) {
+            return BigDecimal.ONE;
+        }
+        BigDecimal fromRate = ratesToBase.get(from);
+        BigDecimal toRate = ratesToBase.get(to);
+        if (fromRate == null || toRate == null) {
+            return null;
+        }
+        return fromRate.divide(toRate, CROSS_RATE_PRECISION).setScale(RATE_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Convert an amount at this snapshot's rate, rounded half-even to cents.
+     * Returns null if either currency has no rate.
+     */
+    public BigDecimal convert(BigDecimal amount, String from, String to) {
+        BigDecimal rate = getRate(from, to);
+        if (rate == null) {
+            return null;
+        }
+        return amount.multiply(rate).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Convert an amount in cents, or -1 if either currency has no rate
+     */
+    public long convertCents(long cents, String from, String to) {
+        if (from != null && from.equals(to)) {
+            return cents;
+        }
+        BigDecimal rate = getRate(from, to);
+        return rate != null ? convertCents(cents, rate) : -1;
+    }
+
+    /**
+     * Convert an amount in cents at a rate from {@link #getRate}, rounded half-even
+     */
+    public static long convertCents(long cents, BigDecimal rate) {
+        return BigDecimal.valueOf(cents).multiply(rate).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * Same rates and base currency, regardless of version
+     */
+    boolean sameRates(String baseCurrency, Map<String, BigDecimal> ratesToBase) {
+        Map<String, BigDecimal> other = new HashMap<>(ratesToBase);
+        other.put(baseCurrency, BigDecimal.ONE);
+        if (!this.baseCurrency.equals(baseCurrency) || other.size() != this.ratesToBase.size()) {
+            return false;
+        }
+        for (Map.Entry<String, BigDecimal> entry : other.entrySet()) {
+            BigDecimal rate = this.ratesToBase.get(entry.getKey());
+            if (rate == null || rate.compareTo(entry.getValue()) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "FxRates{base=" + baseCurrency + ", currencies=" + ratesToBase.size() + ", version=" + version + '}';
+    }
+}
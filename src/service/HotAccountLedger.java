@@ -0,0 +1,170 @@
+package service;
+
+import dao.BalanceBucketDAO;
+import dao.BankAccountDAO;
+import model.BankAccount;
+import util.DatabaseConfig;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Balance updates for hot accounts, e.g. the bank's own settlement and fee
+ * accounts that sit on one side of most transfers.
+ *
+ * A hot account's balance is split across N rows in account_balance_buckets
+ * instead of living on its single bank_accounts row, so concurrent postings
+ * lock different rows and throughput scales with N:
+ * <ul>
+ *   <li>Credits add to one random bucket.</li>
+ *   <li>Debits reserve the amount from a single bucket that covers it, probing
+ *       from a random start. Only if no bucket covers it alone are all buckets
+ *       locked and drained in bucket order.</li>
+ *   <li>Reads return the main row plus the bucket sum (see BankAccountDAO).</li>
+ * </ul>
+ * Buckets never go below zero, so a hot account cannot be overdrawn; hot mode
+ * is meant for internal accounts without overdraft or minimum balance rules.
+ */
+public class HotAccountLedger {
+
+    private final BankAccountDAO bankAccountDAO;
+    private final BalanceBucketDAO balanceBucketDAO;
+
+    public HotAccountLedger() {
+        this(new BankAccountDAO(), new BalanceBucketDAO());
+    }
+
+    public HotAccountLedger(BankAccountDAO bankAccountDAO, BalanceBucketDAO balanceBucketDAO) {
+        this.bankAccountDAO = bankAccountDAO;
+        this.balanceBucketDAO = balanceBucketDAO;
+    }
+
+    /**
+     * Outcome of a debit from a hot account
+     */
+    public enum DebitResult {
+        DEBITED,
+        INSUFFICIENT_FUNDS,
+        // The buckets were removed or re-created since the account was read
+        CONFLICT
+    }
+
+    /**
+     * Credit a hot account on the caller's connection
+     */
+    public boolean credit(Connection conn, BankAccount account, double amount) throws SQLException {
+        int bucket = ThreadLocalRandom.current().nextInt(account.getBalanceBuckets());
+        return balanceBucketDAO.credit(conn, account.getAccountNumber(), bucket, Math.round(amount * 100));
+    }
+
+    /**
+     * Debit a hot account on the caller's connection.
+     * Amounts are split in whole cents; CONFLICT means hot mode was switched
+     * since the account was read and the caller should read it again.
+     */
+    public DebitResult debit(Connection conn, BankAccount account, double amount) throws SQLException {
+        String accountNumber = account.getAccountNumber();
+        int buckets = account.getBalanceBuckets();
+        long amountCents = Math.round(amount * 100);
+
+        // Fast path: one bucket covers the whole amount
+        int start = ThreadLocalRandom.current().nextInt(buckets);
+        for (int i = 0; i < buckets; i++) {
+            if (balanceBucketDAO.reserve(conn, accountNumber, (start + i) % buckets, amountCents)) {
+                return DebitResult.DEBITED;
+            }
+        }
+
+        // Slow path: lock every bucket, then make sure they are still the ones
+        // the account was read with before taking the total as its balance
+        long[] balances = balanceBucketDAO.lockAll(conn, accountNumber, buckets);
+        if (balances == null || !bankAccountDAO.hasBalanceBuckets(conn, accountNumber, buckets, account.getVersion())) {
+            return DebitResult.CONFLICT;
+        }
+        long total = 0;
+        for (long balance : balances) {
+            total += balance;
+        }
+        if (total < amountCents) {
+            return DebitResult.INSUFFICIENT_FUNDS;
+        }
+
+        long remaining = amountCents;
+        for (int bucket = 0; bucket < buckets && remaining > 0; bucket++) {
+            long take = Math.min(balances[bucket], remaining);
+            if (take > 0) {
+                if (!balanceBucketDAO.reserve(conn, accountNumber, bucket, take)) {
+                    // Cannot happen while the buckets are locked
+                    return DebitResult.CONFLICT;
+                }
+                remaining -= take;
+            }
+        }
+        return DebitResult.DEBITED;
+    }
+
+    /**
+     * Switch an account to hot mode with the given number of buckets, moving
+     * its current balance into the buckets
+     */
+    public boolean enable(String accountNumber, int buckets) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("At least one bucket is required");
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                BankAccount account = bankAccountDAO.getAccountByNumber(conn, accountNumber);
+                if (account == null || account.isHotAccount()) {
+                    conn.rollback();
+                    return false;
+                }
+                long balanceCents = Math.round(account.getBalance() * 100);
+                if (!bankAccountDAO.updateBalanceBuckets(conn, accountNumber, buckets, -balanceCents, account.getVersion())) {
+                    conn.rollback();
+                    return false;
+                }
+                balanceBucketDAO.createBuckets(conn, accountNumber, buckets, balanceCents);
+                conn.commit();
+                HotAccounts.getInstance().update(accountNumber, true);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error enabling hot account mode: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Switch an account back to a single balance row, folding its buckets in
+     */
+    public boolean disable(String accountNumber) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                BankAccount account = bankAccountDAO.getAccountByNumber(conn, accountNumber);
+                if (account == null || !account.isHotAccount()) {
+                    conn.rollback();
+                    return false;
+                }
+                // Locks the buckets first so no posting can land between the sum and the delete
+                long bucketTotal = balanceBucketDAO.deleteBuckets(conn, accountNumber);
+                if (!bankAccountDAO.updateBalanceBuckets(conn, accountNumber, 0, bucketTotal, account.getVersion())) {
+                    conn.rollback();
+                    return false;
+                }
+                conn.commit();
+                HotAccounts.getInstance().update(accountNumber, false);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error disabling hot account mode: " + e.getMessage());
+        }
+        return false;
+    }
+}
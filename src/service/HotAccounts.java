@@ -0,0 +1,70 @@
+package service;
+
+import dao.BankAccountDAO;
+import model.BankAccount;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The account numbers in hot-account mode, for checks that run before any
+ * account is loaded (rate limits, risk screening).
+ *
+ * Hot accounts are the bank's own settlement and fee accounts, on one side
+ * of most transfers, so per-account velocity limits meant for customers would
+ * block them within minutes. Loaded once at startup, then kept current by
+ * {@link HotAccountLedger} switching mode and by every posting that loads an
+ * account, so a switch made in another process is picked up on the next
+ * posting to that account.
+ */
+public final class HotAccounts {
+
+    private static final HotAccounts INSTANCE = new HotAccounts();
+
+    private final Set<String> accountNumbers = ConcurrentHashMap.newKeySet();
+
+    private HotAccounts() {
+    }
+
+    /**
+     * Get the shared registry
+     */
+    public static HotAccounts getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether an account is in hot-account mode; false for null
+     */
+    public boolean isHot(String accountNumber) {
+        return accountNumber != null && accountNumbers.contains(accountNumber);
+    }
+
+    /**
+     * Record an account's mode as just read from the database
+     */
+    public void update(BankAccount account) {
+        update(account.getAccountNumber(), account.isHotAccount());
+    }
+
+    public void update(String accountNumber, boolean hot) {
+        // Read first; postings call this for every account they load
+        if (accountNumbers.contains(accountNumber) != hot) {
+            if (hot) {
+                accountNumbers.add(accountNumber);
+            } else {
+                accountNumbers.remove(accountNumber);
+            }
+        }
+    }
+
+    /**
+     * Load the hot accounts from the database
+     */
+    public void load(BankAccountDAO bankAccountDAO) {
+        accountNumbers.addAll(bankAccountDAO.getHotAccountNumbers());
+    }
+
+    public int size() {
+        return accountNumbers.size();
+    }
+}
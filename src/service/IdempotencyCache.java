@@ -0,0 +1,86 @@
+package service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded in-memory cache of recently completed idempotency keys.
+ *
+ * Answers retries without a database round trip. It is only an accelerator:
+ * the unique constraint on transactions.idempotency_key remains the source of
+ * truth, so evicted or never-seen keys are still deduplicated by the database.
+ * Eviction is oldest-first once the capacity or the time-to-live is exceeded.
+ */
+public class IdempotencyCache {
+
+    private static final int DEFAULT_CAPACITY = 100_000;
+    private static final long DEFAULT_TTL_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public IdempotencyCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+    }
+
+    public IdempotencyCache(int capacity, long ttlMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Get the cached result for a key, or null if unknown or expired
+     */
+    public TransactionResult get(String idempotencyKey) {
+        Entry entry = entries.get(idempotencyKey);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+            return null;
+        }
+        return entry.result;
+    }
+
+    /**
+     * Remember the result of a completed request
+     */
+    public void put(String idempotencyKey, TransactionResult result) {
+        if (entries.putIfAbsent(idempotencyKey, new Entry(result)) != null) {
+            return;
+        }
+        insertionOrder.add(idempotencyKey);
+        if (size.incrementAndGet() > capacity) {
+            evictOldest();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void evictOldest() {
+        String oldest = insertionOrder.poll();
+        if (oldest != null && entries.remove(oldest) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    private static class Entry {
+        private final TransactionResult result;
+        private final long createdAt = System.currentTimeMillis();
+
+        Entry(TransactionResult result) {
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts failed logins per username in memory and locks a username out after
+ * max_login_attempts failures for login_lockout_minutes, so a locked-out or
+ * brute-forced username never reaches the database.
+ */
+public class LoginAttemptTracker {
+
+    private static final LoginAttemptTracker INSTANCE = new LoginAttemptTracker();
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_LOCKOUT_MINUTES = 15;
+    private static final int MAX_TRACKED_USERS = 100_000;
+
+    private final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long lockoutMillis = TimeUnit.MINUTES.toMillis(DEFAULT_LOCKOUT_MINUTES);
+
+    public LoginAttemptTracker() {
+    }
+
+    /**
+     * Get the shared tracker instance
+     */
+    public static LoginAttemptTracker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Apply max_login_attempts and login_lockout_minutes from system settings
+     */
+    public void configure(Map<String, String> settings) {
+        try {
+            String max = settings.get("max_login_attempts");
+            if (max != null) {
+                maxAttempts = Math.max(1, Integer.parseInt(max.trim()));
+            }
+            String minutes = settings.get("login_lockout_minutes");
+            if (minutes != null) {
+                lockoutMillis = TimeUnit.MINUTES.toMillis(Math.max(0, Long.parseLong(minutes.trim())));
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid login lockout setting: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Milliseconds until the username may try again, or 0 if it is not locked out
+     */
+    public long getLockoutRemainingMillis(String username) {
+        Attempts entry = attempts.get(username);
+        if (entry == null) {
+            return 0;
+        }
+        return Math.max(0, entry.lockedUntil - System.currentTimeMillis());
+    }
+
+    /**
+     * Record a failed login; returns true if it locked the username out
+     */
+    public boolean recordFailure(String username) {
+        if (attempts.size() >= MAX_TRACKED_USERS) {
+            evictExpired();
+        }
+        Attempts entry = attempts.computeIfAbsent(username, k -> new Attempts());
+        synchronized (entry) {
+            long now = System.currentTimeMillis();
+            boolean expired = entry.lockedUntil != 0
+                    ? entry.lockedUntil <= now
+                    : now - entry.lastFailureAt > lockoutMillis;
+            if (expired) {
+                // Lockout served, or failures too old to count: start afresh
+                entry.failures = 0;
+                entry.lockedUntil = 0;
+            }
+            entry.failures++;
+            entry.lastFailureAt = now;
+            if (entry.failures >= maxAttempts) {
+                entry.lockedUntil = now + lockoutMillis;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Forget failures after a successful login
+     */
+    public void recordSuccess(String username) {
+        attempts.remove(username);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        attempts.values().removeIf(entry -> entry.lockedUntil <= now && now - entry.lastFailureAt > lockoutMillis);
+    }
+
+    private static final class Attempts {
+        private int failures;
+        private long lastFailureAt;
+        private volatile long lockedUntil;
+    }
+}
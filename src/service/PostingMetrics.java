@@ -0,0 +1,57 @@
+package service;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for group-committed postings: how many batches were committed,
+ * how many postings they carried, how often a batch had to be re-run without
+ * a failing posting and how many postings fell back to their own transaction
+ */
+public class PostingMetrics {
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder postings = new LongAdder();
+    private final LongAdder reruns = new LongAdder();
+    private final LongAdder isolated = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAccumulator largestBatch = new LongAccumulator(Math::max, 0);
+
+    public void recordBatch(int size) {
+        batches.increment();
+        postings.add(size);
+        largestBatch.accumulate(size);
+    }
+
+    public void recordRerun() { reruns.increment(); }
+    public void recordIsolated() { isolated.increment(); }
+    public void recordFallback() { fallbacks.increment(); }
+
+    public long getBatches() { return batches.sum(); }
+    public long getPostings() { return postings.sum(); }
+    public long getReruns() { return reruns.sum(); }
+    public long getIsolated() { return isolated.sum(); }
+    public long getFallbacks() { return fallbacks.sum(); }
+    public long getLargestBatch() { return largestBatch.get(); }
+
+    /**
+     * Postings per committed batch, i.e. commits saved per posting
+     */
+    public double getAverageBatchSize() {
+        long count = getBatches();
+        return count == 0 ? 0.0 : (double) getPostings() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "PostingMetrics{" +
+                "batches=" + getBatches() +
+                ", postings=" + getPostings() +
+                ", averageBatchSize=" + String.format("%.2f", getAverageBatchSize()) +
+                ", largestBatch=" + getLargestBatch() +
+                ", reruns=" + getReruns() +
+                ", isolated=" + getIsolated() +
+                ", fallbacks=" + getFallbacks() +
+                '}';
+    }
+}
@@ -0,0 +1,381 @@
+package service;
+
+import service.risk.RiskDecision;
+import util.DatabaseConfig;
+import util.trace.Span;
+import util.trace.Tracing;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for deposits, withdrawals and transfers.
+ *
+ * {@link TransactionService#execute} commits every posting on its own, so
+ * under load throughput is capped by the database's commit (fsync) latency.
+ * Here concurrent requests are queued and a single writer thread applies them
+ * in micro-batches: whatever is queued, plus anything arriving within
+ * posting.batch_max_delay_millis, up to posting.batch_max_size postings. Each
+ * batch runs in one database transaction, so N postings share one commit and
+ * are exactly as durable as before: no caller's future completes until the
+ * commit carrying its posting has returned.
+ *
+ * Postings in a batch are applied in arrival order on the same connection, so
+ * a later posting sees the balances left by earlier ones. If one of them
+ * fails (insufficient funds, unknown account, a lost version race, an SQL
+ * error) the batch is rolled back and re-run without it; business failures
+ * are answered directly and everything else is retried in its own
+ * transaction through the normal {@link TransactionService} path.
+ *
+ * Admission (idempotency cache, rate limits, risk screening) is the same as
+ * for {@link TransactionService#execute} and happens on the caller's thread.
+ * Until {@link #start()} is called requests are executed directly.
+ */
+public class PostingService {
+
+    private static final PostingService INSTANCE = new PostingService(new TransactionService());
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 2;
+
+    // After this many re-runs of one batch the rest are posted one by one
+    private static final int MAX_RERUNS = 8;
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final TransactionService transactionService;
+    private final PostingMetrics metrics = new PostingMetrics();
+    private final LinkedBlockingQueue<Posting> queue = new LinkedBlockingQueue<>();
+
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_DELAY_MILLIS);
+    private volatile boolean running = false;
+    private Thread writer;
+
+    public PostingService(TransactionService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * Get the shared posting service
+     */
+    public static PostingService getInstance() {
+        return INSTANCE;
+    }
+
+    public PostingMetrics getMetrics() {
+        return metrics;
+    }
+
+    public TransactionService getTransactionService() {
+        return transactionService;
+    }
+
+    /**
+     * Apply posting.batch_max_size and posting.batch_max_delay_millis from settings
+     */
+    public void configure(Map<String, String> settings) {
+        try {
+            String size = settings.get("posting.batch_max_size");
+            if (size != null) {
+                maxBatchSize = Math.max(1, Integer.parseInt(size.trim()));
+            }
+            String delay = settings.get("posting.batch_max_delay_millis");
+            if (delay != null) {
+                maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, Long.parseLong(delay.trim())));
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid posting batch setting: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Start the writer thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "posting-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop the writer once every queued posting has been committed
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Number of postings waiting for the writer
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Execute a request and wait for the commit carrying it
+     */
+    public TransactionResult execute(TransactionRequest request) {
+        return submit(request).join();
+    }
+
+    /**
+     * Queue a request for the next batch. The future completes once the
+     * posting has been committed or has failed.
+     */
+    public CompletableFuture<TransactionResult> submit(TransactionRequest request) {
+        if (!running) {
+            return CompletableFuture.completedFuture(transactionService.execute(request));
+        }
+
+        TransactionResult early = transactionService.admit(request);
+        if (early != null) {
+            return CompletableFuture.completedFuture(early);
+        }
+        RiskDecision risk = transactionService.assessRisk(request);
+        if (risk.isBlocked()) {
+            return CompletableFuture.completedFuture(TransactionService.rejected(risk));
+        }
+
+        Posting posting = new Posting(request, risk);
+        queue.add(posting);
+        // The writer may have drained the queue and exited while this was added
+        if (!running && queue.remove(posting)) {
+            postIndividually(posting);
+        }
+        return posting.future;
+    }
+
+    private void writeLoop() {
+        List<Posting> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Posting first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                for (Posting posting : batch) {
+                    postIndividually(posting);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error in posting writer: " + e.getMessage());
+                for (Posting posting : batch) {
+                    finish(posting, TransactionResult.failure(TransactionResult.Status.FAILED, e.getMessage()));
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Interrupted: nothing may be left waiting on a future
+        Posting leftover;
+        while ((leftover = queue.poll()) != null) {
+            postIndividually(leftover);
+        }
+    }
+
+    /**
+     * Fill the batch with what is queued, waiting up to the batch delay for more
+     */
+    private void collect(List<Posting> batch) throws InterruptedException {
+        int max = maxBatchSize;
+        queue.drainTo(batch, max - batch.size());
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < max) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Posting next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, max - batch.size());
+        }
+    }
+
+    /**
+     * Commit a batch, re-running it without each posting that fails
+     */
+    private void commit(List<Posting> batch) {
+        List<Posting> pending = withoutRepeatedKeys(batch);
+        for (int reruns = 0; !pending.isEmpty(); reruns++) {
+            if (reruns > MAX_RERUNS) {
+                for (Posting posting : pending) {
+                    postIndividually(posting);
+                }
+                return;
+            }
+            if (reruns > 0) {
+                metrics.recordRerun();
+            }
+
+            Posting failed = tryCommit(pending);
+            if (failed == null) {
+                return;
+            }
+            pending.remove(failed);
+        }
+    }
+
+    /**
+     * Apply every posting on one connection and commit. Returns null once the
+     * batch is committed (or has been handed off), or the posting that failed
+     * after rolling the batch back; that posting has already been answered.
+     */
+    private Posting tryCommit(List<Posting> pending) {
+        TransactionResult[] results = new TransactionResult[pending.size()];
+        int failedIndex = -1;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            int index = 0;
+            try {
+                for (; index < pending.size(); index++) {
+                    // The posting's statements belong to the trace of the request that queued it
+                    Span resumed = Tracing.resume(pending.get(index).trace);
+                    try {
+                        results[index] = transactionService.apply(conn, pending.get(index).request);
+                    } finally {
+                        resumed.close();
+                    }
+                    if (!results[index].isSuccess()) {
+                        break;
+                    }
+                }
+                if (index < pending.size()) {
+                    conn.rollback();
+                    failedIndex = index;
+                } else {
+                    conn.commit();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                if (index == pending.size()) {
+                    throw e;
+                }
+                // The statement that failed belongs to this posting
+                results[index] = null;
+                failedIndex = index;
+            }
+        } catch (SQLException e) {
+            // Opening the connection or the commit failed; nothing was written
+            System.err.println("Error committing posting batch: " + e.getMessage());
+            for (Posting posting : pending) {
+                postIndividually(posting);
+            }
+            return null;
+        }
+
+        // Handled after the batch connection is back in the pool, since the
+        // failed posting may need a connection of its own
+        if (failedIndex >= 0) {
+            return isolate(pending.get(failedIndex), results[failedIndex]);
+        }
+
+        metrics.recordBatch(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            transactionService.remember(pending.get(i).request, results[i]);
+            finish(pending.get(i), results[i]);
+        }
+        return null;
+    }
+
+    /**
+     * Answer a posting that failed inside a batch. Business failures are final;
+     * lost version races and SQL errors (duplicate keys, deadlocks) are
+     * retried in the posting's own transaction.
+     */
+    private Posting isolate(Posting posting, TransactionResult result) {
+        metrics.recordIsolated();
+        if (result == null || result.getStatus() == TransactionResult.Status.CONFLICT) {
+            postIndividually(posting);
+        } else {
+            finish(posting, result);
+        }
+        return posting;
+    }
+
+    private void postIndividually(Posting posting) {
+        metrics.recordFallback();
+        TransactionResult result;
+        Span resumed = Tracing.resume(posting.trace);
+        try {
+            result = transactionService.executeWithRetry(posting.request);
+        } catch (RuntimeException e) {
+            result = TransactionResult.failure(TransactionResult.Status.FAILED, e.getMessage());
+        } finally {
+            resumed.close();
+        }
+        finish(posting, result);
+    }
+
+    private void finish(Posting posting, TransactionResult result) {
+        if (!posting.future.complete(result)) {
+            return;
+        }
+        transactionService.completeRisk(posting.risk, result);
+        for (Posting repeat : posting.repeats) {
+            transactionService.completeRisk(repeat.risk, null);
+            repeat.future.complete(result.isSuccess() ? result.asDuplicate() : result);
+        }
+    }
+
+    /**
+     * A key queued twice in the same batch is only posted once; the repeat is
+     * answered with the first one's result
+     */
+    private static List<Posting> withoutRepeatedKeys(List<Posting> batch) {
+        Map<String, Posting> byKey = new HashMap<>(batch.size() * 2);
+        List<Posting> unique = new ArrayList<>(batch.size());
+        for (Posting posting : batch) {
+            Posting first = byKey.putIfAbsent(posting.request.getIdempotencyKey(), posting);
+            if (first == null) {
+                unique.add(posting);
+            } else {
+                first.repeats.add(posting);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Inner class for a queued request and the future its caller waits on
+     */
+    private static class Posting {
+        private final TransactionRequest request;
+        private final RiskDecision risk;
+        private final CompletableFuture<TransactionResult> future = new CompletableFuture<>();
+        private final List<Posting> repeats = new ArrayList<>(0);
+        // Span of the submitting thread, continued by the writer
+        private final Span trace = Tracing.current();
+
+        Posting(TransactionRequest request, RiskDecision risk) {
+            this.request = request;
+            this.risk = risk;
+        }
+    }
+}
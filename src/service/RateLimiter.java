@@ -0,0 +1,198 @@
+package service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Token-bucket rate limiter keyed by operation and user or account.
+ *
+ * Each bucket is a single AtomicLong holding its theoretical arrival time
+ * (the GCRA form of a token bucket): a request advances it by one emission
+ * interval and is allowed if that stays within one period of now. Acquiring
+ * is a map lookup plus one CAS, with no locks. A bucket whose arrival time
+ * has passed is indistinguishable from a full one, so idle buckets are swept
+ * away and memory stays proportional to recently active keys.
+ *
+ * Limits are requests per minute per scope, read from system_settings keys
+ * rate_limit_&lt;operation&gt;_per_&lt;scope&gt;_per_minute; 0 or a missing
+ * key means unlimited. Hot accounts (settlement and fee accounts on one side
+ * of most postings) have no per-account limit; their tellers' limits still apply.
+ */
+public class RateLimiter {
+
+    public enum Operation {
+        LOGIN,
+        DEPOSIT,
+        WITHDRAWAL,
+        TRANSFER,
+        ACCOUNT_CREATE,
+        ACCOUNT_SEARCH
+    }
+
+    public enum Scope {
+        USER,
+        ACCOUNT
+    }
+
+    private static final RateLimiter INSTANCE = new RateLimiter(HotAccounts.getInstance()::isHot);
+
+    private static final long PERIOD_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // Sweep idle buckets every this many acquisitions, or sooner once the map grows past MAX_BUCKETS
+    private static final int SWEEP_INTERVAL = 16384;
+    private static final int MAX_BUCKETS = 100_000;
+    // Above MAX_BUCKETS, sweep at most this often; buckets only go idle as time passes,
+    // so sweeping again sooner would walk the whole map to free next to nothing
+    private static final long MIN_SWEEP_GAP_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger acquisitions = new AtomicInteger();
+    private final AtomicLong lastSweep;
+    private final Predicate<String> unlimitedAccounts;
+    // System.nanoTime outside of tests
+    private final LongSupplier nanoClock;
+    // Emission interval per [operation][scope], 0 = unlimited
+    private volatile long[][] intervalNanos = new long[Operation.values().length][Scope.values().length];
+
+    public RateLimiter() {
+        this(account -> false);
+    }
+
+    /**
+     * @param unlimitedAccounts accounts exempt from per-account limits
+     */
+    public RateLimiter(Predicate<String> unlimitedAccounts) {
+        this(unlimitedAccounts, System::nanoTime);
+    }
+
+    RateLimiter(Predicate<String> unlimitedAccounts, LongSupplier nanoClock) {
+        this.unlimitedAccounts = unlimitedAccounts;
+        this.nanoClock = nanoClock;
+        this.lastSweep = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Get the shared limiter instance
+     */
+    public static RateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Setting key holding the per-minute limit of an operation and scope
+     */
+    public static String settingKey(Operation operation, Scope scope) {
+        return "rate_limit_" + operation.name().toLowerCase(Locale.ROOT) + "_per_"
+                + scope.name().toLowerCase(Locale.ROOT) + "_per_minute";
+    }
+
+    /**
+     * Apply limits from system settings; operations without a setting are unlimited
+     */
+    public void configure(Map<String, String> settings) {
+        long[][] intervals = new long[Operation.values().length][Scope.values().length];
+        for (Operation operation : Operation.values()) {
+            for (Scope scope : Scope.values()) {
+                String value = settings.get(settingKey(operation, scope));
+                if (value == null) {
+                    continue;
+                }
+                try {
+                    long perMinute = Long.parseLong(value.trim());
+                    intervals[operation.ordinal()][scope.ordinal()] = perMinute > 0 ? PERIOD_NANOS / perMinute : 0;
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring invalid rate limit " + settingKey(operation, scope) + "=" + value);
+                }
+            }
+        }
+        intervalNanos = intervals;
+    }
+
+    /**
+     * Take one token from the user's and, if given and not exempt, the
+     * account's bucket for the operation. Returns false (and takes nothing)
+     * if either is empty.
+     */
+    public boolean tryAcquire(Operation operation, String user, String account) {
+        if (!tryAcquire(operation, Scope.USER, user)) {
+            return false;
+        }
+        if (account != null && !unlimitedAccounts.test(account) && !tryAcquire(operation, Scope.ACCOUNT, account)) {
+            release(operation, Scope.USER, user);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Take one token from a single bucket
+     */
+    public boolean tryAcquire(Operation operation, Scope scope, String id) {
+        long interval = intervalNanos[operation.ordinal()][scope.ordinal()];
+        if (interval == 0 || id == null) {
+            return true;
+        }
+
+        if ((acquisitions.incrementAndGet() & (SWEEP_INTERVAL - 1)) == 0) {
+            sweep();
+        } else if (buckets.size() > MAX_BUCKETS) {
+            long last = lastSweep.get();
+            // Only the thread that wins the CAS sweeps; the others carry on
+            if (nanoClock.getAsLong() - last >= MIN_SWEEP_GAP_NANOS && lastSweep.compareAndSet(last, nanoClock.getAsLong())) {
+                sweep();
+            }
+        }
+
+        String key = key(operation, scope, id);
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(nanoClock.getAsLong()));
+        }
+
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long arrival = bucket.get();
+            // nanoTime values may wrap, so compare by difference
+            long next = (arrival - now < 0 ? now : arrival) + interval;
+            if (next - now > PERIOD_NANOS) {
+                return false;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return a token taken by a request that did not go ahead
+     */
+    private void release(Operation operation, Scope scope, String id) {
+        long interval = intervalNanos[operation.ordinal()][scope.ordinal()];
+        AtomicLong bucket = id != null ? buckets.get(key(operation, scope, id)) : null;
+        if (interval != 0 && bucket != null) {
+            bucket.addAndGet(-interval);
+        }
+    }
+
+    /**
+     * Number of buckets currently held
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private void sweep() {
+        long now = nanoClock.getAsLong();
+        lastSweep.set(now);
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    private static String key(Operation operation, Scope scope, String id) {
+        return operation.ordinal() + ":" + scope.ordinal() + ":" + id;
+    }
+}
@@ -0,0 +1,91 @@
+package service;
+
+import static util.Assert.check;
+import static util.Assert.checkEquals;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for RateLimiter refill and burst, on a manual clock
+ */
+public class RateLimiterTest {
+
+    private static final RateLimiter.Operation OP = RateLimiter.Operation.TRANSFER;
+
+    public static void main(String[] args) {
+        System.out.println("🧪 Testing RateLimiter...");
+        testBurstThenRefill();
+        testIdleBucketRefillsOnlyToCapacity();
+        testAccountDenialReturnsUserToken();
+        testUnlimited();
+        System.out.println("✅ RateLimiter tests passed");
+    }
+
+    private static void testBurstThenRefill() {
+        AtomicLong clock = new AtomicLong(1_000_000_000L);
+        RateLimiter limiter = limiter(clock, 60, 0);
+
+        checkEquals(60, acquireAll(limiter, "alice"), "burst allowed at once");
+        // 60 per minute: one token comes back per second
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        check(!limiter.tryAcquire(OP, RateLimiter.Scope.USER, "alice"), "no token before a second has passed");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        checkEquals(1, acquireAll(limiter, "alice"), "tokens after one second");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        checkEquals(10, acquireAll(limiter, "alice"), "tokens after ten more seconds");
+        checkEquals(60, acquireAll(limiter, "bob"), "other users have their own bucket");
+    }
+
+    private static void testIdleBucketRefillsOnlyToCapacity() {
+        AtomicLong clock = new AtomicLong(-5_000_000_000L);
+        RateLimiter limiter = limiter(clock, 60, 0);
+        acquireAll(limiter, "alice");
+        // Far more than a period, and across nanoTime's sign change
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(10));
+        checkEquals(60, acquireAll(limiter, "alice"), "an idle bucket refills to capacity, not beyond");
+    }
+
+    private static void testAccountDenialReturnsUserToken() {
+        AtomicLong clock = new AtomicLong();
+        RateLimiter limiter = limiter(clock, 2, 1);
+        check(limiter.tryAcquire(OP, "alice", "SAV1"), "first transfer");
+        check(!limiter.tryAcquire(OP, "alice", "SAV1"), "account limit reached");
+        // The denied attempt must not have used up alice's second token
+        check(limiter.tryAcquire(OP, "alice", "SAV2"), "user token was returned");
+        check(!limiter.tryAcquire(OP, "alice", "SAV3"), "user limit reached");
+    }
+
+    private static void testUnlimited() {
+        AtomicLong clock = new AtomicLong();
+        RateLimiter limiter = new RateLimiter(account -> account.equals("HOT1"), clock::get);
+        limiter.configure(Map.of(RateLimiter.settingKey(OP, RateLimiter.Scope.ACCOUNT), "1",
+                RateLimiter.settingKey(RateLimiter.Operation.DEPOSIT, RateLimiter.Scope.USER), "not a number"));
+        for (int i = 0; i < 100; i++) {
+            check(limiter.tryAcquire(OP, "alice", "HOT1"), "exempt account and no user limit");
+            check(limiter.tryAcquire(RateLimiter.Operation.DEPOSIT, "alice", null), "invalid setting means unlimited");
+        }
+        checkEquals(0, limiter.size(), "no buckets for unlimited operations");
+    }
+
+    private static RateLimiter limiter(AtomicLong clock, int userPerMinute, int accountPerMinute) {
+        RateLimiter limiter = new RateLimiter(account -> false, clock::get);
+        limiter.configure(Map.of(
+                RateLimiter.settingKey(OP, RateLimiter.Scope.USER), String.valueOf(userPerMinute),
+                RateLimiter.settingKey(OP, RateLimiter.Scope.ACCOUNT), String.valueOf(accountPerMinute)));
+        return limiter;
+    }
+
+    /**
+     * Take tokens until refused; returns how many were taken
+     */
+    private static int acquireAll(RateLimiter limiter, String user) {
+        int taken = 0;
+        while (limiter.tryAcquire(OP, RateLimiter.Scope.USER, user)) {
+            taken++;
+            check(taken <= 10_000, "bucket never runs dry");
+        }
+        return taken;
+    }
+}
@@ -0,0 +1,489 @@
+package service;
+
+import dao.ReconciliationDAO;
+import util.DatabaseConfig;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recomputes every account's balance from its transaction history and
+ * reports where it differs from the stored balance.
+ *
+ * Expected balance = opening balance (or the last checkpoint) + the net of
+ * completed transactions since. The history is summed by the database in
+ * parallel id ranges, one connection per worker, all inside one exported
+ * snapshot so the scan, the stored balances and the checkpoint agree.
+ * Stored balances include hot-account buckets; cross-currency transfers
+ * credit the converted amount.
+ *
+ * Every run records a checkpoint: the expected balance of each account up to
+ * the newest transaction id old enough to be final, and the PENDING rows at or
+ * below it. An incremental run then scans only newer ids plus those rows.
+ * Balances and transactions are committed separately, so accounts that differ
+ * are re-checked in a fresh snapshot before they are reported.
+ */
+public class ReconciliationJob {
+
+    public enum Mode {
+        FULL, INCREMENTAL
+    }
+
+    public enum Kind {
+        /** Stored balance differs from the replayed history */
+        MISMATCH,
+        /** No opening balance or checkpoint to replay from */
+        NO_OPENING_BALANCE,
+        /** Transactions reference an account that does not exist */
+        UNKNOWN_ACCOUNT
+    }
+
+    private static final int DEFAULT_IDS_PER_RANGE = 1_000_000;
+    private static final int DEFAULT_SETTLE_SECONDS = 300;
+    private static final int ACCOUNT_BATCH = 1000;
+
+    private final ReconciliationDAO reconciliationDAO;
+    private final int threads;
+    private final int idsPerRange;
+    private final int settleSeconds;
+
+    public ReconciliationJob(int threads) {
+        this(new ReconciliationDAO(), threads, DEFAULT_IDS_PER_RANGE, DEFAULT_SETTLE_SECONDS);
+    }
+
+    public ReconciliationJob(ReconciliationDAO reconciliationDAO, int threads, int idsPerRange, int settleSeconds) {
+        this.reconciliationDAO = reconciliationDAO;
+        this.threads = Math.max(1, threads);
+        this.idsPerRange = Math.max(1, idsPerRange);
+        this.settleSeconds = Math.max(0, settleSeconds);
+    }
+
+    /**
+     * Reconcile every account and record a checkpoint. INCREMENTAL falls back
+     * to FULL when no checkpoint exists yet.
+     */
+    public Report run(Mode mode) throws SQLException {
+        long startedNanos = System.nanoTime();
+        Timestamp startedAt = new Timestamp(System.currentTimeMillis());
+        List<Connection> connections = new ArrayList<>();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "reconciliation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Connection coordinator = DatabaseConfig.openConnection(false);
+            connections.add(coordinator);
+            String snapshotId = reconciliationDAO.exportSnapshot(coordinator);
+
+            ReconciliationDAO.Checkpoint checkpoint = mode == Mode.INCREMENTAL
+                    ? reconciliationDAO.getLastCheckpoint(coordinator) : null;
+            boolean incremental = checkpoint != null;
+            long fromId = incremental ? checkpoint.getTransactionId() : 0;
+            long maxId = Math.max(fromId, reconciliationDAO.getMaxTransactionId(coordinator));
+            long settledId = reconciliationDAO.findSettledTransactionId(coordinator, fromId, maxId, settleSeconds);
+
+            // Sum the history on the workers while this thread loads the accounts
+            Queue<Range> ranges = new ConcurrentLinkedQueue<>();
+            ranges.addAll(split(fromId, settledId, true));
+            ranges.addAll(split(settledId, maxId, false));
+            int rangeCount = ranges.size();
+            List<Future<Map<String, long[]>>> scans = new ArrayList<>();
+            for (int i = 0; i < Math.min(threads, rangeCount); i++) {
+                Connection conn = DatabaseConfig.openConnection(false);
+                connections.add(conn);
+                reconciliationDAO.importSnapshot(conn, snapshotId);
+                scans.add(executor.submit(() -> scan(conn, ranges)));
+            }
+
+            Map<String, AccountState> accounts = new HashMap<>();
+            reconciliationDAO.streamAccounts(coordinator, (accountNumber, currency, openingCents, storedCents, checkpointCents) ->
+                    accounts.put(accountNumber, new AccountState(currency, incremental && checkpointCents != null
+                            ? checkpointCents : openingCents, storedCents, incremental && checkpointCents != null)));
+            if (incremental) {
+                addHistoryBeforeCheckpoint(coordinator, accounts, fromId);
+            }
+
+            // Rows pending at the last checkpoint count once they have completed
+            Map<String, Long> unknownAccounts = new HashMap<>();
+            List<Long> pending = new ArrayList<>();
+            if (incremental && checkpoint.getPendingTransactionIds().length > 0) {
+                reconciliationDAO.sumCompleted(coordinator, checkpoint.getPendingTransactionIds(),
+                        (accountNumber, netCents) -> add(accounts, unknownAccounts, accountNumber, netCents, 0));
+                pending.addAll(reconciliationDAO.getStillPending(coordinator, checkpoint.getPendingTransactionIds()));
+            }
+            pending.addAll(reconciliationDAO.getPendingTransactionIds(coordinator, fromId, settledId));
+
+            for (Future<Map<String, long[]>> scan : scans) {
+                for (Map.Entry<String, long[]> entry : scan.get().entrySet()) {
+                    add(accounts, unknownAccounts, entry.getKey(), entry.getValue()[0], 0);
+                    add(accounts, unknownAccounts, entry.getKey(), entry.getValue()[1], 1);
+                }
+            }
+            long scanNanos = System.nanoTime() - startedNanos;
+            closeAll(connections);
+
+            Report report = new Report(incremental ? Mode.INCREMENTAL : Mode.FULL, fromId, settledId, maxId,
+                    accounts.size(), rangeCount, scanNanos);
+            List<String> candidates = new ArrayList<>();
+            for (Map.Entry<String, AccountState> entry : accounts.entrySet()) {
+                AccountState state = entry.getValue();
+                if (state.baselineCents == null) {
+                    report.discrepancies.add(new Discrepancy(entry.getKey(), state.currency, Kind.NO_OPENING_BALANCE,
+                            state.storedCents, null));
+                } else if (state.storedCents != state.expectedCents()) {
+                    candidates.add(entry.getKey());
+                }
+            }
+            for (Map.Entry<String, Long> entry : unknownAccounts.entrySet()) {
+                if (entry.getValue() != 0) {
+                    report.discrepancies.add(new Discrepancy(entry.getKey(), null, Kind.UNKNOWN_ACCOUNT, null, entry.getValue()));
+                }
+            }
+            confirm(candidates, accounts, checkpoint, fromId, report);
+            report.discrepancies.sort(Comparator.comparing(Discrepancy::getAccountNumber));
+
+            report.runId = saveCheckpoint(report, accounts, pending, startedAt);
+            report.elapsedNanos = System.nanoTime() - startedNanos;
+            return report;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof SQLException ? (SQLException) e.getCause()
+                    : new SQLException("Reconciliation scan failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Reconciliation interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            closeAll(connections);
+        }
+    }
+
+    /**
+     * Sum the net change per account of ranges taken from the queue until it
+     * is empty; slot 0 holds settled ranges, slot 1 the rest
+     */
+    private Map<String, long[]> scan(Connection conn, Queue<Range> ranges) throws SQLException {
+        Map<String, long[]> net = new HashMap<>();
+        Range range;
+        while ((range = ranges.poll()) != null) {
+            int slot = range.settled ? 0 : 1;
+            reconciliationDAO.sumNetChanges(conn, range.afterId, range.upToId,
+                    (accountNumber, netCents) -> net.computeIfAbsent(accountNumber, k -> new long[2])[slot] += netCents);
+        }
+        return net;
+    }
+
+    /**
+     * Accounts without a checkpoint row were opened (or first given an
+     * opening balance) after the last run; replay what they had before it
+     */
+    private void addHistoryBeforeCheckpoint(Connection conn, Map<String, AccountState> accounts, long fromId) throws SQLException {
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, AccountState> entry : accounts.entrySet()) {
+            if (!entry.getValue().fromCheckpoint && entry.getValue().baselineCents != null) {
+                missing.add(entry.getKey());
+            }
+        }
+        for (int from = 0; from < missing.size(); from += ACCOUNT_BATCH) {
+            String[] batch = missing.subList(from, Math.min(missing.size(), from + ACCOUNT_BATCH)).toArray(new String[0]);
+            reconciliationDAO.sumNetChanges(conn, batch, 0, fromId,
+                    (accountNumber, netCents) -> accounts.get(accountNumber).baselineCents += netCents);
+        }
+    }
+
+    /**
+     * Re-check accounts that differed against a fresh snapshot; those that
+     * agree now were caught between a balance update and its transaction row
+     */
+    private void confirm(List<String> candidates, Map<String, AccountState> accounts,
+                         ReconciliationDAO.Checkpoint checkpoint, long fromId, Report report) throws SQLException {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConfig.openConnection(false)) {
+            reconciliationDAO.beginSnapshotTransaction(conn);
+            Map<String, Long> expected = new HashMap<>();
+            Map<String, Long> stored = new HashMap<>();
+            for (String accountNumber : candidates) {
+                expected.put(accountNumber, accounts.get(accountNumber).baselineCents);
+            }
+            if (checkpoint != null && checkpoint.getPendingTransactionIds().length > 0) {
+                reconciliationDAO.sumCompleted(conn, checkpoint.getPendingTransactionIds(),
+                        (accountNumber, netCents) -> expected.computeIfPresent(accountNumber, (k, cents) -> cents + netCents));
+            }
+            for (int from = 0; from < candidates.size(); from += ACCOUNT_BATCH) {
+                String[] batch = candidates.subList(from, Math.min(candidates.size(), from + ACCOUNT_BATCH)).toArray(new String[0]);
+                reconciliationDAO.sumNetChanges(conn, batch, fromId, Long.MAX_VALUE,
+                        (accountNumber, netCents) -> expected.merge(accountNumber, netCents, Long::sum));
+                reconciliationDAO.getStoredBalances(conn, batch, stored::put);
+            }
+            conn.rollback();
+
+            for (String accountNumber : candidates) {
+                Long storedCents = stored.get(accountNumber);
+                long expectedCents = expected.get(accountNumber);
+                if (storedCents == null || storedCents != expectedCents) {
+                    report.discrepancies.add(new Discrepancy(accountNumber, accounts.get(accountNumber).currency,
+                            Kind.MISMATCH, storedCents, expectedCents));
+                } else {
+                    report.transientDifferences++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Record the run and the settled expected balance of every account that
+     * has one; a FULL run replaces all checkpoints
+     */
+    private int saveCheckpoint(Report report, Map<String, AccountState> accounts, List<Long> pending, Timestamp startedAt) {
+        boolean incremental = report.mode == Mode.INCREMENTAL;
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, AccountState> entry : accounts.entrySet()) {
+            AccountState state = entry.getValue();
+            // Unchanged checkpoints are left as they are
+            if (state.baselineCents != null && (!incremental || !state.fromCheckpoint || state.settledNetCents != 0)) {
+                changed.add(entry.getKey());
+            }
+        }
+        String[] accountNumbers = changed.toArray(new String[0]);
+        long[] expectedCents = new long[accountNumbers.length];
+        for (int i = 0; i < accountNumbers.length; i++) {
+            AccountState state = accounts.get(accountNumbers[i]);
+            expectedCents[i] = state.baselineCents + state.settledNetCents;
+        }
+        return reconciliationDAO.saveRun(incremental, report.fromTransactionId, report.checkpointTransactionId,
+                report.maxTransactionId, pending, report.accountsChecked, report.discrepancies.size(), startedAt,
+                accountNumbers, expectedCents);
+    }
+
+    private List<Range> split(long afterId, long upToId, boolean settled) {
+        List<Range> ranges = new ArrayList<>();
+        for (long from = afterId; from < upToId; from += idsPerRange) {
+            ranges.add(new Range(from, Math.min(upToId, from + idsPerRange), settled));
+        }
+        return ranges;
+    }
+
+    private static void add(Map<String, AccountState> accounts, Map<String, Long> unknownAccounts,
+                            String accountNumber, long netCents, int slot) {
+        AccountState state = accounts.get(accountNumber);
+        if (state == null) {
+            unknownAccounts.merge(accountNumber, netCents, Long::sum);
+        } else if (slot == 0) {
+            state.settledNetCents += netCents;
+        } else {
+            state.tailNetCents += netCents;
+        }
+    }
+
+    private static void closeAll(List<Connection> connections) {
+        for (Connection conn : connections) {
+            try {
+                if (!conn.isClosed()) {
+                    conn.rollback();
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                System.err.println("Error closing reconciliation connection: " + e.getMessage());
+            }
+        }
+        connections.clear();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Mode mode = args.length > 0 ? Mode.valueOf(args[0].toUpperCase()) : Mode.INCREMENTAL;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Path reportFile = args.length > 2 ? Paths.get(args[2]) : null;
+
+        int status = 0;
+        try {
+            Report report = new ReconciliationJob(threads).run(mode);
+            System.out.print(report.getSummary());
+            if (reportFile != null) {
+                report.writeCsv(reportFile);
+                System.out.println("Discrepancy report written to " + reportFile.toAbsolutePath());
+            }
+            status = report.getDiscrepancies().isEmpty() ? 0 : 2;
+        } catch (SQLException e) {
+            System.err.println("Error reconciling ledger: " + e.getMessage());
+            status = 1;
+        } finally {
+            DatabaseConfig.closeConnection();
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Inner class for a transaction id range (afterId, upToId]
+     */
+    private static class Range {
+        private final long afterId;
+        private final long upToId;
+        private final boolean settled;
+
+        Range(long afterId, long upToId, boolean settled) {
+            this.afterId = afterId;
+            this.upToId = upToId;
+            this.settled = settled;
+        }
+    }
+
+    /**
+     * Inner class for one account during a run, in cents
+     */
+    private static class AccountState {
+        private final String currency;
+        private final long storedCents;
+        private final boolean fromCheckpoint;
+        private Long baselineCents;
+        private long settledNetCents;
+        private long tailNetCents;
+
+        AccountState(String currency, Long baselineCents, long storedCents, boolean fromCheckpoint) {
+            this.currency = currency;
+            this.baselineCents = baselineCents;
+            this.storedCents = storedCents;
+            this.fromCheckpoint = fromCheckpoint;
+        }
+
+        long expectedCents() {
+            return baselineCents + settledNetCents + tailNetCents;
+        }
+    }
+
+    /**
+     * Inner class for one reported account
+     */
+    public static class Discrepancy {
+        private final String accountNumber;
+        private final String currency;
+        private final Kind kind;
+        private final Long storedCents;
+        private final Long expectedCents;
+
+        Discrepancy(String accountNumber, String currency, Kind kind, Long storedCents, Long expectedCents) {
+            this.accountNumber = accountNumber;
+            this.currency = currency;
+            this.kind = kind;
+            this.storedCents = storedCents;
+            this.expectedCents = expectedCents;
+        }
+
+        public String getAccountNumber() { return accountNumber; }
+        public String getCurrency() { return currency; }
+        public Kind getKind() { return kind; }
+        public Long getStoredCents() { return storedCents; }
+        public Long getExpectedCents() { return expectedCents; }
+
+        /**
+         * Stored minus expected, or null when either is unknown
+         */
+        public Long getDifferenceCents() {
+            return storedCents != null && expectedCents != null ? storedCents - expectedCents : null;
+        }
+    }
+
+    /**
+     * Inner class for the outcome of a run
+     */
+    public static class Report {
+        private final Mode mode;
+        private final long fromTransactionId;
+        private final long checkpointTransactionId;
+        private final long maxTransactionId;
+        private final int accountsChecked;
+        private final int ranges;
+        private final long scanNanos;
+        private final List<Discrepancy> discrepancies = new ArrayList<>();
+        private int transientDifferences;
+        private int runId;
+        private long elapsedNanos;
+
+        Report(Mode mode, long fromTransactionId, long checkpointTransactionId, long maxTransactionId,
+               int accountsChecked, int ranges, long scanNanos) {
+            this.mode = mode;
+            this.fromTransactionId = fromTransactionId;
+            this.checkpointTransactionId = checkpointTransactionId;
+            this.maxTransactionId = maxTransactionId;
+            this.accountsChecked = accountsChecked;
+            this.ranges = ranges;
+            this.scanNanos = scanNanos;
+        }
+
+        public Mode getMode() { return mode; }
+        public long getFromTransactionId() { return fromTransactionId; }
+        public long getCheckpointTransactionId() { return checkpointTransactionId; }
+        public long getMaxTransactionId() { return maxTransactionId; }
+        public int getAccountsChecked() { return accountsChecked; }
+        public List<Discrepancy> getDiscrepancies() { return Collections.unmodifiableList(discrepancies); }
+        public int getTransientDifferences() { return transientDifferences; }
+        /** Id of the recorded run, or -1 if it could not be saved */
+        public int getRunId() { return runId; }
+        public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+        public String getSummary() {
+            StringBuilder summary = new StringBuilder();
+            summary.append(String.format("%s reconciliation (run %d): transaction ids %d..%d in %d ranges, checkpoint at %d%n",
+                    mode, runId, fromTransactionId + 1, maxTransactionId, ranges, checkpointTransactionId));
+            summary.append(String.format("  %d accounts checked, %d discrepancies, %d transient differences%n",
+                    accountsChecked, discrepancies.size(), transientDifferences));
+            summary.append(String.format("  scan %d ms, total %d ms%n", scanNanos / 1_000_000, getElapsedMillis()));
+            for (Discrepancy discrepancy : discrepancies.subList(0, Math.min(20, discrepancies.size()))) {
+                summary.append(String.format("  %-20s %-18s stored %s expected %s%n", discrepancy.accountNumber,
+                        discrepancy.kind, format(discrepancy.storedCents, discrepancy.currency),
+                        format(discrepancy.expectedCents, discrepancy.currency)));
+            }
+            if (discrepancies.size() > 20) {
+                summary.append(String.format("  ... %d more%n", discrepancies.size() - 20));
+            }
+            return summary.toString();
+        }
+
+        /**
+         * Write every discrepancy as CSV
+         */
+        public void writeCsv(Path file) throws IOException {
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                writer.write("account_number,currency,kind,stored_balance,expected_balance,difference");
+                writer.newLine();
+                for (Discrepancy discrepancy : discrepancies) {
+                    writer.write(String.join(",", Arrays.asList(discrepancy.accountNumber,
+                            discrepancy.currency != null ? discrepancy.currency : "", discrepancy.kind.name(),
+                            format(discrepancy.storedCents, null), format(discrepancy.expectedCents, null),
+                            format(discrepancy.getDifferenceCents(), null))));
+                    writer.newLine();
+                }
+            }
+        }
+
+        private static String format(Long cents, String currency) {
+            if (cents == null) {
+                return "";
+            }
+            String amount = (cents < 0 ? "-" : "") + Math.abs(cents / 100) + "." + String.format("%02d", Math.abs(cents % 100));
+            return currency != null ? amount + " " + currency : amount;
+        }
+    }
+}
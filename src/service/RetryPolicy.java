@@ -0,0 +1,62 @@
+package service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded retry with exponential backoff and full jitter, used to re-run a unit
+ * of work that lost an optimistic concurrency race
+ */
+public class RetryPolicy {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 2;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 100;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public int getMaxAttempts() { return maxAttempts; }
+
+    /**
+     * Whether another attempt is allowed after the given (1-based) attempt failed
+     */
+    public boolean canRetry(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * Backoff before the attempt following the given (1-based) attempt.
+     * Full jitter spreads competing writers apart instead of retrying in lockstep.
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Sleep for the backoff of the given attempt; returns false if interrupted
+     */
+    public boolean backoff(int attempt) {
+        try {
+            Thread.sleep(backoffMillis(attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package service;
+
+import dao.ScheduledPaymentDAO;
+import dao.TransactionDAO;
+import model.banking.ScheduledPayment;
+import model.banking.Transaction;
+import util.DatabaseConfig;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs scheduled and recurring payments (standing orders).
+ *
+ * Every active schedule owns one PENDING transaction row for its current
+ * occurrence. On start the id and due time of every active schedule is
+ * streamed once into a {@link TimingWheel}; after that the database is only
+ * read for schedules that are actually due, a batch at a time. Each occurrence
+ * is executed through {@link TransactionService#applyPending}, and in the same
+ * database transaction the schedule is moved on to its next occurrence (with a
+ * new PENDING row), so every occurrence is paid exactly once even if two
+ * processes run the scheduler.
+ *
+ * Failed occurrences (e.g. insufficient funds) are retried with a growing
+ * delay; after MAX_FAILURES the PENDING row is marked FAILED and the schedule
+ * moves on, or fails if it was the last occurrence.
+ */
+public class ScheduledPaymentService {
+
+    private static final ScheduledPaymentService INSTANCE = new ScheduledPaymentService();
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_FAILURES = 3;
+    private static final long FAILURE_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    // Lost concurrency races are retried on the next tick without counting as a failure
+    private static final long CONFLICT_RETRY_MILLIS = TICK_MILLIS;
+
+    private final ScheduledPaymentDAO scheduledPaymentDAO;
+    private final TransactionDAO transactionDAO;
+    private final TransactionService transactionService;
+
+    private final TimingWheel<Integer> wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    // Latest due time per schedule id; wheel entries that no longer match are stale
+    private final Map<Integer, Long> deadlines = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Integer> dueQueue = new LinkedBlockingQueue<>();
+
+    private ScheduledExecutorService ticker;
+    private Thread runner;
+    private volatile boolean running = false;
+
+    private ScheduledPaymentService() {
+        this(new ScheduledPaymentDAO(), new TransactionDAO(), new TransactionService());
+    }
+
+    ScheduledPaymentService(ScheduledPaymentDAO scheduledPaymentDAO, TransactionDAO transactionDAO,
+                            TransactionService transactionService) {
+        this.scheduledPaymentDAO = scheduledPaymentDAO;
+        this.transactionDAO = transactionDAO;
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * Get the shared scheduler instance
+     */
+    public static ScheduledPaymentService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Load active schedules and start firing due payments in the background
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "scheduled-payment-ticker"));
+        ticker.execute(() -> scheduledPaymentDAO.loadActiveSchedules(this::enqueue));
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        runner = daemon(this::runLoop, "scheduled-payment-runner");
+        runner.start();
+    }
+
+    /**
+     * Stop the scheduler; payments already being executed are finished
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        ticker.shutdownNow();
+        runner.interrupt();
+    }
+
+    /**
+     * Number of schedules waiting in the timing wheel
+     */
+    public int getWaitingCount() {
+        return deadlines.size();
+    }
+
+    /**
+     * Create a future-dated or recurring transfer.
+     * runs limits the number of occurrences; null repeats until cancelled.
+     */
+    public ScheduledPayment schedule(String fromAccountNumber, String toAccountNumber, double amount,
+                                     String description, ScheduledPayment.Frequency frequency,
+                                     LocalDateTime firstRunAt, Integer runs, String createdBy) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (fromAccountNumber.equals(toAccountNumber)) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        if (runs != null && runs < 1) {
+            throw new IllegalArgumentException("At least one run is required");
+        }
+
+        ScheduledPayment payment = new ScheduledPayment(fromAccountNumber, toAccountNumber, amount, description,
+                frequency, firstRunAt, runs, createdBy);
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                createOccurrence(conn, payment);
+                scheduledPaymentDAO.createSchedule(conn, payment);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error creating scheduled payment: " + e.getMessage());
+            return null;
+        }
+
+        if (running) {
+            enqueue(payment.getId(), payment.getNextRunAt());
+        }
+        return payment;
+    }
+
+    /**
+     * Cancel a schedule and its pending occurrence
+     */
+    public boolean cancel(String scheduleId) {
+        ScheduledPayment payment = scheduledPaymentDAO.getScheduleByScheduleId(scheduleId);
+        if (payment == null || payment.getStatus() != ScheduledPayment.ScheduleStatus.ACTIVE) {
+            return false;
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                if (!scheduledPaymentDAO.updateStatus(conn, payment.getId(), ScheduledPayment.ScheduleStatus.CANCELLED)) {
+                    conn.rollback();
+                    return false;
+                }
+                transactionDAO.updateTransactionStatus(conn, payment.getPendingTransactionId(),
+                        Transaction.TransactionStatus.PENDING, Transaction.TransactionStatus.CANCELLED);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error cancelling scheduled payment: " + e.getMessage());
+            return false;
+        }
+
+        deadlines.remove(payment.getId());
+        return true;
+    }
+
+    /**
+     * Put a schedule in the wheel, or straight on the due queue if already due
+     */
+    private void enqueue(int id, LocalDateTime runAt) {
+        long deadline = runAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Long previous = deadlines.put(id, deadline);
+        if (previous != null && previous == deadline) {
+            return;
+        }
+        boolean scheduled;
+        synchronized (wheel) {
+            scheduled = wheel.schedule(deadline, id);
+        }
+        if (!scheduled) {
+            dueQueue.add(id);
+        }
+    }
+
+    private void retryAfter(int id, long delayMillis) {
+        enqueue(id, LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(delayMillis)));
+    }
+
+    private void tick() {
+        synchronized (wheel) {
+            wheel.advance(System.currentTimeMillis(), dueQueue::add);
+        }
+    }
+
+    private void runLoop() {
+        List<Integer> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                batch.add(dueQueue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            dueQueue.drainTo(batch, BATCH_SIZE - 1);
+            try {
+                fireBatch(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Error running scheduled payments: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Load a batch of due schedules in one query and execute each occurrence
+     */
+    private void fireBatch(List<Integer> batch) {
+        long now = System.currentTimeMillis();
+        List<Integer> ids = new ArrayList<>(batch.size());
+        for (Integer id : batch) {
+            Long deadline = deadlines.get(id);
+            // Skip stale wheel entries (rescheduled or cancelled meanwhile)
+            if (deadline != null && deadline <= now && deadlines.remove(id, deadline)) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<ScheduledPayment> payments;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            payments = scheduledPaymentDAO.getSchedulesByIds(conn, ids);
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Error loading due scheduled payments: " + e.getMessage());
+            for (Integer id : ids) {
+                retryAfter(id, FAILURE_RETRY_MILLIS);
+            }
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS));
+        for (ScheduledPayment payment : payments) {
+            if (payment.getStatus() != ScheduledPayment.ScheduleStatus.ACTIVE) {
+                continue;
+            }
+            if (payment.getNextRunAt().isAfter(cutoff)) {
+                // Moved by another process since it was loaded
+                enqueue(payment.getId(), payment.getNextRunAt());
+                continue;
+            }
+            fire(payment);
+        }
+    }
+
+    /**
+     * Execute the current occurrence of a schedule and move it on
+     */
+    private void fire(ScheduledPayment payment) {
+        TransactionResult result;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                result = runOccurrence(conn, payment);
+                if (result.getStatus() == TransactionResult.Status.COMPLETED) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            if (TransactionService.SERIALIZATION_FAILURE.equals(e.getSQLState())
+                    || TransactionService.DEADLOCK_DETECTED.equals(e.getSQLState())) {
+                result = TransactionService.conflict();
+            } else {
+                // Not a business failure, so it does not count towards MAX_FAILURES
+                System.err.println("Error executing scheduled payment " + payment.getScheduleId() + ": " + e.getMessage());
+                retryAfter(payment.getId(), FAILURE_RETRY_MILLIS);
+                return;
+            }
+        }
+
+        switch (result.getStatus()) {
+            case COMPLETED:
+                if (payment.getStatus() == ScheduledPayment.ScheduleStatus.ACTIVE) {
+                    enqueue(payment.getId(), payment.getNextRunAt());
+                }
+                break;
+            case CONFLICT:
+            case DUPLICATE:
+                // Re-read on the next tick; a duplicate means another process ran it
+                retryAfter(payment.getId(), CONFLICT_RETRY_MILLIS);
+                break;
+            default:
+                handleFailure(payment, result);
+                break;
+        }
+    }
+
+    private TransactionResult runOccurrence(Connection conn, ScheduledPayment payment) throws SQLException {
+        String pendingId = payment.getPendingTransactionId();
+        Transaction pending = transactionDAO.getTransactionById(conn, pendingId);
+        if (pending == null) {
+            return TransactionResult.failure(TransactionResult.Status.FAILED, "Pending transaction " + pendingId + " not found");
+        }
+
+        TransactionResult result = transactionService.applyPending(conn, pending);
+        if (result.getStatus() != TransactionResult.Status.COMPLETED) {
+            return result;
+        }
+        if (!advance(conn, payment, pendingId)) {
+            return TransactionResult.completed(pending).asDuplicate();
+        }
+        return result;
+    }
+
+    /**
+     * Retry a failed occurrence later, or give up on it after MAX_FAILURES
+     */
+    private void handleFailure(ScheduledPayment payment, TransactionResult result) {
+        int failures = payment.getFailureCount() + 1;
+        System.err.println("Scheduled payment " + payment.getScheduleId() + " failed (attempt " + failures + "): "
+                + result.getMessage());
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                if (failures < MAX_FAILURES) {
+                    LocalDateTime retryAt = LocalDateTime.now()
+                            .plusNanos(TimeUnit.MILLISECONDS.toNanos(FAILURE_RETRY_MILLIS << (failures - 1)));
+                    scheduledPaymentDAO.recordFailure(conn, payment.getId(), failures, retryAt);
+                    payment.setNextRunAt(retryAt);
+                } else {
+                    String pendingId = payment.getPendingTransactionId();
+                    transactionDAO.updateTransactionStatus(conn, pendingId,
+                            Transaction.TransactionStatus.PENDING, Transaction.TransactionStatus.FAILED);
+                    if (payment.hasNextRun()) {
+                        advance(conn, payment, pendingId);
+                    } else {
+                        scheduledPaymentDAO.updateStatus(conn, payment.getId(), ScheduledPayment.ScheduleStatus.FAILED);
+                        payment.setStatus(ScheduledPayment.ScheduleStatus.FAILED);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error recording scheduled payment failure: " + e.getMessage());
+            retryAfter(payment.getId(), FAILURE_RETRY_MILLIS);
+            return;
+        }
+
+        if (payment.getStatus() == ScheduledPayment.ScheduleStatus.ACTIVE) {
+            enqueue(payment.getId(), payment.getNextRunAt());
+        }
+    }
+
+    /**
+     * Move a schedule past its current occurrence: create the next PENDING
+     * occurrence, or complete the schedule after its last one
+     */
+    private boolean advance(Connection conn, ScheduledPayment payment, String expectedPendingId) throws SQLException {
+        if (payment.hasNextRun()) {
+            LocalDateTime next = payment.getFrequency().next(payment.getOccurrenceAt());
+            payment.setOccurrenceAt(next);
+            payment.setNextRunAt(next);
+            if (payment.getRemainingRuns() != null) {
+                payment.setRemainingRuns(payment.getRemainingRuns() - 1);
+            }
+            createOccurrence(conn, payment);
+        } else {
+            payment.setRemainingRuns(payment.getRemainingRuns() != null ? 0 : null);
+            payment.setStatus(ScheduledPayment.ScheduleStatus.COMPLETED);
+        }
+        payment.setFailureCount(0);
+        return scheduledPaymentDAO.advanceSchedule(conn, payment, expectedPendingId);
+    }
+
+    /**
+     * Insert the PENDING transaction for the schedule's current occurrence
+     */
+    private void createOccurrence(Connection conn, ScheduledPayment payment) throws SQLException {
+        Transaction pending = new Transaction(payment.getFromAccountNumber(), payment.getToAccountNumber(),
+                payment.getAmount(), Transaction.TransactionType.TRANSFER, payment.getDescription(),
+                payment.getCreatedBy());
+        pending.setStatus(Transaction.TransactionStatus.PENDING);
+        pending.setIdempotencyKey(payment.occurrenceKey());
+        if (!transactionDAO.createTransaction(conn, pending)) {
+            throw new SQLException("Failed to create pending transaction for " + payment.getScheduleId());
+        }
+        payment.setPendingTransactionId(pending.getTransactionId());
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,111 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cold start of the desktop client: each run launches a fresh JVM
+ * with Main, which writes its startup timings and exits once the login
+ * screen is up, or, given credentials, once it has logged in and shown the
+ * dashboard. Reports time-to-login-screen, time-to-first-dashboard (JVM
+ * uptime) and every startup step as min / median / max over the runs.
+ *
+ * Run with the same classpath and JavaFX module path as the client:
+ * java -cp "lib/*:out" --module-path "$JAVAFX_HOME/lib" --add-modules javafx.controls,javafx.fxml
+ *     service.StartupBenchmark [runs] [username:password:ROLE]
+ */
+public final class StartupBenchmark {
+
+    public static final String REPORT_PROPERTY = "banking.startup.report";
+    public static final String LOGIN_PROPERTY = "banking.startup.login";
+
+    private static final long RUN_TIMEOUT_SECONDS = 120;
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String login = args.length > 1 ? args[1] : null;
+
+        Map<String, List<Double>> samples = new TreeMap<>();
+        System.out.printf("Startup benchmark: %d runs, %s%n", runs, login != null ? "through first dashboard" : "to login screen");
+        for (int run = 1; run <= runs; run++) {
+            Path report = Files.createTempFile("startup-report", ".properties");
+            try {
+                Properties timings = launch(report, login);
+                for (String name : timings.stringPropertyNames()) {
+                    if (name.startsWith("milestone.") || name.endsWith(".millis")) {
+                        samples.computeIfAbsent(name, k -> new ArrayList<>()).add(Double.parseDouble(timings.getProperty(name)));
+                    }
+                }
+                System.out.printf("  run %d: login screen at %s ms, first dashboard at %s ms%n", run,
+                        timings.getProperty("milestone.login-screen", "-"), timings.getProperty("milestone.first-dashboard", "-"));
+            } finally {
+                Files.deleteIfExists(report);
+            }
+        }
+
+        System.out.printf("%-40s %10s %10s %10s%n", "timing (ms)", "min", "median", "max");
+        for (Map.Entry<String, List<Double>> entry : samples.entrySet()) {
+            List<Double> values = entry.getValue();
+            Collections.sort(values);
+            System.out.printf("%-40s %10.1f %10.1f %10.1f%n", entry.getKey(), values.get(0),
+                    values.get(values.size() / 2), values.get(values.size() - 1));
+        }
+    }
+
+    /**
+     * Start the client in a new JVM and read the timings it wrote
+     */
+    private static Properties launch(Path report, String login) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            command.add("--module-path");
+            command.add(modulePath);
+            command.add("--add-modules");
+            command.add("javafx.controls,javafx.fxml");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-D" + REPORT_PROPERTY + "=" + report.toAbsolutePath());
+        if (login != null) {
+            command.add("-D" + LOGIN_PROPERTY + "=" + login);
+        }
+        String config = System.getProperty("banking.config");
+        if (config != null) {
+            command.add("-Dbanking.config=" + config);
+        }
+        command.add("Main");
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(System.getProperty("java.io.tmpdir"), "startup-benchmark.log")))
+                .start();
+        if (!process.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("Client did not finish starting within " + RUN_TIMEOUT_SECONDS + " s");
+        }
+        Properties timings = new Properties();
+        try (InputStream in = Files.newInputStream(report)) {
+            timings.load(in);
+        }
+        if (timings.isEmpty()) {
+            throw new IOException("Client exited without writing timings (exit code " + process.exitValue() + ")");
+        }
+        return timings;
+    }
+}
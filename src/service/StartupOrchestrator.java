@@ -0,0 +1,312 @@
+package service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent startup steps concurrently and times each of them.
+ *
+ * A step starts as soon as the steps it depends on have finished; one whose
+ * dependency failed is skipped. Steps added with {@link #backgroundStep} are
+ * warm-ups nobody has to wait for: {@link #awaitReady} returns once every
+ * other step is done. Milestones (login screen shown, first dashboard shown)
+ * are recorded against JVM uptime so they include JVM and toolkit start.
+ *
+ * Steps are added before {@link #start()}; it runs them once and prints the
+ * timing report when the last one finishes.
+ */
+public class StartupOrchestrator {
+
+    /**
+     * One unit of startup work
+     */
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    public enum Status {
+        PENDING, RUNNING, OK, FAILED, SKIPPED
+    }
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final Map<String, Long> milestones = new LinkedHashMap<>();
+    private final Map<String, List<Runnable>> milestoneListeners = new HashMap<>();
+    private final int threads;
+
+    private ExecutorService executor;
+    private long startedNanos;
+    private long startedUptimeMillis;
+    private CompletableFuture<Void> ready;
+    private CompletableFuture<Void> finished;
+
+    public StartupOrchestrator(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Add a step that {@link #awaitReady} waits for
+     */
+    public synchronized StartupOrchestrator step(String name, Step action, String... dependsOn) {
+        return add(name, action, false, dependsOn);
+    }
+
+    /**
+     * Add a warm-up step that runs alongside the others but is not waited for
+     */
+    public synchronized StartupOrchestrator backgroundStep(String name, Step action, String... dependsOn) {
+        return add(name, action, true, dependsOn);
+    }
+
+    private StartupOrchestrator add(String name, Step action, boolean background, String... dependsOn) {
+        if (executor != null) {
+            throw new IllegalStateException("Startup already running");
+        }
+        if (phases.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup step " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!phases.containsKey(dependency)) {
+                throw new IllegalArgumentException("Startup step " + name + " depends on unknown step " + dependency);
+            }
+        }
+        phases.put(name, new Phase(name, action, background, dependsOn));
+        return this;
+    }
+
+    /**
+     * Start every step without waiting for any of them
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "startup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        startedNanos = System.nanoTime();
+        startedUptimeMillis = uptimeMillis();
+
+        List<CompletableFuture<Void>> required = new ArrayList<>();
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        // Dependencies are declared first, so one pass in insertion order wires them all
+        for (Phase phase : phases.values()) {
+            CompletableFuture<?>[] dependencies = new CompletableFuture<?>[phase.dependsOn.length];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = phases.get(phase.dependsOn[i]).future;
+            }
+            phase.future = CompletableFuture.allOf(dependencies)
+                    .handleAsync((ignored, failure) -> {
+                        phase.run(failure == null, startedNanos);
+                        return null;
+                    }, executor)
+                    .thenCompose(ignored -> phase.status == Status.OK
+                            ? CompletableFuture.completedFuture(null)
+                            : CompletableFuture.failedFuture(new IllegalStateException(phase.name + " " + phase.status)));
+            CompletableFuture<Void> done = phase.future.handle((ignored, failure) -> null);
+            all.add(done);
+            if (!phase.background) {
+                required.add(done);
+            }
+        }
+        ready = CompletableFuture.allOf(required.toArray(new CompletableFuture<?>[0]));
+        finished = CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0]));
+        finished.whenComplete((ignored, failure) -> {
+            executor.shutdown();
+            System.out.print(getReport());
+        });
+    }
+
+    /**
+     * Wait for every step not added as a background step; false on timeout
+     */
+    public boolean awaitReady(long timeoutMillis) throws InterruptedException {
+        return await(ready, timeoutMillis);
+    }
+
+    /**
+     * Wait for every step, background ones included; false on timeout
+     */
+    public boolean awaitFinished(long timeoutMillis) throws InterruptedException {
+        return await(finished, timeoutMillis);
+    }
+
+    private static boolean await(CompletableFuture<Void> future, long timeoutMillis) throws InterruptedException {
+        if (future == null) {
+            throw new IllegalStateException("Startup not started");
+        }
+        try {
+            future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Run an action once every step has finished; call after {@link #start()}
+     */
+    public void whenFinished(Runnable action) {
+        finished.whenComplete((ignored, failure) -> action.run());
+    }
+
+    /**
+     * Record the first time a milestone is reached, in JVM uptime
+     */
+    public synchronized void mark(String milestone) {
+        if (milestones.putIfAbsent(milestone, uptimeMillis()) == null) {
+            List<Runnable> listeners = milestoneListeners.remove(milestone);
+            if (listeners != null) {
+                listeners.forEach(Runnable::run);
+            }
+        }
+    }
+
+    /**
+     * Run an action when a milestone is first reached (at once if it already was)
+     */
+    public synchronized void onMilestone(String milestone, Runnable action) {
+        if (milestones.containsKey(milestone)) {
+            action.run();
+        } else {
+            milestoneListeners.computeIfAbsent(milestone, k -> new ArrayList<>()).add(action);
+        }
+    }
+
+    /**
+     * JVM uptime at which a milestone was reached, or -1
+     */
+    public synchronized long getMilestoneMillis(String milestone) {
+        return milestones.getOrDefault(milestone, -1L);
+    }
+
+    public synchronized Map<String, Long> getMilestones() {
+        return new LinkedHashMap<>(milestones);
+    }
+
+    /**
+     * JVM uptime at which the steps started
+     */
+    public long getStartedUptimeMillis() {
+        return startedUptimeMillis;
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases.values());
+    }
+
+    /**
+     * Per-step timing table plus milestones
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Startup (steps began at %d ms of JVM uptime):%n", startedUptimeMillis));
+        report.append(String.format("  %-22s %-8s %9s %9s  %s%n", "step", "status", "start ms", "took ms", "thread"));
+        for (Phase phase : getPhases()) {
+            report.append(String.format("  %-22s %-8s %9.1f %9.1f  %s%s%n", phase.name, phase.status,
+                    phase.startOffsetNanos / 1e6, phase.durationNanos / 1e6,
+                    phase.thread != null ? phase.thread : "-",
+                    phase.error != null ? "  (" + phase.error + ")" : ""));
+        }
+        for (Map.Entry<String, Long> milestone : getMilestones().entrySet()) {
+            report.append(String.format("  %-22s at %d ms%n", milestone.getKey(), milestone.getValue()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Write the timings as properties (milestone.NAME, step.NAME.millis,
+     * step.NAME.status), for {@link StartupBenchmark}
+     */
+    public void writeReport(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("steps.started", Long.toString(startedUptimeMillis));
+        for (Map.Entry<String, Long> milestone : getMilestones().entrySet()) {
+            properties.setProperty("milestone." + milestone.getKey(), Long.toString(milestone.getValue()));
+        }
+        for (Phase phase : getPhases()) {
+            properties.setProperty("step." + phase.name + ".millis", String.format("%.3f", phase.durationNanos / 1e6));
+            properties.setProperty("step." + phase.name + ".status", phase.status.name());
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, "Startup timings");
+        }
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    /**
+     * Inner class for one step and its timing
+     */
+    public static class Phase {
+        private final String name;
+        private final Step action;
+        private final boolean background;
+        private final String[] dependsOn;
+        private CompletableFuture<Void> future;
+
+        private volatile Status status = Status.PENDING;
+        private volatile long startOffsetNanos;
+        private volatile long durationNanos;
+        private volatile String thread;
+        private volatile String error;
+
+        Phase(String name, Step action, boolean background, String[] dependsOn) {
+            this.name = name;
+            this.action = action;
+            this.background = background;
+            this.dependsOn = dependsOn;
+        }
+
+        void run(boolean dependenciesOk, long startedNanos) {
+            long begin = System.nanoTime();
+            startOffsetNanos = begin - startedNanos;
+            thread = Thread.currentThread().getName();
+            if (!dependenciesOk) {
+                status = Status.SKIPPED;
+                error = "a dependency failed";
+                return;
+            }
+            status = Status.RUNNING;
+            try {
+                action.run();
+                status = Status.OK;
+            } catch (Exception | LinkageError e) {
+                status = Status.FAILED;
+                error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                System.err.println("Startup step " + name + " failed: " + e.getMessage());
+            } finally {
+                durationNanos = System.nanoTime() - begin;
+            }
+        }
+
+        public String getName() { return name; }
+        public boolean isBackground() { return background; }
+        public Status getStatus() { return status; }
+        public long getStartOffsetMillis() { return startOffsetNanos / 1_000_000; }
+        public double getDurationMillis() { return durationNanos / 1e6; }
+        public String getError() { return error; }
+    }
+}
@@ -0,0 +1,125 @@
+package service;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel (as in Varghese & Lauck, and the Linux and Kafka
+ * timer wheels) holding any number of deadlines in memory.
+ *
+ * Level 0 has one slot per tick; each higher level has slots 64 times wider,
+ * so five levels of 64 slots cover 64^5 ticks (about 34 years at one second).
+ * Scheduling and firing are O(1): an entry sits in the coarsest level that
+ * still resolves its deadline and is cascaded one level down each time the
+ * wheel enters its slot, until it fires from level 0.
+ *
+ * Not thread-safe on its own; callers synchronise on the wheel.
+ */
+public class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+
+    private final long tickMillis;
+    private final ArrayDeque<Entry<T>>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.wheels = newWheels();
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheels[level][slot] = new ArrayDeque<>();
+            }
+        }
+    }
+
+    // Generic arrays cannot be created directly; every slot is filled before use
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> ArrayDeque<Entry<T>>[][] newWheels() {
+        return new ArrayDeque[LEVELS][SLOTS];
+    }
+
+    /**
+     * Add an item due at the given time.
+     * Returns false (and keeps nothing) if the deadline has already passed.
+     */
+    public boolean schedule(long deadlineMillis, T item) {
+        long deadlineTick = deadlineMillis / tickMillis;
+        if (deadlineTick <= currentTick) {
+            return false;
+        }
+        place(new Entry<>(deadlineTick, item));
+        size++;
+        return true;
+    }
+
+    /**
+     * Advance the wheel to the given time, handing every item that became due
+     * to the consumer tick by tick
+     */
+    public void advance(long nowMillis, Consumer<T> due) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Coarser levels first, so entries they cascade can land in the
+            // finer slot that is about to be drained
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level);
+                }
+            }
+
+            ArrayDeque<Entry<T>> slot = wheels[0][(int) (currentTick & SLOT_MASK)];
+            Entry<T> entry;
+            while ((entry = slot.pollFirst()) != null) {
+                size--;
+                due.accept(entry.item);
+            }
+        }
+    }
+
+    /**
+     * Number of items waiting in the wheel
+     */
+    public int size() {
+        return size;
+    }
+
+    private void cascade(int level) {
+        ArrayDeque<Entry<T>> slot = wheels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        int count = slot.size();
+        for (int i = 0; i < count; i++) {
+            place(slot.pollFirst());
+        }
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        // Deadlines beyond the top level's range wrap onto it and are simply
+        // re-placed each time they cascade
+        int slot = (int) ((Math.max(entry.deadlineTick, currentTick) >>> (SLOT_BITS * level)) & SLOT_MASK);
+        wheels[level][slot].addLast(entry);
+    }
+
+    private static final class Entry<T> {
+        private final long deadlineTick;
+        private final T item;
+
+        Entry(long deadlineTick, T item) {
+            this.deadlineTick = deadlineTick;
+            this.item = item;
+        }
+    }
+}
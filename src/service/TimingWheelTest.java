@@ -0,0 +1,76 @@
+package service;
+
+import static util.Assert.check;
+import static util.Assert.checkEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for TimingWheel slot wrap-around and cascading
+ */
+public class TimingWheelTest {
+
+    public static void main(String[] args) {
+        System.out.println("🧪 Testing TimingWheel...");
+        testPastDeadlines();
+        testLevelBoundaries();
+        testRandomDeadlines();
+        System.out.println("✅ TimingWheel tests passed");
+    }
+
+    private static void testPastDeadlines() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 1_000);
+        check(!wheel.schedule(1_000, "now"), "a deadline in the current tick is refused");
+        check(!wheel.schedule(500, "past"), "a past deadline is refused");
+        check(wheel.schedule(1_010, "next"), "the next tick is accepted");
+        checkEquals(1, wheel.size(), "size");
+    }
+
+    /**
+     * Deadlines on either side of each level's span (64, 64^2, 64^3 ticks),
+     * from a start that is not aligned to any slot, so slot indexes wrap
+     */
+    private static void testLevelBoundaries() {
+        long start = 1_000_037;
+        long[] deltas = {1, 63, 64, 65, 127, 128, 4_095, 4_096, 4_097, 262_143, 262_144, 262_145, 300_000};
+        List<Long> deadlines = new ArrayList<>();
+        for (long delta : deltas) {
+            deadlines.add(start + delta);
+        }
+        checkFiresOnTime(start, deadlines);
+    }
+
+    private static void testRandomDeadlines() {
+        Random random = new Random(7);
+        long start = 123_456_789;
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            deadlines.add(start + 1 + random.nextInt(400_000));
+        }
+        checkFiresOnTime(start, deadlines);
+    }
+
+    /**
+     * Schedule every deadline on a 1ms wheel, advance one tick at a time and
+     * check each item fires in exactly the tick of its deadline
+     */
+    private static void checkFiresOnTime(long start, List<Long> deadlines) {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, start);
+        for (long deadline : deadlines) {
+            check(wheel.schedule(deadline, deadline), "schedule " + deadline);
+        }
+        long end = deadlines.stream().mapToLong(Long::longValue).max().orElse(start);
+        int[] fired = {0};
+        for (long now = start + 1; now <= end; now++) {
+            long tick = now;
+            wheel.advance(now, deadline -> {
+                checkEquals(deadline.longValue(), tick, "tick a deadline fired in");
+                fired[0]++;
+            });
+        }
+        checkEquals(deadlines.size(), fired[0], "items fired");
+        checkEquals(0, wheel.size(), "items left");
+    }
+}
@@ -0,0 +1,72 @@
+package service;
+
+import model.banking.Transaction;
+
+/**
+ * A single money-moving request (deposit, withdrawal or transfer) identified by
+ * a client-supplied idempotency key
+ */
+public class TransactionRequest {
+    private final String idempotencyKey;
+    private final Transaction.TransactionType type;
+    private final String fromAccountNumber;
+    private final String toAccountNumber;
+    private final double amount;
+    private final String description;
+    private final String performedBy;
+
+    public TransactionRequest(String idempotencyKey, Transaction.TransactionType type, String fromAccountNumber,
+                              String toAccountNumber, double amount, String description, String performedBy) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            throw new IllegalArgumentException("Idempotency key is required");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        this.idempotencyKey = idempotencyKey;
+        this.type = type;
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+        this.description = description;
+        this.performedBy = performedBy;
+    }
+
+    public static TransactionRequest deposit(String idempotencyKey, String accountNumber, double amount,
+                                             String description, String performedBy) {
+        return new TransactionRequest(idempotencyKey, Transaction.TransactionType.DEPOSIT, null, accountNumber,
+                amount, description, performedBy);
+    }
+
+    public static TransactionRequest withdrawal(String idempotencyKey, String accountNumber, double amount,
+                                                String description, String performedBy) {
+        return new TransactionRequest(idempotencyKey, Transaction.TransactionType.WITHDRAWAL, accountNumber, null,
+                amount, description, performedBy);
+    }
+
+    public static TransactionRequest transfer(String idempotencyKey, String fromAccountNumber, String toAccountNumber,
+                                              double amount, String description, String performedBy) {
+        return new TransactionRequest(idempotencyKey, Transaction.TransactionType.TRANSFER, fromAccountNumber,
+                toAccountNumber, amount, description, performedBy);
+    }
+
+    // Getters
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public Transaction.TransactionType getType() { return type; }
+    public String getFromAccountNumber() { return fromAccountNumber; }
+    public String getToAccountNumber() { return toAccountNumber; }
+    public double getAmount() { return amount; }
+    public String getDescription() { return description; }
+    public String getPerformedBy() { return performedBy; }
+
+    @Override
+    public String toString() {
+        return "TransactionRequest{" +
+                "idempotencyKey='" + idempotencyKey + '\'' +
+                ", type=" + type +
+                ", from='" + fromAccountNumber + '\'' +
+                ", to='" + toAccountNumber + '\'' +
+                ", amount=" + amount +
+                '}';
+    }
+}
@@ -0,0 +1,76 @@
+package service;
+
+import model.banking.Transaction;
+
+/**
+ * Outcome of a {@link TransactionRequest}
+ */
+public class TransactionResult {
+
+    public enum Status {
+        COMPLETED("Transaction executed successfully!"),
+        DUPLICATE("Transaction was already executed"),
+        ACCOUNT_NOT_FOUND("Account not found"),
+        INSUFFICIENT_FUNDS("Insufficient funds or below minimum balance"),
+        CONFLICT("Account was updated concurrently, please retry"),
+        REJECTED("Blocked by fraud and velocity checks"),
+        RATE_LIMITED("Too many requests, please slow down"),
+        FAILED("Transaction failed");
+
+        private final String defaultMessage;
+
+        Status(String defaultMessage) {
+            this.defaultMessage = defaultMessage;
+        }
+
+        public String getDefaultMessage() {
+            return defaultMessage;
+        }
+    }
+
+    private final Status status;
+    private final String message;
+    private final Transaction transaction;
+
+    private TransactionResult(Status status, String message, Transaction transaction) {
+        this.status = status;
+        this.message = message;
+        this.transaction = transaction;
+    }
+
+    public static TransactionResult completed(Transaction transaction) {
+        return new TransactionResult(Status.COMPLETED, Status.COMPLETED.getDefaultMessage(), transaction);
+    }
+
+    public static TransactionResult failure(Status status, String message) {
+        return new TransactionResult(status, message != null ? message : status.getDefaultMessage(), null);
+    }
+
+    /**
+     * The same result, marked as a replay of an already executed request
+     */
+    public TransactionResult asDuplicate() {
+        String id = transaction != null ? " (" + transaction.getTransactionId() + ")" : "";
+        return new TransactionResult(Status.DUPLICATE, Status.DUPLICATE.getDefaultMessage() + id, transaction);
+    }
+
+    /**
+     * Whether the money movement is in effect, either from this call or an earlier one
+     */
+    public boolean isSuccess() {
+        return status == Status.COMPLETED || status == Status.DUPLICATE;
+    }
+
+    public Status getStatus() { return status; }
+    public String getMessage() { return message; }
+    public Transaction getTransaction() { return transaction; }
+
+    @Override
+    public String toString() {
+        return "TransactionResult{" +
+                "status=" + status +
+                ", message='" + message + '\'' +
+                ", transactionId=" + (transaction != null ? transaction.getTransactionId() : null) +
+                '}';
+    }
+}
@@ -0,0 +1,496 @@
+package service;
+
+import dao.BankAccountDAO;
+import dao.OutboxDAO;
+import dao.TransactionDAO;
+import model.BankAccount;
+import model.LoanAccount;
+import model.banking.OutboxEvent;
+import model.banking.Transaction;
+import service.risk.RiskDecision;
+import service.risk.RiskEngine;
+import util.DatabaseConfig;
+import util.ReplicaRouter;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Executes deposits, withdrawals and transfers exactly once.
+ *
+ * Every request carries an idempotency key. The balance change(s) and the
+ * transaction row holding the key are written in one database transaction,
+ * so a retry either finds the key (and gets the original result back) or the
+ * first attempt never happened. Recently completed keys are also kept in an
+ * {@link IdempotencyCache} so most retries are answered without the database.
+ *
+ * Balances are written with compare-and-set on bank_accounts.version. When a
+ * concurrent writer wins the race the whole unit of work is rolled back and
+ * re-run from a fresh read, following the {@link RetryPolicy}; how often that
+ * happens is tracked in {@link ContentionMetrics}. Hot accounts skip the
+ * main row entirely and post to their balance buckets via {@link HotAccountLedger}.
+ *
+ * Requests are throttled per teller and per account by the {@link RateLimiter},
+ * and withdrawals and transfers are screened by the {@link RiskEngine}, both
+ * before any database work.
+ *
+ * Amounts are in the currency of the account debited (or credited, for a
+ * deposit). A transfer between accounts in different currencies credits the
+ * target the amount converted at the current {@link FxRates} snapshot, and
+ * the transaction row records both amounts and the rate used.
+ *
+ * Each posting also appends its balance change events to the transactional
+ * outbox in the same database transaction, for
+ * {@link service.outbox.OutboxRelay} to deliver to subscribers.
+ *
+ * Postings are refused while a ledger pipeline owns the balances (see
+ * {@link BalanceWriterLock}).
+ */
+public class TransactionService {
+
+    private static final String UNIQUE_VIOLATION = "23505";
+    static final String SERIALIZATION_FAILURE = "40001";
+    static final String DEADLOCK_DETECTED = "40P01";
+
+    // One cache per process so every controller sees the same recent keys
+    private static final IdempotencyCache SHARED_CACHE = new IdempotencyCache();
+    private static final ContentionMetrics SHARED_METRICS = new ContentionMetrics();
+
+    private final BankAccountDAO bankAccountDAO;
+    private final TransactionDAO transactionDAO;
+    private final OutboxDAO outboxDAO;
+    private final HotAccountLedger hotAccountLedger;
+    private final IdempotencyCache idempotencyCache;
+    private final RetryPolicy retryPolicy;
+    private final ContentionMetrics contentionMetrics;
+    private final RiskEngine riskEngine;
+    private final RateLimiter rateLimiter;
+    private final FxRateService fxRateService;
+    private final BalanceWriterLock balanceWriterLock = BalanceWriterLock.getInstance();
+
+    public TransactionService() {
+        this(new BankAccountDAO(), new TransactionDAO(), new OutboxDAO(), new HotAccountLedger(), SHARED_CACHE,
+                new RetryPolicy(), SHARED_METRICS, RiskEngine.getInstance(), RateLimiter.getInstance(),
+                FxRateService.getInstance());
+    }
+
+    public TransactionService(BankAccountDAO bankAccountDAO, TransactionDAO transactionDAO, OutboxDAO outboxDAO,
+                              HotAccountLedger hotAccountLedger, IdempotencyCache idempotencyCache,
+                              RetryPolicy retryPolicy, ContentionMetrics contentionMetrics, RiskEngine riskEngine,
+                              RateLimiter rateLimiter, FxRateService fxRateService) {
+        this.bankAccountDAO = bankAccountDAO;
+        this.transactionDAO = transactionDAO;
+        this.outboxDAO = outboxDAO;
+        this.hotAccountLedger = hotAccountLedger;
+        this.idempotencyCache = idempotencyCache;
+        this.retryPolicy = retryPolicy;
+        this.contentionMetrics = contentionMetrics;
+        this.riskEngine = riskEngine;
+        this.rateLimiter = rateLimiter;
+        this.fxRateService = fxRateService;
+    }
+
+    /**
+     * Contention counters shared by every service using the default constructor
+     */
+    public ContentionMetrics getContentionMetrics() {
+        return contentionMetrics;
+    }
+
+    /**
+     * Generate a new idempotency key for a client that has none
+     */
+    public static String newIdempotencyKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    public TransactionResult deposit(String idempotencyKey, String accountNumber, double amount,
+                                     String description, String performedBy) {
+        return execute(TransactionRequest.deposit(idempotencyKey, accountNumber, amount, description, performedBy));
+    }
+
+    public TransactionResult withdraw(String idempotencyKey, String accountNumber, double amount,
+                                      String description, String performedBy) {
+        return execute(TransactionRequest.withdrawal(idempotencyKey, accountNumber, amount, description, performedBy));
+    }
+
+    public TransactionResult transfer(String idempotencyKey, String fromAccountNumber, String toAccountNumber,
+                                      double amount, String description, String performedBy) {
+        return execute(TransactionRequest.transfer(idempotencyKey, fromAccountNumber, toAccountNumber, amount,
+                description, performedBy));
+    }
+
+    /**
+     * Execute a request, or return the original result if its key was already used
+     */
+    public TransactionResult execute(TransactionRequest request) {
+        TransactionResult early = admit(request);
+        if (early != null) {
+            return early;
+        }
+
+        RiskDecision risk = assessRisk(request);
+        if (risk.isBlocked()) {
+            return rejected(risk);
+        }
+
+        TransactionResult result = null;
+        try {
+            result = executeWithRetry(request);
+            return result;
+        } finally {
+            completeRisk(risk, result);
+        }
+    }
+
+    /**
+     * Checks run before any database work: a cached result for the key and the
+     * rate limits. Returns the result to answer with, or null to go ahead.
+     */
+    TransactionResult admit(TransactionRequest request) {
+        TransactionResult cached = idempotencyCache.get(request.getIdempotencyKey());
+        if (cached != null) {
+            return cached.asDuplicate();
+        }
+
+        String account = request.getFromAccountNumber() != null
+                ? request.getFromAccountNumber()
+                : request.getToAccountNumber();
+        if (!rateLimiter.tryAcquire(rateLimitedOperation(request), request.getPerformedBy(), account)) {
+            return TransactionResult.failure(TransactionResult.Status.RATE_LIMITED, null);
+        }
+        return null;
+    }
+
+    private static RateLimiter.Operation rateLimitedOperation(TransactionRequest request) {
+        switch (request.getType()) {
+            case DEPOSIT:
+                return RateLimiter.Operation.DEPOSIT;
+            case WITHDRAWAL:
+                return RateLimiter.Operation.WITHDRAWAL;
+            default:
+                return RateLimiter.Operation.TRANSFER;
+        }
+    }
+
+    /**
+     * Screen a debit with the risk engine. Every decision must be passed to
+     * {@link #completeRisk} once the request has been executed.
+     */
+    RiskDecision assessRisk(TransactionRequest request) {
+        if (request.getFromAccountNumber() == null) {
+            return RiskEngine.notAssessed();
+        }
+        RiskDecision risk = riskEngine.assess(request.getFromAccountNumber(), request.getToAccountNumber(),
+                request.getAmount());
+        if (risk.isBlocked()) {
+            System.err.println("Risk checks blocked " + request + ": " + risk.getHitRules());
+        } else if (risk.getAction() == RiskDecision.Action.REVIEW) {
+            System.out.println("Risk checks flagged " + request + " for review: " + risk.getHitRules());
+        }
+        return risk;
+    }
+
+    static TransactionResult rejected(RiskDecision risk) {
+        return TransactionResult.failure(TransactionResult.Status.REJECTED,
+                TransactionResult.Status.REJECTED.getDefaultMessage() + " " + risk.getHitRules());
+    }
+
+    /**
+     * Confirm or release the debit a risk decision reserved
+     */
+    void completeRisk(RiskDecision risk, TransactionResult result) {
+        riskEngine.complete(risk, result != null && result.getStatus() == TransactionResult.Status.COMPLETED);
+    }
+
+    /**
+     * Remember a committed result so retries of its key skip the database
+     */
+    void remember(TransactionRequest request, TransactionResult result) {
+        idempotencyCache.put(request.getIdempotencyKey(), result);
+        ReplicaRouter.recordWrite(request.getPerformedBy());
+    }
+
+    /**
+     * Execute a request in its own database transaction, re-running it while
+     * it loses version races and the retry policy allows
+     */
+    TransactionResult executeWithRetry(TransactionRequest request) {
+        contentionMetrics.recordExecution();
+        for (int attempt = 1; ; attempt++) {
+            contentionMetrics.recordAttempt();
+            TransactionResult result = executeOnce(request);
+            if (result.getStatus() != TransactionResult.Status.CONFLICT) {
+                return result;
+            }
+
+            contentionMetrics.recordConflict();
+            if (!retryPolicy.canRetry(attempt) || !retryPolicy.backoff(attempt)) {
+                contentionMetrics.recordExhausted();
+                System.err.println("Giving up on " + request + " after " + attempt + " attempts: " + contentionMetrics);
+                return result;
+            }
+            contentionMetrics.recordRetry();
+        }
+    }
+
+    private TransactionResult executeOnce(TransactionRequest request) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                TransactionResult result = apply(conn, request);
+                if (result.isSuccess()) {
+                    conn.commit();
+                    remember(request, result);
+                } else {
+                    conn.rollback();
+                }
+                return result;
+            } catch (SQLException e) {
+                conn.rollback();
+                if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    return resolveDuplicate(conn, request);
+                }
+                if (SERIALIZATION_FAILURE.equals(e.getSQLState()) || DEADLOCK_DETECTED.equals(e.getSQLState())) {
+                    return conflict();
+                }
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error executing transaction: " + e.getMessage());
+            return TransactionResult.failure(TransactionResult.Status.FAILED, "Database error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Apply a request on the caller's connection without committing.
+     * Business failures are returned as results; the caller must roll back.
+     */
+    TransactionResult apply(Connection conn, TransactionRequest request) throws SQLException {
+        if (!balanceWriterLock.allowsDatabasePostings()) {
+            return ownedByPipeline();
+        }
+        Transaction transaction = new Transaction(request.getFromAccountNumber(), request.getToAccountNumber(),
+                request.getAmount(), request.getType(), request.getDescription(), request.getPerformedBy());
+        TransactionResult failure = post(conn, request, transaction);
+        if (failure != null) {
+            return failure;
+        }
+        return record(conn, request, transaction);
+    }
+
+    /**
+     * Execute a PENDING transaction row (e.g. a scheduled payment occurrence)
+     * on the caller's connection without committing. The row is flipped to
+     * COMPLETED before the balances are posted, so of two concurrent runners
+     * only one gets past the status check. Anything but COMPLETED means the
+     * caller must roll back; DUPLICATE means the row was already executed.
+     */
+    TransactionResult applyPending(Connection conn, Transaction pending) throws SQLException {
+        if (!balanceWriterLock.allowsDatabasePostings()) {
+            return ownedByPipeline();
+        }
+        if (!transactionDAO.updateTransactionStatus(conn, pending.getTransactionId(),
+                Transaction.TransactionStatus.PENDING, Transaction.TransactionStatus.COMPLETED)) {
+            return TransactionResult.completed(pending).asDuplicate();
+        }
+
+        TransactionRequest request = new TransactionRequest(pending.getIdempotencyKey(), pending.getTransactionType(),
+                pending.getFromAccountNumber(), pending.getToAccountNumber(), pending.getAmount(),
+                pending.getDescription(), pending.getPerformedBy());
+        TransactionResult failure = post(conn, request, pending);
+        if (failure != null) {
+            return failure;
+        }
+        // The rate is fixed when the occurrence runs, not when it was scheduled
+        transactionDAO.updateConversion(conn, pending);
+        pending.setStatus(Transaction.TransactionStatus.COMPLETED);
+        outboxDAO.append(conn, OutboxEvent.forTransaction(pending));
+        return TransactionResult.completed(pending);
+    }
+
+    /**
+     * Post the balance changes of a request, noting the currency (and any
+     * conversion) on the transaction that records it.
+     * Returns null on success or the failure to report.
+     */
+    private TransactionResult post(Connection conn, TransactionRequest request, Transaction transaction)
+            throws SQLException {
+        switch (request.getType()) {
+            case DEPOSIT:
+                return postDeposit(conn, request, transaction);
+            case WITHDRAWAL:
+                return postWithdrawal(conn, request, transaction);
+            case TRANSFER:
+                return postTransfer(conn, request, transaction);
+            default:
+                return TransactionResult.failure(TransactionResult.Status.FAILED,
+                        "Unsupported transaction type: " + request.getType());
+        }
+    }
+
+    private TransactionResult postDeposit(Connection conn, TransactionRequest request, Transaction transaction)
+            throws SQLException {
+        BankAccount account = bankAccountDAO.getAccountByNumber(conn, request.getToAccountNumber());
+        if (account == null) {
+            return TransactionResult.failure(TransactionResult.Status.ACCOUNT_NOT_FOUND, null);
+        }
+        transaction.setCurrency(account.getCurrency());
+
+        TransactionResult overpayment = overpayment(account, request.getAmount());
+        if (overpayment != null) {
+            return overpayment;
+        }
+        account.deposit(request.getAmount());
+        return writeBalance(conn, account, request.getAmount());
+    }
+
+    private TransactionResult postWithdrawal(Connection conn, TransactionRequest request, Transaction transaction)
+            throws SQLException {
+        BankAccount account = bankAccountDAO.getAccountByNumber(conn, request.getFromAccountNumber());
+        if (account == null) {
+            return TransactionResult.failure(TransactionResult.Status.ACCOUNT_NOT_FOUND, null);
+        }
+        transaction.setCurrency(account.getCurrency());
+
+        if (!account.withdraw(request.getAmount())) {
+            return TransactionResult.failure(TransactionResult.Status.INSUFFICIENT_FUNDS, null);
+        }
+        return writeBalance(conn, account, -request.getAmount());
+    }
+
+    private TransactionResult postTransfer(Connection conn, TransactionRequest request, Transaction transaction)
+            throws SQLException {
+        if (request.getFromAccountNumber().equals(request.getToAccountNumber())) {
+            return TransactionResult.failure(TransactionResult.Status.FAILED, "Cannot transfer to the same account");
+        }
+
+        BankAccount fromAccount = bankAccountDAO.getAccountByNumber(conn, request.getFromAccountNumber());
+        if (fromAccount == null) {
+            return TransactionResult.failure(TransactionResult.Status.ACCOUNT_NOT_FOUND, "From account not found");
+        }
+        BankAccount toAccount = bankAccountDAO.getAccountByNumber(conn, request.getToAccountNumber());
+        if (toAccount == null) {
+            return TransactionResult.failure(TransactionResult.Status.ACCOUNT_NOT_FOUND, "To account not found");
+        }
+
+        transaction.setCurrency(fromAccount.getCurrency());
+        double credit = request.getAmount();
+        if (!fromAccount.getCurrency().equals(toAccount.getCurrency())) {
+            FxRates rates = fxRateService.get();
+            BigDecimal rate = rates.getRate(fromAccount.getCurrency(), toAccount.getCurrency());
+            if (rate == null) {
+                return TransactionResult.failure(TransactionResult.Status.FAILED, "No exchange rate from "
+                        + fromAccount.getCurrency() + " to " + toAccount.getCurrency());
+            }
+            credit = rates.convert(BigDecimal.valueOf(request.getAmount()), fromAccount.getCurrency(),
+                    toAccount.getCurrency()).doubleValue();
+            if (credit <= 0) {
+                return TransactionResult.failure(TransactionResult.Status.FAILED, "Amount too small to convert");
+            }
+            transaction.setConversion(credit, toAccount.getCurrency(), rate.doubleValue());
+        }
+
+        TransactionResult overpayment = overpayment(toAccount, credit);
+        if (overpayment != null) {
+            return overpayment;
+        }
+        if (!fromAccount.withdraw(request.getAmount())) {
+            return TransactionResult.failure(TransactionResult.Status.INSUFFICIENT_FUNDS,
+                    "Insufficient funds in source account");
+        }
+        toAccount.deposit(credit);
+
+        // Write in account number order so opposite transfers between the same
+        // pair of accounts cannot deadlock on each other's row locks
+        boolean fromFirst = fromAccount.getAccountNumber().compareTo(toAccount.getAccountNumber()) < 0;
+        TransactionResult failure = fromFirst
+                ? writeBalance(conn, fromAccount, -request.getAmount())
+                : writeBalance(conn, toAccount, credit);
+        if (failure == null) {
+            failure = fromFirst
+                    ? writeBalance(conn, toAccount, credit)
+                    : writeBalance(conn, fromAccount, -request.getAmount());
+        }
+        return failure;
+    }
+
+    /**
+     * A repayment of more than a loan still owes, as a failure to report;
+     * null if the credit is fine. Checked here so it is an ordinary failure,
+     * not an exception that would fail a whole group-commit batch.
+     */
+    private static TransactionResult overpayment(BankAccount account, double amount) {
+        if (account instanceof LoanAccount && amount > ((LoanAccount) account).getOutstandingBalance()) {
+            return TransactionResult.failure(TransactionResult.Status.FAILED, String.format(
+                    "Repayment exceeds the outstanding balance of %.2f", ((LoanAccount) account).getOutstandingBalance()));
+        }
+        return null;
+    }
+
+    /**
+     * Persist a balance change already applied to the in-memory account.
+     * Normal accounts compare-and-set the whole balance; hot accounts post the
+     * delta to a bucket. Returns null on success or the failure to report.
+     */
+    private TransactionResult writeBalance(Connection conn, BankAccount account, double delta) throws SQLException {
+        // Keeps rate limits and risk screening current if another process switched modes
+        HotAccounts.getInstance().update(account);
+        if (account.isHotAccount()) {
+            if (delta >= 0) {
+                // A missing bucket means hot mode was switched off meanwhile
+                return hotAccountLedger.credit(conn, account, delta) ? null : conflict();
+            }
+            switch (hotAccountLedger.debit(conn, account, -delta)) {
+                case DEBITED:
+                    return null;
+                case INSUFFICIENT_FUNDS:
+                    return TransactionResult.failure(TransactionResult.Status.INSUFFICIENT_FUNDS, null);
+                default:
+                    return conflict();
+            }
+        }
+        return bankAccountDAO.updateBalance(conn, account.getAccountNumber(), account.getBalance(), account.getVersion())
+                ? null
+                : conflict();
+    }
+
+    private static TransactionResult ownedByPipeline() {
+        return TransactionResult.failure(TransactionResult.Status.FAILED,
+                "Balances are owned by the ledger pipeline; post through the server");
+    }
+
+    static TransactionResult conflict() {
+        return TransactionResult.failure(TransactionResult.Status.CONFLICT, null);
+    }
+
+    /**
+     * Insert the completed transaction row carrying the idempotency key, and
+     * its outbox events
+     */
+    private TransactionResult record(Connection conn, TransactionRequest request, Transaction transaction)
+            throws SQLException {
+        transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        transaction.setIdempotencyKey(request.getIdempotencyKey());
+
+        if (!transactionDAO.createTransaction(conn, transaction)) {
+            return TransactionResult.failure(TransactionResult.Status.FAILED, "Failed to record transaction");
+        }
+        outboxDAO.append(conn, OutboxEvent.forTransaction(transaction));
+        return TransactionResult.completed(transaction);
+    }
+
+    /**
+     * Another attempt with the same key committed first; return its result
+     */
+    private TransactionResult resolveDuplicate(Connection conn, TransactionRequest request) throws SQLException {
+        Transaction existing = transactionDAO.getTransactionByIdempotencyKey(conn, request.getIdempotencyKey());
+        conn.rollback();
+        if (existing == null) {
+            return TransactionResult.failure(TransactionResult.Status.FAILED, "Duplicate transaction id, please retry");
+        }
+        TransactionResult original = TransactionResult.completed(existing);
+        idempotencyCache.put(request.getIdempotencyKey(), original);
+        return original.asDuplicate();
+    }
+}
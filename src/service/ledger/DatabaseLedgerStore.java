@@ -0,0 +1,110 @@
+package service.ledger;
+
+import dao.BankAccountDAO;
+import dao.OutboxDAO;
+import dao.TransactionDAO;
+import model.banking.OutboxEvent;
+import model.banking.Transaction;
+import util.DatabaseConfig;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores ledger postings in transactions, their net balance change per
+ * account in bank_accounts and their outbox events, one database
+ * transaction per batch
+ */
+public class DatabaseLedgerStore implements LedgerStore {
+
+    private final TransactionDAO transactionDAO;
+    private final BankAccountDAO bankAccountDAO;
+    private final OutboxDAO outboxDAO;
+
+    public DatabaseLedgerStore() {
+        this(new TransactionDAO(), new BankAccountDAO(), new OutboxDAO());
+    }
+
+    public DatabaseLedgerStore(TransactionDAO transactionDAO, BankAccountDAO bankAccountDAO, OutboxDAO outboxDAO) {
+        this.transactionDAO = transactionDAO;
+        this.bankAccountDAO = bankAccountDAO;
+        this.outboxDAO = outboxDAO;
+    }
+
+    @Override
+    public int store(List<LedgerEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<Transaction> transactions = new ArrayList<>(events.size());
+        for (LedgerEvent event : events) {
+            transactions.add(toTransaction(event));
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                Set<String> inserted = transactionDAO.createTransactionsIfAbsent(conn, transactions);
+
+                // Only postings stored now move balances; the rest were stored before
+                Map<String, Long> deltaCents = new HashMap<>();
+                List<OutboxEvent> outboxEvents = new ArrayList<>(inserted.size() * 2);
+                for (int i = 0; i < events.size(); i++) {
+                    LedgerEvent event = events.get(i);
+                    if (!inserted.contains(event.getIdempotencyKey())) {
+                        continue;
+                    }
+                    outboxEvents.addAll(OutboxEvent.forTransaction(transactions.get(i)));
+                    if (event.getFromAccountNumber() != null) {
+                        deltaCents.merge(event.getFromAccountNumber(), -event.getAmountCents(), Long::sum);
+                    }
+                    if (event.getToAccountNumber() != null) {
+                        deltaCents.merge(event.getToAccountNumber(), event.getCreditCents(), Long::sum);
+                    }
+                }
+                bankAccountDAO.adjustBalances(conn, deltaCents);
+                // After the balances, so each event carries the balance after the batch
+                outboxDAO.append(conn, outboxEvents);
+                conn.commit();
+
+                // Marked only once committed, so a failed attempt that is retried leaves no marks
+                for (LedgerEvent event : events) {
+                    if (!inserted.contains(event.getIdempotencyKey())) {
+                        event.markAlreadyStored();
+                    }
+                }
+                if (inserted.size() < events.size()) {
+                    System.out.println("Ledger store skipped " + (events.size() - inserted.size())
+                            + " postings that were already recorded");
+                }
+                return inserted.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static Transaction toTransaction(LedgerEvent event) {
+        Transaction transaction = new Transaction(event.getFromAccountNumber(), event.getToAccountNumber(),
+                event.getAmountCents() / 100.0, event.getKind().getTransactionType(), event.getDescription(),
+                event.getPerformedBy());
+        transaction.setTransactionId(event.getTransactionId());
+        transaction.setIdempotencyKey(event.getIdempotencyKey());
+        transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        transaction.setCurrency(event.getCurrency());
+        if (event.isCrossCurrency()) {
+            transaction.setConversion(event.getCreditCents() / 100.0, event.getCreditCurrency(), event.getExchangeRate());
+        }
+        transaction.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getTimestampMillis()),
+                ZoneId.systemDefault()));
+        return transaction;
+    }
+}
@@ -0,0 +1,327 @@
+package service.ledger;
+
+import service.TransactionResult;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of completed postings, written by the journal stage
+ * before any caller is told its posting completed, so that a crash between
+ * the in-memory balance change and the asynchronous database write loses
+ * nothing: on the next start the journal is replayed into the
+ * {@link LedgerStore}, which skips postings it already has.
+ *
+ * The journal is split into segments of about ledger.journal.segment_mb.
+ * A segment is deleted once the persistence stage has stored everything in
+ * it. Records are length-prefixed and CRC-checked; replay stops at the first
+ * torn record at the end of a segment.
+ *
+ * Record layout: int length, long sequence, byte kind, long amountCents,
+ * long creditCents, double exchangeRate, long timestampMillis, seven strings
+ * (idempotency key, from, to, description, performed by, currency, credit
+ * currency) as short length (-1 for null) plus UTF-16 chars, int CRC32C.
+ * Segments written before multi-currency support (MAGIC_V1) have no credit
+ * or currency fields and are still replayed.
+ */
+final class Journal implements AutoCloseable {
+
+    private static final int MAGIC_V1 = 0x4C444731;
+    private static final int MAGIC = 0x4C444732;
+    private static final int HEADER_BYTES = 12;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final String PREFIX = "ledger-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final long runId;
+    private final long segmentBytes;
+    private final boolean fsync;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CRC32C crc = new CRC32C();
+    private final ConcurrentLinkedDeque<Segment> closedSegments = new ConcurrentLinkedDeque<>();
+
+    private FileChannel channel;
+    private Path currentPath;
+    private long currentBytes;
+    private long lastAppended = Sequence.INITIAL;
+
+    Journal(Path directory, long runId, long segmentBytes, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.runId = runId;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Buffer a completed posting; it is durable after the next {@link #sync()}
+     */
+    void append(LedgerEvent event) throws IOException {
+        if (channel == null) {
+            openSegment(event.sequence);
+        }
+        int size = recordSize(event);
+        if (size > BUFFER_BYTES) {
+            throw new IOException("Journal record too large: " + size + " bytes");
+        }
+        if (buffer.remaining() < size) {
+            flush();
+        }
+
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.putLong(event.sequence);
+        buffer.put((byte) event.kind.ordinal());
+        buffer.putLong(event.amountCents);
+        buffer.putLong(event.creditCents);
+        buffer.putDouble(event.exchangeRate);
+        buffer.putLong(event.timestampMillis);
+        putString(event.idempotencyKey);
+        putString(event.fromAccountNumber);
+        putString(event.toAccountNumber);
+        putString(event.description);
+        putString(event.performedBy);
+        putString(event.currency);
+        putString(event.creditCurrency);
+        int end = buffer.position();
+        buffer.putInt(start, end - start - 4);
+
+        // CRC over the body, moving the window instead of slicing so nothing is allocated
+        int limit = buffer.limit();
+        buffer.position(start + 4).limit(end);
+        crc.reset();
+        crc.update(buffer);
+        buffer.limit(limit);
+        buffer.putInt((int) crc.getValue());
+
+        lastAppended = event.sequence;
+    }
+
+    /**
+     * Write buffered records and force them to disk, then start a new segment
+     * if the current one is full
+     */
+    void sync() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        flush();
+        if (fsync) {
+            channel.force(false);
+        }
+        if (currentBytes >= segmentBytes) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * Delete the segments whose postings are all stored
+     */
+    void release(long persistedSequence) {
+        Segment oldest;
+        while ((oldest = closedSegments.peekFirst()) != null && oldest.lastSequence <= persistedSequence) {
+            closedSegments.pollFirst();
+            delete(oldest.path);
+        }
+    }
+
+    /**
+     * Close the journal; if everything was stored, its segments are deleted
+     */
+    void close(boolean allPersisted) throws IOException {
+        if (channel != null) {
+            sync();
+            closeSegment();
+        }
+        if (allPersisted) {
+            release(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(false);
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        currentPath = directory.resolve(String.format("%s%013d-%019d%s", PREFIX, runId, firstSequence, SUFFIX));
+        channel = FileChannel.open(currentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putLong(runId).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        currentBytes = HEADER_BYTES;
+    }
+
+    private void closeSegment() throws IOException {
+        channel.close();
+        channel = null;
+        closedSegments.addLast(new Segment(currentPath, lastAppended));
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            currentBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+
+    private static int recordSize(LedgerEvent event) {
+        return 4 + 8 + 1 + 8 + 8 + 8 + 8 + 4
+                + stringSize(event.idempotencyKey) + stringSize(event.fromAccountNumber)
+                + stringSize(event.toAccountNumber) + stringSize(event.description)
+                + stringSize(event.performedBy) + stringSize(event.currency)
+                + stringSize(event.creditCurrency);
+    }
+
+    private static int stringSize(String value) {
+        return 2 + (value == null ? 0 : value.length() * 2);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Error deleting journal segment " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Store every posting left in the journal directory by earlier runs, then
+     * delete the segments. Returns the number of postings replayed.
+     */
+    static int replay(Path directory, LedgerStore store, int batchSize) throws IOException, SQLException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        // Names are zero-padded run id then first sequence, so name order is write order
+        segments.sort(null);
+
+        int replayed = 0;
+        List<LedgerEvent> batch = new ArrayList<>(batchSize);
+        for (Path segment : segments) {
+            for (LedgerEvent event : read(segment)) {
+                batch.add(event);
+                if (batch.size() == batchSize) {
+                    replayed += batch.size();
+                    store.store(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            replayed += batch.size();
+            store.store(batch);
+        }
+        for (Path segment : segments) {
+            delete(segment);
+        }
+        return replayed;
+    }
+
+    private static List<LedgerEvent> read(Path segment) throws IOException {
+        List<LedgerEvent> events = new ArrayList<>();
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int magic = data.remaining() >= HEADER_BYTES ? data.getInt() : 0;
+        if (magic != MAGIC && magic != MAGIC_V1) {
+            System.err.println("Skipping journal segment without a valid header: " + segment);
+            return events;
+        }
+        boolean multiCurrency = magic == MAGIC;
+        long runId = data.getLong();
+
+        CRC32C checksum = new CRC32C();
+        LedgerEvent.Kind[] kinds = LedgerEvent.Kind.values();
+        while (data.remaining() >= 4) {
+            int length = data.getInt();
+            if (length <= 0 || data.remaining() < length + 4) {
+                System.err.println("Journal segment " + segment + " ends with a torn record");
+                break;
+            }
+            checksum.reset();
+            checksum.update(data.array(), data.position(), length);
+            int expected = data.getInt(data.position() + length);
+            if ((int) checksum.getValue() != expected) {
+                System.err.println("Journal segment " + segment + " has a corrupt record; stopping replay of it");
+                break;
+            }
+
+            LedgerEvent event = new LedgerEvent();
+            event.runId = runId;
+            event.sequence = data.getLong();
+            event.kind = kinds[data.get()];
+            event.amountCents = data.getLong();
+            event.creditCents = multiCurrency ? data.getLong() : event.amountCents;
+            event.exchangeRate = multiCurrency ? data.getDouble() : 0;
+            event.timestampMillis = data.getLong();
+            event.idempotencyKey = getString(data);
+            event.fromAccountNumber = getString(data);
+            event.toAccountNumber = getString(data);
+            event.description = getString(data);
+            event.performedBy = getString(data);
+            if (multiCurrency) {
+                event.currency = getString(data);
+                event.creditCurrency = getString(data);
+            }
+            event.status = TransactionResult.Status.COMPLETED;
+            data.getInt();
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static String getString(ByteBuffer data) {
+        short length = data.getShort();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = data.getChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Inner class for a closed segment and the last posting in it
+     */
+    private static class Segment {
+        private final Path path;
+        private final long lastSequence;
+
+        Segment(Path path, long lastSequence) {
+            this.path = path;
+            this.lastSequence = lastSequence;
+        }
+    }
+}
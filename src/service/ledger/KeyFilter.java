@@ -0,0 +1,109 @@
+package service.ledger;
+
+import java.util.Arrays;
+
+/**
+ * Recently seen idempotency keys, held as 64-bit hashes in two open-addressed
+ * tables that take turns being cleared, so membership checks never allocate
+ * and memory stays fixed. A key is remembered for at least capacity / 2
+ * insertions. Removed keys leave a marker until their table is cleared.
+ * The database's unique key stays the final word on duplicates;
+ * this only answers retries while their original is still in flight.
+ */
+final class KeyFilter {
+
+    private static final long EMPTY = 0L;
+    private static final long REMOVED = 1L;
+
+    private final int generationLimit;
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+
+    KeyFilter(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.current = new long[tableSize];
+        this.previous = new long[tableSize];
+        this.generationLimit = tableSize / 2;
+    }
+
+    /**
+     * Record the key; returns false if it was already recorded
+     */
+    boolean add(String key) {
+        long hash = hash(key);
+        if (contains(previous, hash) || contains(current, hash)) {
+            return false;
+        }
+        if (currentSize == generationLimit) {
+            long[] cleared = previous;
+            Arrays.fill(cleared, EMPTY);
+            previous = current;
+            current = cleared;
+            currentSize = 0;
+        }
+        insert(current, hash);
+        currentSize++;
+        return true;
+    }
+
+    /**
+     * Forget a key by its {@link #hash}, e.g. because its posting failed and may be retried
+     */
+    void remove(long hash) {
+        remove(previous, hash);
+        remove(current, hash);
+    }
+
+    private static void remove(long[] table, long hash) {
+        int mask = table.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            long value = table[i];
+            if (value == hash) {
+                table[i] = REMOVED;
+                return;
+            }
+            if (value == EMPTY) {
+                return;
+            }
+        }
+    }
+
+    private static boolean contains(long[] table, long hash) {
+        int mask = table.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            long value = table[i];
+            if (value == hash) {
+                return true;
+            }
+            if (value == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    private static void insert(long[] table, long hash) {
+        int mask = table.length - 1;
+        int i = (int) hash & mask;
+        while (table[i] != EMPTY && table[i] != REMOVED) {
+            i = (i + 1) & mask;
+        }
+        table[i] = hash;
+    }
+
+    /**
+     * FNV-1a over the key's chars, mixed so the low bits index well; never
+     * one of the marker values
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == EMPTY || hash == REMOVED ? 2L : hash;
+    }
+}
@@ -0,0 +1,88 @@
+package service.ledger;
+
+import static util.Assert.check;
+
+/**
+ * Unit tests for the ledger pipeline's idempotency KeyFilter
+ */
+public class KeyFilterTest {
+
+    public static void main(String[] args) {
+        System.out.println("🧪 Testing KeyFilter...");
+        testDuplicates();
+        testGenerations();
+        testRemove();
+        testRemovedMarkerKeepsProbeRun();
+        System.out.println("✅ KeyFilter tests passed");
+    }
+
+    private static void testDuplicates() {
+        KeyFilter filter = new KeyFilter(64);
+        check(filter.add("key-1"), "first add");
+        check(!filter.add("key-1"), "repeated add");
+        check(filter.add("key-2"), "other key");
+    }
+
+    /**
+     * A key is remembered for at least capacity / 2 further insertions and
+     * forgotten once both tables have been cleared after it
+     */
+    private static void testGenerations() {
+        // 64 rounds up to two tables of 64 slots, each cleared after 32 keys
+        KeyFilter filter = new KeyFilter(64);
+        check(filter.add("first"), "first add");
+        for (int i = 1; i < 64; i++) {
+            check(filter.add("other-" + i), "add other-" + i);
+            if (i <= 32) {
+                check(!filter.add("first"), "first still remembered after " + i + " keys");
+            }
+        }
+        check(!filter.add("first"), "first remembered until its table is cleared");
+        check(filter.add("other-64"), "add other-64");
+        check(filter.add("first"), "first forgotten after two generations");
+    }
+
+    private static void testRemove() {
+        KeyFilter filter = new KeyFilter(64);
+        filter.add("failed");
+        filter.remove(KeyFilter.hash("failed"));
+        check(filter.add("failed"), "a removed key can be added again");
+        check(!filter.add("failed"), "and is then a duplicate again");
+        // Removing a key that was never added changes nothing
+        filter.remove(KeyFilter.hash("never-added"));
+        check(!filter.add("failed"), "unrelated removal");
+    }
+
+    /**
+     * A removed key leaves a marker, so keys probed past its slot stay found,
+     * and the marker's slot is reused by the next insertion
+     */
+    private static void testRemovedMarkerKeepsProbeRun() {
+        KeyFilter filter = new KeyFilter(64);
+        String[] run = keysWithSameHome(3, 63);
+        for (String key : run) {
+            check(filter.add(key), "add " + key);
+        }
+        filter.remove(KeyFilter.hash(run[0]));
+        check(!filter.add(run[1]), "key after the removed one still found");
+        check(!filter.add(run[2]), "last key of the run still found");
+        check(filter.add(run[0]), "removed key added again");
+        check(!filter.add(run[0]), "re-added key found");
+    }
+
+    /**
+     * Keys whose hashes share the same low bits, i.e. the same home slot
+     */
+    private static String[] keysWithSameHome(int count, int mask) {
+        String[] keys = new String[count];
+        long home = KeyFilter.hash("seed") & mask;
+        int found = 0;
+        for (int i = 0; found < count; i++) {
+            String key = "key-" + i;
+            if ((KeyFilter.hash(key) & mask) == home) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,93 @@
+package service.ledger;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Log-linear latency histogram in nanoseconds: each power of two is split
+ * into 16 sub-buckets, so any reported percentile is within about 6% of the
+ * true value. Recording is allocation-free and safe from any thread.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Latency below which the given share (0-100) of recordings fall
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.reset();
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+        return magnitude * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        int magnitude = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        if (magnitude == 0) {
+            return subBucket;
+        }
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (magnitude - 1)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+                getPercentileNanos(50) / 1000, getPercentileNanos(90) / 1000, getPercentileNanos(99) / 1000,
+                getPercentileNanos(99.9) / 1000, getMaxNanos() / 1000);
+    }
+}
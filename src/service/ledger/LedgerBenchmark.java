@@ -0,0 +1,132 @@
+package service.ledger;
+
+import model.BankAccount;
+import model.CurrentAccount;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures sustained throughput and latency percentiles of the ledger
+ * pipeline with random transfers between in-memory accounts, journaling to a
+ * temporary directory and storing nowhere (no database needed).
+ *
+ * Without a rate the producers publish as fast as the ring accepts, which
+ * measures peak throughput; latency is then mostly time spent queued in a
+ * full ring. With a rate (postings per second across all producers) the
+ * latency percentiles show the pipeline's own cost at that load.
+ *
+ * Run with: java -cp out service.ledger.LedgerBenchmark [postings] [producers] [accounts] [partitions] [fsync] [rate]
+ */
+public final class LedgerBenchmark {
+
+    private static final int RING_SIZE = 1 << 16;
+
+    private LedgerBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int postings = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int accountCount = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int partitions = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        boolean fsync = args.length > 4 && Boolean.parseBoolean(args[4]);
+        long rate = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+        List<BankAccount> accounts = new ArrayList<>(accountCount);
+        String[] accountNumbers = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountNumbers[i] = String.format("BM%08d", i);
+            accounts.add(new CurrentAccount(accountNumbers[i], "Benchmark " + i, 1_000_000.0));
+        }
+
+        Path journalDirectory = Files.createTempDirectory("ledger-benchmark");
+        LedgerPipeline pipeline = new LedgerPipeline(RING_SIZE, partitions, journalDirectory, 64L << 20, fsync,
+                events -> events.size(), null, null);
+        pipeline.start(accounts, Collections.emptyList());
+
+        System.out.printf("Ledger benchmark: %,d postings, %d producers, %,d accounts, %d partitions, fsync=%s, rate=%s%n",
+                postings, producers, accountCount, partitions, fsync, rate > 0 ? rate + "/s" : "unlimited");
+        run(pipeline, accountNumbers, postings / 10, producers, rate, "warmup");
+        pipeline.getMetrics().reset();
+        long elapsed = run(pipeline, accountNumbers, postings, producers, rate, "measure");
+
+        LedgerMetrics metrics = pipeline.getMetrics();
+        System.out.printf("Throughput: %,.0f postings/s (%,d completed, %,d rejected in %.2f s)%n",
+                (metrics.getCompleted() + metrics.getRejected()) / (elapsed / 1e9),
+                metrics.getCompleted(), metrics.getRejected(), elapsed / 1e9);
+        System.out.printf("Postings per journal sync: %.1f%n", metrics.getPostingsPerSync());
+        System.out.println("Latency (publish to outcome): " + metrics.getLatency());
+
+        pipeline.stop(60_000);
+        deleteDirectory(journalDirectory);
+    }
+
+    /**
+     * Publish postings from several threads and wait for every outcome; returns elapsed nanos
+     */
+    private static long run(LedgerPipeline pipeline, String[] accountNumbers, int postings, int producers,
+                            long rate, String label) throws InterruptedException {
+        // Keys are built up front so the timed loop measures the pipeline, not string formatting
+        String[] keys = new String[postings];
+        for (int i = 0; i < postings; i++) {
+            keys[i] = label + "-" + i;
+        }
+
+        CountDownLatch done = new CountDownLatch(postings);
+        LongAdder completed = new LongAdder();
+        LedgerCallback callback = event -> {
+            if (event.isPosted()) {
+                completed.increment();
+            }
+            done.countDown();
+        };
+
+        // Each producer publishes every intervalNanos when paced
+        long intervalNanos = rate > 0 ? 1_000_000_000L * producers / rate : 0;
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>(producers);
+        for (int t = 0; t < producers; t++) {
+            int first = t;
+            Thread producer = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long due = start;
+                for (int i = first; i < postings; i += producers) {
+                    if (intervalNanos > 0) {
+                        due += intervalNanos;
+                        while (System.nanoTime() < due) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                    int from = random.nextInt(accountNumbers.length);
+                    int to = (from + 1 + random.nextInt(accountNumbers.length - 1)) % accountNumbers.length;
+                    pipeline.publish(LedgerEvent.Kind.TRANSFER, keys[i], accountNumbers[from], accountNumbers[to],
+                            1 + random.nextInt(10_000), "benchmark", "benchmark", callback);
+                }
+            }, "ledger-benchmark-" + t);
+            producer.start();
+            threads.add(producer);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,10 @@
+package service.ledger;
+
+/**
+ * Told about a posting once its outcome is final: journaled if it completed,
+ * or rejected by a stage. Runs on the journal thread, so it must be quick and
+ * must not keep the event.
+ */
+public interface LedgerCallback {
+    void onComplete(LedgerEvent event);
+}
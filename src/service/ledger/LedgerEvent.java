@@ -0,0 +1,167 @@
+package service.ledger;
+
+import model.banking.Transaction;
+import service.TransactionResult;
+import service.risk.RiskDecision;
+
+/**
+ * One slot of the ledger ring. Instances are created once when the ring is
+ * built and overwritten for every posting that passes through the slot, so
+ * nothing here may be kept after the owning stage has moved on.
+ */
+public final class LedgerEvent {
+
+    public enum Kind {
+        DEPOSIT(Transaction.TransactionType.DEPOSIT),
+        WITHDRAWAL(Transaction.TransactionType.WITHDRAWAL),
+        TRANSFER(Transaction.TransactionType.TRANSFER),
+        // Makes a newly created account known to the pipeline; never journaled
+        OPEN_ACCOUNT(null);
+
+        private final Transaction.TransactionType transactionType;
+
+        Kind(Transaction.TransactionType transactionType) {
+            this.transactionType = transactionType;
+        }
+
+        public Transaction.TransactionType getTransactionType() {
+            return transactionType;
+        }
+
+        public static Kind of(Transaction.TransactionType type) {
+            switch (type) {
+                case DEPOSIT:
+                    return DEPOSIT;
+                case WITHDRAWAL:
+                    return WITHDRAWAL;
+                default:
+                    return TRANSFER;
+            }
+        }
+    }
+
+    // Debit side of a transfer, handed from the source account's partition to the target's
+    static final int DEBIT_PENDING = 0;
+    static final int DEBIT_DONE = 1;
+    static final int DEBIT_FAILED = 2;
+
+    // Credit side of a transfer to a capped account (a loan), handed back to the
+    // source account's partition before it debits
+    static final int CREDIT_PENDING = 0;
+    static final int CREDIT_ACCEPTED = 1;
+    static final int CREDIT_FAILED = 2;
+
+    long sequence;
+    long runId;
+    Kind kind;
+    String idempotencyKey;
+    String fromAccountNumber;
+    String toAccountNumber;
+    long amountCents;
+    long floorCents;
+    long ceilingCents;
+    // Currency of the debited account (of the credited one for a deposit)
+    String currency;
+    String description;
+    String performedBy;
+    long timestampMillis;
+    long publishNanos;
+    LedgerCallback callback;
+
+    // Written by the stages
+    TransactionResult.Status status;
+    RiskDecision risk;
+    // Amount credited to the target; differs from amountCents on a cross-currency transfer
+    long creditCents;
+    String creditCurrency;
+    double exchangeRate;
+    // The target account has a ceiling, so the credit is checked before the debit
+    boolean creditCapped;
+    volatile int debitState;
+    volatile int creditState;
+    // Set by the store: the key was already in the database, so nothing was stored
+    boolean alreadyStored;
+
+    void reset() {
+        kind = null;
+        idempotencyKey = null;
+        fromAccountNumber = null;
+        toAccountNumber = null;
+        amountCents = 0;
+        floorCents = 0;
+        ceilingCents = Long.MAX_VALUE;
+        currency = null;
+        creditCents = 0;
+        creditCurrency = null;
+        exchangeRate = 0;
+        description = null;
+        performedBy = null;
+        callback = null;
+        status = null;
+        risk = null;
+        creditCapped = false;
+        debitState = DEBIT_PENDING;
+        creditState = CREDIT_PENDING;
+        alreadyStored = false;
+    }
+
+    public long getSequence() { return sequence; }
+    public long getRunId() { return runId; }
+    public Kind getKind() { return kind; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public String getFromAccountNumber() { return fromAccountNumber; }
+    public String getToAccountNumber() { return toAccountNumber; }
+    public long getAmountCents() { return amountCents; }
+    public String getCurrency() { return currency; }
+    public long getCreditCents() { return creditCents; }
+    public String getCreditCurrency() { return creditCurrency; }
+    public double getExchangeRate() { return exchangeRate; }
+    public String getDescription() { return description; }
+    public String getPerformedBy() { return performedBy; }
+    public long getTimestampMillis() { return timestampMillis; }
+    public TransactionResult.Status getStatus() { return status; }
+
+    /**
+     * Transaction id the posting is stored under, unique across pipeline runs
+     */
+    public String getTransactionId() {
+        return transactionId(runId, sequence);
+    }
+
+    public static String transactionId(long runId, long sequence) {
+        return "LDG" + Long.toString(runId, 36).toUpperCase() + "-" + sequence;
+    }
+
+    public boolean isCrossCurrency() {
+        return creditCurrency != null;
+    }
+
+    /**
+     * Mark a posting the store skipped because its key was stored before
+     */
+    void markAlreadyStored() {
+        alreadyStored = true;
+    }
+
+    /**
+     * Whether the posting changed balances and must be journaled and stored
+     */
+    boolean isPosted() {
+        return kind != Kind.OPEN_ACCOUNT && status == TransactionResult.Status.COMPLETED;
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerEvent{" +
+                "sequence=" + sequence +
+                ", kind=" + kind +
+                ", idempotencyKey='" + idempotencyKey + '\'' +
+                ", from='" + fromAccountNumber + '\'' +
+                ", to='" + toAccountNumber + '\'' +
+                ", amountCents=" + amountCents +
+                ", currency=" + currency +
+                (creditCurrency != null ? ", creditCents=" + creditCents + " " + creditCurrency : "") +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -0,0 +1,93 @@
+package service.ledger;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the ledger pipeline: postings published, completed and
+ * rejected, journal syncs, persistence batches and the latency from publish
+ * until a posting's outcome was final (journaled or rejected)
+ */
+public class LedgerMetrics {
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder journalSyncs = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder persistBatches = new LongAdder();
+    private final LongAdder persistFailures = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile long startNanos = System.nanoTime();
+
+    public void recordPublished() { published.increment(); }
+    public void recordJournalSync() { journalSyncs.increment(); }
+    public void recordPersistFailure() { persistFailures.increment(); }
+
+    public void recordOutcome(boolean posted, long latencyNanos) {
+        if (posted) {
+            completed.increment();
+        } else {
+            rejected.increment();
+        }
+        latency.record(latencyNanos);
+    }
+
+    public void recordPersisted(int count) {
+        persistBatches.increment();
+        persisted.add(count);
+    }
+
+    public long getPublished() { return published.sum(); }
+    public long getCompleted() { return completed.sum(); }
+    public long getRejected() { return rejected.sum(); }
+    public long getJournalSyncs() { return journalSyncs.sum(); }
+    public long getPersisted() { return persisted.sum(); }
+    public long getPersistBatches() { return persistBatches.sum(); }
+    public long getPersistFailures() { return persistFailures.sum(); }
+    public LatencyHistogram getLatency() { return latency; }
+
+    /**
+     * Postings with a final outcome per second since start or the last reset
+     */
+    public double getThroughputPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0.0 : (getCompleted() + getRejected()) / seconds;
+    }
+
+    /**
+     * Postings per journal sync, i.e. how many share one fsync
+     */
+    public double getPostingsPerSync() {
+        long syncs = getJournalSyncs();
+        return syncs == 0 ? 0.0 : (double) getCompleted() / syncs;
+    }
+
+    /**
+     * Start a new measurement window (e.g. after warm-up)
+     */
+    public void reset() {
+        published.reset();
+        completed.reset();
+        rejected.reset();
+        journalSyncs.reset();
+        persisted.reset();
+        persistBatches.reset();
+        persistFailures.reset();
+        latency.reset();
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerMetrics{" +
+                "published=" + getPublished() +
+                ", completed=" + getCompleted() +
+                ", rejected=" + getRejected() +
+                ", throughput=" + String.format("%.0f/s", getThroughputPerSecond()) +
+                ", postingsPerSync=" + String.format("%.1f", getPostingsPerSync()) +
+                ", persisted=" + getPersisted() +
+                ", persistFailures=" + getPersistFailures() +
+                ", latency=[" + latency + "]" +
+                '}';
+    }
+}
@@ -0,0 +1,785 @@
+package service.ledger;
+
+import model.BankAccount;
+import model.CurrentAccount;
+import model.LoanAccount;
+import model.SavingsAccount;
+import service.FxRateService;
+import service.FxRates;
+import service.TransactionResult;
+import service.risk.RiskDecision;
+import service.risk.RiskEngine;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer ledger pipeline in the style of the LMAX Disruptor.
+ *
+ * Postings are published into a pre-allocated {@link RingBuffer} and flow
+ * through four stages, each running on its own thread and reading the slots
+ * in sequence order:
+ * <ol>
+ *   <li>Validation: keys already used in this run or among the most recent
+ *       ones stored before it, unknown accounts, risk screening, and
+ *       conversion of cross-currency transfers at the current
+ *       {@link FxRates} snapshot.</li>
+ *   <li>Balances: one writer per account partition applies debits and
+ *       credits to in-memory balances it alone owns, so no balance is ever
+ *       locked. A transfer between partitions is debited by the source
+ *       partition and credited by the target partition once the debit is
+ *       done; a transfer to a loan, which may not be repaid past zero, is
+ *       first checked by the target partition.</li>
+ *   <li>Journal: completed postings are appended to the {@link Journal} and
+ *       synced once per batch; only then is each caller's callback run.</li>
+ *   <li>Persistence: batches of journaled postings are written to the
+ *       database through the {@link LedgerStore}, off the callers' path. A
+ *       posting whose older key the store finds already recorded is not
+ *       stored, and its in-memory balance change is undone.</li>
+ * </ol>
+ * Stages hand over by publishing their sequence, never by queues, and the
+ * slots are reused, so the stages themselves neither lock nor allocate
+ * (risk screening aside, which uses the shared {@link RiskEngine}).
+ *
+ * The pipeline's in-memory balances are authoritative while it runs, so it
+ * must be the only writer of them; {@link LedgerService} makes sure of that.
+ */
+public final class LedgerPipeline {
+
+    public static final int MAX_DESCRIPTION_LENGTH = 1000;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int PERSIST_BATCH = 2048;
+    // Recent idempotency keys checked in memory (two tables of 2^20 longs)
+    private static final int KEY_WINDOW = 1 << 19;
+    // Stored keys to seed the filter with at start; one filter generation
+    public static final int SEEDED_KEYS = KEY_WINDOW / 2;
+    private static final long PERSIST_RETRY_MILLIS = 1000;
+
+    private final RingBuffer<LedgerEvent> ringBuffer;
+    private final int partitions;
+    private final Journal journal;
+    private final LedgerStore store;
+    private final RiskEngine riskEngine;
+    private final FxRateService fxRateService;
+    private final LedgerMetrics metrics = new LedgerMetrics();
+    private final long runId;
+
+    private final Sequence validationSequence = new Sequence();
+    private final Sequence[] balanceSequences;
+    private final Sequence journalSequence = new Sequence();
+    private final Sequence persistenceSequence = new Sequence();
+
+    // Keys of postings that failed after validation, handed back so a retry is not a duplicate
+    private final long[] failedKeys;
+    private final Sequence failedKeysWritten = new Sequence();
+    private final Sequence failedKeysRead = new Sequence();
+
+    private final ValidationStage validationStage;
+    private final BalanceStage[] balanceStages;
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running = false;
+    private volatile boolean accepting = false;
+
+    /**
+     * @param ringSize   slots in the ring (a power of two); bounds how far persistence may lag
+     * @param partitions number of balance writer threads
+     * @param riskEngine risk engine for withdrawals and transfers, or null to skip screening
+     * @param fxRateService exchange rates for cross-currency transfers, or null to reject them
+     */
+    public LedgerPipeline(int ringSize, int partitions, Path journalDirectory, long journalSegmentBytes,
+                          boolean fsync, LedgerStore store, RiskEngine riskEngine, FxRateService fxRateService)
+            throws IOException {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("At least one partition is required");
+        }
+        this.runId = System.currentTimeMillis();
+        this.ringBuffer = new RingBuffer<>(ringSize, LedgerEvent::new);
+        this.partitions = partitions;
+        this.journal = new Journal(journalDirectory, runId, journalSegmentBytes, fsync);
+        this.store = store;
+        this.riskEngine = riskEngine;
+        this.fxRateService = fxRateService;
+        this.failedKeys = new long[ringSize];
+
+        this.validationStage = new ValidationStage(Math.max(KEY_WINDOW, ringSize * 4));
+        this.balanceSequences = new Sequence[partitions];
+        this.balanceStages = new BalanceStage[partitions];
+        for (int p = 0; p < partitions; p++) {
+            balanceSequences[p] = new Sequence();
+            balanceStages[p] = new BalanceStage(p);
+        }
+        ringBuffer.setGatingSequences(persistenceSequence);
+    }
+
+    /**
+     * Store postings left in a journal directory by an earlier run.
+     * Must be called before a pipeline over the same directory starts.
+     */
+    public static int replayJournal(Path journalDirectory, LedgerStore store) throws IOException, SQLException {
+        return Journal.replay(journalDirectory, store, PERSIST_BATCH);
+    }
+
+    /**
+     * Seed the in-memory balances and the key filter and start the stage
+     * threads. storedKeys are the most recently stored idempotency keys
+     * (at most {@link #SEEDED_KEYS}), so retries of them are duplicates
+     * without a database read; older ones are caught when stored.
+     */
+    public synchronized void start(Iterable<? extends BankAccount> accounts, Iterable<String> storedKeys) {
+        if (running) {
+            return;
+        }
+        for (String key : storedKeys) {
+            validationStage.recentKeys.add(key);
+        }
+        for (BankAccount account : accounts) {
+            long balanceCents = Math.round(account.getBalance() * 100);
+            validationStage.accountCurrencies.put(account.getAccountNumber(), account.getCurrency());
+            if (ceilingCents(account) != Long.MAX_VALUE) {
+                validationStage.cappedAccounts.add(account.getAccountNumber());
+            }
+            balanceStages[partitionOf(account.getAccountNumber())].accounts.put(account.getAccountNumber(),
+                    new LedgerAccount(balanceCents, floorCents(account), ceilingCents(account)));
+        }
+
+        running = true;
+        startThread(new StageRunner(new SequenceBarrier(ringBuffer, new Sequence[0], this::isRunning),
+                validationSequence, validationStage), "ledger-validation");
+        for (int p = 0; p < partitions; p++) {
+            startThread(new StageRunner(new SequenceBarrier(ringBuffer, new Sequence[] {validationSequence},
+                    this::isRunning), balanceSequences[p], balanceStages[p]), "ledger-balance-" + p);
+        }
+        startThread(new StageRunner(new SequenceBarrier(ringBuffer, balanceSequences, this::isRunning),
+                journalSequence, new JournalStage()), "ledger-journal");
+        startThread(new PersistenceStage(new SequenceBarrier(ringBuffer, new Sequence[] {journalSequence},
+                this::isRunning)), "ledger-persistence");
+        accepting = true;
+    }
+
+    /**
+     * Stop accepting postings, wait up to timeoutMillis for the ones in flight
+     * to be stored, then stop the stages. Anything not stored by then stays in
+     * the journal for the next start.
+     */
+    public synchronized void stop(long timeoutMillis) {
+        if (!running) {
+            return;
+        }
+        accepting = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (persistenceSequence.get() < ringBuffer.getCursor() && System.currentTimeMillis() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        boolean allPersisted = persistenceSequence.get() >= ringBuffer.getCursor();
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+        try {
+            journal.close(allPersisted);
+        } catch (IOException e) {
+            System.err.println("Error closing ledger journal: " + e.getMessage());
+        }
+        if (!allPersisted) {
+            System.err.println("Ledger stopped before storing everything; the rest will be replayed from the journal");
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public LedgerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getRunId() {
+        return runId;
+    }
+
+    /**
+     * Postings journaled but not yet stored in the database
+     */
+    public long getPersistenceLag() {
+        return journalSequence.get() - persistenceSequence.get();
+    }
+
+    /**
+     * Publish a posting. Waits while the ring is full; the callback is run on
+     * the journal thread once the outcome is final. Returns the sequence.
+     */
+    public long publish(LedgerEvent.Kind kind, String idempotencyKey, String fromAccountNumber,
+                        String toAccountNumber, long amountCents, String description, String performedBy,
+                        LedgerCallback callback) {
+        if (!accepting) {
+            throw new IllegalStateException("Ledger pipeline is not running");
+        }
+        long sequence = ringBuffer.next();
+        LedgerEvent event = ringBuffer.get(sequence);
+        event.reset();
+        event.sequence = sequence;
+        event.runId = runId;
+        event.kind = kind;
+        event.idempotencyKey = idempotencyKey;
+        event.fromAccountNumber = fromAccountNumber;
+        event.toAccountNumber = toAccountNumber;
+        event.amountCents = amountCents;
+        event.description = description;
+        event.performedBy = performedBy;
+        event.callback = callback;
+        event.timestampMillis = System.currentTimeMillis();
+        event.publishNanos = System.nanoTime();
+        ringBuffer.publish(sequence);
+        metrics.recordPublished();
+        return sequence;
+    }
+
+    /**
+     * Make an account created after start known to the pipeline
+     */
+    public void openAccount(BankAccount account, LedgerCallback callback) {
+        if (!accepting) {
+            throw new IllegalStateException("Ledger pipeline is not running");
+        }
+        long sequence = ringBuffer.next();
+        LedgerEvent event = ringBuffer.get(sequence);
+        event.reset();
+        event.sequence = sequence;
+        event.runId = runId;
+        event.kind = LedgerEvent.Kind.OPEN_ACCOUNT;
+        event.toAccountNumber = account.getAccountNumber();
+        event.amountCents = Math.round(account.getBalance() * 100);
+        event.floorCents = floorCents(account);
+        event.ceilingCents = ceilingCents(account);
+        event.currency = account.getCurrency();
+        event.callback = callback;
+        event.timestampMillis = System.currentTimeMillis();
+        event.publishNanos = System.nanoTime();
+        ringBuffer.publish(sequence);
+    }
+
+    /**
+     * Lowest balance an account may be debited to, in cents
+     */
+    static long floorCents(BankAccount account) {
+        if (account.isHotAccount()) {
+            return 0;
+        }
+        if (account instanceof SavingsAccount) {
+            return Math.round(((SavingsAccount) account).getMinimumBalance() * 100);
+        }
+        if (account instanceof CurrentAccount) {
+            return Math.round(((CurrentAccount) account).getOverdraftLimit() * 100);
+        }
+        return 0;
+    }
+
+    /**
+     * Highest balance an account may be credited to, in cents: zero for a
+     * loan, which a repayment may not take past paid off
+     */
+    static long ceilingCents(BankAccount account) {
+        return account instanceof LoanAccount ? 0 : Long.MAX_VALUE;
+    }
+
+    private int partitionOf(String accountNumber) {
+        return (accountNumber.hashCode() & Integer.MAX_VALUE) % partitions;
+    }
+
+    private void startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    /**
+     * Inner interface for a stage that handles one slot at a time
+     */
+    private interface EventHandler {
+        void onEvent(LedgerEvent event, boolean endOfBatch) throws Exception;
+    }
+
+    /**
+     * Runs a handler over every slot its barrier makes available, then
+     * publishes how far it got
+     */
+    private final class StageRunner implements Runnable {
+        private final SequenceBarrier barrier;
+        private final Sequence sequence;
+        private final EventHandler handler;
+
+        StageRunner(SequenceBarrier barrier, Sequence sequence, EventHandler handler) {
+            this.barrier = barrier;
+            this.sequence = sequence;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (true) {
+                long available = barrier.waitFor(next);
+                if (available < next) {
+                    return;
+                }
+                for (long s = next; s <= available; s++) {
+                    LedgerEvent event = ringBuffer.get(s);
+                    try {
+                        handler.onEvent(event, s == available);
+                    } catch (Exception e) {
+                        System.err.println("Error in " + Thread.currentThread().getName() + " at " + event + ": " + e);
+                        if (event.status == null) {
+                            event.status = TransactionResult.Status.FAILED;
+                        }
+                    }
+                }
+                sequence.set(available);
+                next = available + 1;
+            }
+        }
+    }
+
+    /**
+     * Stage 1: rejects postings that cannot succeed before any balance moves
+     */
+    private final class ValidationStage implements EventHandler {
+        // Currency of every account the pipeline knows
+        private final Map<String, String> accountCurrencies = new HashMap<>();
+        // Accounts with a balance ceiling
+        private final Set<String> cappedAccounts = new HashSet<>();
+        private final KeyFilter recentKeys;
+
+        ValidationStage(int keyCapacity) {
+            this.recentKeys = new KeyFilter(keyCapacity);
+        }
+
+        @Override
+        public void onEvent(LedgerEvent event, boolean endOfBatch) {
+            forgetFailedKeys();
+
+            if (event.kind == LedgerEvent.Kind.OPEN_ACCOUNT) {
+                accountCurrencies.put(event.toAccountNumber, event.currency);
+                if (event.ceilingCents != Long.MAX_VALUE) {
+                    cappedAccounts.add(event.toAccountNumber);
+                }
+                return;
+            }
+            if (event.idempotencyKey == null || event.idempotencyKey.length() > MAX_KEY_LENGTH
+                    || event.amountCents <= 0
+                    || (event.description != null && event.description.length() > MAX_DESCRIPTION_LENGTH)) {
+                event.status = TransactionResult.Status.FAILED;
+                return;
+            }
+            if (!recentKeys.add(event.idempotencyKey)) {
+                event.status = TransactionResult.Status.DUPLICATE;
+                return;
+            }
+            String fromCurrency = event.fromAccountNumber != null ? accountCurrencies.get(event.fromAccountNumber) : null;
+            String toCurrency = event.toAccountNumber != null ? accountCurrencies.get(event.toAccountNumber) : null;
+            if ((event.fromAccountNumber != null && fromCurrency == null)
+                    || (event.toAccountNumber != null && toCurrency == null)) {
+                event.status = TransactionResult.Status.ACCOUNT_NOT_FOUND;
+                return;
+            }
+            if (event.kind == LedgerEvent.Kind.TRANSFER && event.fromAccountNumber.equals(event.toAccountNumber)) {
+                event.status = TransactionResult.Status.FAILED;
+                return;
+            }
+            event.currency = fromCurrency != null ? fromCurrency : toCurrency;
+            event.creditCents = event.amountCents;
+            event.creditCapped = event.toAccountNumber != null && cappedAccounts.contains(event.toAccountNumber);
+            if (event.kind == LedgerEvent.Kind.TRANSFER && !fromCurrency.equals(toCurrency) && !convert(event, toCurrency)) {
+                event.status = TransactionResult.Status.FAILED;
+                return;
+            }
+            if (riskEngine != null && event.fromAccountNumber != null) {
+                RiskDecision risk = riskEngine.assess(event.fromAccountNumber, event.toAccountNumber,
+                        event.amountCents / 100.0);
+                event.risk = risk;
+                if (risk.isBlocked()) {
+                    event.status = TransactionResult.Status.REJECTED;
+                }
+            }
+        }
+
+        /**
+         * Set the credit side of a cross-currency transfer from the current
+         * rate snapshot. Returns false if there is no rate or the converted
+         * amount rounds to nothing.
+         */
+        private boolean convert(LedgerEvent event, String toCurrency) {
+            if (fxRateService == null) {
+                return false;
+            }
+            FxRates rates = fxRateService.get();
+            BigDecimal rate = rates.getRate(event.currency, toCurrency);
+            if (rate == null) {
+                return false;
+            }
+            long creditCents = FxRates.convertCents(event.amountCents, rate);
+            if (creditCents <= 0) {
+                return false;
+            }
+            event.creditCents = creditCents;
+            event.creditCurrency = toCurrency;
+            event.exchangeRate = rate.doubleValue();
+            return true;
+        }
+
+        private void forgetFailedKeys() {
+            long read = failedKeysRead.get();
+            long written = failedKeysWritten.get();
+            for (long i = read + 1; i <= written; i++) {
+                recentKeys.remove(failedKeys[(int) (i % failedKeys.length)]);
+            }
+            if (written > read) {
+                failedKeysRead.set(written);
+            }
+        }
+    }
+
+    /**
+     * Stage 2: the only writer of the balances in its partition
+     */
+    private final class BalanceStage implements EventHandler {
+        private final int partition;
+        private final Map<String, LedgerAccount> accounts = new HashMap<>();
+        // Balance changes of postings the store skipped, handed back for undoing
+        private final Queue<Correction> corrections = new ConcurrentLinkedQueue<>();
+
+        BalanceStage(int partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public void onEvent(LedgerEvent event, boolean endOfBatch) {
+            applyCorrections();
+            if (event.kind == LedgerEvent.Kind.OPEN_ACCOUNT) {
+                if (partitionOf(event.toAccountNumber) == partition) {
+                    accounts.putIfAbsent(event.toAccountNumber,
+                            new LedgerAccount(event.amountCents, event.floorCents, event.ceilingCents));
+                }
+                return;
+            }
+            if (event.status != null) {
+                return;
+            }
+
+            boolean debitHere = event.fromAccountNumber != null && partitionOf(event.fromAccountNumber) == partition;
+            boolean creditHere = event.toAccountNumber != null && partitionOf(event.toAccountNumber) == partition;
+
+            if (creditHere) {
+                // Nothing has moved yet; a transfer's debit waits for this on a capped target
+                LedgerAccount to = accounts.get(event.toAccountNumber);
+                boolean fits = to.balanceCents <= to.ceilingCents - event.creditCents;
+                if (event.creditCapped) {
+                    event.creditState = fits ? LedgerEvent.CREDIT_ACCEPTED : LedgerEvent.CREDIT_FAILED;
+                }
+                if (!fits) {
+                    event.status = TransactionResult.Status.FAILED;
+                    return;
+                }
+            }
+
+            if (debitHere) {
+                LedgerAccount from = accounts.get(event.fromAccountNumber);
+                if (from == null || from.balanceCents - event.amountCents < from.floorCents) {
+                    event.status = from == null
+                            ? TransactionResult.Status.ACCOUNT_NOT_FOUND
+                            : TransactionResult.Status.INSUFFICIENT_FUNDS;
+                    event.debitState = LedgerEvent.DEBIT_FAILED;
+                    return;
+                }
+                if (event.creditCapped && !creditHere && !awaitCredit(event)) {
+                    event.debitState = LedgerEvent.DEBIT_FAILED;
+                    return;
+                }
+                from.balanceCents -= event.amountCents;
+                if (event.toAccountNumber == null) {
+                    event.status = TransactionResult.Status.COMPLETED;
+                    return;
+                }
+                if (!creditHere) {
+                    // The target partition sets the final status
+                    event.debitState = LedgerEvent.DEBIT_DONE;
+                    return;
+                }
+            } else if (creditHere && event.fromAccountNumber != null) {
+                // Transfer from another partition: credit only after the debit succeeded
+                int idle = 0;
+                int state;
+                while ((state = event.debitState) == LedgerEvent.DEBIT_PENDING) {
+                    if (!running) {
+                        return;
+                    }
+                    idle = WaitStrategy.idle(idle);
+                }
+                if (state == LedgerEvent.DEBIT_FAILED) {
+                    return;
+                }
+            }
+
+            if (creditHere) {
+                LedgerAccount to = accounts.get(event.toAccountNumber);
+                to.balanceCents += event.creditCents;
+                event.status = TransactionResult.Status.COMPLETED;
+            }
+        }
+
+        private void applyCorrections() {
+            Correction correction;
+            while ((correction = corrections.poll()) != null) {
+                LedgerAccount account = accounts.get(correction.accountNumber);
+                if (account != null) {
+                    account.balanceCents += correction.deltaCents;
+                }
+            }
+        }
+
+        /**
+         * Wait for the target partition to check a credit to a capped account.
+         * It never waits on this partition for this posting, so this cannot
+         * deadlock. Returns false if the credit was refused.
+         */
+        private boolean awaitCredit(LedgerEvent event) {
+            int idle = 0;
+            int state;
+            while ((state = event.creditState) == LedgerEvent.CREDIT_PENDING) {
+                if (!running) {
+                    return false;
+                }
+                idle = WaitStrategy.idle(idle);
+            }
+            return state == LedgerEvent.CREDIT_ACCEPTED;
+        }
+    }
+
+    /**
+     * Stage 3: makes completed postings durable, then reports every outcome
+     */
+    private final class JournalStage implements EventHandler {
+        private long batchStart = -1;
+        private boolean pendingSync = false;
+
+        @Override
+        public void onEvent(LedgerEvent event, boolean endOfBatch) {
+            if (batchStart < 0) {
+                batchStart = event.sequence;
+            }
+            if (event.isPosted()) {
+                appendUntilWritten(event);
+                pendingSync = true;
+            }
+            if (!endOfBatch) {
+                return;
+            }
+
+            if (pendingSync) {
+                syncUntilDurable();
+                metrics.recordJournalSync();
+                pendingSync = false;
+            }
+            long now = System.nanoTime();
+            for (long s = batchStart; s <= event.sequence; s++) {
+                report(ringBuffer.get(s), now);
+            }
+            batchStart = -1;
+        }
+
+        private void appendUntilWritten(LedgerEvent event) {
+            while (true) {
+                try {
+                    journal.append(event);
+                    return;
+                } catch (IOException e) {
+                    // The balance has already moved in memory; the posting must reach the journal
+                    System.err.println("Error writing ledger journal, retrying: " + e.getMessage());
+                    sleep(PERSIST_RETRY_MILLIS);
+                }
+            }
+        }
+
+        private void syncUntilDurable() {
+            while (true) {
+                try {
+                    journal.sync();
+                    return;
+                } catch (IOException e) {
+                    // Nothing may be reported complete before it is on disk
+                    System.err.println("Error syncing ledger journal, retrying: " + e.getMessage());
+                    sleep(PERSIST_RETRY_MILLIS);
+                }
+            }
+        }
+
+        private void report(LedgerEvent event, long now) {
+            if (event.kind == LedgerEvent.Kind.OPEN_ACCOUNT) {
+                if (event.callback != null) {
+                    event.callback.onComplete(event);
+                }
+                return;
+            }
+            boolean posted = event.isPosted();
+            if (riskEngine != null && event.risk != null) {
+                riskEngine.complete(event.risk, posted);
+            }
+            if (!posted && event.status != TransactionResult.Status.DUPLICATE && event.idempotencyKey != null) {
+                rememberFailedKey(event.idempotencyKey);
+            }
+            metrics.recordOutcome(posted, now - event.publishNanos);
+            if (event.callback != null) {
+                event.callback.onComplete(event);
+            }
+        }
+
+        private void rememberFailedKey(String key) {
+            long written = failedKeysWritten.get();
+            // Validation drains this long before it can fill; if it has not, the
+            // key just stays a duplicate until its filter generation is cleared
+            if (written - failedKeysRead.get() < failedKeys.length) {
+                failedKeys[(int) ((written + 1) % failedKeys.length)] = KeyFilter.hash(key);
+                failedKeysWritten.set(written + 1);
+            }
+        }
+    }
+
+    /**
+     * Stage 4: stores journaled postings in batches; retries until the store
+     * accepts them, holding back publishers once the ring is full
+     */
+    private final class PersistenceStage implements Runnable {
+        private final SequenceBarrier barrier;
+        private final List<LedgerEvent> batch = new ArrayList<>(PERSIST_BATCH);
+
+        PersistenceStage(SequenceBarrier barrier) {
+            this.barrier = barrier;
+        }
+
+        @Override
+        public void run() {
+            long next = persistenceSequence.get() + 1;
+            while (true) {
+                long available = barrier.waitFor(next);
+                if (available < next) {
+                    return;
+                }
+                long end = Math.min(available, next + PERSIST_BATCH - 1);
+                batch.clear();
+                for (long s = next; s <= end; s++) {
+                    LedgerEvent event = ringBuffer.get(s);
+                    if (event.isPosted()) {
+                        batch.add(event);
+                    }
+                }
+                if (!storeUntilAccepted()) {
+                    return;
+                }
+                undoAlreadyStored();
+                persistenceSequence.set(end);
+                journal.release(end);
+                next = end + 1;
+            }
+        }
+
+        /**
+         * A key stored before this run's filter window was posted again: the
+         * store kept the original, so take the repeat's change back out of
+         * the in-memory balances. Its caller was already told it completed.
+         */
+        private void undoAlreadyStored() {
+            for (LedgerEvent event : batch) {
+                if (!event.alreadyStored) {
+                    continue;
+                }
+                System.err.println("Ledger posting repeated a key stored by an earlier run, balance change undone: "
+                        + event);
+                if (event.fromAccountNumber != null) {
+                    balanceStages[partitionOf(event.fromAccountNumber)].corrections.add(
+                            new Correction(event.fromAccountNumber, event.amountCents));
+                }
+                if (event.toAccountNumber != null) {
+                    balanceStages[partitionOf(event.toAccountNumber)].corrections.add(
+                            new Correction(event.toAccountNumber, -event.creditCents));
+                }
+            }
+        }
+
+        private boolean storeUntilAccepted() {
+            if (batch.isEmpty()) {
+                return true;
+            }
+            while (true) {
+                try {
+                    store.store(batch);
+                    metrics.recordPersisted(batch.size());
+                    return true;
+                } catch (SQLException | RuntimeException e) {
+                    metrics.recordPersistFailure();
+                    System.err.println("Error storing ledger postings, retrying: " + e.getMessage());
+                    if (!running) {
+                        return false;
+                    }
+                    sleep(PERSIST_RETRY_MILLIS);
+                }
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Inner class for a balance change handed to a partition writer
+     */
+    private static final class Correction {
+        private final String accountNumber;
+        private final long deltaCents;
+
+        Correction(String accountNumber, long deltaCents) {
+            this.accountNumber = accountNumber;
+            this.deltaCents = deltaCents;
+        }
+    }
+
+    /**
+     * Inner class for a balance owned by one partition writer
+     */
+    private static final class LedgerAccount {
+        private long balanceCents;
+        private final long floorCents;
+        private final long ceilingCents;
+
+        LedgerAccount(long balanceCents, long floorCents, long ceilingCents) {
+            this.balanceCents = balanceCents;
+            this.floorCents = floorCents;
+            this.ceilingCents = ceilingCents;
+        }
+    }
+}
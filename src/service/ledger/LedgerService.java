@@ -0,0 +1,272 @@
+package service.ledger;
+
+import dao.BankAccountDAO;
+import dao.TransactionDAO;
+import model.BankAccount;
+import model.banking.Transaction;
+import service.BalanceWriterLock;
+import service.FxRateService;
+import service.RateLimiter;
+import service.TransactionRequest;
+import service.TransactionResult;
+import service.risk.RiskEngine;
+import util.DatabaseConfig;
+import util.Settings;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the shared {@link LedgerPipeline} when ledger.pipeline.enabled is set
+ * and no other process posts through the database ({@link BalanceWriterLock}),
+ * and adapts {@link TransactionRequest}s to it, so the HTTP API can post
+ * through the pipeline instead of the database-locking path. A request the
+ * pipeline finds to be a duplicate is answered with the stored posting once
+ * that is in the database.
+ *
+ * Settings (read at start): ledger.ring_size, ledger.partitions,
+ * ledger.journal.directory, ledger.journal.segment_mb, ledger.journal.fsync.
+ */
+public class LedgerService {
+
+    private static final LedgerService INSTANCE = new LedgerService();
+
+    private static final int DEFAULT_RING_SIZE = 1 << 16;
+    private static final int DEFAULT_PARTITIONS = 4;
+    private static final String DEFAULT_JOURNAL_DIRECTORY = "data/ledger";
+    private static final int DEFAULT_SEGMENT_MB = 64;
+    private static final long STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final BankAccountDAO bankAccountDAO = new BankAccountDAO();
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+    private volatile LedgerPipeline pipeline;
+
+    private LedgerService() {
+    }
+
+    /**
+     * Get the shared ledger service
+     */
+    public static LedgerService getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isRunning() {
+        LedgerPipeline current = pipeline;
+        return current != null && current.isRunning();
+    }
+
+    /**
+     * Metrics of the running pipeline, or null if it is not running
+     */
+    public LedgerMetrics getMetrics() {
+        LedgerPipeline current = pipeline;
+        return current != null ? current.getMetrics() : null;
+    }
+
+    public long getPersistenceLag() {
+        LedgerPipeline current = pipeline;
+        return current != null ? current.getPersistenceLag() : 0;
+    }
+
+    /**
+     * Replay any journal left by the last run, load the accounts and start the
+     * pipeline. Does nothing unless ledger.pipeline.enabled is true.
+     */
+    public synchronized void start(Settings settings) {
+        if (pipeline != null || !settings.getBoolean("ledger.pipeline.enabled", false)) {
+            return;
+        }
+        // The in-memory balances are only right if nothing else writes them
+        BalanceWriterLock writerLock = BalanceWriterLock.getInstance();
+        if (!writerLock.acquireForPipeline()) {
+            System.err.println("Other clients post through the database; ledger pipeline not started");
+            return;
+        }
+        Path journalDirectory = Paths.get(settings.get("ledger.journal.directory", DEFAULT_JOURNAL_DIRECTORY));
+        DatabaseLedgerStore store = new DatabaseLedgerStore();
+        try {
+            int replayed = LedgerPipeline.replayJournal(journalDirectory, store);
+            if (replayed > 0) {
+                System.out.println("Replayed " + replayed + " ledger postings from " + journalDirectory);
+            }
+
+            // The balances become authoritative, so read them from the primary,
+            // which the journal replay has just written to, never a lagging replica
+            List<BankAccount> accounts;
+            List<String> storedKeys;
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                accounts = bankAccountDAO.getAllAccounts(conn);
+                storedKeys = transactionDAO.getRecentIdempotencyKeys(conn, LedgerPipeline.SEEDED_KEYS);
+            }
+            LedgerPipeline started = new LedgerPipeline(
+                    settings.getInt("ledger.ring_size", DEFAULT_RING_SIZE),
+                    settings.getInt("ledger.partitions", DEFAULT_PARTITIONS),
+                    journalDirectory,
+                    settings.getLong("ledger.journal.segment_mb", DEFAULT_SEGMENT_MB) << 20,
+                    settings.getBoolean("ledger.journal.fsync", true),
+                    store,
+                    RiskEngine.getInstance(),
+                    FxRateService.getInstance());
+            started.start(accounts, storedKeys);
+            pipeline = started;
+            System.out.println("Ledger pipeline started with " + accounts.size() + " accounts");
+        } catch (IOException | SQLException | IllegalArgumentException e) {
+            // Without a replayed journal the in-memory balances would be wrong
+            System.err.println("Error starting ledger pipeline, postings use the database path: " + e.getMessage());
+            writerLock.release();
+        }
+    }
+
+    /**
+     * Stop the pipeline once in-flight postings are stored
+     */
+    public synchronized void stop() {
+        if (pipeline != null) {
+            pipeline.stop(STOP_TIMEOUT_MILLIS);
+            pipeline = null;
+            BalanceWriterLock.getInstance().release();
+        }
+    }
+
+    /**
+     * Make a newly created account known to the running pipeline. Accounts
+     * created elsewhere (a desktop client, an import) are loaded the first
+     * time a posting names them.
+     */
+    public void openAccount(BankAccount account) {
+        LedgerPipeline current = pipeline;
+        if (current != null && current.isRunning()) {
+            current.openAccount(account, null);
+        }
+    }
+
+    /**
+     * Post a request through the pipeline and wait until it is journaled or rejected
+     */
+    public TransactionResult execute(TransactionRequest request) {
+        LedgerPipeline current = pipeline;
+        if (current == null) {
+            return TransactionResult.failure(TransactionResult.Status.FAILED, "Ledger pipeline is not running");
+        }
+
+        String account = request.getFromAccountNumber() != null
+                ? request.getFromAccountNumber()
+                : request.getToAccountNumber();
+        if (!RateLimiter.getInstance().tryAcquire(rateLimitedOperation(request), request.getPerformedBy(), account)) {
+            return TransactionResult.failure(TransactionResult.Status.RATE_LIMITED, null);
+        }
+        Completion completion = new Completion();
+        long sequence;
+        try {
+            sequence = publish(current, request, completion);
+            if (completion.join() == TransactionResult.Status.ACCOUNT_NOT_FOUND && loadAccounts(current, request)) {
+                // Published after the accounts, so validation sees them; the failed key was released
+                completion = new Completion();
+                sequence = publish(current, request, completion);
+            }
+        } catch (IllegalStateException e) {
+            return TransactionResult.failure(TransactionResult.Status.FAILED, e.getMessage());
+        }
+
+        TransactionResult.Status status = completion.join();
+        if (status == TransactionResult.Status.DUPLICATE) {
+            return storedResult(request);
+        }
+        if (status != TransactionResult.Status.COMPLETED) {
+            return TransactionResult.failure(status, null);
+        }
+        Transaction transaction = new Transaction(request.getFromAccountNumber(), request.getToAccountNumber(),
+                request.getAmount(), request.getType(), request.getDescription(), request.getPerformedBy());
+        transaction.setTransactionId(LedgerEvent.transactionId(current.getRunId(), sequence));
+        transaction.setIdempotencyKey(request.getIdempotencyKey());
+        transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        transaction.setCurrency(completion.currency);
+        if (completion.creditCurrency != null) {
+            transaction.setConversion(completion.creditCents / 100.0, completion.creditCurrency, completion.exchangeRate);
+        }
+        return TransactionResult.completed(transaction);
+    }
+
+    private static long publish(LedgerPipeline current, TransactionRequest request, Completion completion) {
+        return current.publish(LedgerEvent.Kind.of(request.getType()), request.getIdempotencyKey(),
+                request.getFromAccountNumber(), request.getToAccountNumber(),
+                Math.round(request.getAmount() * 100), request.getDescription(), request.getPerformedBy(),
+                completion);
+    }
+
+    /**
+     * Load the request's accounts from the primary and announce them to the
+     * pipeline, after a posting found one unknown: it was created since the
+     * pipeline started, outside this process. Only misses pay for the read.
+     * Returns false if there was nothing to announce.
+     */
+    private boolean loadAccounts(LedgerPipeline current, TransactionRequest request) {
+        boolean announced = false;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            for (String accountNumber : new String[] {request.getFromAccountNumber(), request.getToAccountNumber()}) {
+                BankAccount account = accountNumber != null ? bankAccountDAO.getAccountByNumber(conn, accountNumber) : null;
+                if (account != null) {
+                    current.openAccount(account, null);
+                    announced = true;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading accounts for the ledger pipeline: " + e.getMessage());
+        }
+        return announced;
+    }
+
+    /**
+     * The original result for a duplicate key, read only for duplicates. An
+     * original still in flight (or unreadable) is reported as a bare DUPLICATE.
+     */
+    private TransactionResult storedResult(TransactionRequest request) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            Transaction existing = transactionDAO.getTransactionByIdempotencyKey(conn, request.getIdempotencyKey());
+            if (existing != null) {
+                return TransactionResult.completed(existing).asDuplicate();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading the original of a duplicate posting: " + e.getMessage());
+        }
+        return TransactionResult.failure(TransactionResult.Status.DUPLICATE, null);
+    }
+
+    private static RateLimiter.Operation rateLimitedOperation(TransactionRequest request) {
+        switch (request.getType()) {
+            case DEPOSIT:
+                return RateLimiter.Operation.DEPOSIT;
+            case WITHDRAWAL:
+                return RateLimiter.Operation.WITHDRAWAL;
+            default:
+                return RateLimiter.Operation.TRANSFER;
+        }
+    }
+
+    /**
+     * Inner class handing a posting's final status, and what it was converted
+     * to, from the journal thread to the caller. The fields are written before
+     * the future completes, so join() makes them visible.
+     */
+    private static class Completion extends CompletableFuture<TransactionResult.Status> implements LedgerCallback {
+        private String currency;
+        private long creditCents;
+        private String creditCurrency;
+        private double exchangeRate;
+
+        @Override
+        public void onComplete(LedgerEvent event) {
+            currency = event.getCurrency();
+            creditCents = event.getCreditCents();
+            creditCurrency = event.getCreditCurrency();
+            exchangeRate = event.getExchangeRate();
+            complete(event.getStatus());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package service.ledger;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Where journaled postings end up. Called by the persistence stage with
+ * batches of completed postings in sequence order.
+ */
+public interface LedgerStore {
+
+    /**
+     * Store the postings and their balance changes all or nothing. A posting
+     * whose idempotency key is already stored must be skipped together with
+     * its balance change and marked with {@link LedgerEvent#markAlreadyStored},
+     * so replaying a journal is safe. Returns how many postings were newly
+     * stored.
+     */
+    int store(List<LedgerEvent> events) throws SQLException;
+}
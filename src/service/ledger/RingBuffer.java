@@ -0,0 +1,110 @@
+package service.ledger;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+/**
+ * Fixed ring of pre-allocated entries shared by any number of publishing
+ * threads and a chain of consuming stages.
+ *
+ * Publishers claim the next sequence with a compare-and-set on the cursor,
+ * fill the entry at that slot and publish it. Because slots are claimed in
+ * order but may be filled out of order, every slot carries the "round"
+ * (sequence / size) it was last published for; a consumer only reads a run
+ * of slots whose rounds are current. A publisher never laps the slowest
+ * gating stage, so an entry is reused only after every stage is done with it.
+ */
+public final class RingBuffer<E> {
+
+    private final Object[] entries;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray published;
+
+    private final Sequence cursor = new Sequence();
+    private final Sequence gatingCache = new Sequence();
+    private volatile Sequence[] gatingSequences = new Sequence[0];
+
+    public RingBuffer(int size, Supplier<E> factory) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+        }
+        this.entries = new Object[size];
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+            published.set(i, -1);
+        }
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Highest sequence claimed so far (not necessarily published)
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * The sequences of the last stages; publishers wait for the slowest of them
+     */
+    public void setGatingSequences(Sequence... sequences) {
+        this.gatingSequences = sequences.clone();
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    /**
+     * Claim the next slot, waiting while the ring is full
+     */
+    public long next() {
+        int idle = 0;
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - entries.length;
+            if (wrapPoint > gatingCache.get()) {
+                long slowest = Sequence.minimum(gatingSequences, current);
+                gatingCache.set(slowest);
+                if (wrapPoint > slowest) {
+                    idle = WaitStrategy.idle(idle);
+                    continue;
+                }
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Make a filled slot visible to the first stage
+     */
+    public void publish(long sequence) {
+        published.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    public boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    /**
+     * Highest sequence in [lowest, available] up to which every slot is published
+     */
+    public long highestPublished(long lowest, long available) {
+        for (long sequence = lowest; sequence <= available; sequence++) {
+            if (!isPublished(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return available;
+    }
+}
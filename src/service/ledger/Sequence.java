@@ -0,0 +1,75 @@
+package service.ledger;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A position in the ring buffer, written by exactly one thread and read by
+ * others. Padded on both sides so two stages' sequences never share a cache
+ * line.
+ */
+public final class Sequence extends SequenceRhsPadding {
+
+    public static final long INITIAL = -1L;
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public Sequence() {
+        this(INITIAL);
+    }
+
+    public Sequence(long initial) {
+        VALUE.setRelease(this, initial);
+    }
+
+    public long get() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    /**
+     * Publish a new position; everything written before is visible to readers that see it
+     */
+    public void set(long value) {
+        VALUE.setRelease(this, value);
+    }
+
+    public boolean compareAndSet(long expected, long value) {
+        return VALUE.compareAndSet(this, expected, value);
+    }
+
+    /**
+     * Smallest of the given sequences, or fallback if there are none
+     */
+    public static long minimum(Sequence[] sequences, long fallback) {
+        long minimum = Long.MAX_VALUE;
+        for (Sequence sequence : sequences) {
+            minimum = Math.min(minimum, sequence.get());
+        }
+        return sequences.length == 0 ? fallback : minimum;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
+
+class SequenceLhsPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class SequenceValue extends SequenceLhsPadding {
+    protected volatile long value;
+}
+
+class SequenceRhsPadding extends SequenceValue {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
@@ -0,0 +1,40 @@
+package service.ledger;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * What a stage waits on: the publishers (first stage) or the sequences of the
+ * stages before it
+ */
+final class SequenceBarrier {
+
+    private final RingBuffer<?> ringBuffer;
+    private final Sequence[] dependencies;
+    private final BooleanSupplier running;
+
+    SequenceBarrier(RingBuffer<?> ringBuffer, Sequence[] dependencies, BooleanSupplier running) {
+        this.ringBuffer = ringBuffer;
+        this.dependencies = dependencies.clone();
+        this.running = running;
+    }
+
+    /**
+     * Wait until at least the given sequence can be processed and return the
+     * highest one that can. Returns less than sequence once the pipeline stops.
+     */
+    long waitFor(long sequence) {
+        int idle = 0;
+        while (true) {
+            long available = dependencies.length == 0
+                    ? ringBuffer.highestPublished(sequence, ringBuffer.getCursor())
+                    : Sequence.minimum(dependencies, Sequence.INITIAL);
+            if (available >= sequence) {
+                return available;
+            }
+            if (!running.getAsBoolean()) {
+                return available;
+            }
+            idle = WaitStrategy.idle(idle);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package service.ledger;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Back-off used by stages and publishers while they wait on another thread:
+ * spin first (lowest latency while busy), then yield, then park briefly so an
+ * idle pipeline does not burn whole cores
+ */
+final class WaitStrategy {
+
+    private static final int SPIN_TRIES = 200;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private WaitStrategy() {
+    }
+
+    /**
+     * Wait a little; pass the returned counter to the next call
+     */
+    static int idle(int counter) {
+        if (counter < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (counter < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+            return counter;
+        }
+        return counter + 1;
+    }
+}
@@ -0,0 +1,273 @@
+package service.loan;
+
+import model.LoanAccount;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Amortization and interest accrual for a whole {@link LoanBook}.
+ *
+ * Portfolio operations split the book into slices of loans that run in
+ * parallel; each slice is a straight loop over the book's primitive columns
+ * doing the same arithmetic for every loan, with no per-loan objects, which
+ * the JIT unrolls and keeps in registers. Projections run month by month
+ * over a slice rather than loan by loan for the same reason.
+ *
+ * A single loan's full schedule is only built when asked for
+ * ({@link #schedule}); nothing per installment is kept for the portfolio.
+ *
+ * Payments are level monthly annuities rounded to the cent, monthly interest
+ * is balance * annual rate / 12 and daily accrual is actual/365.
+ */
+public class AmortizationEngine implements AutoCloseable {
+
+    static final int DAYS_PER_YEAR = 365;
+    static final long MICROS_PER_CENT = 10_000;
+
+    // Loans per slice at least, so small books are not split finer than worth it
+    private static final int MIN_SLICE = 16_384;
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    public AmortizationEngine(int threads) {
+        this.threads = Math.max(1, threads);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, "amortization-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Level monthly payment that repays a principal over a term, rounded to
+     * the cent (the last installment absorbs the rounding)
+     */
+    public static long paymentCents(long principalCents, double monthlyRate, int termMonths) {
+        if (monthlyRate == 0) {
+            return (principalCents + termMonths - 1) / termMonths;
+        }
+        return Math.round(principalCents * monthlyRate / (1 - Math.pow(1 + monthlyRate, -termMonths)));
+    }
+
+    /**
+     * Accrue daily interest on every loan's outstanding balance from its last
+     * accrual date up to (excluding) asOf, and move the accrual date to asOf.
+     * Loans already accrued through asOf are unchanged, so running twice for a
+     * night does not accrue twice.
+     */
+    public Accrual accrue(LoanBook book, LocalDate asOf) throws InterruptedException {
+        int asOfDay = (int) asOf.toEpochDay();
+        long[] outstanding = book.outstandingCents();
+        double[] rates = book.annualRates();
+        int[] lastAccrual = book.lastAccrualDays();
+        long[] accrued = book.accruedMicros();
+        double microsPerDay = (double) MICROS_PER_CENT / DAYS_PER_YEAR;
+
+        long[] totals = sumSlices(book.size(), 2, (from, to, sums) -> {
+            long loans = 0;
+            long micros = 0;
+            for (int i = from; i < to; i++) {
+                int days = Math.max(0, asOfDay - lastAccrual[i]);
+                long interest = Math.round(outstanding[i] * rates[i] * days * microsPerDay);
+                accrued[i] += interest;
+                lastAccrual[i] += days;
+                micros += interest;
+                loans += days > 0 ? 1 : 0;
+            }
+            sums[0] = loans;
+            sums[1] = micros;
+        });
+        return new Accrual(totals[0], totals[1]);
+    }
+
+    /**
+     * Expected payments, interest and principal across the portfolio for each
+     * of the next months after asOf, following every loan's schedule from its
+     * current outstanding balance. A loan past its term is projected to pay
+     * off in the first month.
+     */
+    public CashFlowProjection project(LoanBook book, LocalDate asOf, int months) throws InterruptedException {
+        long[] outstanding = book.outstandingCents();
+        double[] rates = book.annualRates();
+        int[] terms = book.termMonths();
+        int[] startDays = book.startDays();
+        long[] payments = book.paymentCents();
+
+        long[] totals = sumSlices(book.size(), months * 3, (from, to, sums) -> {
+            int count = to - from;
+            long[] balance = new long[count];
+            double[] monthlyRate = new double[count];
+            long[] payment = new long[count];
+            int[] remaining = new int[count];
+            for (int j = 0; j < count; j++) {
+                int i = from + j;
+                balance[j] = outstanding[i];
+                monthlyRate[j] = rates[i] / 12;
+                payment[j] = payments[i];
+                long elapsed = ChronoUnit.MONTHS.between(LocalDate.ofEpochDay(startDays[i]), asOf);
+                remaining[j] = (int) Math.max(1, terms[i] - Math.max(0, elapsed));
+            }
+            for (int m = 0; m < months; m++) {
+                long paid = 0;
+                long interestTotal = 0;
+                long principalTotal = 0;
+                for (int j = 0; j < count; j++) {
+                    long interest = Math.round(balance[j] * monthlyRate[j]);
+                    // Level payment until the final installment, which clears the balance
+                    long principal = remaining[j] - m <= 1 ? balance[j]
+                            : Math.min(balance[j], Math.max(0, payment[j] - interest));
+                    balance[j] -= principal;
+                    paid += principal + interest;
+                    interestTotal += interest;
+                    principalTotal += principal;
+                }
+                sums[m * 3] = paid;
+                sums[m * 3 + 1] = interestTotal;
+                sums[m * 3 + 2] = principalTotal;
+            }
+        });
+        return new CashFlowProjection(asOf, totals);
+    }
+
+    /**
+     * Full contractual schedule of one loan in a book, built on demand
+     */
+    public static AmortizationSchedule schedule(LoanBook book, int loan) {
+        return schedule(book.getPrincipalCents(loan), book.getAnnualRate(loan), book.getTermMonths(loan),
+                book.getStartDate(loan));
+    }
+
+    /**
+     * Full contractual schedule of a loan account, built on demand
+     */
+    public static AmortizationSchedule schedule(LoanAccount loan) {
+        return schedule(Math.round(loan.getPrincipal() * 100), loan.getInterestRate() / 100.0,
+                loan.getTermMonths(), loan.getStartDate());
+    }
+
+    /**
+     * Full schedule for a principal at an annual rate (fraction) over a term
+     */
+    public static AmortizationSchedule schedule(long principalCents, double annualRate, int termMonths,
+                                                LocalDate startDate) {
+        double monthlyRate = annualRate / 12;
+        long payment = paymentCents(principalCents, monthlyRate, termMonths);
+        long[] payments = new long[termMonths];
+        long[] interests = new long[termMonths];
+        long[] principals = new long[termMonths];
+        long[] balances = new long[termMonths];
+
+        long balance = principalCents;
+        int count = 0;
+        while (count < termMonths && balance > 0) {
+            long interest = Math.round(balance * monthlyRate);
+            long principal = count == termMonths - 1 ? balance : Math.min(balance, payment - interest);
+            balance -= principal;
+            payments[count] = principal + interest;
+            interests[count] = interest;
+            principals[count] = principal;
+            balances[count] = balance;
+            count++;
+        }
+        if (count < termMonths) {
+            // Rounding paid the loan off early
+            payments = Arrays.copyOf(payments, count);
+            interests = Arrays.copyOf(interests, count);
+            principals = Arrays.copyOf(principals, count);
+            balances = Arrays.copyOf(balances, count);
+        }
+        return new AmortizationSchedule(startDate, payments, interests, principals, balances);
+    }
+
+    /**
+     * Run a task over slices of [0, size) in parallel and add up the width
+     * sums each slice reports
+     */
+    private long[] sumSlices(int size, int width, SliceTask task) throws InterruptedException {
+        int slices = Math.max(1, Math.min(threads * 4, (size + MIN_SLICE - 1) / MIN_SLICE));
+        int sliceSize = (size + slices - 1) / Math.max(1, slices);
+        List<Callable<long[]>> tasks = new ArrayList<>(slices);
+        for (int from = 0; from < size; from += sliceSize) {
+            int start = from;
+            int end = Math.min(size, from + sliceSize);
+            tasks.add(() -> {
+                long[] sums = new long[width];
+                task.run(start, end, sums);
+                return sums;
+            });
+        }
+
+        long[] totals = new long[width];
+        try {
+            for (Future<long[]> result : executor.invokeAll(tasks)) {
+                long[] sums = result.get();
+                for (int k = 0; k < width; k++) {
+                    totals[k] += sums[k];
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+        return totals;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Work over the loans in [from, to), writing its totals into sums
+     */
+    private interface SliceTask {
+        void run(int from, int to, long[] sums);
+    }
+
+    /**
+     * Inner class for the result of an accrual run
+     */
+    public static class Accrual {
+        private final long loansAccrued;
+        private final long interestMicros;
+
+        public Accrual(long loansAccrued, long interestMicros) {
+            this.loansAccrued = loansAccrued;
+            this.interestMicros = interestMicros;
+        }
+
+        public long getLoansAccrued() { return loansAccrued; }
+        public long getInterestMicros() { return interestMicros; }
+        public double getInterest() { return interestMicros / 1_000_000.0; }
+    }
+
+    /**
+     * Inner class for portfolio totals per projected month, in cents
+     */
+    public static class CashFlowProjection {
+        private final LocalDate asOf;
+        private final long[] totals;
+
+        CashFlowProjection(LocalDate asOf, long[] totals) {
+            this.asOf = asOf;
+            this.totals = totals;
+        }
+
+        public int getMonths() { return totals.length / 3; }
+        public LocalDate getMonthEnd(int month) { return asOf.plusMonths(month + 1); }
+        public long getPaymentCents(int month) { return totals[month * 3]; }
+        public long getInterestCents(int month) { return totals[month * 3 + 1]; }
+        public long getPrincipalCents(int month) { return totals[month * 3 + 2]; }
+    }
+}
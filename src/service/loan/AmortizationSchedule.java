@@ -0,0 +1,59 @@
+package service.loan;
+
+import java.time.LocalDate;
+
+/**
+ * Monthly installments of one loan, in cents. Installment k (0-based) falls
+ * due k + 1 months after the start date; the last one is adjusted so the
+ * balance ends at exactly zero.
+ */
+public class AmortizationSchedule {
+
+    private final LocalDate startDate;
+    private final long[] paymentCents;
+    private final long[] interestCents;
+    private final long[] principalCents;
+    private final long[] balanceCents;
+
+    AmortizationSchedule(LocalDate startDate, long[] paymentCents, long[] interestCents,
+                         long[] principalCents, long[] balanceCents) {
+        this.startDate = startDate;
+        this.paymentCents = paymentCents;
+        this.interestCents = interestCents;
+        this.principalCents = principalCents;
+        this.balanceCents = balanceCents;
+    }
+
+    public int getInstallmentCount() {
+        return paymentCents.length;
+    }
+
+    public LocalDate getDueDate(int installment) {
+        return startDate.plusMonths(installment + 1);
+    }
+
+    public long getPaymentCents(int installment) { return paymentCents[installment]; }
+    public long getInterestCents(int installment) { return interestCents[installment]; }
+    public long getPrincipalCents(int installment) { return principalCents[installment]; }
+
+    /**
+     * Balance still owed after the installment
+     */
+    public long getBalanceCents(int installment) { return balanceCents[installment]; }
+
+    public long getTotalInterestCents() {
+        long total = 0;
+        for (long interest : interestCents) {
+            total += interest;
+        }
+        return total;
+    }
+
+    public long getTotalPaidCents() {
+        long total = 0;
+        for (long payment : paymentCents) {
+            total += payment;
+        }
+        return total;
+    }
+}
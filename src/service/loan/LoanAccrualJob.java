@@ -0,0 +1,165 @@
+package service.loan;
+
+import dao.LoanDAO;
+import util.DatabaseConfig;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Nightly interest accrual over every active loan.
+ *
+ * The portfolio is streamed into a {@link LoanBook} in one pass, interest is
+ * accrued for all loans at once by the {@link AmortizationEngine}, and only
+ * the loans that accrued are written back in batches, each committed on its
+ * own. A batch only updates loans whose accrual date has not moved since
+ * they were read, so the job can be rerun after a failure (or run twice) for
+ * the same date without accruing any day twice.
+ *
+ * Run with: java -cp "lib/*:out" service.loan.LoanAccrualJob [yyyy-mm-dd] [threads]
+ * (the date defaults to today; interest accrues up to, not including, it)
+ */
+public class LoanAccrualJob {
+
+    private static final int BATCH_SIZE = 10000;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final LoanDAO loanDAO = new LoanDAO();
+    private final int threads;
+
+    public LoanAccrualJob(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Accrue interest on every active loan up to asOf
+     */
+    public Summary run(LocalDate asOf) throws SQLException, InterruptedException {
+        long started = System.nanoTime();
+        try (Connection conn = DatabaseConfig.openConnection(false);
+             AmortizationEngine engine = new AmortizationEngine(threads)) {
+
+            LoanBook book = new LoanBook(INITIAL_CAPACITY);
+            loanDAO.streamLoans(conn, book::add);
+            conn.commit();
+            long loaded = System.nanoTime();
+
+            int[] accruedFrom = Arrays.copyOf(book.lastAccrualDays(), book.size());
+            long[] accruedBefore = Arrays.copyOf(book.accruedMicros(), book.size());
+            AmortizationEngine.Accrual accrual = engine.accrue(book, asOf);
+            long computed = System.nanoTime();
+
+            int updated = save(conn, book, accruedFrom, accruedBefore, asOf);
+            long saved = System.nanoTime();
+
+            return new Summary(asOf, book.size(), accrual, updated,
+                    (loaded - started) / 1_000_000, (computed - loaded) / 1_000_000, (saved - computed) / 1_000_000);
+        }
+    }
+
+    /**
+     * Write back the loans whose accrual date moved, a batch per transaction
+     */
+    private int save(Connection conn, LoanBook book, int[] accruedFrom, long[] accruedBefore, LocalDate asOf)
+            throws SQLException {
+        String[] accountNumbers = book.accountNumbers();
+        int[] lastAccrual = book.lastAccrualDays();
+        long[] accrued = book.accruedMicros();
+
+        String[] batchAccounts = new String[BATCH_SIZE];
+        long[] batchInterest = new long[BATCH_SIZE];
+        int[] batchFrom = new int[BATCH_SIZE];
+        int count = 0;
+        int updated = 0;
+        for (int i = 0; i < book.size(); i++) {
+            if (lastAccrual[i] == accruedFrom[i]) {
+                continue;
+            }
+            batchAccounts[count] = accountNumbers[i];
+            batchInterest[count] = accrued[i] - accruedBefore[i];
+            batchFrom[count] = accruedFrom[i];
+            if (++count == BATCH_SIZE) {
+                updated += flush(conn, batchAccounts, batchInterest, batchFrom, count, asOf);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            updated += flush(conn, batchAccounts, batchInterest, batchFrom, count, asOf);
+        }
+        return updated;
+    }
+
+    private int flush(Connection conn, String[] accountNumbers, long[] interestMicros, int[] accruedFrom,
+                      int count, LocalDate asOf) throws SQLException {
+        try {
+            int updated = loanDAO.addAccruedInterest(conn, Arrays.copyOf(accountNumbers, count),
+                    Arrays.copyOf(interestMicros, count), Arrays.copyOf(accruedFrom, count), asOf);
+            conn.commit();
+            return updated;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) {
+        LocalDate asOf = args.length > 0 ? LocalDate.parse(args[0]) : LocalDate.now();
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        int status = 0;
+        try {
+            System.out.print(new LoanAccrualJob(threads).run(asOf));
+        } catch (SQLException e) {
+            System.err.println("Error accruing loan interest: " + e.getMessage());
+            status = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 1;
+        } finally {
+            DatabaseConfig.closeConnection();
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Inner class for what a run did
+     */
+    public static class Summary {
+        private final LocalDate asOf;
+        private final int loans;
+        private final AmortizationEngine.Accrual accrual;
+        private final int updated;
+        private final long loadMillis;
+        private final long accrueMillis;
+        private final long saveMillis;
+
+        Summary(LocalDate asOf, int loans, AmortizationEngine.Accrual accrual, int updated,
+                long loadMillis, long accrueMillis, long saveMillis) {
+            this.asOf = asOf;
+            this.loans = loans;
+            this.accrual = accrual;
+            this.updated = updated;
+            this.loadMillis = loadMillis;
+            this.accrueMillis = accrueMillis;
+            this.saveMillis = saveMillis;
+        }
+
+        public int getLoans() { return loans; }
+        public long getLoansAccrued() { return accrual.getLoansAccrued(); }
+        public double getInterest() { return accrual.getInterest(); }
+        public int getUpdated() { return updated; }
+
+        @Override
+        public String toString() {
+            return String.format("Loan accrual up to %s%n" +
+                            "  Loans:          %,d (%,d accrued, %,d updated)%n" +
+                            "  Interest:       %,.6f%n" +
+                            "  Load:           %,d ms%n" +
+                            "  Accrue:         %,d ms%n" +
+                            "  Save:           %,d ms%n",
+                    asOf, loans, accrual.getLoansAccrued(), updated, accrual.getInterest(),
+                    loadMillis, accrueMillis, saveMillis);
+        }
+    }
+}
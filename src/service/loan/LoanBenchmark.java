@@ -0,0 +1,64 @@
+package service.loan;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Times the amortization engine over a synthetic portfolio (no database
+ * needed): a night's accrual, a twelve-month cash flow projection and
+ * on-demand schedules for a sample of loans.
+ *
+ * Run with: java -cp out service.loan.LoanBenchmark [loans] [threads] [rounds]
+ */
+public final class LoanBenchmark {
+
+    private static final int SCHEDULE_SAMPLES = 10_000;
+
+    private LoanBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int loans = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        LocalDate today = LocalDate.now();
+        SplittableRandom random = new SplittableRandom(42);
+        long built = System.nanoTime();
+        LoanBook book = new LoanBook(loans);
+        for (int i = 0; i < loans; i++) {
+            long principal = 100_000 + random.nextLong(50_000_000);
+            int term = 12 * (1 + random.nextInt(30));
+            double rate = random.nextInt(1, 2000) / 100.0;
+            LocalDate start = today.minusDays(random.nextInt(term * 30));
+            book.add(String.format("LON%012d", i), principal, principal / 2 + random.nextLong(principal / 2),
+                    rate, term, start, 0, today.minusDays(1 + random.nextInt(3)));
+        }
+        System.out.printf("Loan benchmark: %,d loans, %d threads (portfolio built in %,d ms)%n",
+                loans, threads, (System.nanoTime() - built) / 1_000_000);
+
+        try (AmortizationEngine engine = new AmortizationEngine(threads)) {
+            LocalDate asOf = today;
+            for (int round = 1; round <= rounds; round++) {
+                asOf = asOf.plusDays(1);
+                long started = System.nanoTime();
+                AmortizationEngine.Accrual accrual = engine.accrue(book, asOf);
+                long accrued = System.nanoTime();
+                AmortizationEngine.CashFlowProjection projection = engine.project(book, asOf, 12);
+                long projected = System.nanoTime();
+                long interest = 0;
+                for (int i = 0; i < SCHEDULE_SAMPLES; i++) {
+                    interest += AmortizationEngine.schedule(book, random.nextInt(loans)).getTotalInterestCents();
+                }
+                long scheduled = System.nanoTime();
+
+                System.out.printf("Round %d: accrue %,d loans %,.1f ms (%,.2f interest), " +
+                                "project 12 months %,.1f ms (%,.2f due next month), " +
+                                "%,d schedules %,.1f ms (%,.2f total interest)%n",
+                        round, accrual.getLoansAccrued(), (accrued - started) / 1e6, accrual.getInterest(),
+                        (projected - accrued) / 1e6, projection.getPaymentCents(0) / 100.0,
+                        SCHEDULE_SAMPLES, (scheduled - projected) / 1e6, interest / 100.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package service.loan;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * A loan portfolio held column by column in primitive arrays, so that
+ * {@link AmortizationEngine} can run over a million loans in tight loops
+ * without touching an object per loan. Amounts are in cents, accrued
+ * interest in millionths of the currency unit, dates as epoch days and rates
+ * as annual fractions (0.065 for 6.5%).
+ *
+ * Filled by one thread with {@link #add}; afterwards the engine may update
+ * disjoint ranges from several threads.
+ */
+public class LoanBook {
+
+    private String[] accountNumbers;
+    private long[] principalCents;
+    private long[] outstandingCents;
+    private double[] annualRates;
+    private int[] termMonths;
+    private int[] startDays;
+    private int[] lastAccrualDays;
+    private long[] accruedMicros;
+    private long[] paymentCents;
+    private int size;
+
+    public LoanBook(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        accountNumbers = new String[capacity];
+        principalCents = new long[capacity];
+        outstandingCents = new long[capacity];
+        annualRates = new double[capacity];
+        termMonths = new int[capacity];
+        startDays = new int[capacity];
+        lastAccrualDays = new int[capacity];
+        accruedMicros = new long[capacity];
+        paymentCents = new long[capacity];
+    }
+
+    /**
+     * Add a loan; returns its index
+     * @param interestRate annual rate in percent, as stored on the account
+     */
+    public int add(String accountNumber, long principalCents, long outstandingCents, double interestRate,
+                   int termMonths, LocalDate startDate, long accruedMicros, LocalDate lastAccrualDate) {
+        if (size == accountNumbers.length) {
+            grow();
+        }
+        int i = size++;
+        this.accountNumbers[i] = accountNumber;
+        this.principalCents[i] = principalCents;
+        this.outstandingCents[i] = outstandingCents;
+        this.annualRates[i] = interestRate / 100.0;
+        this.termMonths[i] = termMonths;
+        this.startDays[i] = (int) startDate.toEpochDay();
+        this.lastAccrualDays[i] = (int) (lastAccrualDate != null ? lastAccrualDate : startDate).toEpochDay();
+        this.accruedMicros[i] = accruedMicros;
+        this.paymentCents[i] = AmortizationEngine.paymentCents(principalCents, this.annualRates[i] / 12, termMonths);
+        return i;
+    }
+
+    private void grow() {
+        int capacity = accountNumbers.length * 2;
+        accountNumbers = Arrays.copyOf(accountNumbers, capacity);
+        principalCents = Arrays.copyOf(principalCents, capacity);
+        outstandingCents = Arrays.copyOf(outstandingCents, capacity);
+        annualRates = Arrays.copyOf(annualRates, capacity);
+        termMonths = Arrays.copyOf(termMonths, capacity);
+        startDays = Arrays.copyOf(startDays, capacity);
+        lastAccrualDays = Arrays.copyOf(lastAccrualDays, capacity);
+        accruedMicros = Arrays.copyOf(accruedMicros, capacity);
+        paymentCents = Arrays.copyOf(paymentCents, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getAccountNumber(int loan) { return accountNumbers[loan]; }
+    public long getPrincipalCents(int loan) { return principalCents[loan]; }
+    public long getOutstandingCents(int loan) { return outstandingCents[loan]; }
+    public double getAnnualRate(int loan) { return annualRates[loan]; }
+    public int getTermMonths(int loan) { return termMonths[loan]; }
+    public LocalDate getStartDate(int loan) { return LocalDate.ofEpochDay(startDays[loan]); }
+    public LocalDate getLastAccrualDate(int loan) { return LocalDate.ofEpochDay(lastAccrualDays[loan]); }
+    public long getAccruedMicros(int loan) { return accruedMicros[loan]; }
+    public long getPaymentCents(int loan) { return paymentCents[loan]; }
+
+    // Column access for the engine and the accrual job; callers must stay below size()
+    String[] accountNumbers() { return accountNumbers; }
+    long[] principalCents() { return principalCents; }
+    long[] outstandingCents() { return outstandingCents; }
+    double[] annualRates() { return annualRates; }
+    int[] termMonths() { return termMonths; }
+    int[] startDays() { return startDays; }
+    int[] lastAccrualDays() { return lastAccrualDays; }
+    long[] accruedMicros() { return accruedMicros; }
+    long[] paymentCents() { return paymentCents; }
+}
@@ -0,0 +1,69 @@
+package service.outbox;
+
+import model.banking.OutboxEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends events to a file as JSON lines, forcing each batch to disk before
+ * it counts as delivered. After a crash the file may hold the last batch
+ * twice.
+ */
+public class FileSink implements OutboxSink {
+
+    private final Path file;
+    private FileChannel channel;
+
+    public FileSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public String getName() {
+        return "file:" + file;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) throws IOException {
+        if (channel == null) {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        StringBuilder lines = new StringBuilder(events.size() * 192);
+        for (OutboxEvent event : events) {
+            lines.append(event.toJson()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing outbox file: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package service.outbox;
+
+import model.banking.OutboxEvent;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Delivers events to listeners in this process (caches, dashboards,
+ * notifications), on the relay thread. A listener that throws is logged and
+ * skipped; it does not hold up the outbox for everyone else.
+ */
+public class ListenerSink implements OutboxSink {
+
+    private final List<Consumer<OutboxEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder errors = new LongAdder();
+
+    public void addListener(Consumer<OutboxEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<OutboxEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public String getName() {
+        return "listeners";
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for (Consumer<OutboxEvent> listener : listeners) {
+            for (OutboxEvent event : events) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    errors.increment();
+                    System.err.println("Outbox listener failed on " + event + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
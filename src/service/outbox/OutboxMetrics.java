@@ -0,0 +1,60 @@
+package service.outbox;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the outbox relay: events and batches delivered, failed
+ * deliveries (batches that will be delivered again) and lag, i.e. how long
+ * the oldest event of a batch waited in the outbox after it was written
+ */
+public class OutboxMetrics {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+    private volatile long lastLagMillis;
+
+    public void recordBatch(int size, long lagMillis) {
+        batches.increment();
+        delivered.add(size);
+        lastLagMillis = lagMillis;
+        maxLagMillis.accumulate(lagMillis);
+    }
+
+    public void recordFailure() { failures.increment(); }
+
+    public long getDelivered() { return delivered.sum(); }
+    public long getBatches() { return batches.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public long getLastLagMillis() { return lastLagMillis; }
+    public long getMaxLagMillis() { return maxLagMillis.get(); }
+
+    public double getAverageBatchSize() {
+        long count = getBatches();
+        return count == 0 ? 0.0 : (double) getDelivered() / count;
+    }
+
+    /**
+     * Events delivered per second since the relay started
+     */
+    public double getThroughputPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0.0 : getDelivered() / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxMetrics{" +
+                "delivered=" + getDelivered() +
+                ", batches=" + getBatches() +
+                ", averageBatchSize=" + String.format("%.1f", getAverageBatchSize()) +
+                ", failures=" + getFailures() +
+                ", throughput=" + String.format("%.0f/s", getThroughputPerSecond()) +
+                ", lastLagMillis=" + getLastLagMillis() +
+                ", maxLagMillis=" + getMaxLagMillis() +
+                '}';
+    }
+}
@@ -0,0 +1,209 @@
+package service.outbox;
+
+import dao.OutboxDAO;
+import model.banking.OutboxEvent;
+import org.postgresql.PGConnection;
+import util.DatabaseConfig;
+import util.Settings;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers the transactional outbox to subscribers so they need not poll
+ * bank_accounts.
+ *
+ * Every posting writes its balance change events to outbox_events in the
+ * same database transaction (see {@link dao.OutboxDAO#append}). The relay
+ * claims the oldest events a batch at a time, hands them to every sink and
+ * deletes them in that same transaction, so each event is delivered at least
+ * once and, per account, in the order it was committed. It wakes up on
+ * LISTEN outbox_events (fired by a trigger on insert) and polls every
+ * outbox.relay.poll_millis in case a notification was missed.
+ *
+ * Any number of processes may run the relay; each partition of the outbox
+ * is claimed by one of them at a time. In-process listeners only see the
+ * events this process relays, so consumers in other processes should use
+ * the file or socket sink of the process that relays.
+ */
+public class OutboxRelay {
+
+    private static final OutboxRelay INSTANCE = new OutboxRelay();
+
+    private static final String NOTIFY_CHANNEL = "outbox_events";
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_POLL_MILLIS = 1000;
+    private static final long RETRY_DELAY_MILLIS = 2000;
+
+    private final OutboxDAO outboxDAO = new OutboxDAO();
+    private final ListenerSink listenerSink = new ListenerSink();
+    private final List<OutboxSink> sinks = new CopyOnWriteArrayList<>(List.of(listenerSink));
+    private final OutboxMetrics metrics = new OutboxMetrics();
+    // Sinks created from the settings by start(), dropped again by stop()
+    private final List<OutboxSink> configuredSinks = new CopyOnWriteArrayList<>();
+
+    private Thread relay;
+    private volatile boolean running = false;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile long pollMillis = DEFAULT_POLL_MILLIS;
+
+    private OutboxRelay() {
+    }
+
+    /**
+     * Get the shared relay
+     */
+    public static OutboxRelay getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Receive every event this process relays, on the relay thread
+     */
+    public void addListener(Consumer<OutboxEvent> listener) {
+        listenerSink.addListener(listener);
+    }
+
+    public void removeListener(Consumer<OutboxEvent> listener) {
+        listenerSink.removeListener(listener);
+    }
+
+    /**
+     * Deliver to another sink as well, e.g. a message broker client
+     */
+    public void addSink(OutboxSink sink) {
+        sinks.add(sink);
+    }
+
+    public OutboxMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getListenerErrors() {
+        return listenerSink.getErrors();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start relaying in the background unless outbox.relay.enabled is false,
+     * adding the file and socket sinks named in the settings
+     */
+    public synchronized void start(Settings settings) {
+        if (running || !settings.getBoolean("outbox.relay.enabled", true)) {
+            return;
+        }
+        batchSize = Math.max(1, settings.getInt("outbox.relay.batch_size", DEFAULT_BATCH_SIZE));
+        pollMillis = Math.max(10, settings.getLong("outbox.relay.poll_millis", DEFAULT_POLL_MILLIS));
+        String file = settings.get("outbox.file", "").trim();
+        if (!file.isEmpty()) {
+            configuredSinks.add(new FileSink(Paths.get(file)));
+        }
+        String socket = settings.get("outbox.socket", "").trim();
+        if (!socket.isEmpty()) {
+            configuredSinks.add(new SocketSink(socket));
+        }
+        sinks.addAll(configuredSinks);
+
+        running = true;
+        relay = new Thread(this::run, "outbox-relay");
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    /**
+     * Stop relaying; a batch being delivered is finished or rolled back
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        relay.interrupt();
+        for (OutboxSink sink : sinks) {
+            sink.close();
+        }
+        sinks.removeAll(configuredSinks);
+        configuredSinks.clear();
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection listener = DatabaseConfig.openConnection(true);
+                 Connection conn = DatabaseConfig.openConnection(false)) {
+                try (Statement stmt = listener.createStatement()) {
+                    stmt.execute("LISTEN " + NOTIFY_CHANNEL);
+                }
+                PGConnection pgConnection = listener.unwrap(PGConnection.class);
+
+                while (running) {
+                    // A full batch means more are waiting; otherwise wait for the next insert
+                    if (relayBatch(conn) < batchSize) {
+                        pgConnection.getNotifications((int) pollMillis);
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    System.err.println("Outbox relay disconnected: " + e.getMessage());
+                    sleep(RETRY_DELAY_MILLIS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver one batch; returns how many events it held
+     */
+    int relayBatch(Connection conn) throws SQLException {
+        OutboxDAO.ClaimedBatch batch;
+        try {
+            batch = outboxDAO.claim(conn, batchSize);
+            if (batch.getEvents().isEmpty()) {
+                conn.commit();
+                return 0;
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+
+        List<OutboxEvent> events = batch.getEvents();
+        for (OutboxSink sink : sinks) {
+            try {
+                sink.publish(events);
+            } catch (IOException | RuntimeException e) {
+                // Leave the batch in the outbox; every sink gets it again
+                conn.rollback();
+                metrics.recordFailure();
+                System.err.println("Outbox sink " + sink.getName() + " failed, retrying: " + e.getMessage());
+                sleep(RETRY_DELAY_MILLIS);
+                return 0;
+            }
+        }
+
+        try {
+            outboxDAO.delete(conn, events);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+        metrics.recordBatch(events.size(), batch.getOldestAgeMillis());
+        return events.size();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package service.outbox;
+
+import model.banking.OutboxEvent;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination the outbox relay delivers events to.
+ *
+ * A batch is removed from the outbox only after every sink has accepted it,
+ * so a sink must not return before the batch is as durable as it promises
+ * to be; throwing makes the relay deliver the same batch again later. Events
+ * may therefore arrive more than once (compare ids), but events of one
+ * account always arrive in order.
+ */
+public interface OutboxSink {
+
+    String getName();
+
+    void publish(List<OutboxEvent> events) throws IOException;
+
+    default void close() {
+    }
+}
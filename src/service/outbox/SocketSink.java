@@ -0,0 +1,83 @@
+package service.outbox;
+
+import model.banking.OutboxEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Streams events as JSON lines to a local consumer listening on a Unix
+ * domain socket ("unix:/path/to.sock") or TCP ("host:port"). The connection
+ * is opened on first use and re-opened after a failure; a batch counts as
+ * delivered once it is written to the socket.
+ */
+public class SocketSink implements OutboxSink {
+
+    private final String target;
+    private final SocketAddress address;
+    private SocketChannel channel;
+
+    public SocketSink(String target) {
+        this.target = target;
+        if (target.startsWith("unix:")) {
+            this.address = UnixDomainSocketAddress.of(target.substring("unix:".length()));
+        } else {
+            int colon = target.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Outbox socket must be unix:/path or host:port, got " + target);
+            }
+            this.address = new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "socket:" + target;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) throws IOException {
+        if (channel == null) {
+            channel = address instanceof UnixDomainSocketAddress
+                    ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                    : SocketChannel.open();
+            try {
+                channel.connect(address);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+        StringBuilder lines = new StringBuilder(events.size() * 192);
+        for (OutboxEvent event : events) {
+            lines.append(event.toJson()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing outbox socket: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package service.risk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Debit activity of one source account: a sliding window per
+ * {@link RiskWindow}, the beneficiaries it has paid before and how many new
+ * beneficiaries it added in the last hour. All access is synchronised on the
+ * instance, which is uncontended unless the same account is debited from
+ * several threads at once.
+ */
+final class AccountActivity {
+
+    // Known beneficiaries kept per account, least recently paid evicted first
+    private static final int MAX_BENEFICIARIES = 512;
+
+    private final SlidingWindow[] windows = new SlidingWindow[RiskWindow.values().length];
+    private final SlidingWindow newBeneficiaries = new SlidingWindow(RiskWindow.HOUR);
+    private final Map<String, Boolean> beneficiaries = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_BENEFICIARIES;
+        }
+    };
+
+    private long lastActivityMillis;
+
+    AccountActivity() {
+        for (RiskWindow window : RiskWindow.values()) {
+            windows[window.ordinal()] = new SlidingWindow(window);
+        }
+    }
+
+    /**
+     * Context for a prospective debit, with the debit itself included in the
+     * window totals
+     */
+    RiskContext context(long nowMillis, String accountNumber, String beneficiary, long amountCents,
+                        boolean hotAccount) {
+        long[] counts = new long[windows.length];
+        long[] amounts = new long[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            counts[i] = windows[i].count(nowMillis) + 1;
+            amounts[i] = windows[i].amountCents(nowMillis) + amountCents;
+        }
+        boolean newBeneficiary = beneficiary != null && !beneficiaries.containsKey(beneficiary);
+        long newBeneficiaryCount = newBeneficiaries.count(nowMillis) + (newBeneficiary ? 1 : 0);
+        return new RiskContext(accountNumber, beneficiary, amountCents, counts, amounts, newBeneficiary,
+                newBeneficiaryCount, hotAccount);
+    }
+
+    void addDebit(long timeMillis, long amountCents) {
+        lastActivityMillis = Math.max(lastActivityMillis, timeMillis);
+        for (SlidingWindow window : windows) {
+            window.add(timeMillis, 1, amountCents);
+        }
+    }
+
+    void removeDebit(long timeMillis, long amountCents) {
+        for (SlidingWindow window : windows) {
+            window.add(timeMillis, -1, -amountCents);
+        }
+    }
+
+    void addBeneficiary(long timeMillis, String beneficiary, boolean countAsNew) {
+        lastActivityMillis = Math.max(lastActivityMillis, timeMillis);
+        if (beneficiaries.put(beneficiary, Boolean.TRUE) == null && countAsNew) {
+            newBeneficiaries.add(timeMillis, 1, 0);
+        }
+    }
+
+    long lastActivityMillis() {
+        return lastActivityMillis;
+    }
+}
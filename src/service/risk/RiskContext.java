@@ -0,0 +1,37 @@
+package service.risk;
+
+/**
+ * What the rules see for one prospective debit. Window totals already include
+ * the debit being assessed.
+ */
+public final class RiskContext {
+    private final String accountNumber;
+    private final String beneficiary;
+    private final long amountCents;
+    private final long[] counts;
+    private final long[] amountsCents;
+    private final boolean newBeneficiary;
+    private final long newBeneficiariesLastHour;
+    private final boolean hotAccount;
+
+    RiskContext(String accountNumber, String beneficiary, long amountCents, long[] counts, long[] amountsCents,
+                boolean newBeneficiary, long newBeneficiariesLastHour, boolean hotAccount) {
+        this.accountNumber = accountNumber;
+        this.beneficiary = beneficiary;
+        this.amountCents = amountCents;
+        this.counts = counts;
+        this.amountsCents = amountsCents;
+        this.newBeneficiary = newBeneficiary;
+        this.newBeneficiariesLastHour = newBeneficiariesLastHour;
+        this.hotAccount = hotAccount;
+    }
+
+    public String getAccountNumber() { return accountNumber; }
+    public String getBeneficiary() { return beneficiary; }
+    public long getAmountCents() { return amountCents; }
+    public long getCount(RiskWindow window) { return counts[window.ordinal()]; }
+    public long getAmountCents(RiskWindow window) { return amountsCents[window.ordinal()]; }
+    public boolean isNewBeneficiary() { return newBeneficiary; }
+    public long getNewBeneficiariesLastHour() { return newBeneficiariesLastHour; }
+    public boolean isHotAccount() { return hotAccount; }
+}
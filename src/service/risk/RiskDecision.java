@@ -0,0 +1,57 @@
+package service.risk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of assessing one debit, and the reservation it holds in the
+ * account's windows until the debit commits or is abandoned
+ */
+public final class RiskDecision {
+
+    public enum Action {
+        ALLOW,
+        REVIEW,
+        BLOCK
+    }
+
+    static final RiskDecision NOT_ASSESSED = new RiskDecision(Action.ALLOW, Collections.emptyList(), null, null, 0, 0);
+
+    private final Action action;
+    private final List<String> hitRules;
+    private final String accountNumber;
+    private final String beneficiary;
+    private final long amountCents;
+    private final long timeMillis;
+
+    RiskDecision(Action action, List<String> hitRules, String accountNumber, String beneficiary, long amountCents,
+                 long timeMillis) {
+        this.action = action;
+        this.hitRules = hitRules;
+        this.accountNumber = accountNumber;
+        this.beneficiary = beneficiary;
+        this.amountCents = amountCents;
+        this.timeMillis = timeMillis;
+    }
+
+    public Action getAction() { return action; }
+    public List<String> getHitRules() { return hitRules; }
+    public boolean isBlocked() { return action == Action.BLOCK; }
+
+    String getAccountNumber() { return accountNumber; }
+    String getBeneficiary() { return beneficiary; }
+    long getAmountCents() { return amountCents; }
+    long getTimeMillis() { return timeMillis; }
+
+    /**
+     * Whether this decision reserved the debit in an account's windows
+     */
+    boolean isReserved() {
+        return accountNumber != null && action != Action.BLOCK;
+    }
+
+    @Override
+    public String toString() {
+        return action + (hitRules.isEmpty() ? "" : " " + hitRules);
+    }
+}
@@ -0,0 +1,272 @@
+package service.risk;
+
+import dao.TransactionDAO;
+import service.HotAccounts;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * In-process streaming risk checks for withdrawals and transfers.
+ *
+ * Keeps per-account sliding-window aggregates (debit count and amount over
+ * 1 min, 1 h and 24 h) and the set of beneficiaries each account has paid,
+ * and evaluates a list of {@link RiskRule}s against them. An assessment is a
+ * map lookup, one uncontended lock and a few hundred array reads, so it runs
+ * in microseconds and never touches the database.
+ *
+ * {@link #assess} reserves the debit in the account's windows so concurrent
+ * debits see each other; {@link #complete} confirms the reservation once the
+ * debit committed or takes it back otherwise.
+ *
+ * Thresholds are read from system_settings keys risk_&lt;rule name&gt; (e.g.
+ * risk_velocity_count_1m = "5 BLOCK"; "off" drops the rule); rules without a
+ * setting keep their defaults. Hot accounts are exempt from the velocity rules.
+ */
+public final class RiskEngine {
+
+    private static final RiskEngine INSTANCE = new RiskEngine(defaultRules(), HotAccounts.getInstance()::isHot);
+
+    // How far back warm-up looks for beneficiaries an account already paid
+    private static final long BENEFICIARY_LOOKBACK_MILLIS = TimeUnit.DAYS.toMillis(90);
+    // Accounts without debits for as long as warm-up looks back are dropped from memory
+    private static final long IDLE_EVICTION_MILLIS = BENEFICIARY_LOOKBACK_MILLIS;
+    private static final long EVICTION_INTERVAL = 100_000;
+
+    private final Map<String, AccountActivity> activities = new ConcurrentHashMap<>();
+    private final RiskMetrics metrics = new RiskMetrics();
+    private final AtomicLong assessments = new AtomicLong();
+    private final Predicate<String> hotAccounts;
+    private volatile List<RiskRule> rules;
+
+    public RiskEngine(List<RiskRule> rules) {
+        this(rules, accountNumber -> false);
+    }
+
+    /**
+     * @param hotAccounts whether an account is in hot-account mode
+     */
+    public RiskEngine(List<RiskRule> rules, Predicate<String> hotAccounts) {
+        this.hotAccounts = hotAccounts;
+        setRules(rules);
+    }
+
+    /**
+     * Get the shared engine instance
+     */
+    public static RiskEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Rules used by the shared engine unless settings override them
+     */
+    public static List<RiskRule> defaultRules() {
+        return Arrays.asList(
+                RiskRule.maxCount(RiskWindow.MINUTE, 5, RiskDecision.Action.BLOCK),
+                RiskRule.maxCount(RiskWindow.HOUR, 30, RiskDecision.Action.REVIEW),
+                RiskRule.maxAmount(RiskWindow.HOUR, 10_000, RiskDecision.Action.REVIEW),
+                RiskRule.maxAmount(RiskWindow.DAY, 50_000, RiskDecision.Action.BLOCK),
+                RiskRule.newBeneficiaryAmount(5_000, RiskDecision.Action.REVIEW),
+                RiskRule.maxNewBeneficiaries(3, RiskDecision.Action.BLOCK));
+    }
+
+    /**
+     * Setting key overriding a rule, e.g. risk_velocity_count_1m
+     */
+    public static String settingKey(String ruleName) {
+        return "risk_" + ruleName.replace('-', '_').toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The default rules with system settings applied. A setting is a
+     * threshold and an action ("10000 REVIEW"), or "off" to drop the rule;
+     * an invalid one is reported and the default kept.
+     */
+    public static List<RiskRule> rulesFromSettings(Map<String, String> settings) {
+        Map<String, RiskRule> rules = new LinkedHashMap<>();
+        for (RiskRule rule : defaultRules()) {
+            rules.put(rule.getName(), rule);
+        }
+        for (RiskWindow window : RiskWindow.values()) {
+            override(rules, settings, "velocity-count-" + window.getLabel(),
+                    (limit, action) -> RiskRule.maxCount(window, Math.round(limit), action));
+            override(rules, settings, "velocity-amount-" + window.getLabel(),
+                    (limit, action) -> RiskRule.maxAmount(window, limit, action));
+        }
+        override(rules, settings, "new-beneficiary-amount", RiskRule::newBeneficiaryAmount);
+        override(rules, settings, "new-beneficiary-burst",
+                (limit, action) -> RiskRule.maxNewBeneficiaries(Math.round(limit), action));
+        return new ArrayList<>(rules.values());
+    }
+
+    private static void override(Map<String, RiskRule> rules, Map<String, String> settings, String name,
+                                 BiFunction<Double, RiskDecision.Action, RiskRule> factory) {
+        String value = settings.get(settingKey(name));
+        if (value == null) {
+            return;
+        }
+        String[] parts = value.trim().split("\\s+");
+        if (parts.length == 1 && parts[0].equalsIgnoreCase("off")) {
+            rules.remove(name);
+            return;
+        }
+        try {
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("expected a threshold and an action");
+            }
+            RiskRule rule = factory.apply(Double.parseDouble(parts[0]),
+                    RiskDecision.Action.valueOf(parts[1].toUpperCase(Locale.ROOT)));
+            rules.put(name, rule);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring invalid risk rule " + settingKey(name) + "=" + value);
+        }
+    }
+
+    /**
+     * Apply rule thresholds from system settings
+     */
+    public void configure(Map<String, String> settings) {
+        setRules(rulesFromSettings(settings));
+    }
+
+    /**
+     * Replace the rule set; assessments in flight keep the previous one
+     */
+    public void setRules(List<RiskRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    public List<RiskRule> getRules() {
+        return rules;
+    }
+
+    public RiskMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Assess a debit from an account, optionally to a beneficiary account.
+     * Unless blocked, the debit is reserved until {@link #complete} is called.
+     */
+    public RiskDecision assess(String accountNumber, String beneficiary, double amount) {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        long amountCents = Math.round(amount * 100);
+        List<RiskRule> activeRules = rules;
+
+        AccountActivity activity = activities.computeIfAbsent(accountNumber, k -> new AccountActivity());
+        RiskDecision decision;
+        synchronized (activity) {
+            RiskContext context = activity.context(now, accountNumber, beneficiary, amountCents,
+                    hotAccounts.test(accountNumber));
+            RiskDecision.Action action = RiskDecision.Action.ALLOW;
+            List<String> hits = Collections.emptyList();
+            for (RiskRule rule : activeRules) {
+                if (rule.matches(context)) {
+                    if (hits.isEmpty()) {
+                        hits = new ArrayList<>(2);
+                    }
+                    hits.add(rule.getName());
+                    if (rule.getAction().compareTo(action) > 0) {
+                        action = rule.getAction();
+                    }
+                }
+            }
+            decision = new RiskDecision(action, hits, accountNumber, beneficiary, amountCents, now);
+            if (decision.isReserved()) {
+                activity.addDebit(now, amountCents);
+            }
+        }
+
+        metrics.record(decision, System.nanoTime() - start);
+        if (assessments.incrementAndGet() % EVICTION_INTERVAL == 0) {
+            evictIdle(now);
+        }
+        return decision;
+    }
+
+    /**
+     * Decision for requests that are not debits (e.g. deposits)
+     */
+    public static RiskDecision notAssessed() {
+        return RiskDecision.NOT_ASSESSED;
+    }
+
+    /**
+     * Confirm a reserved debit once it committed, or release it otherwise
+     */
+    public void complete(RiskDecision decision, boolean committed) {
+        if (!decision.isReserved()) {
+            return;
+        }
+        AccountActivity activity = activities.get(decision.getAccountNumber());
+        if (activity == null) {
+            return;
+        }
+        synchronized (activity) {
+            if (!committed) {
+                activity.removeDebit(decision.getTimeMillis(), decision.getAmountCents());
+            } else if (decision.getBeneficiary() != null) {
+                activity.addBeneficiary(decision.getTimeMillis(), decision.getBeneficiary(), true);
+            }
+        }
+    }
+
+    /**
+     * Rebuild the windows and known beneficiaries from committed history,
+     * so a restart does not reset every account's limits
+     */
+    public void warmUp(TransactionDAO transactionDAO) {
+        long now = System.currentTimeMillis();
+        long windowStart = now - RiskWindow.DAY.getMillis();
+        transactionDAO.loadDebitsSince(new Timestamp(now - BENEFICIARY_LOOKBACK_MILLIS),
+                (from, to, amount, date) -> {
+                    long time = date.getTime();
+                    AccountActivity activity = activities.computeIfAbsent(from, k -> new AccountActivity());
+                    synchronized (activity) {
+                        if (time >= windowStart) {
+                            activity.addDebit(time, Math.round(amount * 100));
+                        }
+                        if (to != null) {
+                            // History only establishes known beneficiaries, it does not count as new ones
+                            activity.addBeneficiary(time, to, false);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Warm up on a background thread
+     */
+    public void warmUpAsync(TransactionDAO transactionDAO) {
+        Thread loader = new Thread(() -> warmUp(transactionDAO), "risk-engine-warm-up");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Number of accounts with activity held in memory
+     */
+    public int getTrackedAccounts() {
+        return activities.size();
+    }
+
+    private void evictIdle(long now) {
+        activities.entrySet().removeIf(entry -> {
+            synchronized (entry.getValue()) {
+                return now - entry.getValue().lastActivityMillis() > IDLE_EVICTION_MILLIS;
+            }
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package service.risk;
+
+import static util.Assert.check;
+import static util.Assert.checkEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the risk engine's sliding windows and velocity rules
+ */
+public class RiskEngineTest {
+
+    public static void main(String[] args) {
+        System.out.println("🧪 Testing RiskEngine...");
+        testWindowSlides();
+        testWindowBucketWrapsAround();
+        testTakeBack();
+        testVelocityRuleAndRelease();
+        testHotAccountsExempt();
+        testNewBeneficiaries();
+        System.out.println("✅ RiskEngine tests passed");
+    }
+
+    /**
+     * The minute window is 60 one-second buckets; an event counts until its
+     * bucket is 60 buckets old
+     */
+    private static void testWindowSlides() {
+        SlidingWindow window = new SlidingWindow(RiskWindow.MINUTE);
+        window.add(0, 1, 100);
+        window.add(999, 1, 200);
+        window.add(30_000, 1, 400);
+        checkEquals(3, window.count(30_000), "count inside the window");
+        checkEquals(700, window.amountCents(30_000), "amount inside the window");
+        checkEquals(3, window.count(59_999), "first bucket is still in the window");
+        checkEquals(1, window.count(60_000), "first bucket has slid out");
+        checkEquals(400, window.amountCents(60_000), "amount after sliding");
+        checkEquals(0, window.count(90_000), "everything has slid out");
+    }
+
+    /**
+     * A bucket is reused when the clock comes back to its slot; events for
+     * the time it used to hold are then ignored
+     */
+    private static void testWindowBucketWrapsAround() {
+        SlidingWindow window = new SlidingWindow(RiskWindow.MINUTE);
+        window.add(1_500, 1, 100);
+        // Same slot, one full ring later
+        window.add(61_500, 2, 300);
+        checkEquals(2, window.count(61_500), "old bucket was reset");
+        checkEquals(300, window.amountCents(61_500), "old amount was reset");
+        window.add(1_700, 1, 100);
+        checkEquals(2, window.count(61_500), "late event for the overwritten bucket ignored");
+    }
+
+    private static void testTakeBack() {
+        SlidingWindow window = new SlidingWindow(RiskWindow.HOUR);
+        window.add(10_000, 1, 500);
+        window.add(10_000, -1, -500);
+        checkEquals(0, window.count(10_000), "count after take-back");
+        checkEquals(0, window.amountCents(10_000), "amount after take-back");
+        // Taking back from a bucket that has since been reused does nothing
+        window.add(10_000, 1, 500);
+        window.add(RiskWindow.HOUR.getMillis() + 10_000, 1, 700);
+        window.add(10_000, -1, -500);
+        checkEquals(1, window.count(RiskWindow.HOUR.getMillis() + 10_000), "stale take-back ignored");
+    }
+
+    private static void testVelocityRuleAndRelease() {
+        RiskEngine engine = new RiskEngine(List.of(RiskRule.maxCount(RiskWindow.MINUTE, 2, RiskDecision.Action.BLOCK)));
+        RiskDecision first = engine.assess("SAV1", null, 10);
+        RiskDecision second = engine.assess("SAV1", null, 10);
+        RiskDecision third = engine.assess("SAV1", null, 10);
+        checkEquals(RiskDecision.Action.ALLOW, first.getAction(), "first debit");
+        checkEquals(RiskDecision.Action.ALLOW, second.getAction(), "second debit");
+        checkEquals(RiskDecision.Action.BLOCK, third.getAction(), "third debit within a minute");
+        checkEquals(List.of("velocity-count-1m"), third.getHitRules(), "rule hit");
+        checkEquals(RiskDecision.Action.ALLOW, engine.assess("CUR1", null, 10).getAction(), "other accounts unaffected");
+
+        // A debit that did not commit gives its place in the window back
+        engine.complete(second, false);
+        RiskDecision retry = engine.assess("SAV1", null, 10);
+        checkEquals(RiskDecision.Action.ALLOW, retry.getAction(), "debit after a release");
+        // A blocked debit reserved nothing, so completing it changes nothing
+        engine.complete(third, false);
+        checkEquals(RiskDecision.Action.BLOCK, engine.assess("SAV1", null, 10).getAction(), "blocked debit held no place");
+    }
+
+    private static void testHotAccountsExempt() {
+        RiskEngine engine = new RiskEngine(List.of(RiskRule.maxCount(RiskWindow.MINUTE, 1, RiskDecision.Action.BLOCK)),
+                "FEE1"::equals);
+        for (int i = 0; i < 10; i++) {
+            checkEquals(RiskDecision.Action.ALLOW, engine.assess("FEE1", null, 10).getAction(), "hot account debit " + i);
+        }
+    }
+
+    private static void testNewBeneficiaries() {
+        RiskEngine engine = new RiskEngine(Arrays.asList(
+                RiskRule.newBeneficiaryAmount(100, RiskDecision.Action.REVIEW),
+                RiskRule.maxNewBeneficiaries(1, RiskDecision.Action.BLOCK)));
+        RiskDecision large = engine.assess("SAV1", "CUR1", 500);
+        checkEquals(RiskDecision.Action.REVIEW, large.getAction(), "large payment to a new beneficiary");
+        engine.complete(large, true);
+        checkEquals(RiskDecision.Action.ALLOW, engine.assess("SAV1", "CUR1", 500).getAction(),
+                "beneficiary is known once a payment committed");
+        // CUR1 counted as new in the last hour, so a second new one exceeds 1
+        RiskDecision burst = engine.assess("SAV1", "CUR2", 10);
+        checkEquals(RiskDecision.Action.BLOCK, burst.getAction(), "second new beneficiary within the hour");
+        check(burst.isBlocked(), "isBlocked");
+    }
+}
@@ -0,0 +1,76 @@
+package service.risk;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the risk engine: decisions by action, hits per rule and
+ * assessment latency
+ */
+public class RiskMetrics {
+
+    private final LongAdder[] decisions = new LongAdder[RiskDecision.Action.values().length];
+    private final Map<String, LongAdder> ruleHits = new ConcurrentHashMap<>();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public RiskMetrics() {
+        for (int i = 0; i < decisions.length; i++) {
+            decisions[i] = new LongAdder();
+        }
+    }
+
+    void record(RiskDecision decision, long elapsedNanos) {
+        decisions[decision.getAction().ordinal()].increment();
+        for (String rule : decision.getHitRules()) {
+            ruleHits.computeIfAbsent(rule, k -> new LongAdder()).increment();
+        }
+        totalNanos.add(elapsedNanos);
+        maxNanos.accumulate(elapsedNanos);
+    }
+
+    public long getDecisions(RiskDecision.Action action) {
+        return decisions[action.ordinal()].sum();
+    }
+
+    public long getAssessments() {
+        long total = 0;
+        for (LongAdder adder : decisions) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Hits per rule name, sorted by name
+     */
+    public Map<String, Long> getRuleHits() {
+        Map<String, Long> hits = new TreeMap<>();
+        ruleHits.forEach((rule, count) -> hits.put(rule, count.sum()));
+        return hits;
+    }
+
+    public double getAverageMicros() {
+        long total = getAssessments();
+        return total == 0 ? 0.0 : totalNanos.sum() / 1000.0 / total;
+    }
+
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "RiskMetrics{" +
+                "allow=" + getDecisions(RiskDecision.Action.ALLOW) +
+                ", review=" + getDecisions(RiskDecision.Action.REVIEW) +
+                ", block=" + getDecisions(RiskDecision.Action.BLOCK) +
+                ", ruleHits=" + getRuleHits() +
+                ", avgMicros=" + String.format("%.2f", getAverageMicros()) +
+                ", maxMicros=" + String.format("%.2f", getMaxMicros()) +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+package service.risk;
+
+import java.util.function.Predicate;
+
+/**
+ * A named condition on a {@link RiskContext} and the action taken when it matches
+ */
+public final class RiskRule {
+
+    private final String name;
+    private final RiskDecision.Action action;
+    private final Predicate<RiskContext> condition;
+
+    public RiskRule(String name, RiskDecision.Action action, Predicate<RiskContext> condition) {
+        this.name = name;
+        this.action = action;
+        this.condition = condition;
+    }
+
+    /**
+     * More than maxCount debits within the window. Hot accounts are exempt:
+     * settlement accounts debit all day long by design.
+     */
+    public static RiskRule maxCount(RiskWindow window, long maxCount, RiskDecision.Action action) {
+        return new RiskRule("velocity-count-" + window.getLabel(), action,
+                ctx -> !ctx.isHotAccount() && ctx.getCount(window) > maxCount);
+    }
+
+    /**
+     * More than maxAmount debited within the window; hot accounts are exempt
+     */
+    public static RiskRule maxAmount(RiskWindow window, double maxAmount, RiskDecision.Action action) {
+        long maxCents = Math.round(maxAmount * 100);
+        return new RiskRule("velocity-amount-" + window.getLabel(), action,
+                ctx -> !ctx.isHotAccount() && ctx.getAmountCents(window) > maxCents);
+    }
+
+    /**
+     * A payment to a beneficiary not paid before that exceeds maxAmount
+     */
+    public static RiskRule newBeneficiaryAmount(double maxAmount, RiskDecision.Action action) {
+        long maxCents = Math.round(maxAmount * 100);
+        return new RiskRule("new-beneficiary-amount", action,
+                ctx -> ctx.isNewBeneficiary() && ctx.getAmountCents() > maxCents);
+    }
+
+    /**
+     * More than maxNew first-time beneficiaries within the last hour
+     */
+    public static RiskRule maxNewBeneficiaries(long maxNew, RiskDecision.Action action) {
+        return new RiskRule("new-beneficiary-burst", action,
+                ctx -> ctx.isNewBeneficiary() && ctx.getNewBeneficiariesLastHour() > maxNew);
+    }
+
+    public String getName() { return name; }
+    public RiskDecision.Action getAction() { return action; }
+
+    public boolean matches(RiskContext context) {
+        return condition.test(context);
+    }
+}
@@ -0,0 +1,26 @@
+package service.risk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding windows tracked per account, each split into fixed time buckets
+ */
+public enum RiskWindow {
+    MINUTE("1m", TimeUnit.MINUTES.toMillis(1), 60),
+    HOUR("1h", TimeUnit.HOURS.toMillis(1), 60),
+    DAY("24h", TimeUnit.DAYS.toMillis(1), 96);
+
+    private final String label;
+    private final long millis;
+    private final int buckets;
+
+    RiskWindow(String label, long millis, int buckets) {
+        this.label = label;
+        this.millis = millis;
+        this.buckets = buckets;
+    }
+
+    public String getLabel() { return label; }
+    public long getMillis() { return millis; }
+    public int getBuckets() { return buckets; }
+}
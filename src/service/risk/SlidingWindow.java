@@ -0,0 +1,68 @@
+package service.risk;
+
+/**
+ * Time-bucketed count and amount over a sliding window.
+ *
+ * The window is a ring of buckets; a bucket is reset lazily when the clock
+ * reaches it again, so adding is O(1) and reading sums a fixed number of
+ * buckets. The window slides one bucket at a time (1s for the minute window,
+ * 1min for the hour, 15min for the day). Not thread-safe; callers lock the
+ * owning {@link AccountActivity}.
+ */
+final class SlidingWindow {
+
+    private final long bucketMillis;
+    private final long[] epochs;
+    private final long[] counts;
+    private final long[] amountCents;
+
+    SlidingWindow(RiskWindow window) {
+        this.bucketMillis = window.getMillis() / window.getBuckets();
+        this.epochs = new long[window.getBuckets()];
+        this.counts = new long[window.getBuckets()];
+        this.amountCents = new long[window.getBuckets()];
+    }
+
+    /**
+     * Add (or with negative values, take back) an event at the given time.
+     * Events older than the bucket currently in their slot are ignored.
+     */
+    void add(long timeMillis, long count, long cents) {
+        long epoch = timeMillis / bucketMillis;
+        int slot = (int) (epoch % epochs.length);
+        if (epochs[slot] != epoch) {
+            if (epochs[slot] > epoch || count < 0) {
+                return;
+            }
+            epochs[slot] = epoch;
+            counts[slot] = 0;
+            amountCents[slot] = 0;
+        }
+        counts[slot] += count;
+        amountCents[slot] += cents;
+    }
+
+    long count(long nowMillis) {
+        long newest = nowMillis / bucketMillis;
+        long oldest = newest - epochs.length + 1;
+        long total = 0;
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] >= oldest && epochs[i] <= newest) {
+                total += counts[i];
+            }
+        }
+        return total;
+    }
+
+    long amountCents(long nowMillis) {
+        long newest = nowMillis / bucketMillis;
+        long oldest = newest - epochs.length + 1;
+        long total = 0;
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] >= oldest && epochs[i] <= newest) {
+                total += amountCents[i];
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,84 @@
+package util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Account number to int (a list position, a document id) for in-memory
+ * lookups. Numbers that pack into an {@link AccountKey} live in a
+ * {@link LongIntHashMap}, at 16 to 24 bytes an entry against roughly 95 for
+ * a HashMap with String keys; the rare number that does not pack is kept in a
+ * small String map beside it, so any account number works.
+ *
+ * Not thread-safe.
+ */
+public class AccountIndex {
+
+    public static final int NO_VALUE = LongIntHashMap.NO_VALUE;
+
+    private final LongIntHashMap packed;
+    // Numbers AccountKey cannot pack (lower case, other characters, too long)
+    private final Map<String, Integer> unpacked = new HashMap<>();
+
+    public AccountIndex() {
+        this.packed = new LongIntHashMap();
+    }
+
+    /**
+     * An index that holds expectedSize accounts without resizing
+     */
+    public AccountIndex(int expectedSize) {
+        this.packed = new LongIntHashMap(expectedSize);
+    }
+
+    /**
+     * The value for an account number, or NO_VALUE
+     */
+    public int get(String accountNumber) {
+        long key = AccountKey.pack(accountNumber);
+        if (key != AccountKey.NONE) {
+            return packed.get(key);
+        }
+        Integer value = unpacked.get(accountNumber);
+        return value != null ? value : NO_VALUE;
+    }
+
+    public boolean contains(String accountNumber) {
+        return get(accountNumber) != NO_VALUE;
+    }
+
+    /**
+     * Map an account number to a non-negative value
+     * @return the previous value, or NO_VALUE
+     */
+    public int put(String accountNumber, int value) {
+        long key = AccountKey.pack(accountNumber);
+        if (key != AccountKey.NONE) {
+            return packed.put(key, value);
+        }
+        Integer previous = unpacked.put(accountNumber, value);
+        return previous != null ? previous : NO_VALUE;
+    }
+
+    /**
+     * Remove an account number
+     * @return its value, or NO_VALUE if it was not present
+     */
+    public int remove(String accountNumber) {
+        long key = AccountKey.pack(accountNumber);
+        if (key != AccountKey.NONE) {
+            return packed.remove(key);
+        }
+        Integer previous = unpacked.remove(accountNumber);
+        return previous != null ? previous : NO_VALUE;
+    }
+
+    public int size() {
+        return packed.size() + unpacked.size();
+    }
+
+    public void clear() {
+        packed.clear();
+        unpacked.clear();
+    }
+}
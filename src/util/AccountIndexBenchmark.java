@@ -0,0 +1,111 @@
+package util;
+
+import model.BankAccount;
+import model.CurrentAccount;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Compares {@link AccountIndex} with a HashMap&lt;String, BankAccount&gt; over
+ * synthetic account numbers (no database needed): heap held by each index,
+ * time to build it, and random lookups by account number as a teller would
+ * type them. Both indexes own their keys, as a cache loaded from the database
+ * does; the accounts themselves are shared and not counted.
+ *
+ * Run with: java -Xmx12g -cp out util.AccountIndexBenchmark [accounts] [lookups] [rounds]
+ */
+public final class AccountIndexBenchmark {
+
+    private static final String[] PREFIXES = {"SAV", "CUR", "LON"};
+    private static final int VALUE_DIGITS = 12;
+
+    private AccountIndexBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        // Queries arrive as Strings, so both sides pay for hashing or packing one
+        SplittableRandom random = new SplittableRandom(42);
+        String[] queries = new String[lookups];
+        for (int i = 0; i < lookups; i++) {
+            queries[i] = accountNumber(random.nextInt(accounts));
+        }
+        BankAccount account = new CurrentAccount(accountNumber(0), "Benchmark", 0.0);
+        System.out.printf("Account index benchmark: %,d accounts, %,d lookups%n", accounts, lookups);
+
+        long before = usedHeap();
+        long started = System.nanoTime();
+        AccountIndex packed = new AccountIndex(accounts);
+        for (int i = 0; i < accounts; i++) {
+            packed.put(accountNumber(i), i);
+        }
+        long built = System.nanoTime() - started;
+        long packedBytes = usedHeap() - before;
+        report("AccountIndex", packedBytes, accounts, built);
+        for (int round = 1; round <= rounds; round++) {
+            started = System.nanoTime();
+            long sum = 0;
+            for (String query : queries) {
+                sum += packed.get(query);
+            }
+            lookupReport(round, System.nanoTime() - started, lookups, sum);
+        }
+        packed = null;
+
+        before = usedHeap();
+        started = System.nanoTime();
+        Map<String, BankAccount> strings = new HashMap<>((int) (accounts / 0.75f) + 1);
+        for (int i = 0; i < accounts; i++) {
+            strings.put(accountNumber(i), account);
+        }
+        built = System.nanoTime() - started;
+        long stringBytes = usedHeap() - before;
+        report("HashMap<String, BankAccount>", stringBytes, accounts, built);
+        for (int round = 1; round <= rounds; round++) {
+            started = System.nanoTime();
+            long sum = 0;
+            for (String query : queries) {
+                sum += strings.get(query) != null ? 1 : 0;
+            }
+            lookupReport(round, System.nanoTime() - started, lookups, sum);
+        }
+
+        System.out.printf("AccountIndex uses %.1fx less heap%n", stringBytes / (double) Math.max(packedBytes, 1));
+    }
+
+    /**
+     * An allocator-style number: type prefix and 12 digits
+     */
+    private static String accountNumber(int i) {
+        char[] chars = new char[3 + VALUE_DIGITS];
+        PREFIXES[i % PREFIXES.length].getChars(0, 3, chars, 0);
+        long value = i;
+        for (int c = chars.length - 1; c >= 3; c--) {
+            chars[c] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+
+    private static void report(String name, long bytes, int accounts, long nanos) {
+        System.out.printf("%-30s %,8.1f MB (%5.1f bytes/account), built in %,d ms%n",
+                name, bytes / 1e6, bytes / (double) accounts, nanos / 1_000_000);
+    }
+
+    private static void lookupReport(int round, long nanos, int lookups, long sum) {
+        System.out.printf("  round %d: %,d lookups in %,.1f ms (%.1f ns each, checksum %d)%n",
+                round, lookups, nanos / 1e6, nanos / (double) lookups, sum);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
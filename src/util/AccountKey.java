@@ -0,0 +1,99 @@
+package util;
+
+/**
+ * Packs an account number into a single long so in-memory indexes can key on
+ * a primitive instead of a String.
+ *
+ * A number packs when it is one to three upper-case letters followed by one
+ * to MAX_DIGITS digits: both the allocator's numbers (SAV000000000018) and the
+ * older short ones (SAV001) do. The letters take 5 bits each, the digit count
+ * 4 bits and the digits' value the low 44 bits, so leading zeros are kept
+ * (SAV001 and SAV01 get different keys) and every key is positive. Anything
+ * else returns NONE and has to be kept under its String.
+ */
+public final class AccountKey {
+
+    // Returned for numbers that do not pack; never a valid key
+    public static final long NONE = -1L;
+
+    public static final int MAX_LETTERS = 3;
+    // 10^13 - 1 still fits in VALUE_BITS
+    public static final int MAX_DIGITS = 13;
+
+    private static final int LETTER_BITS = 5;
+    private static final int COUNT_BITS = 4;
+    private static final int VALUE_BITS = 44;
+    private static final int COUNT_SHIFT = VALUE_BITS;
+    private static final int PREFIX_SHIFT = VALUE_BITS + COUNT_BITS;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long LETTER_MASK = (1L << LETTER_BITS) - 1;
+
+    private AccountKey() {
+    }
+
+    /**
+     * The key for an account number, or NONE if it does not pack
+     */
+    public static long pack(String accountNumber) {
+        if (accountNumber == null) {
+            return NONE;
+        }
+        int length = accountNumber.length();
+        long prefix = 0;
+        int letters = 0;
+        while (letters < length && letters <= MAX_LETTERS) {
+            char c = accountNumber.charAt(letters);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            prefix = (prefix << LETTER_BITS) | (c - 'A' + 1);
+            letters++;
+        }
+        int digits = length - letters;
+        if (letters == 0 || letters > MAX_LETTERS || digits == 0 || digits > MAX_DIGITS) {
+            return NONE;
+        }
+
+        long value = 0;
+        for (int i = letters; i < length; i++) {
+            char c = accountNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return NONE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        // Left-align the letters so SAV and SA share no keys
+        prefix <<= LETTER_BITS * (MAX_LETTERS - letters);
+        return (prefix << PREFIX_SHIFT) | ((long) digits << COUNT_SHIFT) | value;
+    }
+
+    /**
+     * The account number a key was packed from
+     * @throws IllegalArgumentException for NONE or a value pack never returns
+     */
+    public static String unpack(long key) {
+        int digits = (int) ((key >>> COUNT_SHIFT) & COUNT_MASK);
+        long value = key & VALUE_MASK;
+        if (key <= 0 || digits == 0 || digits > MAX_DIGITS) {
+            throw new IllegalArgumentException("Not an account key: " + key);
+        }
+
+        char[] chars = new char[MAX_LETTERS + digits];
+        int length = 0;
+        for (int i = MAX_LETTERS - 1; i >= 0; i--) {
+            int letter = (int) ((key >>> (PREFIX_SHIFT + i * LETTER_BITS)) & LETTER_MASK);
+            if (letter != 0) {
+                chars[length++] = (char) ('A' + letter - 1);
+            }
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        if (length == 0 || value != 0) {
+            throw new IllegalArgumentException("Not an account key: " + key);
+        }
+        return new String(chars, 0, length + digits);
+    }
+}
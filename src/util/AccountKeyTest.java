@@ -0,0 +1,62 @@
+package util;
+
+import static util.Assert.check;
+import static util.Assert.checkEquals;
+import static util.Assert.checkThrows;
+
+/**
+ * Unit tests for AccountKey packing
+ */
+public class AccountKeyTest {
+
+    public static void main(String[] args) {
+        System.out.println("🧪 Testing AccountKey...");
+        testRoundTrip();
+        testLeadingZerosAndPrefixesKeepKeysApart();
+        testFieldLimits();
+        testUnpackRejectsNonKeys();
+        System.out.println("✅ AccountKey tests passed");
+    }
+
+    private static void testRoundTrip() {
+        String[] numbers = {"SAV000000000018", "SAV001", "CUR1", "A0", "ZZZ9999999999999", "LON0000000000000"};
+        for (String number : numbers) {
+            long key = AccountKey.pack(number);
+            check(key > 0, number + " packs to a positive key");
+            checkEquals(number, AccountKey.unpack(key), "unpack(pack(" + number + "))");
+        }
+    }
+
+    private static void testLeadingZerosAndPrefixesKeepKeysApart() {
+        String[] numbers = {"SAV1", "SAV01", "SAV001", "SA1", "SA01", "S1", "AS1", "A1", "AA1", "AAA1"};
+        for (int i = 0; i < numbers.length; i++) {
+            for (int j = i + 1; j < numbers.length; j++) {
+                check(AccountKey.pack(numbers[i]) != AccountKey.pack(numbers[j]),
+                        numbers[i] + " and " + numbers[j] + " get different keys");
+            }
+        }
+    }
+
+    private static void testFieldLimits() {
+        String maxDigits = "9".repeat(AccountKey.MAX_DIGITS);
+        check(AccountKey.pack("SAV" + maxDigits) != AccountKey.NONE, "MAX_DIGITS digits pack");
+        // One more digit would overflow the 44-bit value field
+        checkEquals(AccountKey.NONE, AccountKey.pack("SAV" + maxDigits + "9"), "MAX_DIGITS + 1 digits");
+        checkEquals(AccountKey.NONE, AccountKey.pack("SAVX1"), "four letters");
+        checkEquals(AccountKey.NONE, AccountKey.pack("123"), "no letters");
+        checkEquals(AccountKey.NONE, AccountKey.pack("SAV"), "no digits");
+        checkEquals(AccountKey.NONE, AccountKey.pack("sav1"), "lower-case letters");
+        checkEquals(AccountKey.NONE, AccountKey.pack("SAV12A"), "letter after the digits");
+        checkEquals(AccountKey.NONE, AccountKey.pack(""), "empty string");
+        checkEquals(AccountKey.NONE, AccountKey.pack(null), "null");
+    }
+
+    private static void testUnpackRejectsNonKeys() {
+        checkThrows(IllegalArgumentException.class, () -> AccountKey.unpack(AccountKey.NONE), "unpack(NONE)");
+        checkThrows(IllegalArgumentException.class, () -> AccountKey.unpack(0), "unpack(0)");
+        // A digit count of 14 does not fit MAX_DIGITS
+        checkThrows(IllegalArgumentException.class, () -> AccountKey.unpack((1L << 48) | (14L << 44)), "digit count 14");
+        // Two digits cannot hold the value 100
+        checkThrows(IllegalArgumentException.class, () -> AccountKey.unpack((1L << 48) | (2L << 44) | 100), "value wider than its digits");
+    }
+}
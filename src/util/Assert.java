@@ -0,0 +1,47 @@
+package util;
+
+import java.util.Objects;
+
+/**
+ * Checks for the main-based unit tests (*Test classes next to the code they
+ * test). A failed check throws AssertionError, so the test's JVM exits
+ * non-zero and CI fails; no -ea flag is needed.
+ */
+public final class Assert {
+
+    private Assert() {
+    }
+
+    public static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    public static void checkEquals(long expected, long actual, String message) {
+        if (expected != actual) {
+            throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    public static void checkEquals(Object expected, Object actual, String message) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * Check that the action throws the given exception type
+     */
+    public static void checkThrows(Class<? extends Throwable> expected, Runnable action, String message) {
+        try {
+            action.run();
+        } catch (Throwable e) {
+            if (expected.isInstance(e)) {
+                return;
+            }
+            throw new AssertionError(message + ": expected " + expected.getSimpleName() + " but got " + e, e);
+        }
+        throw new AssertionError(message + ": expected " + expected.getSimpleName() + " but nothing was thrown");
+    }
+}
@@ -0,0 +1,212 @@
+package util;
+
+import model.audit.AuditLog;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Hashing behind the tamper-evident audit log.
+ *
+ * Each entry's hash is SHA-256 over the previous entry's hash and the entry's
+ * own fields in a fixed binary encoding, so changing, removing or reordering
+ * any entry changes every hash after it. Every SEGMENT_SIZE entries form a
+ * segment whose Merkle root, and the chain hash at its end, are recorded as a
+ * checkpoint; with a checkpoint key configured the checkpoint is signed
+ * (HMAC-SHA256), so rewriting the log and recomputing its hashes needs the
+ * key as well as database access.
+ *
+ * Not thread-safe; use one instance per thread.
+ */
+public class AuditChain {
+
+    // Entries per checkpointed segment; a power of two keeps the Merkle tree complete
+    public static final int SEGMENT_SIZE = 1 << 16;
+    public static final int HASH_LENGTH = 32;
+
+    // Chain hash before the first entry
+    private static final byte[] GENESIS = new byte[HASH_LENGTH];
+
+    // Prefixes keep leaves and inner nodes of the Merkle tree apart
+    private static final byte LEAF = 0;
+    private static final byte NODE = 1;
+
+    private final MessageDigest digest;
+    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    public AuditChain() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error creating audit hash", e);
+        }
+    }
+
+    public static byte[] genesis() {
+        return GENESIS.clone();
+    }
+
+    /**
+     * Segment holding a sequence number; segment n covers n * SEGMENT_SIZE + 1
+     * to (n + 1) * SEGMENT_SIZE
+     */
+    public static long segmentOf(long seq) {
+        return (seq - 1) / SEGMENT_SIZE;
+    }
+
+    public static long firstSeq(long segment) {
+        return segment * SEGMENT_SIZE + 1;
+    }
+
+    public static long lastSeq(long segment) {
+        return (segment + 1) * SEGMENT_SIZE;
+    }
+
+    /**
+     * Audit timestamps are kept to the microsecond, as the database stores them
+     */
+    public static LocalDateTime truncate(LocalDateTime timestamp) {
+        return timestamp.truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Hash of an entry chained to the previous entry's hash; covers every
+     * column but the row id
+     */
+    public byte[] entryHash(byte[] previousHash, AuditLog entry) {
+        buffer.clear();
+        buffer.put(previousHash);
+        buffer.putLong(entry.getSeq());
+        LocalDateTime timestamp = entry.getTimestamp();
+        buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1000);
+        buffer.put(entry.isSuccess() ? (byte) 1 : (byte) 0);
+        putString(entry.getAction());
+        putString(entry.getDetails());
+        putString(entry.getUsername());
+        putString(entry.getIpAddress());
+        putString(entry.getUserAgent());
+        putString(entry.getErrorMessage());
+
+        digest.update(buffer.array(), 0, buffer.position());
+        return digest.digest();
+    }
+
+    /**
+     * Merkle root of the first count hashes packed in leaves; an odd node at
+     * the end of a level is carried up unchanged
+     */
+    public byte[] merkleRoot(byte[] leaves, int count) {
+        if (count == 0) {
+            return genesis();
+        }
+        byte[] level = new byte[count * HASH_LENGTH];
+        for (int i = 0; i < count; i++) {
+            digest.update(LEAF);
+            digest.update(leaves, i * HASH_LENGTH, HASH_LENGTH);
+            digestInto(level, i);
+        }
+        for (int width = count; width > 1; width = (width + 1) / 2) {
+            for (int i = 0; i < width / 2; i++) {
+                digest.update(NODE);
+                digest.update(level, 2 * i * HASH_LENGTH, 2 * HASH_LENGTH);
+                digestInto(level, i);
+            }
+            if (width % 2 == 1) {
+                System.arraycopy(level, (width - 1) * HASH_LENGTH, level, (width / 2) * HASH_LENGTH, HASH_LENGTH);
+            }
+        }
+        byte[] root = new byte[HASH_LENGTH];
+        System.arraycopy(level, 0, root, 0, HASH_LENGTH);
+        return root;
+    }
+
+    /**
+     * Signature of a checkpoint: the segment, the chain hash it starts from,
+     * its Merkle root and the chain hash it ends with. Null without a key.
+     */
+    public static byte[] signCheckpoint(byte[] key, long segment, byte[] previousHash, byte[] merkleRoot, byte[] lastHash) {
+        if (key == null) {
+            return null;
+        }
+        ByteBuffer message = ByteBuffer.allocate(8 + 3 * HASH_LENGTH);
+        message.putLong(segment).put(previousHash).put(merkleRoot).put(lastHash);
+        return hmac(key, message.array());
+    }
+
+    /**
+     * Signature of the chain head, so entries cut off after the last
+     * checkpoint are noticed. Null without a key.
+     */
+    public static byte[] signHead(byte[] key, long lastSeq, byte[] lastHash) {
+        if (key == null) {
+            return null;
+        }
+        ByteBuffer message = ByteBuffer.allocate(8 + HASH_LENGTH);
+        message.putLong(lastSeq).put(lastHash);
+        return hmac(key, message.array());
+    }
+
+    /**
+     * The checkpoint key from audit.checkpoint.key in the properties file,
+     * or null. It is never taken from system_settings, which anyone able to
+     * rewrite the log could change too.
+     */
+    public static byte[] checkpointKey() {
+        String key = SettingsService.getInstance().getFileSetting("audit.checkpoint.key", "");
+        return key.isEmpty() ? null : key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureCapacity(4);
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void ensureCapacity(int more) {
+        if (buffer.remaining() < more) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + more));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    private void digestInto(byte[] target, int index) {
+        try {
+            digest.digest(target, index * HASH_LENGTH, HASH_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error hashing audit log", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, byte[] message) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(message);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error signing audit checkpoint", e);
+        }
+    }
+}
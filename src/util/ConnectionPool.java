@@ -0,0 +1,337 @@
+package util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import util.trace.Span;
+import util.trace.Tracing;
+
+/**
+ * Bounded pool of database connections.
+ *
+ * Borrowed connections are proxies: close() rolls back anything left
+ * uncommitted and returns the physical connection to the pool, so existing
+ * try-with-resources code pools transparently. Callers wait up to the
+ * timeout when every connection is in use. The size and timeout can be
+ * changed while running. Uses a ReentrantLock rather than synchronized so
+ * waiting virtual threads do not pin their carrier.
+ *
+ * While a flight recording is running, each borrowed connection is traced as
+ * a DAO call, with the borrow and the SQL executed on it as child spans (see
+ * {@link Tracing}).
+ */
+public final class ConnectionPool {
+
+    // Idle connections older than this are validated before being handed out
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /**
+     * Opens a new physical connection
+     */
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private int leased;
+    private int opened;
+    private long waits;
+    private long timeouts;
+    private volatile int maxConnections;
+    private volatile long timeoutMillis;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(ConnectionFactory factory, int maxConnections, long timeoutMillis) {
+        this.factory = factory;
+        resize(maxConnections, timeoutMillis);
+    }
+
+    /**
+     * Change the pool size and wait timeout; extra connections drain as they are returned
+     */
+    public void resize(int maxConnections, long timeoutMillis) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("At least one connection is required");
+        }
+        Deque<IdleConnection> surplus = new ArrayDeque<>();
+        lock.lock();
+        try {
+            this.maxConnections = maxConnections;
+            this.timeoutMillis = timeoutMillis;
+            while (!idle.isEmpty() && leased + idle.size() > maxConnections) {
+                surplus.add(idle.pollLast());
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (IdleConnection connection : surplus) {
+            discard(connection.connection);
+        }
+    }
+
+    /**
+     * Borrow a connection; close() on the returned connection gives it back
+     */
+    public Connection borrow() throws SQLException {
+        Span call = Tracing.daoCall();
+        Connection physical;
+        try (Span borrowing = Tracing.poolBorrow()) {
+            physical = acquire(borrowing);
+        } catch (SQLException | RuntimeException e) {
+            call.outcome(e.getMessage()).close();
+            throw e;
+        }
+        return wrap(physical, call);
+    }
+
+    private Connection acquire(Span borrowing) throws SQLException {
+        IdleConnection candidate = reserve(borrowing);
+        Connection physical = null;
+        try {
+            if (candidate != null) {
+                physical = candidate.connection;
+                if (System.currentTimeMillis() - candidate.idleSince > VALIDATE_AFTER_IDLE_MILLIS
+                        && !physical.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    discard(physical);
+                    physical = null;
+                }
+            }
+            if (physical == null) {
+                borrowing.reconnected();
+                physical = factory.open();
+                lock.lock();
+                try {
+                    opened++;
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return physical;
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                leased--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Take a lease, waiting for one if the pool is exhausted. Returns an idle
+     * connection, or null if the caller should open a new one.
+     */
+    private IdleConnection reserve(Span borrowing) throws SQLException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            if (leased >= maxConnections) {
+                waits++;
+                borrowing.waited();
+                long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                while (leased >= maxConnections) {
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLTransientConnectionException("Timed out after " + timeoutMillis
+                                + "ms waiting for a database connection (" + leased + " in use)");
+                    }
+                    try {
+                        remaining = available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted waiting for a database connection");
+                    }
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                }
+            }
+            leased++;
+            return idle.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Connection physical) {
+        boolean healthy;
+        try {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+            } else {
+                physical.setAutoCommit(false);
+            }
+            healthy = !physical.isClosed();
+        } catch (SQLException e) {
+            healthy = false;
+        }
+
+        lock.lock();
+        try {
+            leased--;
+            // Keep the connection unless it broke, the pool shrank or it is shutting down
+            if (healthy && !closed && leased + idle.size() < maxConnections) {
+                idle.addFirst(new IdleConnection(physical));
+                physical = null;
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (physical != null) {
+            discard(physical);
+        }
+    }
+
+    private void discard(Connection physical) {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close idle connections and refuse new borrows; leased connections close when returned
+     */
+    public void close() {
+        Deque<IdleConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (IdleConnection connection : toClose) {
+            discard(connection.connection);
+        }
+    }
+
+    /**
+     * Snapshot of pool usage
+     */
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            return new PoolStats(maxConnections, leased, idle.size(), opened, waits, timeouts);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Connection wrap(Connection physical, Span call) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new PooledConnectionHandler(physical, call));
+    }
+
+    /**
+     * Routes calls to the physical connection until the borrower closes it
+     */
+    private final class PooledConnectionHandler implements InvocationHandler {
+        private Connection physical;
+        private final Span call;
+        private final boolean traceSql;
+
+        PooledConnectionHandler(Connection physical, Span call) {
+            this.physical = physical;
+            this.call = call;
+            this.traceSql = call.isRecording() && Tracing.isSqlRecorded();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (physical != null) {
+                        Connection returned = physical;
+                        physical = null;
+                        release(returned);
+                        call.close();
+                    }
+                    return null;
+                case "isClosed":
+                    return physical == null || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    if (physical == null) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (traceSql && result instanceof Statement) {
+                        return Tracing.traceStatement((Statement) result,
+                                args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null);
+                    }
+                    return result;
+            }
+        }
+    }
+
+    private static final class IdleConnection {
+        private final Connection connection;
+        private final long idleSince = System.currentTimeMillis();
+
+        IdleConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * Inner class for pool usage statistics
+     */
+    public static class PoolStats {
+        private final int maxConnections;
+        private final int leased;
+        private final int idle;
+        private final long opened;
+        private final long waits;
+        private final long timeouts;
+
+        public PoolStats(int maxConnections, int leased, int idle, long opened, long waits, long timeouts) {
+            this.maxConnections = maxConnections;
+            this.leased = leased;
+            this.idle = idle;
+            this.opened = opened;
+            this.waits = waits;
+            this.timeouts = timeouts;
+        }
+
+        public int getMaxConnections() { return maxConnections; }
+        public int getLeased() { return leased; }
+        public int getIdle() { return idle; }
+        public long getOpened() { return opened; }
+        public long getWaits() { return waits; }
+        public long getTimeouts() { return timeouts; }
+    }
+}
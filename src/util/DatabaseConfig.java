@@ -5,65 +5,248 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import util.trace.Span;
+import util.trace.Tracing;
 
 /**
- * Database configuration and connection management utility
+ * Database configuration and connection management utility.
+ *
+ * Writes and anything needing the latest data use {@link #getConnection()}
+ * on the primary. Read-only report, dashboard and history queries use
+ * {@link #getReadConnection()}, which goes to a read replica listed in
+ * db.replica.urls when one is within the staleness bound (see
+ * {@link ReplicaRouter}) and to the primary otherwise.
  */
 public class DatabaseConfig {
     
-    // Database connection properties
-    private static final String DB_URL = "jdbc:postgresql://localhost:5432/enterprise_banking";
-    private static final String DB_USER = "postgres";
-    private static final String DB_PASSWORD = "satyam@1"; // Change this to your actual password
+    // Defaults used when db.url / db.user / db.password are not configured
+    private static final String DEFAULT_DB_URL = "jdbc:postgresql://localhost:5432/enterprise_banking";
+    private static final String DEFAULT_DB_USER = "postgres";
+    private static final String DEFAULT_DB_PASSWORD = "satyam@1"; // Set db.password in config/banking.properties instead
     
-    // Connection pool settings
+    // Connection pool defaults, overridable with db.pool.max_connections / db.pool.timeout_seconds
     private static final int MAX_CONNECTIONS = 10;
     private static final int TIMEOUT = 30;
     
-    private static Connection connection = null;
+    // Replica defaults, overridable with db.replica.max_lag_millis / db.replica.probe_millis
+    private static final long REPLICA_MAX_LAG_MILLIS = 2000;
+    private static final long REPLICA_PROBE_MILLIS = 500;
+    
+    private static volatile ConnectionPool pool = null;
+    private static volatile long poolSettingsVersion = -1;
+    
+    private static volatile ReplicaRouter replicaRouter = null;
+    private static volatile String replicaUrls = "";
+    private static volatile long replicaSettingsVersion = -1;
     
     /**
-     * Get a database connection
+     * Get a database connection from the pool; close() returns it
      * @return Connection object
-     * @throws SQLException if connection fails
+     * @throws SQLException if connection fails or none frees up within the timeout
      */
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            try {
-                // Load PostgreSQL driver
-                Class.forName("org.postgresql.Driver");
-                
-                // Create connection
-                connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-                
-                // Set connection properties
-                connection.setAutoCommit(false);
-                connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-                
-                System.out.println("Database connected successfully!");
-                
-            } catch (ClassNotFoundException e) {
-                throw new SQLException("PostgreSQL JDBC Driver not found: " + e.getMessage());
-            } catch (SQLException e) {
-                throw new SQLException("Database connection failed: " + e.getMessage());
+        Settings settings = SettingsService.getInstance().get();
+        ConnectionPool current = pool;
+        if (current == null || poolSettingsVersion != settings.getVersion()) {
+            current = configurePool(settings);
+        }
+        return current.borrow();
+    }
+    
+    private static synchronized ConnectionPool configurePool(Settings settings) {
+        int maxConnections = settings.getInt("db.pool.max_connections", MAX_CONNECTIONS);
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(settings.getInt("db.pool.timeout_seconds", TIMEOUT));
+        if (pool == null) {
+            pool = new ConnectionPool(() -> openConnection(false), maxConnections, timeoutMillis);
+            System.out.println("Database connection pool created (max " + maxConnections + " connections)");
+        } else if (poolSettingsVersion != settings.getVersion()) {
+            pool.resize(maxConnections, timeoutMillis);
+        }
+        poolSettingsVersion = settings.getVersion();
+        return pool;
+    }
+    
+    /**
+     * Get a connection for a read-only query: from a replica that is fresh
+     * enough for the current session, else from the primary pool. Callers
+     * must not write on it.
+     * @return Connection object
+     * @throws SQLException if connection fails
+     */
+    public static Connection getReadConnection() throws SQLException {
+        Settings settings = SettingsService.getInstance().get();
+        ReplicaRouter router = replicaRouter;
+        if (replicaSettingsVersion != settings.getVersion()) {
+            router = configureReplicas(settings);
+        }
+        if (router != null) {
+            Connection conn = router.borrowForRead();
+            if (conn != null) {
+                return conn;
             }
         }
-        return connection;
+        return getConnection();
+    }
+    
+    private static synchronized ReplicaRouter configureReplicas(Settings settings) {
+        if (replicaSettingsVersion == settings.getVersion()) {
+            return replicaRouter;
+        }
+        String urls = settings.get("db.replica.urls", "");
+        long maxLagMillis = settings.getLong("db.replica.max_lag_millis", REPLICA_MAX_LAG_MILLIS);
+        long probeMillis = settings.getLong("db.replica.probe_millis", REPLICA_PROBE_MILLIS);
+        
+        if (!urls.equals(replicaUrls)) {
+            if (replicaRouter != null) {
+                replicaRouter.stop();
+                replicaRouter = null;
+            }
+            List<ReplicaRouter.Replica> replicas = new ArrayList<>();
+            int maxConnections = settings.getInt("db.replica.max_connections",
+                    settings.getInt("db.pool.max_connections", MAX_CONNECTIONS));
+            long timeoutMillis = TimeUnit.SECONDS.toMillis(settings.getInt("db.pool.timeout_seconds", TIMEOUT));
+            for (String url : urls.split(",")) {
+                String replicaUrl = url.trim();
+                if (!replicaUrl.isEmpty()) {
+                    replicas.add(new ReplicaRouter.Replica(replicaUrl, new ConnectionPool(
+                            () -> openReadOnlyConnection(replicaUrl), maxConnections, timeoutMillis)));
+                }
+            }
+            if (!replicas.isEmpty()) {
+                ReplicaRouter router = new ReplicaRouter(replicas, ReplicaRouter.POSTGRES_LAG, maxLagMillis, probeMillis);
+                router.start();
+                replicaRouter = router;
+                System.out.println("Routing reads to " + replicas.size() + " replica(s), max lag " + maxLagMillis + " ms");
+            }
+            replicaUrls = urls;
+        } else if (replicaRouter != null) {
+            replicaRouter.configure(maxLagMillis, probeMillis);
+        }
+        replicaSettingsVersion = settings.getVersion();
+        return replicaRouter;
     }
     
     /**
-     * Close the database connection
+     * The replica router, or null when no replicas are configured
      */
-    public static void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                System.out.println("Database connection closed.");
-            } catch (SQLException e) {
-                System.err.println("Error closing database connection: " + e.getMessage());
+    public static ReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+    
+    /**
+     * Usage statistics of the connection pool, or null before first use
+     */
+    public static ConnectionPool.PoolStats getPoolStats() {
+        ConnectionPool current = pool;
+        return current != null ? current.getStats() : null;
+    }
+    
+    /**
+     * Open a new connection owned by the caller, using the current settings
+     * @param autoCommit whether the connection commits each statement
+     * @return Connection object
+     * @throws SQLException if connection fails
+     */
+    public static Connection openConnection(boolean autoCommit) throws SQLException {
+        Settings settings = SettingsService.getInstance().get();
+        return open(settings.get("db.url", DEFAULT_DB_URL),
+                settings.get("db.user", DEFAULT_DB_USER),
+                settings.get("db.password", DEFAULT_DB_PASSWORD),
+                autoCommit);
+    }
+    
+    /**
+     * Open a read-only connection to a replica; credentials default to the primary's
+     */
+    private static Connection openReadOnlyConnection(String url) throws SQLException {
+        Settings settings = SettingsService.getInstance().get();
+        Connection conn = open(url,
+                settings.get("db.replica.user", settings.get("db.user", DEFAULT_DB_USER)),
+                settings.get("db.replica.password", settings.get("db.password", DEFAULT_DB_PASSWORD)),
+                false);
+        conn.setReadOnly(true);
+        return conn;
+    }
+    
+    private static Connection open(String url, String user, String password, boolean autoCommit) throws SQLException {
+        Span span = Tracing.connectionOpen(url);
+        try {
+            // Load PostgreSQL driver
+            Class.forName("org.postgresql.Driver");
+            
+            // Create connection
+            Connection conn = DriverManager.getConnection(url, user, password);
+            
+            // Set connection properties
+            conn.setAutoCommit(autoCommit);
+            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            return conn;
+            
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("PostgreSQL JDBC Driver not found: " + e.getMessage());
+        } catch (SQLException e) {
+            span.outcome(e.getSQLState());
+            throw new SQLException("Database connection failed: " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            span.close();
+        }
+    }
+    
+    /**
+     * Load and register the JDBC driver ahead of the first connection
+     * @throws SQLException if the driver is not on the classpath
+     */
+    public static void loadDriver() throws SQLException {
+        try {
+            Class.forName("org.postgresql.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("PostgreSQL JDBC Driver not found: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Open pooled connections ahead of the first query, so it does not pay for
+     * the TCP and authentication handshake. Never opens more than the pool allows.
+     * @param connections number of idle connections wanted
+     * @return number of connections now idle in the pool
+     * @throws SQLException if a connection fails
+     */
+    public static int prefillPool(int connections) throws SQLException {
+        Settings settings = SettingsService.getInstance().get();
+        int wanted = Math.min(connections, settings.getInt("db.pool.max_connections", MAX_CONNECTIONS));
+        List<Connection> borrowed = new ArrayList<>();
+        try {
+            for (int i = 0; i < wanted; i++) {
+                borrowed.add(getConnection());
+            }
+        } finally {
+            for (Connection conn : borrowed) {
+                conn.close();
             }
         }
+        ConnectionPool.PoolStats stats = getPoolStats();
+        return stats != null ? stats.getIdle() : 0;
+    }
+    
+    /**
+     * Close the connection pool
+     */
+    public static synchronized void closeConnection() {
+        if (replicaRouter != null) {
+            replicaRouter.stop();
+            replicaRouter = null;
+            replicaUrls = "";
+            replicaSettingsVersion = -1;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+            System.out.println("Database connection pool closed.");
+        }
     }
     
     /**
@@ -84,7 +267,7 @@ public class DatabaseConfig {
      * @return database URL string
      */
     public static String getDatabaseUrl() {
-        return DB_URL;
+        return SettingsService.getInstance().get().get("db.url", DEFAULT_DB_URL);
     }
     
     /**
@@ -92,11 +275,11 @@ public class DatabaseConfig {
      * @return database username
      */
     public static String getDatabaseUser() {
-        return DB_USER;
+        return SettingsService.getInstance().get().get("db.user", DEFAULT_DB_USER);
     }
     
     /**
-     * Load database properties from file (alternative configuration method)
+     * Load properties from file (used by SettingsService for config/banking.properties)
      * @param configFile path to configuration file
      * @return Properties object
      */
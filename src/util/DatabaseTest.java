@@ -53,7 +53,7 @@ public class DatabaseTest {
     private static void testTableExistence(Connection conn) throws SQLException {
         String[] requiredTables = {
             "users", "bank_accounts", "transactions", 
-            "audit_logs", "customers", "system_settings"
+            "audit_logs", "audit_chain_head", "audit_checkpoints", "customers", "system_settings"
         };
         
         try (Statement stmt = conn.createStatement()) {
@@ -0,0 +1,218 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values, kept in two
+ * primitive arrays: no entry objects, no boxing, and a lookup touches one or
+ * two neighbouring slots of the key array.
+ *
+ * Collisions are resolved by linear probing over a power-of-two table that
+ * grows past MAX_LOAD; removal shifts the following run back instead of
+ * leaving tombstones, so lookups never slow down with churn. Slot 0 of the
+ * key space marks a free slot, so a zero key is kept aside in its own field.
+ *
+ * Values are meant to be non-negative (list positions, document ids):
+ * NO_VALUE is what a lookup of a missing key returns. Not thread-safe.
+ */
+public class LongIntHashMap {
+
+    public static final int NO_VALUE = -1;
+
+    private static final float MAX_LOAD = 0.75f;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    // 2^64 / golden ratio; spreads sequential account numbers over the table
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int size;
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * A map that holds expectedSize entries without resizing
+     */
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * The value for a key, or NO_VALUE
+     */
+    public int get(long key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : NO_VALUE;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long k = keys[slot];
+            if (k == key) {
+                return values[slot];
+            }
+            if (k == 0) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long k = keys[slot];
+            if (k == key) {
+                return true;
+            }
+            if (k == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Map a key to a value
+     * @return the previous value, or NO_VALUE
+     */
+    public int put(long key, int value) {
+        if (key == 0) {
+            int previous = hasZeroKey ? zeroValue : NO_VALUE;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int slot = slot(key);
+        for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            resize(keys.length * 2);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Remove a key
+     * @return its value, or NO_VALUE if it was not present
+     */
+    public int remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return NO_VALUE;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long k = keys[slot];
+            if (k == 0) {
+                return NO_VALUE;
+            }
+            if (k == key) {
+                int previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove every entry, keeping the table's capacity
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Bytes held by the table, for sizing caches
+     */
+    public long memoryBytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Close the gap left at a removed slot by moving back each following entry
+     * whose home slot is not between the gap and where it sits
+     */
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            int home = slot(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * MIX) >>> shift);
+    }
+
+    private void resize(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("LongIntHashMap is full at " + size + " entries");
+        }
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(mask);
+        resizeAt = Math.min((int) (capacity * MAX_LOAD), capacity - 1);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / (double) MAX_LOAD);
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Too many entries for LongIntHashMap: " + expectedSize);
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) Math.max(needed - 1, 1)) << 1);
+    }
+}
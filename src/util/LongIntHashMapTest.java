@@ -0,0 +1,130 @@
+package util;
+
+import static util.Assert.check;
+import static util.Assert.checkEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for LongIntHashMap probing and removal
+ */
+public class LongIntHashMapTest {
+
+    public static void main(String[] args) {
+        System.out.println("🧪 Testing LongIntHashMap...");
+        testRemoveFromCollisionRun();
+        testChurnDoesNotGrowTable();
+        testZeroKey();
+        testAgainstHashMap();
+        System.out.println("✅ LongIntHashMap tests passed");
+    }
+
+    /**
+     * Removing from the middle of a probe run must keep the rest of the run
+     * reachable, and the freed slot must be reused
+     */
+    private static void testRemoveFromCollisionRun() {
+        LongIntHashMap map = new LongIntHashMap();
+        List<Long> run = keysWithSameHomeSlot(map, 5);
+        for (int i = 0; i < run.size(); i++) {
+            map.put(run.get(i), i);
+        }
+        long bytes = map.memoryBytes();
+
+        checkEquals(2, map.remove(run.get(2)), "removed value");
+        checkEquals(LongIntHashMap.NO_VALUE, map.get(run.get(2)), "removed key");
+        checkEquals(LongIntHashMap.NO_VALUE, map.remove(run.get(2)), "second removal");
+        for (int i = 0; i < run.size(); i++) {
+            if (i != 2) {
+                checkEquals(i, map.get(run.get(i)), "key " + i + " after removing key 2");
+            }
+        }
+
+        checkEquals(LongIntHashMap.NO_VALUE, map.put(run.get(2), 42), "re-insert");
+        checkEquals(42, map.get(run.get(2)), "re-inserted value");
+        checkEquals(run.size(), map.size(), "size");
+        checkEquals(bytes, map.memoryBytes(), "table size after re-insert");
+    }
+
+    /**
+     * Backward-shift removal leaves no markers behind, so a small live set
+     * churning through many distinct keys never forces a resize
+     */
+    private static void testChurnDoesNotGrowTable() {
+        LongIntHashMap map = new LongIntHashMap(8);
+        long bytes = map.memoryBytes();
+        for (long key = 1; key <= 100_000; key++) {
+            map.put(key, (int) key);
+            if (key > 8) {
+                checkEquals((int) (key - 8), map.remove(key - 8), "value of key " + (key - 8));
+            }
+        }
+        checkEquals(8, map.size(), "live entries");
+        checkEquals(bytes, map.memoryBytes(), "table size after churn");
+        for (long key = 100_000 - 7; key <= 100_000; key++) {
+            checkEquals((int) key, map.get(key), "live key " + key);
+        }
+    }
+
+    private static void testZeroKey() {
+        LongIntHashMap map = new LongIntHashMap();
+        check(!map.containsKey(0), "empty map has no zero key");
+        checkEquals(LongIntHashMap.NO_VALUE, map.put(0, 7), "put zero key");
+        checkEquals(7, map.put(0, 8), "replace zero key");
+        checkEquals(1, map.size(), "size with zero key");
+        checkEquals(8, map.remove(0), "remove zero key");
+        check(map.isEmpty(), "empty after removing zero key");
+    }
+
+    private static void testAgainstHashMap() {
+        Random random = new Random(42);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // A narrow key range keeps collisions, replacements and removals frequent
+            long key = random.nextInt(5_000) - 100;
+            int value = random.nextInt(1_000_000);
+            if (random.nextInt(3) == 0) {
+                Integer previous = expected.remove(key);
+                checkEquals(previous != null ? previous : LongIntHashMap.NO_VALUE, map.remove(key), "remove " + key);
+            } else {
+                Integer previous = expected.put(key, value);
+                checkEquals(previous != null ? previous : LongIntHashMap.NO_VALUE, map.put(key, value), "put " + key);
+            }
+        }
+        checkEquals(expected.size(), map.size(), "size");
+        for (long key = -100; key < 4_900; key++) {
+            Integer value = expected.get(key);
+            checkEquals(value != null ? value : LongIntHashMap.NO_VALUE, map.get(key), "get " + key);
+            checkEquals(value != null, map.containsKey(key), "containsKey " + key);
+        }
+    }
+
+    /**
+     * Keys that all have the same home slot in the given empty map's table
+     */
+    private static List<Long> keysWithSameHomeSlot(LongIntHashMap empty, int count) {
+        Map<Integer, List<Long>> byHome = new HashMap<>();
+        for (long key = 1; ; key++) {
+            List<Long> sameHome = byHome.computeIfAbsent(homeSlot(key, empty.memoryBytes()), h -> new ArrayList<>());
+            sameHome.add(key);
+            if (sameHome.size() == count) {
+                return sameHome;
+            }
+        }
+    }
+
+    /**
+     * The home slot LongIntHashMap uses for a key in a table of the given
+     * memory size (Fibonacci hashing on the top bits)
+     */
+    private static int homeSlot(long key, long memoryBytes) {
+        int capacity = (int) (memoryBytes / (Long.BYTES + Integer.BYTES));
+        int shift = Long.numberOfLeadingZeros(capacity - 1);
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
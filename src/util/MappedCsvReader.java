@@ -0,0 +1,316 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming CSV reader over a memory-mapped file.
+ *
+ * The file (or a byte range of it) is mapped a window at a time, so files
+ * over 2 GB work and only the window in use needs to be resident. Rows are
+ * parsed in place, recording where each field starts and ends; a field is
+ * only copied out, through one reusable scratch buffer, when it is asked for
+ * as a String or parsed as cents. Fields are comma separated and may be
+ * double-quoted, with "" for a quote and line breaks allowed inside quotes.
+ * Rows end with \n or \r\n; input is UTF-8.
+ *
+ * Not thread-safe; readers over different ranges of one channel may be used
+ * from different threads.
+ */
+public class MappedCsvReader implements Closeable {
+
+    public static final int DEFAULT_WINDOW_BYTES = 64 << 20;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long end;
+    private final int windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private long line;
+
+    private long rowStart;
+    private long rowLine;
+    private int fieldCount;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] fieldQuoted = new boolean[16];
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Read a whole file
+     */
+    public static MappedCsvReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new MappedCsvReader(channel, true, 0, channel.size(), 1, DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * Read the rows in [start, end) of a channel the caller keeps open;
+     * start must be the beginning of a row on the given (1-based) line
+     */
+    public MappedCsvReader(FileChannel channel, long start, long end, long line) {
+        this(channel, false, start, end, line, (int) Math.min(DEFAULT_WINDOW_BYTES, Math.max(1, end - start)));
+    }
+
+    private MappedCsvReader(FileChannel channel, boolean ownsChannel, long start, long end, long line, int windowBytes) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.end = end;
+        this.windowBytes = windowBytes;
+        this.position = start;
+        this.line = line;
+    }
+
+    /**
+     * Continue from the start of the row at an offset (as returned by
+     * {@link #getPosition()}) on the given line
+     */
+    public void seek(long offset, long line) {
+        this.position = offset;
+        this.line = line;
+    }
+
+    /**
+     * Parse the next row; false at the end of the range
+     */
+    public boolean next() throws IOException {
+        if (position >= end) {
+            return false;
+        }
+        while (true) {
+            if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+                map(position);
+            }
+            if (parseRow()) {
+                return true;
+            }
+            // The row runs past the window; map again starting at the row
+            if (position == windowStart) {
+                throw new IOException("Row on line " + line + " is longer than " + windowBytes + " bytes");
+            }
+            map(position);
+        }
+    }
+
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowBytes, end - offset));
+    }
+
+    /**
+     * Record the field boundaries of the row at position; false if the window
+     * ends before the row does
+     */
+    private boolean parseRow() {
+        int limit = window.limit();
+        boolean atEnd = windowStart + limit >= end;
+        int p = (int) (position - windowStart);
+        int fieldStart = p;
+        int newlines = 0;
+        boolean inQuotes = false;
+        boolean quoted = false;
+        fieldCount = 0;
+
+        while (true) {
+            if (p >= limit) {
+                if (!atEnd) {
+                    return false;
+                }
+                addField(fieldStart, p, quoted);
+                break;
+            }
+            byte b = window.get(p);
+            if (inQuotes) {
+                if (b == '"') {
+                    if (p + 1 >= limit && !atEnd) {
+                        return false;
+                    }
+                    if (p + 1 < limit && window.get(p + 1) == '"') {
+                        p += 2;
+                        continue;
+                    }
+                    inQuotes = false;
+                } else if (b == '\n') {
+                    newlines++;
+                }
+                p++;
+            } else if (b == ',') {
+                addField(fieldStart, p, quoted);
+                fieldStart = ++p;
+                quoted = false;
+            } else if (b == '\n') {
+                addField(fieldStart, p > fieldStart && window.get(p - 1) == '\r' ? p - 1 : p, quoted);
+                newlines++;
+                p++;
+                break;
+            } else {
+                if (b == '"' && p == fieldStart) {
+                    inQuotes = true;
+                    quoted = true;
+                }
+                p++;
+            }
+        }
+        rowStart = position;
+        rowLine = line;
+        position = windowStart + p;
+        line += newlines;
+        return true;
+    }
+
+    private void addField(int start, int fieldEnd, boolean quoted) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            fieldQuoted = Arrays.copyOf(fieldQuoted, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = fieldEnd;
+        fieldQuoted[fieldCount] = quoted;
+        fieldCount++;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Whether the row is empty (a blank line)
+     */
+    public boolean isBlank() {
+        return fieldCount == 1 && fieldEnds[0] == fieldStarts[0];
+    }
+
+    /**
+     * A field's text, or "" if the row has fewer fields
+     */
+    public String getString(int field) {
+        int length = copy(field);
+        return length == 0 ? "" : new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse a field such as 1250, -3.5 or 1250.75 (surrounding spaces allowed)
+     * as cents without creating a String
+     * @throws NumberFormatException if it is not an amount with at most two decimals
+     */
+    public long getCents(int field) {
+        int length = copy(field);
+        int i = 0;
+        while (i < length && scratch[i] == ' ') {
+            i++;
+        }
+        while (length > i && scratch[length - 1] == ' ') {
+            length--;
+        }
+        boolean negative = i < length && scratch[i] == '-';
+        if (i < length && (scratch[i] == '-' || scratch[i] == '+')) {
+            i++;
+        }
+        long cents = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < length; i++) {
+            byte b = scratch[i];
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9') {
+                if (decimals >= 0 && ++decimals > 2) {
+                    throw new NumberFormatException("More than two decimals");
+                }
+                cents = Math.addExact(Math.multiplyExact(cents, 10), b - '0');
+                digits++;
+            } else {
+                throw new NumberFormatException("Not an amount");
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not an amount");
+        }
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            cents = Math.multiplyExact(cents, 10);
+        }
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Copy a field into the scratch buffer, unquoting it; returns its length
+     */
+    private int copy(int field) {
+        if (field < 0 || field >= fieldCount) {
+            return 0;
+        }
+        int start = fieldStarts[field];
+        int fieldEnd = fieldEnds[field];
+        if (scratch.length < fieldEnd - start) {
+            scratch = new byte[Math.max(fieldEnd - start, scratch.length * 2)];
+        }
+        if (!fieldQuoted[field]) {
+            window.get(start, scratch, 0, fieldEnd - start);
+            return fieldEnd - start;
+        }
+        // Drop the quotes around the value and turn "" into "
+        int length = 0;
+        for (int p = start + 1; p < fieldEnd; p++) {
+            byte b = window.get(p);
+            if (b == '"') {
+                if (p + 1 < fieldEnd && window.get(p + 1) == '"') {
+                    p++;
+                } else {
+                    continue;
+                }
+            }
+            scratch[length++] = b;
+        }
+        return length;
+    }
+
+    /**
+     * Offset of the current row
+     */
+    public long getRowStart() {
+        return rowStart;
+    }
+
+    /**
+     * Line the current row starts on
+     */
+    public long getRowLine() {
+        return rowLine;
+    }
+
+    /**
+     * Offset of the next row
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Line the next row starts on
+     */
+    public long getLine() {
+        return line;
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes read-only queries to read replicas.
+ *
+ * A probe thread measures each replica's replication lag every probe
+ * interval. A read goes to a healthy replica whose lag is within the
+ * staleness bound (round robin among them); if none qualifies, or the
+ * replica cannot hand out a connection, it fails over to the primary.
+ *
+ * Read-your-writes: once a session (the username) has committed a change,
+ * its reads stay on the primary for the staleness bound plus one probe
+ * interval, the longest a replica that looked fresh can still be missing
+ * the write. Reads with no session on the current thread (the desktop
+ * client, background jobs) stick after any write in the process.
+ *
+ * Connections come from a {@link ConnectionPool.ConnectionFactory} and lag
+ * from a {@link LagProbe}, so two local PostgreSQL instances, or in-memory
+ * stand-ins for both, can be plugged in.
+ */
+public final class ReplicaRouter {
+
+    /**
+     * Measures how far a replica is behind the primary
+     */
+    public interface LagProbe {
+        long lagMillis(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Replay delay of a PostgreSQL standby; zero once it has replayed all it
+     * received, or if the server is not in recovery at all
+     */
+    public static final LagProbe POSTGRES_LAG = conn -> {
+        String sql = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+                     "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+                     "ELSE COALESCE(EXTRACT(EPOCH FROM clock_timestamp() - pg_last_xact_replay_timestamp()) * 1000, 0) " +
+                     "END AS lag_millis";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong("lag_millis") : Long.MAX_VALUE;
+        }
+    };
+
+    // Last commit per session, and by anyone, shared by every router instance
+    private static final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private static volatile long lastWriteMillis = 0;
+
+    private static final ThreadLocal<String> SESSION = new ThreadLocal<>();
+
+    private final List<Replica> replicas;
+    private final LagProbe lagProbe;
+    private final AtomicInteger next = new AtomicInteger();
+    private final RoutingMetrics metrics = new RoutingMetrics();
+
+    private volatile long maxLagMillis;
+    private volatile long probeMillis;
+    private volatile boolean running = false;
+    private Thread prober;
+
+    public ReplicaRouter(List<Replica> replicas, LagProbe lagProbe, long maxLagMillis, long probeMillis) {
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.lagProbe = lagProbe;
+        configure(maxLagMillis, probeMillis);
+    }
+
+    /**
+     * Change the staleness bound and probe interval while running
+     */
+    public void configure(long maxLagMillis, long probeMillis) {
+        this.maxLagMillis = Math.max(0, maxLagMillis);
+        this.probeMillis = Math.max(10, probeMillis);
+    }
+
+    /**
+     * Reads on the current thread belong to this session until {@link #clearSession()}
+     */
+    public static void setSession(String session) {
+        SESSION.set(session);
+    }
+
+    public static void clearSession() {
+        SESSION.remove();
+    }
+
+    /**
+     * Note that a session committed a change, so its next reads see it
+     */
+    public static void recordWrite(String session) {
+        long now = System.currentTimeMillis();
+        lastWriteMillis = now;
+        if (session != null) {
+            lastWrites.put(session, now);
+        }
+    }
+
+    /**
+     * Note that the current thread's session (or, without one, the process)
+     * committed a change; for DAOs, which do not know the session
+     */
+    public static void recordWrite() {
+        recordWrite(SESSION.get());
+    }
+
+    /**
+     * Probe every replica once, then keep probing in the background
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        probeAll();
+        prober = new Thread(this::probeLoop, "replica-lag-probe");
+        prober.setDaemon(true);
+        prober.start();
+    }
+
+    /**
+     * Stop probing and close the replica pools
+     */
+    public synchronized void stop() {
+        running = false;
+        if (prober != null) {
+            prober.interrupt();
+        }
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public RoutingMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    /**
+     * Borrow a connection for a read-only query from a fresh enough replica.
+     * Returns null if the read must go to the primary.
+     */
+    public Connection borrowForRead() {
+        if (mustReadPrimary(SESSION.get())) {
+            metrics.stickyReads.increment();
+            return null;
+        }
+        int count = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            if (!replica.isUsable(maxLagMillis, probeMillis * 3)) {
+                continue;
+            }
+            try {
+                Connection conn = replica.pool.borrow();
+                metrics.replicaReads.increment();
+                return conn;
+            } catch (SQLException e) {
+                // Down or exhausted: keep it out until the next probe says otherwise
+                replica.healthy = false;
+                System.err.println("Replica " + replica.name + " unavailable: " + e.getMessage());
+            }
+        }
+        metrics.failovers.increment();
+        return null;
+    }
+
+    private boolean mustReadPrimary(String session) {
+        long window = maxLagMillis + probeMillis;
+        long since = System.currentTimeMillis() - window;
+        if (session == null) {
+            return lastWriteMillis > since;
+        }
+        Long written = lastWrites.get(session);
+        return written != null && written > since;
+    }
+
+    private void probeLoop() {
+        while (running) {
+            try {
+                Thread.sleep(probeMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            probeAll();
+            forgetOldWrites();
+        }
+    }
+
+    private void probeAll() {
+        for (Replica replica : replicas) {
+            try (Connection conn = replica.pool.borrow()) {
+                replica.lagMillis = lagProbe.lagMillis(conn);
+                replica.healthy = true;
+            } catch (SQLException e) {
+                if (replica.healthy) {
+                    System.err.println("Replica " + replica.name + " failed its lag probe: " + e.getMessage());
+                }
+                replica.healthy = false;
+            }
+            replica.probedAt = System.currentTimeMillis();
+        }
+    }
+
+    private void forgetOldWrites() {
+        long since = System.currentTimeMillis() - maxLagMillis - probeMillis;
+        lastWrites.values().removeIf(written -> written <= since);
+    }
+
+    /**
+     * Inner class for one replica, its pool and its last probe result
+     */
+    public static class Replica {
+        private final String name;
+        private final ConnectionPool pool;
+        private volatile boolean healthy = false;
+        private volatile long lagMillis = Long.MAX_VALUE;
+        private volatile long probedAt = 0;
+
+        public Replica(String name, ConnectionPool pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+
+        /**
+         * Healthy and within the bound at a probe that is itself recent
+         */
+        boolean isUsable(long maxLagMillis, long maxProbeAgeMillis) {
+            return healthy && lagMillis <= maxLagMillis
+                    && System.currentTimeMillis() - probedAt <= maxProbeAgeMillis;
+        }
+
+        public String getName() { return name; }
+        public boolean isHealthy() { return healthy; }
+        public long getLagMillis() { return lagMillis; }
+        public long getProbedAt() { return probedAt; }
+        public ConnectionPool.PoolStats getPoolStats() { return pool.getStats(); }
+    }
+
+    /**
+     * Inner class counting where reads were sent
+     */
+    public static class RoutingMetrics {
+        private final LongAdder replicaReads = new LongAdder();
+        private final LongAdder stickyReads = new LongAdder();
+        private final LongAdder failovers = new LongAdder();
+
+        public long getReplicaReads() { return replicaReads.sum(); }
+        public long getStickyReads() { return stickyReads.sum(); }
+        public long getFailovers() { return failovers.sum(); }
+
+        @Override
+        public String toString() {
+            return "RoutingMetrics{replicaReads=" + getReplicaReads() + ", stickyReads=" + getStickyReads()
+                    + ", failovers=" + getFailovers() + '}';
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of configuration: properties file entries overlaid with
+ * the system_settings table. Obtain the current one from {@link SettingsService}.
+ */
+public final class Settings {
+
+    private final Map<String, String> values;
+    private final long version;
+
+    Settings(Map<String, String> values, long version) {
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+        this.version = version;
+    }
+
+    /**
+     * Get a setting, or the default if it is not set
+     */
+    public String get(String key, String defaultValue) {
+        String value = values.get(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * All settings as a read-only map
+     */
+    public Map<String, String> asMap() {
+        return values;
+    }
+
+    /**
+     * Incremented each time a changed snapshot is published
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,269 @@
+package util;
+
+import dao.SystemSettingsDAO;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Hot-reloadable configuration.
+ *
+ * Settings come from a properties file (config/banking.properties, or the
+ * path in the banking.config system property) overlaid with the
+ * system_settings table. Readers get an immutable {@link Settings} snapshot
+ * from a single volatile read. A new snapshot is built and swapped in
+ * atomically when the file changes (WatchService) or the table changes
+ * (LISTEN system_settings_changed, fired by a trigger), and listeners are
+ * told so they can retune limits and sizes without a restart.
+ */
+public class SettingsService {
+
+    private static final SettingsService INSTANCE = new SettingsService();
+
+    public static final String CONFIG_PATH_PROPERTY = "banking.config";
+    private static final String DEFAULT_CONFIG_PATH = "config/banking.properties";
+    private static final String NOTIFY_CHANNEL = "system_settings_changed";
+    private static final int LISTEN_TIMEOUT_MILLIS = 10_000;
+    private static final long RECONNECT_DELAY_MILLIS = 30_000;
+    // Editors write a file in several steps; wait for them to finish before reading
+    private static final long FILE_SETTLE_MILLIS = 200;
+
+    private final Path configFile;
+    private final AtomicReference<Settings> current;
+    private final List<Consumer<Settings>> listeners = new CopyOnWriteArrayList<>();
+    private final SystemSettingsDAO systemSettingsDAO = new SystemSettingsDAO();
+
+    // Last values read from each source; guarded by this
+    private Map<String, String> fileValues;
+    private Map<String, String> databaseValues = new HashMap<>();
+
+    private volatile boolean running = false;
+    private WatchService watchService;
+
+    private SettingsService() {
+        this.configFile = Paths.get(System.getProperty(CONFIG_PATH_PROPERTY, DEFAULT_CONFIG_PATH)).toAbsolutePath();
+        this.fileValues = readFile();
+        this.current = new AtomicReference<>(new Settings(fileValues, 1));
+    }
+
+    /**
+     * Get the shared settings service
+     */
+    public static SettingsService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Current settings snapshot; never blocks
+     */
+    public Settings get() {
+        return current.get();
+    }
+
+    /**
+     * A setting from the properties file alone, ignoring system_settings; for
+     * secrets that must not be changeable through the database
+     */
+    public synchronized String getFileSetting(String key, String defaultValue) {
+        String value = fileValues.get(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    /**
+     * Be told about every new snapshot, starting with the current one
+     */
+    public void addListener(Consumer<Settings> listener) {
+        listeners.add(listener);
+        listener.accept(current.get());
+    }
+
+    /**
+     * Load the system_settings table and start watching both sources
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startDaemon(this::listenForDatabaseChanges, "settings-db-listener");
+        startDaemon(this::watchFile, "settings-file-watcher");
+    }
+
+    /**
+     * Stop watching for changes; the current snapshot stays in effect
+     */
+    public synchronized void stop() {
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("Error closing settings file watcher: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Re-read the properties file and publish a new snapshot if it changed
+     */
+    public synchronized void reloadFile() {
+        fileValues = readFile();
+        publish();
+    }
+
+    /**
+     * Re-read the system_settings table and publish a new snapshot if it
+     * changed. If the read fails the last values read stay in effect.
+     */
+    public void reloadDatabase() {
+        Map<String, String> values;
+        try {
+            values = systemSettingsDAO.getAllSettings();
+        } catch (SQLException e) {
+            System.err.println("Error reloading system settings, keeping the last ones read: " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            databaseValues = values;
+            publish();
+        }
+    }
+
+    private void publish() {
+        Map<String, String> merged = new HashMap<>(fileValues);
+        merged.putAll(databaseValues);
+
+        Settings previous = current.get();
+        if (merged.equals(previous.asMap())) {
+            return;
+        }
+        Settings next = new Settings(merged, previous.getVersion() + 1);
+        current.set(next);
+        System.out.println("Settings reloaded (version " + next.getVersion() + ")");
+        for (Consumer<Settings> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                System.err.println("Error applying settings: " + e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, String> readFile() {
+        Map<String, String> values = new HashMap<>();
+        if (Files.isRegularFile(configFile)) {
+            Properties props = DatabaseConfig.loadProperties(configFile.toString());
+            for (String key : props.stringPropertyNames()) {
+                values.put(key, props.getProperty(key));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Hold a dedicated connection in LISTEN mode and reload on each notification.
+     * The table is re-read on every (re)connect so changes made while
+     * disconnected are not missed.
+     */
+    private void listenForDatabaseChanges() {
+        while (running) {
+            try (Connection conn = DatabaseConfig.openConnection(true)) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + NOTIFY_CHANNEL);
+                }
+                reloadDatabase();
+
+                PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(LISTEN_TIMEOUT_MILLIS);
+                    if (notifications != null && notifications.length > 0) {
+                        reloadDatabase();
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Settings listener disconnected: " + e.getMessage());
+                if (!sleep(RECONNECT_DELAY_MILLIS)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void watchFile() {
+        Path directory = configFile.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                watchService = FileSystems.getDefault().newWatchService();
+            }
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            while (running) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (context instanceof Path && configFile.getFileName().equals(context)) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+                if (changed) {
+                    Thread.sleep(FILE_SETTLE_MILLIS);
+                    WatchKey pending;
+                    while ((pending = watchService.poll()) != null) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+                    reloadFile();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stop() was called
+        } catch (IOException e) {
+            System.err.println("Error watching settings file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void startDaemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
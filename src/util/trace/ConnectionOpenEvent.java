@@ -0,0 +1,22 @@
+package util.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("banking.ConnectionOpen")
+@Label("Connection Open")
+@Category({"Banking", "Tracing"})
+@Description("Opening a physical database connection")
+@StackTrace(false)
+class ConnectionOpenEvent extends TraceEvent {
+
+    @Label("URL")
+    String url;
+
+    ConnectionOpenEvent(String url) {
+        this.url = url;
+    }
+}
@@ -0,0 +1,26 @@
+package util.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("banking.ControllerAction")
+@Label("Controller Action")
+@Category({"Banking", "Tracing"})
+@Description("A user action handled by a controller, usually on the FX thread; the root of its trace")
+@StackTrace(false)
+class ControllerActionEvent extends TraceEvent {
+
+    @Label("Controller")
+    String controller;
+
+    @Label("Action")
+    String action;
+
+    ControllerActionEvent(String controller, String action) {
+        this.controller = controller;
+        this.action = action;
+    }
+}
@@ -0,0 +1,21 @@
+package util.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("banking.DaoCall")
+@Label("DAO Call")
+@Category({"Banking", "Tracing"})
+@Description("A pooled connection held from borrow to close, named after the method that borrowed it")
+@StackTrace(false)
+class DaoCallEvent extends TraceEvent {
+
+    @Label("Class")
+    String dao;
+
+    @Label("Method")
+    String method;
+}
@@ -0,0 +1,23 @@
+package util.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("banking.PoolBorrow")
+@Label("Pool Borrow")
+@Category({"Banking", "Tracing"})
+@Description("Getting a connection from the pool, including waiting for one, validating it and reconnecting")
+@StackTrace(false)
+class PoolBorrowEvent extends TraceEvent {
+
+    @Label("Waited")
+    @Description("Every connection was in use")
+    boolean waited;
+
+    @Label("Reconnected")
+    @Description("A new physical connection was opened")
+    boolean reconnected;
+}
@@ -0,0 +1,94 @@
+package util.trace;
+
+/**
+ * One timed step of a request, recorded as a flight recorder event when it
+ * is closed. Spans started on a thread while another is open on it become its
+ * children. When recording is off every span is a shared no-op.
+ */
+public final class Span implements AutoCloseable {
+
+    static final Span NOOP = new Span(null, 0, 0, null, false);
+
+    private final TraceEvent event;
+    private final long traceId;
+    private final long spanId;
+    // Span that was current on the thread before this one was installed
+    private final Span previous;
+    private final boolean installed;
+
+    Span(TraceEvent event, long traceId, long spanId, Span previous, boolean installed) {
+        this.event = event;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.previous = previous;
+        this.installed = installed;
+    }
+
+    public long getTraceId() { return traceId; }
+    public long getSpanId() { return spanId; }
+
+    /**
+     * Whether this span is being recorded
+     */
+    public boolean isRecording() {
+        return installed;
+    }
+
+    /**
+     * How the step ended, e.g. a result status or an error
+     */
+    public Span outcome(String outcome) {
+        if (event != null) {
+            event.outcome = outcome;
+        }
+        return this;
+    }
+
+    /**
+     * Rows changed by a SQL execution
+     */
+    public Span rows(long rows) {
+        if (event instanceof SqlEvent) {
+            ((SqlEvent) event).rows = rows;
+        }
+        return this;
+    }
+
+    /**
+     * The pool borrow had to wait for a connection to be returned
+     */
+    public Span waited() {
+        if (event instanceof PoolBorrowEvent) {
+            ((PoolBorrowEvent) event).waited = true;
+        }
+        return this;
+    }
+
+    /**
+     * The pool borrow opened a new physical connection
+     */
+    public Span reconnected() {
+        if (event instanceof PoolBorrowEvent) {
+            ((PoolBorrowEvent) event).reconnected = true;
+        }
+        return this;
+    }
+
+    /**
+     * Record the span and make its parent current again. May be called on
+     * another thread, in which case that thread's current span is left alone.
+     */
+    @Override
+    public void close() {
+        if (!installed) {
+            return;
+        }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+        Tracing.uninstall(this, previous);
+    }
+}
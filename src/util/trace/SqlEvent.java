@@ -0,0 +1,30 @@
+package util.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("banking.SqlExecution")
+@Label("SQL Execution")
+@Category({"Banking", "Tracing"})
+@Description("One execute call on a statement of a pooled connection; for queries, until the first rows arrive")
+@StackTrace(false)
+class SqlEvent extends TraceEvent {
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Method")
+    String method;
+
+    @Label("Rows")
+    @Description("Rows changed, or -1 for queries")
+    long rows = -1;
+
+    SqlEvent(String sql, String method) {
+        this.sql = sql;
+        this.method = method;
+    }
+}
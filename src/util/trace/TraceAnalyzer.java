@@ -0,0 +1,209 @@
+package util.trace;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a flight recording and prints the slowest traced requests, each split
+ * into SQL, waiting for a pooled connection, opening connections, other time
+ * holding a connection, and time outside the database (FX-thread work,
+ * queueing, service code), followed by the statements that took longest
+ * overall.
+ *
+ * Usage: java util.trace.TraceAnalyzer recording.jfr [top]
+ */
+public class TraceAnalyzer {
+
+    private static final int SQL_TEXT_LENGTH = 100;
+
+    private final Map<Long, Trace> traces = new HashMap<>();
+    private final Map<String, SqlStats> statements = new HashMap<>();
+
+    /**
+     * Add every tracing event in a recording
+     */
+    public void read(Path file) throws IOException {
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String name = event.getEventType().getName();
+                if (name.startsWith("banking.")) {
+                    add(name, event);
+                }
+            }
+        }
+    }
+
+    private void add(String name, RecordedEvent event) {
+        long traceId = event.getLong("traceId");
+        long nanos = event.getDuration().toNanos();
+        boolean root = event.getLong("spanId") == traceId;
+        Trace trace = traces.computeIfAbsent(traceId, Trace::new);
+
+        switch (name) {
+            case "banking.ControllerAction":
+                if (root) {
+                    trace.name = event.getString("controller") + "." + event.getString("action");
+                    trace.request = true;
+                    trace.totalNanos = nanos;
+                    trace.outcome = event.getString("outcome");
+                    trace.startTime = event.getStartTime();
+                    RecordedThread thread = event.getThread();
+                    trace.thread = thread != null ? thread.getJavaName() : null;
+                }
+                break;
+            case "banking.DaoCall":
+                trace.daoNanos += nanos;
+                if (root) {
+                    trace.name = event.getString("dao") + "." + event.getString("method");
+                    trace.totalNanos = nanos;
+                }
+                break;
+            case "banking.PoolBorrow":
+                trace.borrowNanos += nanos;
+                if (event.getBoolean("waited")) {
+                    trace.waits++;
+                }
+                break;
+            case "banking.ConnectionOpen":
+                trace.connectNanos += nanos;
+                trace.connects++;
+                break;
+            case "banking.SqlExecution":
+                String sql = normalize(event.getString("sql"));
+                trace.sqlNanos += nanos;
+                trace.statements++;
+                if (nanos > trace.slowestSqlNanos) {
+                    trace.slowestSqlNanos = nanos;
+                    trace.slowestSql = sql;
+                }
+                statements.computeIfAbsent(sql, k -> new SqlStats()).add(nanos);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * The slowest requests with their breakdown and the slowest statements
+     */
+    public String getReport(int top) {
+        List<Trace> requests = new ArrayList<>();
+        int background = 0;
+        for (Trace trace : traces.values()) {
+            if (trace.request) {
+                requests.add(trace);
+            } else if (trace.name != null) {
+                background++;
+            }
+        }
+        requests.sort(Comparator.comparingLong((Trace trace) -> trace.totalNanos).reversed());
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Slowest requests (top %d of %d traced, %d background traces)%n",
+                Math.min(top, requests.size()), requests.size(), background));
+        for (int i = 0; i < Math.min(top, requests.size()); i++) {
+            Trace trace = requests.get(i);
+            long waitNanos = Math.max(0, trace.borrowNanos - trace.connectNanos);
+            long databaseNanos = Math.max(trace.daoNanos, trace.sqlNanos + trace.borrowNanos);
+            report.append(String.format("%3d. trace %-8d %-36s %10s  %s  %s  [%s]%n", i + 1, trace.traceId,
+                    trace.name, millis(trace.totalNanos), trace.thread, trace.startTime,
+                    trace.outcome != null ? trace.outcome : ""));
+            report.append(String.format("       SQL %s in %d statements | pool wait %s (%d waits) | connect %s (%d) | "
+                            + "DAO other %s | outside database %s%n",
+                    millis(trace.sqlNanos), trace.statements, millis(waitNanos), trace.waits,
+                    millis(trace.connectNanos), trace.connects,
+                    millis(Math.max(0, trace.daoNanos - trace.sqlNanos - trace.borrowNanos)),
+                    millis(Math.max(0, trace.totalNanos - databaseNanos))));
+            if (trace.slowestSql != null) {
+                report.append(String.format("       slowest SQL %s: %s%n", millis(trace.slowestSqlNanos), trace.slowestSql));
+            }
+        }
+
+        List<Map.Entry<String, SqlStats>> slowest = new ArrayList<>(statements.entrySet());
+        slowest.sort(Comparator.comparingLong((Map.Entry<String, SqlStats> entry) -> entry.getValue().totalNanos).reversed());
+        report.append(String.format("%nSlowest SQL by total time%n"));
+        report.append(String.format("  %12s %8s %10s  %s%n", "total", "count", "max", "statement"));
+        for (Map.Entry<String, SqlStats> entry : slowest.subList(0, Math.min(top, slowest.size()))) {
+            SqlStats stats = entry.getValue();
+            report.append(String.format("  %12s %8d %10s  %s%n", millis(stats.totalNanos), stats.count,
+                    millis(stats.maxNanos), entry.getKey()));
+        }
+        return report.toString();
+    }
+
+    private static String normalize(String sql) {
+        if (sql == null) {
+            return "(batch)";
+        }
+        String text = sql.replaceAll("\\s+", " ").trim();
+        return text.length() > SQL_TEXT_LENGTH ? text.substring(0, SQL_TEXT_LENGTH) + "..." : text;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f ms", nanos / 1_000_000.0);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java util.trace.TraceAnalyzer recording.jfr [top]");
+            System.exit(1);
+        }
+        int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        TraceAnalyzer analyzer = new TraceAnalyzer();
+        analyzer.read(Paths.get(args[0]));
+        System.out.print(analyzer.getReport(top));
+    }
+
+    /**
+     * Inner class for the sums of one trace
+     */
+    private static class Trace {
+        private final long traceId;
+        private String name;
+        private boolean request;
+        private String outcome;
+        private String thread;
+        private Instant startTime;
+        private long totalNanos;
+        private long daoNanos;
+        private long borrowNanos;
+        private long connectNanos;
+        private long sqlNanos;
+        private long slowestSqlNanos;
+        private String slowestSql;
+        private int statements;
+        private int waits;
+        private int connects;
+
+        Trace(long traceId) {
+            this.traceId = traceId;
+        }
+    }
+
+    /**
+     * Inner class for the executions of one statement
+     */
+    private static class SqlStats {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package util.trace;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Fields shared by the tracing events. A trace is one request; its id is the
+ * span id of its root (usually a controller action), and every span names
+ * its parent so a request can be rebuilt from a recording.
+ */
+abstract class TraceEvent extends Event {
+
+    @Label("Trace Id")
+    long traceId;
+
+    @Label("Span Id")
+    long spanId;
+
+    @Label("Parent Span Id")
+    long parentSpanId;
+
+    @Label("Outcome")
+    String outcome;
+}
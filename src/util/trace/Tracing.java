@@ -0,0 +1,200 @@
+package util.trace;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request tracing with Java Flight Recorder events.
+ *
+ * Controller actions, DAO calls (a pooled connection from borrow to close),
+ * pool borrows, physical connects and SQL executions are recorded as events
+ * carrying a trace id and a parent span id, so the time of one slow request
+ * can be split between FX-thread work, waiting for or opening connections,
+ * and SQL. The current span is kept per thread; work handed to another
+ * thread continues the trace with {@link #resume}.
+ *
+ * Every entry point first asks whether its event is enabled, which the JIT
+ * reduces to a constant false while no recording is running, so tracing
+ * costs next to nothing then. Record with e.g.
+ * -XX:StartFlightRecording=filename=banking.jfr and read the file with
+ * {@link TraceAnalyzer}.
+ */
+public final class Tracing {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    // Frames skipped when naming the method that borrowed a connection
+    private static final String[] INFRASTRUCTURE = { "util.", "java.", "jdk.", "com.sun.proxy.", "jdk.proxy" };
+
+    private Tracing() {
+    }
+
+    /**
+     * Start the root span of a user action
+     */
+    public static Span controllerAction(String controller, String action) {
+        return start(new ControllerActionEvent(controller, action));
+    }
+
+    /**
+     * Start the span of a borrowed connection, named after the first caller
+     * outside the connection management code
+     */
+    public static Span daoCall() {
+        DaoCallEvent event = new DaoCallEvent();
+        if (!event.isEnabled()) {
+            return Span.NOOP;
+        }
+        Optional<StackWalker.StackFrame> caller = StackWalker.getInstance()
+                .walk(frames -> frames.filter(frame -> !isInfrastructure(frame.getClassName())).findFirst());
+        if (caller.isPresent()) {
+            event.dao = caller.get().getClassName();
+            event.method = caller.get().getMethodName();
+        }
+        return start(event);
+    }
+
+    public static Span poolBorrow() {
+        return start(new PoolBorrowEvent());
+    }
+
+    public static Span connectionOpen(String url) {
+        return start(new ConnectionOpenEvent(url));
+    }
+
+    public static Span sql(String sql, String method) {
+        return start(new SqlEvent(sql, method));
+    }
+
+    /**
+     * Whether SQL executions are being recorded, checked once per borrowed connection
+     */
+    public static boolean isSqlRecorded() {
+        return new SqlEvent(null, null).isEnabled();
+    }
+
+    /**
+     * The span open on this thread, to hand to {@link #resume} on another
+     * thread; a no-op span when there is none
+     */
+    public static Span current() {
+        Span span = CURRENT.get();
+        return span != null ? span : Span.NOOP;
+    }
+
+    /**
+     * Continue a span captured on another thread: spans started here until
+     * the returned scope is closed become its children
+     */
+    public static Span resume(Span captured) {
+        if (captured == null || !captured.isRecording()) {
+            return Span.NOOP;
+        }
+        Span scope = new Span(null, captured.getTraceId(), captured.getSpanId(), CURRENT.get(), true);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Record every execute call on a statement
+     */
+    public static Statement traceStatement(Statement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type },
+                new TracedStatementHandler(statement, sql));
+    }
+
+    private static Span start(TraceEvent event) {
+        if (!event.isEnabled()) {
+            return Span.NOOP;
+        }
+        Span parent = CURRENT.get();
+        long spanId = NEXT_ID.incrementAndGet();
+        event.spanId = spanId;
+        event.parentSpanId = parent != null ? parent.getSpanId() : 0;
+        event.traceId = parent != null ? parent.getTraceId() : spanId;
+        Span span = new Span(event, event.traceId, spanId, parent, true);
+        CURRENT.set(span);
+        event.begin();
+        return span;
+    }
+
+    static void uninstall(Span span, Span previous) {
+        if (CURRENT.get() != span) {
+            return;
+        }
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    private static boolean isInfrastructure(String className) {
+        for (String prefix : INFRASTRUCTURE) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records execute calls and forwards everything to the statement
+     */
+    private static final class TracedStatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+
+        TracedStatementHandler(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                return forward(method, args);
+            }
+            String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            Span span = sql(text, name);
+            try {
+                Object result = forward(method, args);
+                if (result instanceof Integer || result instanceof Long) {
+                    span.rows(((Number) result).longValue());
+                } else if (result instanceof int[]) {
+                    long rows = 0;
+                    for (int count : (int[]) result) {
+                        rows += Math.max(0, count);
+                    }
+                    span.rows(rows);
+                }
+                return result;
+            } catch (SQLException e) {
+                span.outcome(e.getSQLState() != null ? e.getSQLState() : e.getMessage());
+                throw e;
+            } finally {
+                span.close();
+            }
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}